@@ -0,0 +1,137 @@
+package example.nordicid.com.inventorycore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects barcode results of continuous scanning.
+ * Same code seen again inside dedup window is ignored. Accepted codes are kept in pending batch
+ * until UI drains it, and in result list for the whole session.
+ * Not thread safe. Caller must synchronize if results added and drained from different threads.
+ */
+public class BarcodeBatcher {
+
+    //How many accept timestamps kept for scans/min calculation
+    private static final int RATE_RING_SIZE = 512;
+    private static final long RATE_WINDOW_MS = 60000;
+
+    private final long mDedupWindowMs;
+
+    //Barcode -> time last seen. Old entries pruned when map grows.
+    private final HashMap<String, Long> mLastSeen = new HashMap<String, Long>();
+    private int mPruneThreshold = 256;
+
+    private ArrayList<String> mPending = new ArrayList<String>();
+    private final ArrayList<String> mResults = new ArrayList<String>();
+
+    private final long[] mAcceptTimes = new long[RATE_RING_SIZE];
+    private int mAcceptHead;
+    private int mAcceptCount;
+
+    private int mDuplicates;
+
+    public BarcodeBatcher(long dedupWindowMs)
+    {
+        mDedupWindowMs = dedupWindowMs;
+    }
+
+    /**
+     * Add barcode scanned at time 'now'.
+     * @param code Barcode string
+     * @param now Time in milliseconds
+     * @return true if accepted, false if it was duplicate inside dedup window
+     */
+    public boolean add(String code, long now)
+    {
+        Long last = mLastSeen.put(code, now);
+        if (last != null && now - last < mDedupWindowMs) {
+            mDuplicates++;
+            return false;
+        }
+
+        if (mLastSeen.size() > mPruneThreshold)
+            prune(now);
+
+        mPending.add(code);
+        mResults.add(code);
+
+        mAcceptTimes[mAcceptHead] = now;
+        mAcceptHead = (mAcceptHead + 1) % RATE_RING_SIZE;
+        if (mAcceptCount < RATE_RING_SIZE)
+            mAcceptCount++;
+
+        return true;
+    }
+
+    /**
+     * Take barcodes accepted since last call.
+     * @return List of barcodes, empty if nothing new
+     */
+    public List<String> drainBatch()
+    {
+        if (mPending.isEmpty())
+            return new ArrayList<String>(0);
+
+        List<String> batch = mPending;
+        mPending = new ArrayList<String>();
+        return batch;
+    }
+
+    /**
+     * Accepted scans per minute calculated from scans during last 60 sec.
+     * @param now Time in milliseconds
+     */
+    public int getScansPerMinute(long now)
+    {
+        if (mAcceptCount == 0)
+            return 0;
+
+        int inWindow = 0;
+        long oldest = now;
+        for (int x = 0; x < mAcceptCount; x++) {
+            long t = mAcceptTimes[(mAcceptHead - 1 - x + RATE_RING_SIZE) % RATE_RING_SIZE];
+            if (now - t > RATE_WINDOW_MS)
+                break;
+            inWindow++;
+            oldest = t;
+        }
+
+        if (inWindow < 2)
+            return inWindow;
+
+        //Scale to minute when there is less than minute of scans behind
+        long span = Math.max(now - oldest, 1000);
+        if (span >= RATE_WINDOW_MS)
+            return inWindow;
+        return (int) (inWindow * RATE_WINDOW_MS / span);
+    }
+
+    public List<String> getResults() { return mResults; }
+    public int getResultCount() { return mResults.size(); }
+    public int getDuplicateCount() { return mDuplicates; }
+
+    public void clear()
+    {
+        mLastSeen.clear();
+        mPending.clear();
+        mResults.clear();
+        mAcceptHead = 0;
+        mAcceptCount = 0;
+        mDuplicates = 0;
+    }
+
+    private void prune(long now)
+    {
+        Iterator<Map.Entry<String, Long>> it = mLastSeen.entrySet().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().getValue() >= mDedupWindowMs)
+                it.remove();
+        }
+        //Many different codes inside window. Let map grow before trying again.
+        if (mLastSeen.size() > mPruneThreshold / 2)
+            mPruneThreshold *= 2;
+    }
+}
@@ -0,0 +1,295 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+import com.nordicid.nurapi.NurEventNxpAlarm;
+
+/**
+ * NXP EAS alarm monitoring for exit gates. Alarm is on when tag with EAS bit set is in field, and goes off
+ * when no EAS tag has been seen in HOLD_MS.
+ *
+ * Alone the reader runs NXP alarm stream and reports alarms with nxpEasAlarmEvent. With InventoryController
+ * given, EAS is polled with single alarm command between inventory: stream is paused for the poll and resumed.
+ * Poll interval is stretched so stream is on at least MIN_STREAM_PERCENT of time, inventory throughput drops
+ * by the share of poll time only.
+ *
+ * Alarm latency is poll period (time between alarm checks) plus time Listener takes to give feedback.
+ * Both are measured, worst case is compared to latency budget.
+ */
+public class EasMonitor {
+
+    public static final long DEFAULT_POLL_INTERVAL_MS = 200;
+    public static final long DEFAULT_LATENCY_BUDGET_MS = 500;
+    //Alarm off after no EAS tag seen this long
+    public static final long HOLD_MS = 1000;
+    //Inventory stream share kept when polling alongside it
+    public static final int MIN_STREAM_PERCENT = 80;
+
+    public interface Listener {
+        /**
+         * Alarm on or off. Give feedback here (beep, light), time spent counts to alarm latency.
+         * Called from monitor thread or NurApi thread.
+         */
+        void onAlarm(boolean alarm) throws Exception;
+
+        /**
+         * Check or feedback failed
+         */
+        void onError(Exception ex);
+    }
+
+    private final NurApi mApi;
+    //Null when monitoring alone with alarm stream
+    private final InventoryController mController;
+    private final Listener mListener;
+    private final long mPollIntervalMs;
+    private final long mBudgetMs;
+
+    private volatile boolean mRunning;
+    private Thread mThread;
+    private volatile boolean mAlarm;
+    private volatile long mLastSeenNanos;
+
+    private long mStartNanos;
+    private long mLastCheckNanos;
+    private volatile long mChecks;
+    private volatile long mAlarms;
+    private volatile long mMaxPeriodNanos;
+    private volatile long mMaxFeedbackNanos;
+    private volatile long mPollNanos;
+    private volatile long mMaxPollNanos;
+
+    /**
+     * @param controller Inventory running alongside, null to run reader alarm stream alone
+     * @param pollIntervalMs Time between polls with inventory
+     * @param budgetMs Target for worst case alarm latency
+     */
+    public EasMonitor(NurApi api, InventoryController controller, Listener listener, long pollIntervalMs, long budgetMs)
+    {
+        mApi = api;
+        mController = controller;
+        mListener = listener;
+        mPollIntervalMs = pollIntervalMs;
+        mBudgetMs = budgetMs;
+    }
+
+    public boolean isRunning() { return mRunning; }
+    public boolean isAlarm() { return mAlarm; }
+    public boolean isPolling() { return mController != null; }
+
+    public synchronized void start() throws Exception
+    {
+        if (mRunning)
+            return;
+        mChecks = 0;
+        mAlarms = 0;
+        mMaxPeriodNanos = 0;
+        mMaxFeedbackNanos = 0;
+        mPollNanos = 0;
+        mMaxPollNanos = 0;
+        mAlarm = false;
+        mStartNanos = System.nanoTime();
+        mLastCheckNanos = mStartNanos;
+        if (mController == null)
+            mApi.nxpStartAlarmStream();
+        mRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                monitorLoop();
+            }
+        }, "EasMonitor");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Stop monitoring. Alarm stream stopped, alarm turned off if on.
+     */
+    public void stop() throws Exception
+    {
+        Thread thread;
+        synchronized (this) {
+            if (!mRunning)
+                return;
+            mRunning = false;
+            thread = mThread;
+            mThread = null;
+        }
+        thread.interrupt();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (mController == null && mApi.isNxpAlarmStreamRunning())
+                mApi.nxpStopAlarmStream();
+        }
+        finally {
+            if (mAlarm)
+                setAlarm(false);
+        }
+    }
+
+    /**
+     * Alarm stream event. Stream stops by itself after a while and is started again while monitoring.
+     * @return true if event was handled
+     */
+    public boolean handleAlarmEvent(NurEventNxpAlarm event) throws Exception
+    {
+        if (!mRunning || mController != null)
+            return false;
+        if (event.stopped) {
+            mApi.nxpStartAlarmStream();
+            return true;
+        }
+        onCheck(event.armed, System.nanoTime());
+        return true;
+    }
+
+    private void monitorLoop()
+    {
+        while (mRunning) {
+            try {
+                long wait = mController != null ? pollIntervalMs() : HOLD_MS / 4;
+                Thread.sleep(wait);
+                if (mController != null)
+                    poll();
+                else
+                    checkHold(System.nanoTime());
+            }
+            catch (InterruptedException ex) {
+                return;
+            }
+            catch (Exception ex) {
+                if (mRunning && mListener != null)
+                    mListener.onError(ex);
+            }
+        }
+    }
+
+    /**
+     * Interval stretched when polls are slow so stream stays on MIN_STREAM_PERCENT of time
+     */
+    long pollIntervalMs()
+    {
+        long pollMs = mMaxPollNanos / 1000000;
+        long minInterval = pollMs * MIN_STREAM_PERCENT / (100 - MIN_STREAM_PERCENT);
+        return Math.max(mPollIntervalMs, minInterval);
+    }
+
+    /**
+     * Single alarm check with stream paused. Alarm command fails with NO_TAG when no EAS tag answers.
+     */
+    private void poll() throws Exception
+    {
+        InventoryController controller = mController;
+        long start = System.nanoTime();
+        boolean alarm;
+        //Controller counts pauses: stream stays off after poll if duty cycle pause or connection loss came
+        //meanwhile, and stop() from UI ends the pause
+        boolean paused = controller.pause();
+        try {
+            mApi.nxpAlarm();
+            alarm = true;
+        }
+        catch (NurApiException ex) {
+            if (ex.error != NurApiErrors.NO_TAG)
+                throw ex;
+            alarm = false;
+        }
+        finally {
+            if (paused)
+                controller.resume();
+        }
+        long now = System.nanoTime();
+        long pollNanos = now - start;
+        mPollNanos += pollNanos;
+        mMaxPollNanos = Math.max(mMaxPollNanos, pollNanos);
+        onCheck(alarm, now);
+    }
+
+    /**
+     * Result of alarm check, from poll or alarm stream
+     */
+    synchronized void onCheck(boolean alarm, long nowNanos)
+    {
+        mChecks++;
+        long period = nowNanos - mLastCheckNanos;
+        //Alarm stream may report only when EAS tag answers, quiet time between reports is not check period
+        if (mController != null || period <= HOLD_MS * 1000000L)
+            mMaxPeriodNanos = Math.max(mMaxPeriodNanos, period);
+        mLastCheckNanos = nowNanos;
+        if (alarm) {
+            mLastSeenNanos = nowNanos;
+            if (!mAlarm) {
+                mAlarms++;
+                setAlarm(true);
+            }
+        }
+        else
+            checkHold(nowNanos);
+    }
+
+    private synchronized void checkHold(long nowNanos)
+    {
+        if (mAlarm && nowNanos - mLastSeenNanos > HOLD_MS * 1000000L)
+            setAlarm(false);
+    }
+
+    private void setAlarm(boolean alarm)
+    {
+        mAlarm = alarm;
+        if (mListener == null)
+            return;
+        long start = System.nanoTime();
+        try {
+            mListener.onAlarm(alarm);
+        }
+        catch (Exception ex) {
+            mListener.onError(ex);
+        }
+        if (alarm)
+            mMaxFeedbackNanos = Math.max(mMaxFeedbackNanos, System.nanoTime() - start);
+    }
+
+    public long getChecks() { return mChecks; }
+    public long getAlarms() { return mAlarms; }
+
+    /**
+     * Worst case from EAS tag entering field to feedback given: longest check period and feedback time
+     */
+    public long getWorstLatencyMs()
+    {
+        return (mMaxPeriodNanos + mMaxFeedbackNanos) / 1000000;
+    }
+
+    public boolean isWithinBudget()
+    {
+        return getWorstLatencyMs() <= mBudgetMs;
+    }
+
+    /**
+     * Share of time inventory stream was paused for polls, 0 when monitoring alone
+     */
+    public double getInventoryPausePercent()
+    {
+        long elapsed = System.nanoTime() - mStartNanos;
+        return mController != null && elapsed > 0 ? mPollNanos * 100.0 / elapsed : 0;
+    }
+
+    /**
+     * "EAS: 120 checks, 2 alarms, worst latency 260 ms (budget 500 ms), inventory paused 6.2%"
+     */
+    public String summary()
+    {
+        long worst = getWorstLatencyMs();
+        String text = String.format("EAS: %d checks, %d alarms, worst latency %d ms (budget %d ms%s)",
+                mChecks, mAlarms, worst, mBudgetMs, worst > mBudgetMs ? ", OVER" : "");
+        if (mController != null)
+            text += String.format(", inventory paused %.1f%%", getInventoryPausePercent());
+        return text;
+    }
+}
@@ -0,0 +1,186 @@
+package example.nordicid.com.inventorycore;
+
+/**
+ * EPC hex encoding and comparison without String allocations.
+ * Hex digits come from lookup table, output goes to caller owned reusable buffers.
+ * EPCs are compared 8 bytes at a time as big endian long words.
+ * Use toHexString() only when text is really needed (UI, files).
+ */
+public class EpcCodec {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    //Two hex characters for each byte value
+    private static final char[] HEX_CHARS = new char[512];
+    private static final byte[] HEX_BYTES = new byte[512];
+
+    //Hex character -> value, -1 if not hex
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        for (int x = 0; x < 256; x++) {
+            HEX_CHARS[x * 2] = HEX_DIGITS[x >> 4];
+            HEX_CHARS[x * 2 + 1] = HEX_DIGITS[x & 0xF];
+            HEX_BYTES[x * 2] = (byte) HEX_DIGITS[x >> 4];
+            HEX_BYTES[x * 2 + 1] = (byte) HEX_DIGITS[x & 0xF];
+        }
+        for (int x = 0; x < HEX_VALUES.length; x++)
+            HEX_VALUES[x] = (byte) Character.digit((char) x, 16);
+    }
+
+    /**
+     * Encode bytes as upper case hex into char buffer.
+     * @param src Bytes to encode
+     * @param dst Destination buffer. Must have room for src.length * 2 chars from dstOff.
+     * @param dstOff Offset in destination
+     * @return Number of chars written
+     */
+    public static int encode(byte[] src, char[] dst, int dstOff)
+    {
+        int p = dstOff;
+        for (int x = 0; x < src.length; x++) {
+            int i = (src[x] & 0xFF) << 1;
+            dst[p++] = HEX_CHARS[i];
+            dst[p++] = HEX_CHARS[i + 1];
+        }
+        return p - dstOff;
+    }
+
+    /**
+     * Encode bytes as upper case ASCII hex into byte buffer. Used when writing files.
+     * @return Number of bytes written
+     */
+    public static int encode(byte[] src, byte[] dst, int dstOff)
+    {
+        int p = dstOff;
+        for (int x = 0; x < src.length; x++) {
+            int i = (src[x] & 0xFF) << 1;
+            dst[p++] = HEX_BYTES[i];
+            dst[p++] = HEX_BYTES[i + 1];
+        }
+        return p - dstOff;
+    }
+
+    /**
+     * Hex string of bytes. Allocates, so use for display only.
+     */
+    public static String toHexString(byte[] src)
+    {
+        char[] buf = new char[src.length * 2];
+        encode(src, buf, 0);
+        return new String(buf);
+    }
+
+    /**
+     * Decode hex characters to bytes.
+     * @param hex Hex characters, even count
+     * @param off Offset of first character
+     * @param len Number of characters
+     * @param dst Destination, must have room for len / 2 bytes
+     * @return Number of bytes decoded or -1 if input is not valid hex
+     */
+    public static int decode(CharSequence hex, int off, int len, byte[] dst)
+    {
+        if ((len & 1) != 0)
+            return -1;
+        for (int x = 0; x < len; x += 2) {
+            char c1 = hex.charAt(off + x);
+            char c2 = hex.charAt(off + x + 1);
+            if (c1 >= 128 || c2 >= 128)
+                return -1;
+            int hi = HEX_VALUES[c1];
+            int lo = HEX_VALUES[c2];
+            if (hi < 0 || lo < 0)
+                return -1;
+            dst[x >> 1] = (byte) ((hi << 4) | lo);
+        }
+        return len / 2;
+    }
+
+    /**
+     * Big endian 64 bit word from byte array. Bytes past array end read as zero.
+     * @param b Bytes
+     * @param off Byte offset of the word
+     */
+    public static long word(byte[] b, int off)
+    {
+        if (off + 8 <= b.length) {
+            return ((long) (b[off] & 0xFF) << 56) | ((long) (b[off + 1] & 0xFF) << 48) |
+                   ((long) (b[off + 2] & 0xFF) << 40) | ((long) (b[off + 3] & 0xFF) << 32) |
+                   ((long) (b[off + 4] & 0xFF) << 24) | ((b[off + 5] & 0xFF) << 16) |
+                   ((b[off + 6] & 0xFF) << 8) | (b[off + 7] & 0xFF);
+        }
+        long v = 0;
+        for (int x = off; x < off + 8; x++)
+            v = (v << 8) | (x < b.length ? (b[x] & 0xFF) : 0);
+        return v;
+    }
+
+    /**
+     * Pack EPC into long words. 96 bit EPC takes two words.
+     * @param epc EPC bytes
+     * @param dst Destination, at least (epc.length + 7) / 8 words
+     * @return Number of words written
+     */
+    public static int pack(byte[] epc, long[] dst)
+    {
+        int words = (epc.length + 7) >> 3;
+        for (int w = 0; w < words; w++)
+            dst[w] = word(epc, w << 3);
+        return words;
+    }
+
+    /**
+     * Compare two EPCs.
+     * @return true if same length and content
+     */
+    public static boolean sameEpc(byte[] a, byte[] b)
+    {
+        if (a == b)
+            return true;
+        if (a == null || b == null || a.length != b.length)
+            return false;
+        int off = 0;
+        for (; off + 8 <= a.length; off += 8) {
+            if (word(a, off) != word(b, off))
+                return false;
+        }
+        //Tail shorter than word, 96 bit EPC has 4 bytes here
+        for (; off < a.length; off++) {
+            if (a[off] != b[off])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Hash of EPC, same for same content.
+     */
+    public static int hash(byte[] epc)
+    {
+        return hash(epc, 0, epc.length);
+    }
+
+    /**
+     * Hash of EPC stored inside larger array. Same as hash(byte[]) of EPC copied out.
+     */
+    public static int hash(byte[] b, int off, int len)
+    {
+        long h = len;
+        for (int x = 0; x < len; x += 8) {
+            long w;
+            if (x + 8 <= len) {
+                w = word(b, off + x);
+            } else {
+                //Tail padded with zeros, bytes after EPC belong to something else
+                w = 0;
+                for (int y = x; y < x + 8; y++)
+                    w = (w << 8) | (y < len ? (b[off + y] & 0xFF) : 0);
+            }
+            h = h * 0x9E3779B97F4A7C15L + w;
+        }
+        h ^= (h >>> 32);
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 29));
+    }
+}
@@ -0,0 +1,294 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurInventoryExtendedFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * EPC filter made of one or more rules. Tag passes when any of the rules match.
+ *
+ * Rule syntax (rules separated by comma or space):
+ *  3074257B        EPC starts with hex digits
+ *  3074257B/26     EPC starts with first 26 bits of hex value
+ *  30000000&amp;FF00000F  EPC bits set in mask must equal value
+ *  gcp:0614141     GS1 coded (SGTIN, SSCC, SGLN, GRAI, GIAI 96 bit) tag with this company prefix
+ *
+ * Rules are compiled to 64 bit value/mask words so matching raw EPC bytes does not allocate.
+ * Reader can do the same filtering with Gen2 select. buildReaderFilters() gives select masks
+ * which pass at least the tags matching the rules. Matching is still done on phone because select
+ * cannot express every rule exactly (gcp rules have don't care filter bits in the middle).
+ */
+public class EpcFilter {
+
+    //EPC bank: EPC starts after CRC16 and PC words
+    private static final int EPC_BANK_EPC_START_BIT = 32;
+
+    //Company prefix bits per partition value in 96 bit GS1 schemes
+    private static final int[] GCP_BITS = { 40, 37, 34, 30, 27, 24, 20 };
+    private static final int[] GCP_HEADERS = { 0x30, 0x31, 0x32, 0x33, 0x34 }; //SGTIN, SSCC, SGLN, GRAI, GIAI
+
+    private final String mText;
+    private final int mRuleCount;
+    private final int mWords;        //64 bit words per rule
+    private final long[] mValues;    //mRuleCount * mWords
+    private final long[] mMasks;
+    private final int[] mMinBytes;   //EPC must be at least this long for rule to match
+    private final byte[][] mRuleValues;
+    private final byte[][] mRuleMasks;
+
+    private EpcFilter(String text, ArrayList<byte[]> values, ArrayList<byte[]> masks)
+    {
+        mText = text;
+        mRuleCount = values.size();
+        mRuleValues = values.toArray(new byte[mRuleCount][]);
+        mRuleMasks = masks.toArray(new byte[mRuleCount][]);
+
+        int maxBytes = 0;
+        for (byte[] m : mRuleMasks)
+            maxBytes = Math.max(maxBytes, significantBytes(m));
+
+        mWords = (maxBytes + 7) / 8;
+        mValues = new long[mRuleCount * mWords];
+        mMasks = new long[mRuleCount * mWords];
+        mMinBytes = new int[mRuleCount];
+
+        for (int r = 0; r < mRuleCount; r++) {
+            mMinBytes[r] = significantBytes(mRuleMasks[r]);
+            for (int w = 0; w < mWords; w++) {
+                mValues[r * mWords + w] = EpcCodec.word(mRuleValues[r], w * 8) & EpcCodec.word(mRuleMasks[r], w * 8);
+                mMasks[r * mWords + w] = EpcCodec.word(mRuleMasks[r], w * 8);
+            }
+        }
+    }
+
+    /**
+     * Parse filter rules.
+     * @param text Rules. Empty text gives filter which passes everything.
+     * @throws IllegalArgumentException if rule cannot be parsed
+     */
+    public static EpcFilter parse(String text)
+    {
+        ArrayList<byte[]> values = new ArrayList<byte[]>();
+        ArrayList<byte[]> masks = new ArrayList<byte[]>();
+
+        String trimmed = text == null ? "" : text.trim();
+        if (trimmed.length() > 0) {
+            for (String rule : trimmed.split("[,\\s]+"))
+                parseRule(rule, values, masks);
+        }
+
+        return new EpcFilter(trimmed, values, masks);
+    }
+
+    private static void parseRule(String rule, ArrayList<byte[]> values, ArrayList<byte[]> masks)
+    {
+        if (rule.regionMatches(true, 0, "gcp:", 0, 4)) {
+            String cp = rule.substring(4);
+            int partition = 12 - cp.length();
+            if (partition < 0 || partition >= GCP_BITS.length || !isDigits(cp))
+                throw new IllegalArgumentException("Company prefix must be 6-12 digits: " + rule);
+
+            long cpValue = Long.parseLong(cp);
+            for (int header : GCP_HEADERS) {
+                byte[] value = new byte[12];
+                byte[] mask = new byte[12];
+                setBits(value, mask, 0, 8, header);
+                //Filter value bits 8..10 are don't care
+                setBits(value, mask, 11, 3, partition);
+                setBits(value, mask, 14, GCP_BITS[partition], cpValue);
+                values.add(value);
+                masks.add(mask);
+            }
+            return;
+        }
+
+        int amp = rule.indexOf('&');
+        if (amp > 0) {
+            byte[] value = hexToBytes(rule.substring(0, amp), rule);
+            byte[] mask = hexToBytes(rule.substring(amp + 1), rule);
+            if (value.length != mask.length)
+                throw new IllegalArgumentException("Value and mask must be same length: " + rule);
+            values.add(value);
+            masks.add(mask);
+            return;
+        }
+
+        int slash = rule.indexOf('/');
+        String hex = slash > 0 ? rule.substring(0, slash) : rule;
+        byte[] value = hexToBytes(hex, rule);
+        int bits = hex.length() * 4;
+        if (slash > 0) {
+            try {
+                bits = Integer.parseInt(rule.substring(slash + 1));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid bit count: " + rule);
+            }
+            if (bits <= 0 || bits > hex.length() * 4)
+                throw new IllegalArgumentException("Invalid bit count: " + rule);
+        }
+
+        byte[] mask = new byte[value.length];
+        for (int x = 0; x < bits; x++)
+            mask[x >> 3] |= 0x80 >> (x & 7);
+        values.add(value);
+        masks.add(mask);
+    }
+
+    /**
+     * @return true if there are no rules and every tag passes
+     */
+    public boolean isEmpty()
+    {
+        return mRuleCount == 0;
+    }
+
+    public int getRuleCount()
+    {
+        return mRuleCount;
+    }
+
+    /**
+     * Check EPC against rules.
+     * @param epc EPC bytes as received from reader
+     * @return true if any rule matches or filter is empty
+     */
+    public boolean matches(byte[] epc)
+    {
+        if (mRuleCount == 0)
+            return true;
+
+        int words = mWords;
+        for (int r = 0; r < mRuleCount; r++) {
+            if (epc.length < mMinBytes[r])
+                continue;
+            int base = r * words;
+            int w = 0;
+            for (; w < words; w++) {
+                if ((EpcCodec.word(epc, w * 8) & mMasks[base + w]) != mValues[base + w])
+                    break;
+            }
+            if (w == words)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Build Gen2 select filters for inventoryExtended. First filter asserts SL on match and
+     * deasserts it on others, rest of filters assert SL on match, so SL ends up set for tags matching any rule.
+     * Inventory must be done with INVSELSTATE_SL.
+     * @return Filters or null if rules cannot be given to reader (too many rules)
+     */
+    public NurInventoryExtendedFilter[] buildReaderFilters()
+    {
+        if (mRuleCount == 0)
+            return null;
+
+        ArrayList<NurInventoryExtendedFilter> filters = new ArrayList<NurInventoryExtendedFilter>();
+        ArrayList<String> seen = new ArrayList<String>();
+
+        for (int r = 0; r < mRuleCount; r++) {
+            byte[] mask = mRuleMasks[r];
+            int start = firstSetBit(mask);
+            if (start < 0)
+                return null; //Rule with empty mask passes everything. Nothing to select.
+
+            //Longest run of fixed bits starting from first fixed bit. Select passes superset of the rule.
+            int len = 0;
+            int maxBits = Math.min(mask.length * 8 - start, NurApi.MAX_SELMASK * 8);
+            while (len < maxBits && isBitSet(mask, start + len))
+                len++;
+
+            byte[] data = new byte[(len + 7) / 8];
+            for (int x = 0; x < len; x++) {
+                if (isBitSet(mRuleValues[r], start + x))
+                    data[x >> 3] |= 0x80 >> (x & 7);
+            }
+
+            String key = start + ":" + len + ":" + Arrays.toString(data);
+            if (seen.contains(key))
+                continue;
+            seen.add(key);
+
+            NurInventoryExtendedFilter f = new NurInventoryExtendedFilter();
+            f.truncate = false;
+            f.targetSession = NurInventoryExtendedFilter.SESSION_SL;
+            f.action = filters.isEmpty() ? NurInventoryExtendedFilter.FILTER_ACTION_0 : NurInventoryExtendedFilter.FILTER_ACTION_1;
+            f.bank = NurInventoryExtendedFilter.BANK_EPC;
+            f.address = EPC_BANK_EPC_START_BIT + start;
+            f.maskBitLength = len;
+            f.maskdata = data;
+            filters.add(f);
+        }
+
+        if (filters.size() > NurApi.MAX_FILTERS)
+            return null;
+
+        return filters.toArray(new NurInventoryExtendedFilter[filters.size()]);
+    }
+
+    @Override
+    public String toString()
+    {
+        return mText;
+    }
+
+    private static int significantBytes(byte[] mask)
+    {
+        for (int x = mask.length - 1; x >= 0; x--) {
+            if (mask[x] != 0)
+                return x + 1;
+        }
+        return 0;
+    }
+
+    private static int firstSetBit(byte[] b)
+    {
+        for (int x = 0; x < b.length * 8; x++) {
+            if (isBitSet(b, x))
+                return x;
+        }
+        return -1;
+    }
+
+    private static boolean isBitSet(byte[] b, int bit)
+    {
+        return (b[bit >> 3] & (0x80 >> (bit & 7))) != 0;
+    }
+
+    private static void setBits(byte[] value, byte[] mask, int bitOffset, int bitCount, long v)
+    {
+        for (int x = 0; x < bitCount; x++) {
+            int bit = bitOffset + x;
+            mask[bit >> 3] |= 0x80 >> (bit & 7);
+            if (((v >> (bitCount - 1 - x)) & 1) != 0)
+                value[bit >> 3] |= 0x80 >> (bit & 7);
+        }
+    }
+
+    private static boolean isDigits(String s)
+    {
+        for (int x = 0; x < s.length(); x++) {
+            if (s.charAt(x) < '0' || s.charAt(x) > '9')
+                return false;
+        }
+        return s.length() > 0;
+    }
+
+    private static byte[] hexToBytes(String hex, String rule)
+    {
+        if (hex.length() == 0)
+            throw new IllegalArgumentException("Empty rule: " + rule);
+
+        byte[] b = new byte[(hex.length() + 1) / 2];
+        for (int x = 0; x < hex.length(); x++) {
+            int d = Character.digit(hex.charAt(x), 16);
+            if (d < 0)
+                throw new IllegalArgumentException("Invalid hex: " + rule);
+            b[x >> 1] |= (x & 1) == 0 ? d << 4 : d;
+        }
+        return b;
+    }
+}
@@ -0,0 +1,157 @@
+package example.nordicid.com.inventorycore;
+
+import java.util.Arrays;
+
+/**
+ * Set of EPCs for large tag lists, e.g. 100k item manifest.
+ * EPC bytes are stored back to back in one array and found by open addressing hash table of entry numbers,
+ * so there is no object per EPC. 96 bit EPC takes about 12 + 12 bytes (data, offset, length, table).
+ * Each EPC gets index 0..size()-1 in order added, usable as bit number in caller's bit set.
+ */
+public class EpcSet {
+
+    private static final int MIN_TABLE = 16;
+
+    private byte[] mData;
+    private int mDataLen;
+    private int[] mOffsets;
+    private byte[] mLengths;
+    private int mSize;
+    //Entry index + 1, 0 is empty slot. Kept at most half full.
+    private int[] mTable;
+
+    public EpcSet()
+    {
+        this(16);
+    }
+
+    /**
+     * @param expected EPC count expected, avoids growing while loading
+     */
+    public EpcSet(int expected)
+    {
+        int capacity = Math.max(expected, 1);
+        mData = new byte[capacity * 12];
+        mOffsets = new int[capacity];
+        mLengths = new byte[capacity];
+        int table = MIN_TABLE;
+        while (table < capacity * 2)
+            table <<= 1;
+        mTable = new int[table];
+    }
+
+    public int size() { return mSize; }
+
+    /**
+     * @return Index of EPC, -1 if not in set
+     */
+    public int indexOf(byte[] epc)
+    {
+        return indexOf(epc, 0, epc.length);
+    }
+
+    public int indexOf(byte[] b, int off, int len)
+    {
+        int mask = mTable.length - 1;
+        int slot = EpcCodec.hash(b, off, len) & mask;
+        while (true) {
+            int entry = mTable[slot];
+            if (entry == 0)
+                return -1;
+            if (equalsEntry(entry - 1, b, off, len))
+                return entry - 1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Add EPC if not in set yet
+     * @return Index of EPC, new or existing
+     */
+    public int add(byte[] epc)
+    {
+        return add(epc, 0, epc.length);
+    }
+
+    public int add(byte[] b, int off, int len)
+    {
+        if (len > 255)
+            throw new IllegalArgumentException("EPC too long");
+        int mask = mTable.length - 1;
+        int slot = EpcCodec.hash(b, off, len) & mask;
+        while (true) {
+            int entry = mTable[slot];
+            if (entry == 0)
+                break;
+            if (equalsEntry(entry - 1, b, off, len))
+                return entry - 1;
+            slot = (slot + 1) & mask;
+        }
+
+        int index = mSize;
+        if (index == mOffsets.length) {
+            mOffsets = Arrays.copyOf(mOffsets, index * 2);
+            mLengths = Arrays.copyOf(mLengths, index * 2);
+        }
+        if (mDataLen + len > mData.length) {
+            mData = Arrays.copyOf(mData, Math.max(mData.length * 2, mDataLen + len));
+        }
+        System.arraycopy(b, off, mData, mDataLen, len);
+        mOffsets[index] = mDataLen;
+        mLengths[index] = (byte) len;
+        mDataLen += len;
+        mSize++;
+        mTable[slot] = index + 1;
+
+        if (mSize * 2 > mTable.length)
+            rehash(mTable.length * 2);
+        return index;
+    }
+
+    /**
+     * @return Copy of EPC at index
+     */
+    public byte[] get(int index)
+    {
+        if (index < 0 || index >= mSize)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        byte[] epc = new byte[mLengths[index] & 0xFF];
+        System.arraycopy(mData, mOffsets[index], epc, 0, epc.length);
+        return epc;
+    }
+
+    /**
+     * Remove all EPCs, memory is kept
+     */
+    public void clear()
+    {
+        mSize = 0;
+        mDataLen = 0;
+        Arrays.fill(mTable, 0);
+    }
+
+    private boolean equalsEntry(int index, byte[] b, int off, int len)
+    {
+        if ((mLengths[index] & 0xFF) != len)
+            return false;
+        int p = mOffsets[index];
+        for (int x = 0; x < len; x++) {
+            if (mData[p + x] != b[off + x])
+                return false;
+        }
+        return true;
+    }
+
+    private void rehash(int tableSize)
+    {
+        int[] table = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int index = 0; index < mSize; index++) {
+            int slot = EpcCodec.hash(mData, mOffsets[index], mLengths[index] & 0xFF) & mask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & mask;
+            table[slot] = index + 1;
+        }
+        mTable = table;
+    }
+}
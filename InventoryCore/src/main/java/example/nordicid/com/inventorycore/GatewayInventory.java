@@ -0,0 +1,445 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiListener;
+import com.nordicid.nurapi.NurEventAutotune;
+import com.nordicid.nurapi.NurEventClientInfo;
+import com.nordicid.nurapi.NurEventDeviceInfo;
+import com.nordicid.nurapi.NurEventEpcEnum;
+import com.nordicid.nurapi.NurEventFrequencyHop;
+import com.nordicid.nurapi.NurEventIOChange;
+import com.nordicid.nurapi.NurEventInventory;
+import com.nordicid.nurapi.NurEventNxpAlarm;
+import com.nordicid.nurapi.NurEventProgrammingProgress;
+import com.nordicid.nurapi.NurEventTagTrackingChange;
+import com.nordicid.nurapi.NurEventTagTrackingData;
+import com.nordicid.nurapi.NurEventTraceTag;
+import com.nordicid.nurapi.NurEventTriggeredRead;
+import com.nordicid.nurapi.NurTag;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Headless inventory for Linux gateway. Connects fixed reader over TCP/IP, runs inventory stream
+ * and prints each new tag as CSV line "epc,rssi,antenna,ms" to stdout. Rate is printed to stderr once a second.
+ * With server port new tags are also published to TCP clients by TagEventServer.
+ * With --gpio reader reads tag on rising edge of GPIO input (photo eye), with --gate stream runs while input is
+ * active. Reads are then counted per trigger instead of running stream all the time.
+ * With --read tid (or user:addr:words) memory read during inventory is added as last CSV column.
+ * --compare-read measures that against inventory followed by read of each tag and exits.
+ * With --eas NXP EAS alarm is polled between inventory, alarm on/off printed to stderr. --eas-out n also
+ * sets reader GPIO output n high while alarm is on (output must be configured in reader).
+ * With --sensor magnus (Magnus S3, magnus-s2 for S2, or user:addr:scale) sensor tags are swept every --sweep-ms
+ * instead of running stream, each sweep is printed to stderr and per tag minute window as CSV line
+ * "epc,windowStartMs,count,min,max,mean".
+ *
+ * Usage: GatewayInventory host [port] [seconds] [--filter expr] [--serve port] [--gpio n | --gate n]
+ *        [--read tid] [--compare-read] [--eas] [--eas-out n] [--sensor type [--sweep-ms n]]
+ * Runs until killed when seconds not given or 0. Filter is EpcFilter expression. GPIO numbers start from 1.
+ * When connection to reader drops, stream is paused and connect retried with backoff until reader answers,
+ * then stream resumes without clearing tags.
+ */
+public class GatewayInventory {
+
+    //Reconnect backoff after connection lost, doubled each failed attempt
+    static final long RECONNECT_BASE_MS = 1000;
+    static final long RECONNECT_MAX_MS = 30000;
+
+    private final NurApi mApi;
+    private final InventoryController mController;
+    private final TriggeredReadMode mTriggeredRead;
+    private final PrintStream mOut;
+    private volatile long mStartMs;
+    //Null when not serving clients
+    private TagEventServer mServer;
+    //Null when EAS not monitored
+    private EasMonitor mEasMonitor;
+    private int mEasOutput = -1;
+    //Connection lost, controller pause taken for it not yet resumed
+    private volatile boolean mConnectionLost;
+    private volatile boolean mClosed;
+    private Thread mReconnector;
+    private long mReconnectBaseMs = RECONNECT_BASE_MS;
+
+    public GatewayInventory(NurApi api, PrintStream out)
+    {
+        mApi = api;
+        mOut = out;
+        mController = new InventoryController(api, mTagListener);
+        mTriggeredRead = new TriggeredReadMode(api, mController, mTagListener, null);
+        mApi.setListener(mListener);
+    }
+
+    public InventoryController getController() { return mController; }
+    public boolean isConnectionLost() { return mConnectionLost; }
+
+    /**
+     * First reconnect delay, for tests
+     */
+    void setReconnectBase(long ms) { mReconnectBaseMs = ms; }
+
+    /**
+     * Stop reconnecting. Called before NurApi is disposed so its disconnect is not retried.
+     */
+    public synchronized void close()
+    {
+        mClosed = true;
+        if (mReconnector != null)
+            mReconnector.interrupt();
+    }
+
+    /**
+     * Reconnect thread started on connection loss, if not already running
+     */
+    private synchronized void startReconnect()
+    {
+        if (mClosed || (mReconnector != null && mReconnector.isAlive()))
+            return;
+        mReconnector = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                reconnectLoop();
+            }
+        }, "GatewayReconnect");
+        mReconnector.setDaemon(true);
+        mReconnector.start();
+    }
+
+    private void reconnectLoop()
+    {
+        for (int attempt = 1; !mClosed && !mApi.isConnected(); attempt++) {
+            long delay = Math.min(mReconnectBaseMs << Math.min(attempt - 1, 16), RECONNECT_MAX_MS);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if (mClosed)
+                return;
+            try {
+                System.err.println("Reconnect attempt " + attempt);
+                mApi.connect();
+            } catch (Exception ex) {
+                System.err.println("Reconnect: " + ex.getMessage());
+            }
+        }
+    }
+    public TriggeredReadMode getTriggeredRead() { return mTriggeredRead; }
+
+    private final InventoryController.Listener mTagListener = new InventoryController.Listener() {
+        @Override
+        public void onTag(NurTag tag, long nowMs) {
+            byte[] data = tag.getIrData();
+            mOut.println(tag.getEpcString() + "," + tag.getRssi() + "," + tag.getAntennaId() + "," + (nowMs - mStartMs) +
+                    (data != null && data.length > 0 ? "," + EpcCodec.toHexString(data) : ""));
+            TagEventServer server = mServer;
+            if (server != null)
+                server.publish(tag.getEpc(), tag.getRssi(), tag.getAntennaId(), nowMs);
+        }
+
+        @Override
+        public void onRound(int accepted, int filtered) { }
+    };
+
+    /**
+     * Publish new tags also to TCP clients
+     */
+    public void setServer(TagEventServer server) { mServer = server; }
+
+    /**
+     * Monitor EAS alarm while running
+     * @param output NurApi.GPIOx set high during alarm, -1 for none
+     */
+    public void setEasMonitor(int output)
+    {
+        mEasOutput = output;
+        mEasMonitor = new EasMonitor(mApi, mController, mEasListener,
+                EasMonitor.DEFAULT_POLL_INTERVAL_MS, EasMonitor.DEFAULT_LATENCY_BUDGET_MS);
+    }
+
+    public EasMonitor getEasMonitor() { return mEasMonitor; }
+
+    /**
+     * Sweep sensor tags until seconds passed (0 = until killed)
+     */
+    public void runSensors(long seconds, SensorRead sensor, long sweepMs) throws Exception
+    {
+        final SensorRead s = sensor;
+        final SensorReadMode[] mode = new SensorReadMode[1];
+        mode[0] = new SensorReadMode(mApi, sensor, new SensorReadMode.Listener() {
+            @Override
+            public void onSweep(SensorReadMode.Sweep sweep) {
+                System.err.println(sweep);
+            }
+
+            @Override
+            public void onWindow(int tagIndex, SensorSeries.Window window) {
+                mOut.println(EpcCodec.toHexString(mode[0].getEpc(tagIndex)) + "," + window.startMs + "," + window.count + "," +
+                        s.value(window.min) + "," + s.value(window.max) + "," + String.format("%.3f", s.value(window.mean())));
+            }
+
+            @Override
+            public void onError(Exception ex) {
+                System.err.println("Sweep: " + ex.getMessage());
+            }
+        }, sweepMs, SensorReadMode.DEFAULT_WINDOW_MS);
+        mStartMs = System.currentTimeMillis();
+        mode[0].start();
+        try {
+            Thread.sleep(seconds > 0 ? seconds * 1000 : Long.MAX_VALUE);
+        }
+        finally {
+            mode[0].stop();
+            System.err.println(mode[0].summary());
+            mOut.flush();
+        }
+    }
+
+    private final EasMonitor.Listener mEasListener = new EasMonitor.Listener() {
+        @Override
+        public void onAlarm(boolean alarm) throws Exception {
+            if (mEasOutput >= 0)
+                mApi.setGPIOStatus(mEasOutput, alarm);
+            System.err.println("EAS alarm " + (alarm ? "on" : "off") + " at " + (System.currentTimeMillis() - mStartMs) + " ms");
+        }
+
+        @Override
+        public void onError(Exception ex) {
+            System.err.println("EAS: " + ex.getMessage());
+        }
+    };
+
+    /**
+     * Run stream, or wait triggers when gpio given
+     * @param gpio NurApi.GPIOx, -1 for continuous stream
+     * @param action TriggeredReadMode.ACTION_xx
+     */
+    public void run(long seconds, int gpio, int action) throws Exception
+    {
+        mStartMs = System.currentTimeMillis();
+        if (gpio >= 0)
+            mTriggeredRead.start(gpio, NurApi.GPIO_EDGE_RISING, action);
+        else
+            mController.start();
+        EasMonitor eas = mEasMonitor;
+        if (eas != null)
+            eas.start();
+        try {
+            int lastTags = 0;
+            long end = seconds > 0 ? mStartMs + seconds * 1000 : Long.MAX_VALUE;
+            while (System.currentTimeMillis() < end) {
+                Thread.sleep(1000);
+                int tags = mController.getTagsAdded();
+                TagEventServer server = mServer;
+                System.err.println((mTriggeredRead.isActive() ? mTriggeredRead.summary() :
+                        String.format("%d tags, %d/s, %d filtered", tags, tags - lastTags, mController.getTagsFiltered())) +
+                        (server != null ? String.format(", %d clients, %d dropped slow", server.getClientCount(), server.getSlowDropped()) : "") +
+                        (eas != null ? ", " + eas.summary() : ""));
+                lastTags = tags;
+            }
+        }
+        finally {
+            if (eas != null)
+                eas.stop();
+            mTriggeredRead.stop();
+            mController.stop();
+            mOut.flush();
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        String filter = "";
+        int serverPort = -1;
+        int gpio = -1;
+        int action = TriggeredReadMode.ACTION_SCAN;
+        InventoryRead read = null;
+        boolean compareRead = false;
+        boolean eas = false;
+        int easOutput = -1;
+        SensorRead sensor = null;
+        long sweepMs = SensorReadMode.DEFAULT_SWEEP_MS;
+        ArrayList<String> positional = new ArrayList<String>();
+        for (int x = 0; x < args.length; x++) {
+            if (args[x].equals("--filter") && x + 1 < args.length)
+                filter = args[++x];
+            else if (args[x].equals("--serve") && x + 1 < args.length)
+                serverPort = Integer.parseInt(args[++x]);
+            else if (args[x].equals("--read") && x + 1 < args.length)
+                read = InventoryRead.parse(args[++x]);
+            else if (args[x].equals("--compare-read"))
+                compareRead = true;
+            else if (args[x].equals("--sensor") && x + 1 < args.length)
+                sensor = SensorRead.parse(args[++x]);
+            else if (args[x].equals("--sweep-ms") && x + 1 < args.length)
+                sweepMs = Long.parseLong(args[++x]);
+            else if (args[x].equals("--eas"))
+                eas = true;
+            else if (args[x].equals("--eas-out") && x + 1 < args.length) {
+                eas = true;
+                easOutput = Integer.parseInt(args[++x]) - 1;
+            }
+            else if ((args[x].equals("--gpio") || args[x].equals("--gate")) && x + 1 < args.length) {
+                action = args[x].equals("--gate") ? TriggeredReadMode.ACTION_GATE : TriggeredReadMode.ACTION_SCAN;
+                gpio = Integer.parseInt(args[++x]) - 1;
+            }
+            else
+                positional.add(args[x]);
+        }
+        if (positional.isEmpty()) {
+            System.err.println("Usage: GatewayInventory host [port] [seconds] [--filter expr] [--serve port] [--gpio n | --gate n] [--read tid] [--compare-read] [--eas] [--eas-out n] [--sensor type [--sweep-ms n]]");
+            System.exit(1);
+        }
+        String host = positional.get(0);
+        int port = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : SocketTransport.DEFAULT_PORT;
+        long seconds = positional.size() > 2 ? Long.parseLong(positional.get(2)) : 0;
+
+        NurApi api = new NurApi(new SocketTransport(host, port));
+        GatewayInventory gateway = new GatewayInventory(api, System.out);
+        gateway.getController().setFilter(EpcFilter.parse(filter));
+        gateway.getController().setInventoryRead(read);
+        if (eas)
+            gateway.setEasMonitor(easOutput);
+        TagEventServer server = null;
+        if (serverPort >= 0) {
+            server = new TagEventServer(serverPort, TagEventServer.DEFAULT_CLIENT_BUFFER, new TagEventServer.Listener() {
+                @Override
+                public void onClientConnected(String address, int clients) {
+                    System.err.println("Client " + address + " connected, " + clients + " clients");
+                }
+
+                @Override
+                public void onClientDisconnected(String address, int clients, boolean slow) {
+                    System.err.println("Client " + address + (slow ? " dropped, too slow" : " disconnected") + ", " + clients + " clients");
+                }
+
+                @Override
+                public void onServerFailed(IOException ex) {
+                    System.err.println("Tag server failed: " + ex.getMessage());
+                }
+            });
+            server.start();
+            gateway.setServer(server);
+            System.err.println("Serving tags on port " + server.getPort());
+        }
+        try {
+            api.connect();
+            System.err.println("Connected " + host + ":" + port);
+            if (compareRead)
+                System.err.println((read != null ? read : InventoryRead.TID).compare(api, 10));
+            else if (sensor != null)
+                gateway.runSensors(seconds, sensor, sweepMs);
+            else
+                gateway.run(seconds, gpio, action);
+        }
+        finally {
+            gateway.close();
+            if (server != null)
+                server.stop();
+            api.dispose();
+        }
+    }
+
+    private final NurApiListener mListener = new NurApiListener() {
+        @Override
+        public void connectedEvent() {
+            if (!mConnectionLost)
+                return;
+            mConnectionLost = false;
+            try {
+                mController.resume();
+                System.err.println("Reconnected" + (mController.isRunning() ? ", stream resumed" : ""));
+            } catch (Exception ex) {
+                System.err.println("Resume: " + ex.getMessage());
+            }
+        }
+
+        @Override
+        public void disconnectedEvent() {
+            if (mClosed)
+                return;
+            System.err.println("Disconnected");
+            if (!mConnectionLost) {
+                mConnectionLost = true;
+                mController.onConnectionLost();
+            }
+            startReconnect();
+        }
+
+        @Override
+        public void inventoryStreamEvent(NurEventInventory event) {
+            handleInventory(event);
+        }
+
+        @Override
+        public void inventoryExtendedStreamEvent(NurEventInventory event) {
+            handleInventory(event);
+        }
+
+        @Override
+        public void IOChangeEvent(NurEventIOChange event) {
+            try {
+                if (!mTriggeredRead.handleIOEvent(event))
+                    mController.handleIOEvent(event);
+            } catch (Exception ex) {
+                System.err.println("Trigger: " + ex.getMessage());
+            }
+        }
+
+        @Override
+        public void logEvent(int i, String s) { }
+        @Override
+        public void bootEvent(String s) { }
+        @Override
+        public void traceTagEvent(NurEventTraceTag event) { }
+        @Override
+        public void triggeredReadEvent(NurEventTriggeredRead event) {
+            try {
+                mTriggeredRead.handleTriggeredRead(event);
+            } catch (Exception ex) {
+                System.err.println("Triggered read: " + ex.getMessage());
+            }
+        }
+        @Override
+        public void frequencyHopEvent(NurEventFrequencyHop event) { }
+        @Override
+        public void debugMessageEvent(String s) { }
+        @Override
+        public void programmingProgressEvent(NurEventProgrammingProgress event) { }
+        @Override
+        public void deviceSearchEvent(NurEventDeviceInfo event) { }
+        @Override
+        public void clientConnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void clientDisconnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void nxpEasAlarmEvent(NurEventNxpAlarm event) {
+            EasMonitor eas = mEasMonitor;
+            try {
+                if (eas != null)
+                    eas.handleAlarmEvent(event);
+            } catch (Exception ex) {
+                System.err.println("EAS: " + ex.getMessage());
+            }
+        }
+        @Override
+        public void epcEnumEvent(NurEventEpcEnum event) { }
+        @Override
+        public void autotuneEvent(NurEventAutotune event) { }
+        @Override
+        public void tagTrackingScanEvent(NurEventTagTrackingData event) { }
+        @Override
+        public void tagTrackingChangeEvent(NurEventTagTrackingChange event) { }
+    };
+
+    private void handleInventory(NurEventInventory event)
+    {
+        try {
+            mTriggeredRead.handleInventoryEvent(event);
+        } catch (Exception ex) {
+            System.err.println("Inventory: " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package example.nordicid.com.inventorycore;
+
+/**
+ * Pure identity URI of GS1 96 bit EPCs (SGTIN, SSCC, SGLN, GRAI, GIAI) without EPCTagEngine.
+ *
+ * Partition layouts come from Gs1SchemeTables, generated from TDTLib scheme definitions, so decode is
+ * header lookup, partition row lookup and bit shifts on two long words. No objects besides the result string.
+ * Gives same URI as EPCTagEngine.buildPureIdentityURI() for valid EPCs. EPCTagEngine cuts company or reference
+ * with more digits than partition allows, here such EPC is not valid and gives null.
+ * Other schemes (198/202 bit, DoD, GID) return null, use EPCTagEngine for those.
+ */
+public class Gs1EpcDecoder {
+
+    private static final int EPC_BYTES = 12;
+    private static final int PARTITION_START = 11;
+    private static final int COMPANY_START = 14;
+
+    //10^x, values with this many digits are below it
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1;
+        for (int x = 1; x < POW10.length; x++)
+            POW10[x] = POW10[x - 1] * 10;
+    }
+
+    /**
+     * @return true if EPC has header of scheme decoded here
+     */
+    public static boolean isSupported(byte[] epc)
+    {
+        if (epc == null || epc.length != EPC_BYTES)
+            return false;
+        int scheme = (epc[0] & 0xFF) - Gs1SchemeTables.FIRST_HEADER;
+        return scheme >= 0 && scheme < Gs1SchemeTables.NAMES.length;
+    }
+
+    /**
+     * @return "urn:epc:id:sgtin:0614141.812345.6789", null if not supported scheme or not valid
+     */
+    public static String pureIdentityUri(byte[] epc)
+    {
+        StringBuilder sb = new StringBuilder(48);
+        return appendPureIdentityUri(epc, sb) ? sb.toString() : null;
+    }
+
+    /**
+     * Append pure identity URI to caller's builder
+     * @return false if not supported scheme or not valid, nothing appended then
+     */
+    public static boolean appendPureIdentityUri(byte[] epc, StringBuilder sb)
+    {
+        if (!isSupported(epc))
+            return false;
+        int scheme = (epc[0] & 0xFF) - Gs1SchemeTables.FIRST_HEADER;
+        long w0 = EpcCodec.word(epc, 0);
+        long w1 = EpcCodec.word(epc, 8);
+
+        int partition = (int) bits(w0, w1, PARTITION_START, 3);
+        if (partition >= Gs1SchemeTables.PARTITIONS)
+            return false;
+        byte[] table = Gs1SchemeTables.TABLE;
+        int row = (scheme * Gs1SchemeTables.PARTITIONS + partition) * Gs1SchemeTables.ROW;
+        int companyBits = table[row];
+        int companyDigits = table[row + 1];
+        int refBits = table[row + 2];
+        int refDigits = table[row + 3];
+        boolean refPadded = table[row + 4] != 0;
+        int serialBits = table[row + 5];
+
+        long company = bits(w0, w1, COMPANY_START, companyBits);
+        long ref = bits(w0, w1, COMPANY_START + companyBits, refBits);
+        //Value with more digits than partition allows is not valid GS1 EPC
+        if (!fits(company, companyDigits) || !fits(ref, refDigits))
+            return false;
+
+        sb.append("urn:epc:id:").append(Gs1SchemeTables.NAMES[scheme]).append(':');
+        appendPadded(sb, company, companyDigits);
+        sb.append('.');
+        if (refPadded)
+            appendPadded(sb, ref, refDigits);
+        else
+            sb.append(ref);
+        if (serialBits > 0)
+            sb.append('.').append(bits(w0, w1, COMPANY_START + companyBits + refBits, serialBits));
+        return true;
+    }
+
+    /**
+     * Bits from 128 bit big endian value w0:w1
+     * @param start First bit, 0 is MSB of w0
+     * @param count 0..63 bits
+     */
+    static long bits(long w0, long w1, int start, int count)
+    {
+        if (count == 0)
+            return 0;
+        long v;
+        if (start == 0)
+            v = w0;
+        else if (start < 64)
+            v = (w0 << start) | (w1 >>> (64 - start));
+        else
+            v = w1 << (start - 64);
+        return v >>> (64 - count);
+    }
+
+    private static boolean fits(long value, int digits)
+    {
+        return digits >= POW10.length || value < POW10[digits];
+    }
+
+    private static void appendPadded(StringBuilder sb, long value, int digits)
+    {
+        for (int x = digits - 1; x > 0 && value < POW10[x]; x--)
+            sb.append('0');
+        if (digits > 0)
+            sb.append(value);
+    }
+}
@@ -0,0 +1,62 @@
+package example.nordicid.com.inventorycore;
+
+/**
+ * GS1 96 bit scheme tables for Gs1EpcDecoder.
+ * Generated by Gs1SchemeTableGenerator from TDTLib scheme definitions, do not edit.
+ */
+final class Gs1SchemeTables {
+
+    static final int FIRST_HEADER = 0x30;
+    static final int PARTITIONS = 7;
+    static final int ROW = 6;
+
+    //Pure identity URI scheme names by header - FIRST_HEADER
+    static final String[] NAMES = { "sgtin", "sscc", "sgln", "grai", "giai" };
+
+    //Row per scheme and partition: company bits, company digits, reference bits, reference digits,
+    //reference zero padded, serial bits
+    static final byte[] TABLE = {
+            //sgtin-96
+            40, 12, 4, 1, 1, 38,
+            37, 11, 7, 2, 1, 38,
+            34, 10, 10, 3, 1, 38,
+            30, 9, 14, 4, 1, 38,
+            27, 8, 17, 5, 1, 38,
+            24, 7, 20, 6, 1, 38,
+            20, 6, 24, 7, 1, 38,
+            //sscc-96
+            40, 12, 18, 5, 1, 0,
+            37, 11, 21, 6, 1, 0,
+            34, 10, 24, 7, 1, 0,
+            30, 9, 28, 8, 1, 0,
+            27, 8, 31, 9, 1, 0,
+            24, 7, 34, 10, 1, 0,
+            20, 6, 38, 11, 1, 0,
+            //sgln-96
+            40, 12, 1, 0, 1, 41,
+            37, 11, 4, 1, 1, 41,
+            34, 10, 7, 2, 1, 41,
+            30, 9, 11, 3, 1, 41,
+            27, 8, 14, 4, 1, 41,
+            24, 7, 17, 5, 1, 41,
+            20, 6, 21, 6, 1, 41,
+            //grai-96
+            40, 12, 4, 0, 1, 38,
+            37, 11, 7, 1, 1, 38,
+            34, 10, 10, 2, 1, 38,
+            30, 9, 14, 3, 1, 38,
+            27, 8, 17, 4, 1, 38,
+            24, 7, 20, 5, 1, 38,
+            20, 6, 24, 6, 1, 38,
+            //giai-96
+            40, 12, 42, 13, 0, 0,
+            37, 11, 45, 14, 0, 0,
+            34, 10, 48, 15, 0, 0,
+            30, 9, 52, 16, 0, 0,
+            27, 8, 55, 17, 0, 0,
+            24, 7, 58, 18, 0, 0,
+            20, 6, 62, 19, 0, 0,
+    };
+
+    private Gs1SchemeTables() { }
+}
@@ -0,0 +1,413 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurEventIOChange;
+import com.nordicid.nurapi.NurEventInventory;
+import com.nordicid.nurapi.NurInventoryExtended;
+import com.nordicid.nurapi.NurInventoryExtendedFilter;
+import com.nordicid.nurapi.NurSetup;
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Inventory stream control without UI: trigger handling, stream restart, EPC filter, session/target strategy,
+ * TID or user memory read during inventory.
+ *
+ * Reader reports each tag once per stream run (NurApi tag storage keeps unique tags), controller filters
+ * new tags and hands accepted ones to Listener. With memory read on each (EPC, data) pair is reported once
+ * instead, so chips sharing a cloned EPC are told apart by their TID. Stream stops by itself after a while
+ * and is started again while controller is running and not paused.
+ * Duty cycle, EAS polls and connection loss pause the stream independently: pauses are counted and stream
+ * starts again when last one is resumed. Pause state and stream start/stop are serialized with stop().
+ * Owner forwards inventory stream events and I/O events of its NurApiListener to handleInventoryEvent()
+ * and handleIOEvent(). Used by Android Inventory activity and headless GatewayInventory.
+ */
+public class InventoryController {
+
+    //NurEventIOChange sources
+    public static final int IO_TRIGGER = 100;
+    public static final int IO_POWER = 101;
+    public static final int IO_UNPAIR = 102;
+
+    public interface Listener {
+        /**
+         * New tag passed filter. Called from NurApi thread with tag storage locked, do not block.
+         * Exception thrown is passed to caller of handleInventoryEvent().
+         */
+        void onTag(NurTag tag, long nowMs) throws Exception;
+
+        /**
+         * Stream event handled
+         * @param accepted New tags passed filter
+         * @param filtered New tags dropped by filter
+         */
+        void onRound(int accepted, int filtered) throws Exception;
+    }
+
+    private final NurApi mApi;
+    private final Listener mListener;
+
+    private volatile EpcFilter mFilter = EpcFilter.parse("");
+    private volatile InventoryStrategy mStrategy = InventoryStrategy.PRESETS[0];
+    //Memory read with EPC, null if off
+    private volatile InventoryRead mRead;
+    //Read turned on in reader, turned off by restoreSetup()
+    private boolean mReadEnabled;
+    //(EPC, read data) pairs reported and tags of them, null when run started without read
+    private volatile EpcSet mReadPairs;
+    private volatile NurTagStorage mReadTags;
+    private final byte[] mPairKey = new byte[255];
+    private volatile InventoryStrategy.Run mStrategyRun;
+    //Session and target before strategy applied. Restored when stopped.
+    private NurSetup mSetupBeforeStrategy;
+    private int mSetupFlagsBefore;
+    //Summary of last run of each strategy for comparison
+    private final LinkedHashMap<String, String> mStrategyResults = new LinkedHashMap<String, String>();
+
+    private volatile boolean mRunning;
+    //Stream stopped on purpose while running (duty cycle pause, EAS poll, connection lost). Not restarted on
+    //stop event. Pauses not yet resumed in mPauseCount, both guarded by mPauseLock.
+    private volatile boolean mPaused;
+    private int mPauseCount;
+    private final Object mPauseLock = new Object();
+
+    private int mTagsAdded;
+    private int mTagsFiltered;
+    //EPCs rejected by filter in current run. Removed tags come again as new, they are not matched or counted again.
+    private final EpcSet mRejected = new EpcSet();
+
+    public InventoryController(NurApi api, Listener listener)
+    {
+        mApi = api;
+        mListener = listener;
+    }
+
+    /**
+     * Filter taken in use when stream started next time
+     */
+    public void setFilter(EpcFilter filter) { mFilter = filter; }
+    public EpcFilter getFilter() { return mFilter; }
+
+    /**
+     * Strategy taken in use when stream started next time
+     */
+    public void setStrategy(InventoryStrategy strategy) { mStrategy = strategy; }
+    public InventoryStrategy getStrategy() { return mStrategy; }
+    public InventoryStrategy.Run getStrategyRun() { return mStrategyRun; }
+
+    /**
+     * TID or user memory read with each tag, data in NurTag.getIrData(). Null for EPC only.
+     * Taken in use when stream started next time.
+     */
+    public void setInventoryRead(InventoryRead read) { mRead = read; }
+    public InventoryRead getInventoryRead() { return mRead; }
+
+    public boolean isRunning() { return mRunning; }
+    public boolean isPaused() { return mPaused; }
+    public int getTagsAdded() { return mTagsAdded; }
+    public int getTagsFiltered() { return mTagsFiltered; }
+
+    /**
+     * Tags of current or last run. NurApi storage, or with memory read one tag per EPC kept by controller
+     * because reported tags are removed from NurApi storage then.
+     */
+    public NurTagStorage getTagStorage()
+    {
+        NurTagStorage readTags = mReadTags;
+        return readTags != null ? readTags : mApi.getStorage();
+    }
+
+    /**
+     * Clear tags found and start stream with selected strategy
+     */
+    public void start() throws Exception
+    {
+        if (mRunning)
+            return;
+        mApi.clearIdBuffer(); //Clears tags stored in module memory and the API's internal storage
+        startStrategy();
+        InventoryRead read = mRead;
+        if (read != null) {
+            read.enable(mApi);
+            mReadEnabled = true;
+            mReadPairs = new EpcSet(1024);
+            mReadTags = new NurTagStorage();
+        }
+        else {
+            mReadPairs = null;
+            mReadTags = null;
+        }
+        mTagsAdded = 0;
+        mTagsFiltered = 0;
+        mRejected.clear();
+        synchronized (mPauseLock) {
+            mPauseCount = 0;
+            mPaused = false;
+            startStream();
+            mRunning = true;
+        }
+    }
+
+    /**
+     * Stop stream and restore reader setup changed by strategy.
+     * Running state is cleared even if reader commands fail, call restoreSetup() after reconnect then.
+     */
+    public void stop() throws Exception
+    {
+        synchronized (mPauseLock) {
+            mRunning = false;
+            mPauseCount = 0;
+            mPaused = false;
+            stopStream();
+        }
+        restoreSetup();
+    }
+
+    /**
+     * Stop stream but stay running. Tags found so far kept. Each pause that returned true must be
+     * ended with resume(), stream runs again when all are.
+     * @return false if not running, nothing to resume then
+     */
+    public boolean pause() throws Exception
+    {
+        synchronized (mPauseLock) {
+            if (!mRunning)
+                return false;
+            mPaused = true;
+            if (mPauseCount++ == 0)
+                stopStream();
+            return true;
+        }
+    }
+
+    /**
+     * End one pause() or connection loss. Stream is started again without clearing tags found when no
+     * other pause is left. Does nothing if stopped meanwhile.
+     */
+    public void resume() throws Exception
+    {
+        synchronized (mPauseLock) {
+            if (!mRunning || mPauseCount == 0)
+                return;
+            if (--mPauseCount > 0)
+                return;
+            mPaused = false;
+            startStream();
+        }
+    }
+
+    /**
+     * Connection lost while running. Counts as pause, stream is not restarted until resume().
+     */
+    public void onConnectionLost()
+    {
+        synchronized (mPauseLock) {
+            if (mRunning) {
+                mPauseCount++;
+                mPaused = true;
+            }
+        }
+    }
+
+    /**
+     * Start stream. When filter can be given to reader, extended inventory stream is used with select filters
+     * so reader does not report tags not matching. Otherwise normal inventory stream.
+     */
+    private void startStream() throws Exception
+    {
+        NurInventoryExtendedFilter[] filters = mFilter.buildReaderFilters();
+        if (filters != null) {
+            NurInventoryExtended inv = new NurInventoryExtended();
+            inv.Q = mApi.getSetupInventoryQ();
+            inv.session = mApi.getSetupInventorySession();
+            inv.rounds = mApi.getSetupInventoryRounds();
+            inv.inventoryTarget = mApi.getSetupInventoryTarget();
+            inv.inventorySelState = NurApi.INVSELSTATE_SL; //Only tags selected by filters
+            inv.transitTime = 0;
+            mApi.startInventoryExtendedStream(inv, filters);
+        }
+        else
+            mApi.startInventoryStream();
+    }
+
+    private void stopStream() throws Exception
+    {
+        if (mApi.isInventoryExtendedStreamRunning())
+            mApi.stopInventoryExtendedStream();
+        if (mApi.isInventoryStreamRunning())
+            mApi.stopInventoryStream();
+    }
+
+    /**
+     * Set session and target of selected strategy to reader and start counting
+     */
+    private void startStrategy() throws Exception
+    {
+        InventoryStrategy strategy = mStrategy;
+        int flags = strategy.setupFlags();
+        if (flags != 0) {
+            mSetupBeforeStrategy = mApi.getModuleSetup(flags);
+            mSetupFlagsBefore = flags;
+            mApi.setModuleSetup(strategy.setup(strategy.target), flags);
+        }
+        mStrategyRun = new InventoryStrategy.Run(strategy, strategy.target, System.nanoTime());
+    }
+
+    /**
+     * Save result of strategy run, restore reader session and target and turn memory read off.
+     * Setup is kept for next call if restore fails.
+     */
+    public void restoreSetup() throws Exception
+    {
+        if (mReadEnabled) {
+            InventoryRead.disable(mApi);
+            mReadEnabled = false;
+        }
+        InventoryStrategy.Run run = mStrategyRun;
+        if (run != null) {
+            mStrategyRun = null;
+            synchronized (mStrategyResults) {
+                mStrategyResults.remove(run.strategy.name);
+                mStrategyResults.put(run.strategy.name, run.summary());
+            }
+        }
+        NurSetup setup = mSetupBeforeStrategy;
+        if (setup != null) {
+            mApi.setModuleSetup(setup, mSetupFlagsBefore);
+            mSetupBeforeStrategy = null;
+        }
+    }
+
+    /**
+     * Count stream round for strategy. Flips target by restarting stream when strategy says so.
+     */
+    private void onStrategyRound(int newTags) throws Exception
+    {
+        InventoryStrategy.Run run = mStrategyRun;
+        if (run == null)
+            return;
+        if (run.onRound(newTags, System.nanoTime())) {
+            //Target can not change while stream runs
+            synchronized (mPauseLock) {
+                stopStream();
+                mApi.setModuleSetup(run.strategy.setup(run.getTarget()), run.strategy.setupFlags());
+                if (mRunning && mPauseCount == 0)
+                    startStream();
+            }
+        }
+    }
+
+    /**
+     * Results of earlier strategy runs and current run, one per line
+     */
+    public String strategyText()
+    {
+        InventoryStrategy.Run current = mStrategyRun;
+        StringBuilder sb = new StringBuilder();
+        synchronized (mStrategyResults) {
+            for (String name : mStrategyResults.keySet()) {
+                if (current != null && current.strategy.name.equals(name))
+                    continue;
+                sb.append(mStrategyResults.get(name)).append('\n');
+            }
+        }
+        if (current != null)
+            sb.append("> ").append(current.summary());
+        return sb.toString();
+    }
+
+    /**
+     * Handle inventory stream event. New tags are at the end of tag storage.
+     * Tags not passing EPC filter are removed from storage and not reported. Each rejected EPC is counted
+     * once per run in getTagsFiltered() and onRound().
+     * @return New tags accepted
+     */
+    public int handleInventoryEvent(NurEventInventory event) throws Exception
+    {
+        if (event.stopped) {
+            //Stream is not active for ever. It stops after ~20 sec and is started again while running.
+            synchronized (mPauseLock) {
+                if (mRunning && mPauseCount == 0)
+                    startStream();
+            }
+            return 0;
+        }
+
+        int accepted = 0;
+        int filtered = 0;
+        if (event.tagsAdded > 0) {
+            NurTagStorage tagStorage = mApi.getStorage(); //Storage contains all tags found
+            EpcFilter filter = mFilter;
+            long now = System.currentTimeMillis();
+            //Iterate just received tags backwards because rejected ones are removed.
+            //Locked because exporter may be reading storage at the same time
+            synchronized (tagStorage) {
+                int first = tagStorage.size() - event.tagsAdded;
+                for (int x = tagStorage.size() - 1; x >= first; x--) {
+                    NurTag tag = tagStorage.get(x);
+                    byte[] epc = tag.getEpc();
+                    if (mRejected.indexOf(epc) >= 0) {
+                        tagStorage.remove(x);
+                        continue;
+                    }
+                    if (!filter.matches(epc)) {
+                        mRejected.add(epc);
+                        tagStorage.remove(x);
+                        filtered++;
+                        continue;
+                    }
+                    EpcSet readPairs = mReadPairs;
+                    if (readPairs != null) {
+                        //Storage keeps one entry per EPC and does not update its read data. Entry is removed
+                        //so next report of same EPC from other chip (cloned EPC) comes as new tag with own data.
+                        //Chip merged in same round is reported when it answers again, in S0 next round.
+                        tagStorage.remove(x);
+                        if (!addReadPair(readPairs, tag))
+                            continue;
+                        mReadTags.addTag(tag);
+                    }
+                    mListener.onTag(tag, now);
+                    accepted++;
+                }
+            }
+            mTagsAdded += accepted;
+            mTagsFiltered += filtered;
+        }
+        onStrategyRound(accepted);
+        mListener.onRound(accepted, filtered);
+        return accepted;
+    }
+
+    /**
+     * @return true if (EPC, read data) pair of tag was not reported before
+     */
+    private boolean addReadPair(EpcSet readPairs, NurTag tag)
+    {
+        byte[] epc = tag.getEpc();
+        byte[] data = tag.getIrData();
+        int dataLen = data != null ? Math.min(data.length, mPairKey.length - 1 - epc.length) : 0;
+        mPairKey[0] = (byte)epc.length;
+        System.arraycopy(epc, 0, mPairKey, 1, epc.length);
+        if (dataLen > 0)
+            System.arraycopy(data, 0, mPairKey, 1 + epc.length, dataLen);
+        int size = readPairs.size();
+        return readPairs.add(mPairKey, 0, 1 + epc.length + dataLen) == size;
+    }
+
+    /**
+     * Start stream when trigger pressed, stop when released
+     * @return true if event was trigger
+     */
+    public boolean handleIOEvent(NurEventIOChange event) throws Exception
+    {
+        if (event.source != IO_TRIGGER)
+            return false;
+        if (event.direction == 1)
+            start();
+        else if (event.direction == 0)
+            stop();
+        return true;
+    }
+}
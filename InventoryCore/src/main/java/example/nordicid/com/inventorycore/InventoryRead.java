@@ -0,0 +1,169 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurRespInventory;
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+/**
+ * Memory read during inventory (NurApi IR). Reader reads TID or user memory range of each tag in same
+ * singulation as EPC, data comes in NurTag.getIrData(). No separate read command per tag, so cost of TID
+ * is few bytes more air time per tag instead of one more round trip.
+ * Reserved bank can be read too for sensor tags that keep sensor codes there (SensorRead).
+ */
+public class InventoryRead {
+
+    //Enough TID words for TID serial of common chips (allocation class, MDID, model, serial)
+    public static final int TID_WORDS = 6;
+
+    public static final InventoryRead TID = new InventoryRead(NurApi.BANK_TID, 0, TID_WORDS);
+
+    public final int bank;
+    public final int wordAddress;
+    public final int wordCount;
+
+    public InventoryRead(int bank, int wordAddress, int wordCount)
+    {
+        if (bank != NurApi.BANK_TID && bank != NurApi.BANK_USER && bank != NurApi.BANK_PASSWD)
+            throw new IllegalArgumentException("Only TID, user or reserved memory can be read during inventory");
+        if (wordAddress < 0 || wordCount < 1 || wordCount > 32)
+            throw new IllegalArgumentException("Word address " + wordAddress + ", count " + wordCount + " not valid");
+        this.bank = bank;
+        this.wordAddress = wordAddress;
+        this.wordCount = wordCount;
+    }
+
+    /**
+     * "tid", "tid:0:4" or "user:0:8" (bank:word address:word count)
+     * @return Read, null for empty text (read off)
+     * @throws IllegalArgumentException if not valid
+     */
+    public static InventoryRead parse(String text)
+    {
+        text = text.trim().toLowerCase();
+        if (text.length() == 0)
+            return null;
+        String[] parts = text.split(":");
+        int bank;
+        if (parts[0].equals("tid"))
+            bank = NurApi.BANK_TID;
+        else if (parts[0].equals("user"))
+            bank = NurApi.BANK_USER;
+        else
+            throw new IllegalArgumentException("Unknown bank " + parts[0]);
+        if (parts.length == 1)
+            return bank == NurApi.BANK_TID ? TID : new InventoryRead(bank, 0, 2);
+        if (parts.length != 3)
+            throw new IllegalArgumentException("Use bank:address:words, e.g. user:0:8");
+        try {
+            return new InventoryRead(bank, Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Use bank:address:words, e.g. user:0:8");
+        }
+    }
+
+    /**
+     * Turn read on in reader. Inventory and streams started after this return EPC and data.
+     */
+    public void enable(NurApi api) throws Exception
+    {
+        api.setIRConfig(NurApi.IRTYPE_EPCDATA, bank, wordAddress, wordCount);
+        api.setIRState(true);
+    }
+
+    public static void disable(NurApi api) throws Exception
+    {
+        api.setIRState(false);
+    }
+
+    @Override
+    public String toString()
+    {
+        String name = bank == NurApi.BANK_TID ? "tid" : bank == NurApi.BANK_USER ? "user" : "reserved";
+        return name + ":" + wordAddress + ":" + wordCount;
+    }
+
+    /**
+     * Tags per second of inventory with read compared to inventory followed by read of each tag
+     */
+    public static class Comparison {
+        public final int tags;
+        public final double inventoryReadTagsPerSec;
+        public final double followUpTagsPerSec;
+        //Tags whose follow-up read failed (tag moved out or weak)
+        public final int followUpFailed;
+
+        Comparison(int tags, double inventoryReadTagsPerSec, double followUpTagsPerSec, int followUpFailed)
+        {
+            this.tags = tags;
+            this.inventoryReadTagsPerSec = inventoryReadTagsPerSec;
+            this.followUpTagsPerSec = followUpTagsPerSec;
+            this.followUpFailed = followUpFailed;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%d tags: inventory+read %.0f tags/s, inventory then read per tag %.0f tags/s (%d failed), %.1fx",
+                    tags, inventoryReadTagsPerSec, followUpTagsPerSec, followUpFailed,
+                    followUpTagsPerSec > 0 ? inventoryReadTagsPerSec / followUpTagsPerSec : 0.0);
+        }
+    }
+
+    /**
+     * Read same tag population both ways with synchronous inventory. Stream must not be running.
+     * Reader IR state is off when done.
+     * @param rounds Inventory calls per method
+     */
+    public Comparison compare(NurApi api, int rounds) throws Exception
+    {
+        int invRounds = api.getSetupInventoryRounds();
+        int q = api.getSetupInventoryQ();
+        int session = api.getSetupInventorySession();
+        NurTagStorage storage = api.getStorage();
+
+        //Inventory with read, data comes with tags
+        enable(api);
+        long start = System.nanoTime();
+        int irTags = 0;
+        try {
+            for (int r = 0; r < rounds; r++) {
+                api.clearIdBuffer();
+                NurRespInventory resp = api.inventory(invRounds, q, session);
+                if (resp.numTagsFound > 0)
+                    api.fetchTags(true);
+                for (int x = 0; x < storage.size(); x++) {
+                    byte[] data = storage.get(x).getIrData();
+                    if (data != null && data.length > 0)
+                        irTags++;
+                }
+            }
+        } finally {
+            disable(api);
+        }
+        double irSec = (System.nanoTime() - start) / 1e9;
+
+        //Inventory, then read command addressed to each tag
+        start = System.nanoTime();
+        int followUpTags = 0;
+        int failed = 0;
+        for (int r = 0; r < rounds; r++) {
+            api.clearIdBuffer();
+            NurRespInventory resp = api.inventory(invRounds, q, session);
+            if (resp.numTagsFound > 0)
+                api.fetchTags(true);
+            for (int x = 0; x < storage.size(); x++) {
+                NurTag tag = storage.get(x);
+                try {
+                    api.readTagByEpc(tag.getEpc(), tag.getEpc().length, bank, wordAddress, wordCount * 2);
+                    followUpTags++;
+                } catch (Exception ex) {
+                    failed++;
+                }
+            }
+        }
+        double followUpSec = (System.nanoTime() - start) / 1e9;
+
+        return new Comparison(irTags / Math.max(1, rounds), irTags / irSec, followUpTags / followUpSec, failed);
+    }
+}
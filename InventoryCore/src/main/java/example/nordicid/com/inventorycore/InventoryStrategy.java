@@ -0,0 +1,176 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurSetup;
+
+/**
+ * Inventory session and target selection for inventory stream.
+ *
+ * S0: tags forget inventoried flag at once, strong tags answer every round and crowd out weak ones.
+ * S1..S3: read tags move from A to B and stay quiet, so later rounds are left to tags not read yet.
+ * When no new tags come for a while, target is flipped (A to B or back) so the quiet tags are read again
+ * and the population is covered again in the other direction. Dual target (INVTARGET_AB) lets module do the same.
+ */
+public class InventoryStrategy {
+
+    //Session or target not changed, reader setup used as is
+    public static final int KEEP = -1;
+
+    public static final InventoryStrategy[] PRESETS = {
+            new InventoryStrategy("Reader setup", KEEP, KEEP, 0),
+            new InventoryStrategy("S0", NurApi.SESSION_S0, NurApi.INVTARGET_A, 0),
+            new InventoryStrategy("S1 A", NurApi.SESSION_S1, NurApi.INVTARGET_A, 0),
+            new InventoryStrategy("S1 A/B flip", NurApi.SESSION_S1, NurApi.INVTARGET_A, 8),
+            new InventoryStrategy("S2 A/B flip", NurApi.SESSION_S2, NurApi.INVTARGET_A, 8),
+            new InventoryStrategy("S3 A/B flip", NurApi.SESSION_S3, NurApi.INVTARGET_A, 8),
+            new InventoryStrategy("S2 dual target", NurApi.SESSION_S2, NurApi.INVTARGET_AB, 0),
+    };
+
+    public final String name;
+    public final int session;
+    public final int target;
+    //Stream rounds in a row without new tags before target flip. 0 = no flipping.
+    public final int flipAfterIdleRounds;
+
+    public InventoryStrategy(String name, int session, int target, int flipAfterIdleRounds)
+    {
+        this.name = name;
+        this.session = session;
+        this.target = target;
+        this.flipAfterIdleRounds = flipAfterIdleRounds;
+    }
+
+    public static String[] presetNames()
+    {
+        String[] names = new String[PRESETS.length];
+        for (int x = 0; x < PRESETS.length; x++)
+            names[x] = PRESETS[x].name;
+        return names;
+    }
+
+    /**
+     * @return Setup flags this strategy changes, 0 if none
+     */
+    public int setupFlags()
+    {
+        return (session != KEEP ? NurApi.SETUP_INVSESSION : 0) | (target != KEEP ? NurApi.SETUP_INVTARGET : 0);
+    }
+
+    /**
+     * Setup for session and target. Applied with setModuleSetup(setup(x), setupFlags()).
+     * @param target Target to use, flipped target while flipping
+     */
+    public NurSetup setup(int target)
+    {
+        NurSetup setup = new NurSetup();
+        setup.inventorySession = session;
+        setup.inventoryTarget = target;
+        return setup;
+    }
+
+    public static int flip(int target)
+    {
+        return target == NurApi.INVTARGET_A ? NurApi.INVTARGET_B : NurApi.INVTARGET_A;
+    }
+
+    /**
+     * Counters of one inventory run with strategy: unique tags per second, time to coverage and flip decision.
+     * Time of each new unique tag is stored (8 bytes per tag), so coverage times are exact for the run.
+     * Coverage is relative to tags found in the whole run, so it is meaningful when population stays in field.
+     */
+    public static class Run {
+        public final InventoryStrategy strategy;
+        private final long mStartNanos;
+        private long mLastNanos;
+        private long[] mNewTagNanos = new long[256];
+        private int mUnique;
+        private int mIdleRounds;
+        private int mRounds;
+        private int mFlips;
+        private int mTarget;
+
+        public Run(InventoryStrategy strategy, int startTarget, long startNanos)
+        {
+            this.strategy = strategy;
+            mTarget = startTarget;
+            mStartNanos = startNanos;
+            mLastNanos = startNanos;
+        }
+
+        /**
+         * Stream round done
+         * @param newTags New unique tags in round
+         * @return true if target should be flipped now (getTarget() already returns new target)
+         */
+        public boolean onRound(int newTags, long nowNanos)
+        {
+            mRounds++;
+            mLastNanos = nowNanos;
+            if (newTags > 0) {
+                if (mUnique + newTags > mNewTagNanos.length) {
+                    long[] a = new long[Math.max(mNewTagNanos.length * 2, mUnique + newTags)];
+                    System.arraycopy(mNewTagNanos, 0, a, 0, mUnique);
+                    mNewTagNanos = a;
+                }
+                for (int x = 0; x < newTags; x++)
+                    mNewTagNanos[mUnique++] = nowNanos;
+                mIdleRounds = 0;
+                return false;
+            }
+
+            mIdleRounds++;
+            if (strategy.flipAfterIdleRounds > 0 && strategy.target != KEEP && mIdleRounds >= strategy.flipAfterIdleRounds) {
+                mIdleRounds = 0;
+                mFlips++;
+                mTarget = flip(mTarget);
+                return true;
+            }
+            return false;
+        }
+
+        public int getTarget() { return mTarget; }
+        public int getUniqueTags() { return mUnique; }
+        public int getRounds() { return mRounds; }
+        public int getFlips() { return mFlips; }
+
+        public double getElapsedSec()
+        {
+            return (mLastNanos - mStartNanos) / 1e9;
+        }
+
+        /**
+         * Unique tags per second over run
+         */
+        public double getTagsPerSec()
+        {
+            double sec = getElapsedSec();
+            return sec > 0 ? mUnique / sec : 0;
+        }
+
+        /**
+         * @param fraction 0.95 for 95% coverage
+         * @return Milliseconds from start until fraction of run's unique tags were found, -1 if no tags
+         */
+        public double getCoverageMs(double fraction)
+        {
+            if (mUnique == 0)
+                return -1;
+            int n = (int) Math.ceil(fraction * mUnique);
+            n = Math.max(1, Math.min(mUnique, n));
+            return (mNewTagNanos[n - 1] - mStartNanos) / 1e6;
+        }
+
+        /**
+         * One line summary: "S1 A/B flip: 312 tags, 85.2 tags/s, 95% in 2.4 s, 1 flips"
+         */
+        public String summary()
+        {
+            String s = String.format("%s: %d tags, %.1f tags/s", strategy.name, mUnique, getTagsPerSec());
+            if (mUnique > 0)
+                s += String.format(", 95%% in %.1f s", getCoverageMs(0.95) / 1000);
+            if (mFlips > 0)
+                s += ", " + mFlips + " flips";
+            return s;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package example.nordicid.com.inventorycore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cycle count of inventory stream against expected manifest.
+ *
+ * Manifest EPCs are loaded into EpcSet, found items are bits in bit set by manifest index. Read of tag is one
+ * hash lookup and bit test, so cost does not grow with manifest size. Tags not in manifest are counted once
+ * as unexpected. mark() is called from one thread (NurApi thread), counts can be read from any thread.
+ */
+public class Reconciliation {
+
+    public static final int RESULT_FOUND = 0;
+    public static final int RESULT_ALREADY_FOUND = 1;
+    public static final int RESULT_UNEXPECTED = 2;
+    public static final int RESULT_ALREADY_UNEXPECTED = 3;
+
+    private final String mName;
+    private final EpcSet mExpected;
+    private final long[] mFound;
+    private final EpcSet mUnexpected = new EpcSet();
+    private volatile int mFoundCount;
+    private volatile int mUnexpectedCount;
+
+    /**
+     * @param name Shown in summary, e.g. manifest file name
+     * @param expected Expected EPCs, not changed after this
+     */
+    public Reconciliation(String name, EpcSet expected)
+    {
+        mName = name;
+        mExpected = expected;
+        mFound = new long[(expected.size() + 63) >> 6];
+    }
+
+    /**
+     * Load manifest, one EPC per line in hex. CSV lines use first column (',', ';' or tab separated),
+     * quotes around EPC are allowed. Empty lines, '#' comments and lines not starting with hex EPC (header) are skipped.
+     * @throws IOException Read failed, or more than half of lines are not EPCs (not a manifest)
+     */
+    public static Reconciliation load(String name, Reader reader) throws IOException
+    {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 64 * 1024);
+        EpcSet expected = new EpcSet(1024);
+        byte[] epc = new byte[255];
+        int lines = 0;
+        int skipped = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            int start = 0;
+            int end = line.length();
+            while (start < end && line.charAt(start) <= ' ')
+                start++;
+            if (start == end || line.charAt(start) == '#')
+                continue;
+            lines++;
+            if (line.charAt(start) == '"')
+                start++;
+            int stop = start;
+            while (stop < end && isHex(line.charAt(stop)))
+                stop++;
+            int len = stop - start;
+            if (len == 0 || len > 510 || (stop < end && !isSeparator(line.charAt(stop))) ||
+                    EpcCodec.decode(line, start, len, epc) < 0) {
+                skipped++;
+                continue;
+            }
+            expected.add(epc, 0, len / 2);
+        }
+        if (lines > 0 && skipped * 2 > lines)
+            throw new IOException("Not an EPC manifest, " + skipped + " of " + lines + " lines not EPC");
+        return new Reconciliation(name, expected);
+    }
+
+    private static boolean isHex(char c)
+    {
+        return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F') || (c >= 'a' && c <= 'f');
+    }
+
+    private static boolean isSeparator(char c)
+    {
+        return c == ',' || c == ';' || c == '\t' || c == '"' || c == ' ';
+    }
+
+    /**
+     * Mark tag read
+     * @return RESULT_xx
+     */
+    public int mark(byte[] epc)
+    {
+        int index = mExpected.indexOf(epc);
+        if (index < 0) {
+            int before = mUnexpected.size();
+            mUnexpected.add(epc);
+            if (mUnexpected.size() == before)
+                return RESULT_ALREADY_UNEXPECTED;
+            mUnexpectedCount++;
+            return RESULT_UNEXPECTED;
+        }
+        long bit = 1L << (index & 63);
+        int word = index >> 6;
+        if ((mFound[word] & bit) != 0)
+            return RESULT_ALREADY_FOUND;
+        mFound[word] |= bit;
+        mFoundCount++;
+        return RESULT_FOUND;
+    }
+
+    /**
+     * Start count over with same manifest. Call when not marking.
+     */
+    public void reset()
+    {
+        Arrays.fill(mFound, 0);
+        mUnexpected.clear();
+        mFoundCount = 0;
+        mUnexpectedCount = 0;
+    }
+
+    public String getName() { return mName; }
+    public int getExpectedCount() { return mExpected.size(); }
+    public int getFoundCount() { return mFoundCount; }
+    public int getMissingCount() { return mExpected.size() - mFoundCount; }
+    public int getUnexpectedCount() { return mUnexpectedCount; }
+
+    public boolean isFound(byte[] epc)
+    {
+        int index = mExpected.indexOf(epc);
+        return index >= 0 && (mFound[index >> 6] & (1L << (index & 63))) != 0;
+    }
+
+    /**
+     * Missing EPCs as hex, for display or export. Call when not marking.
+     * @param max Most EPCs returned
+     */
+    public List<String> getMissing(int max)
+    {
+        List<String> list = new ArrayList<String>();
+        for (int index = 0; index < mExpected.size() && list.size() < max; index++) {
+            if ((mFound[index >> 6] & (1L << (index & 63))) == 0)
+                list.add(EpcCodec.toHexString(mExpected.get(index)));
+        }
+        return list;
+    }
+
+    /**
+     * Unexpected EPCs as hex. Call when not marking.
+     */
+    public List<String> getUnexpected(int max)
+    {
+        List<String> list = new ArrayList<String>();
+        for (int index = 0; index < mUnexpected.size() && list.size() < max; index++)
+            list.add(EpcCodec.toHexString(mUnexpected.get(index)));
+        return list;
+    }
+
+    /**
+     * "shelf12.csv: found 1200/1500 (80.0%), missing 300, unexpected 4"
+     */
+    public String summary()
+    {
+        int expected = mExpected.size();
+        int found = mFoundCount;
+        return String.format("%s: found %d/%d (%.1f%%), missing %d, unexpected %d", mName, found, expected,
+                expected > 0 ? found * 100.0 / expected : 0.0, expected - found, mUnexpectedCount);
+    }
+}
@@ -0,0 +1,105 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+
+/**
+ * Sensor value read during inventory. Memory range is read with InventoryRead, value is one word of it:
+ * raw = word & mask (sign extended when signed), value = raw * scale + offset.
+ * Raw integer codes are stored (SensorSeries), physical value is computed only for display.
+ */
+public class SensorRead {
+
+    //Decode result when tag did not return sensor data
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    //RFMicron Magnus S3 sensor code (moisture/proximity) in reserved word 0xC, 9 bits
+    public static final SensorRead MAGNUS_MOISTURE = new SensorRead("Magnus moisture",
+            new InventoryRead(NurApi.BANK_PASSWD, 0xC, 1), 0, 0x1FF, false, 1, 0, "");
+    //Magnus S2 sensor code in reserved word 0xB, 5 bits
+    public static final SensorRead MAGNUS_S2_MOISTURE = new SensorRead("Magnus S2 moisture",
+            new InventoryRead(NurApi.BANK_PASSWD, 0xB, 1), 0, 0x1F, false, 1, 0, "");
+    //Magnus on-chip RSSI code in reserved word 0xD, 5 bits
+    public static final SensorRead MAGNUS_RSSI = new SensorRead("Magnus on-chip RSSI",
+            new InventoryRead(NurApi.BANK_PASSWD, 0xD, 1), 0, 0x1F, false, 1, 0, "");
+
+    public final String name;
+    public final InventoryRead read;
+    //Word of read data holding value
+    public final int wordIndex;
+    public final int mask;
+    public final boolean signed;
+    public final double scale;
+    public final double offset;
+    public final String unit;
+
+    public SensorRead(String name, InventoryRead read, int wordIndex, int mask, boolean signed, double scale, double offset, String unit)
+    {
+        if (wordIndex < 0 || wordIndex >= read.wordCount)
+            throw new IllegalArgumentException("Word " + wordIndex + " not in " + read);
+        this.name = name;
+        this.read = read;
+        this.wordIndex = wordIndex;
+        this.mask = mask;
+        this.signed = signed;
+        this.scale = scale;
+        this.offset = offset;
+        this.unit = unit;
+    }
+
+    /**
+     * "magnus" (S3), "magnus-s2", "magnus-rssi" or "user:addr:scale[:offset]" for signed 16 bit word in user memory,
+     * e.g. "user:0:0.01" for temperature logged in 1/100 degrees.
+     * @throws IllegalArgumentException if not valid
+     */
+    public static SensorRead parse(String text)
+    {
+        text = text.trim().toLowerCase();
+        if (text.equals("magnus"))
+            return MAGNUS_MOISTURE;
+        if (text.equals("magnus-s2"))
+            return MAGNUS_S2_MOISTURE;
+        if (text.equals("magnus-rssi"))
+            return MAGNUS_RSSI;
+        String[] parts = text.split(":");
+        if (!parts[0].equals("user") || parts.length < 3 || parts.length > 4)
+            throw new IllegalArgumentException("Use magnus, magnus-s2, magnus-rssi or user:addr:scale[:offset]");
+        try {
+            int address = Integer.parseInt(parts[1]);
+            double scale = Double.parseDouble(parts[2]);
+            double offset = parts.length > 3 ? Double.parseDouble(parts[3]) : 0;
+            return new SensorRead(text, new InventoryRead(NurApi.BANK_USER, address, 1), 0, 0xFFFF, true, scale, offset, "");
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Use magnus, magnus-s2, magnus-rssi or user:addr:scale[:offset]");
+        }
+    }
+
+    /**
+     * @param data NurTag.getIrData()
+     * @return Raw value, NO_VALUE if data missing or short
+     */
+    public int decode(byte[] data)
+    {
+        int pos = wordIndex * 2;
+        if (data == null || data.length < pos + 2)
+            return NO_VALUE;
+        int word = ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+        int raw = word & mask;
+        if (signed && (raw & ((mask + 1) >>> 1)) != 0)
+            raw -= mask + 1;
+        return raw;
+    }
+
+    /**
+     * Physical value of raw code, also of mean raw in window and sweep averages
+     */
+    public double value(double raw)
+    {
+        return raw * scale + offset;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,317 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+import com.nordicid.nurapi.NurRespInventory;
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+import java.util.ArrayList;
+
+/**
+ * Periodic sensor tag sweeps. Each sweep is synchronous inventory with sensor memory read during inventory
+ * (SensorRead), so every tag in field reports its value once per sweep; stream would report new tags only.
+ * Session 0 is used so tags answer again in next sweep.
+ *
+ * Values are stored per tag in SensorSeries, tags are indexed by EpcSet so thousands of tags take no
+ * object per EPC. Each series keeps SensorSeries.DEFAULT_MAX_SAMPLES newest values, window aggregates
+ * are reported for all. Sweep aggregate over all tags and closed per tag windows are reported to Listener.
+ * Stream must not be running while sweeping.
+ */
+public class SensorReadMode {
+
+    public static final long DEFAULT_SWEEP_MS = 5000;
+    public static final long DEFAULT_WINDOW_MS = 60000;
+
+    public interface Listener {
+        /**
+         * Sweep done. Called in sweep thread.
+         */
+        void onSweep(Sweep sweep);
+
+        /**
+         * Window of tag closed. EPC from getEpc(tagIndex).
+         */
+        void onWindow(int tagIndex, SensorSeries.Window window);
+
+        void onError(Exception ex);
+    }
+
+    /**
+     * Result of one sweep, raw values over all tags read
+     */
+    public static class Sweep {
+        public final int number;
+        public final long timeMs;
+        public final long durationMs;
+        public final int tags;
+        //Tags without sensor data in reply
+        public final int missing;
+        public final int min;
+        public final int max;
+        public final long sum;
+        private final SensorRead mSensor;
+
+        Sweep(SensorRead sensor, int number, long timeMs, long durationMs, int tags, int missing, int min, int max, long sum)
+        {
+            mSensor = sensor;
+            this.number = number;
+            this.timeMs = timeMs;
+            this.durationMs = durationMs;
+            this.tags = tags;
+            this.missing = missing;
+            this.min = min;
+            this.max = max;
+            this.sum = sum;
+        }
+
+        public int values() { return tags - missing; }
+        public double mean() { return values() > 0 ? (double)sum / values() : 0; }
+
+        /**
+         * "Sweep 3: 850 tags (2 no value), Magnus moisture min 3.00 max 28.00 mean 14.20, 41 ms"
+         */
+        @Override
+        public String toString()
+        {
+            String text = String.format("Sweep %d: %d tags", number, tags) +
+                    (missing > 0 ? String.format(" (%d no value)", missing) : "");
+            if (values() > 0)
+                text += String.format(", %s min %.2f max %.2f mean %.2f%s", mSensor.name,
+                        mSensor.value(min), mSensor.value(max), mSensor.value(mean()), mSensor.unit);
+            return text + ", " + durationMs + " ms";
+        }
+    }
+
+    private final NurApi mApi;
+    private final SensorRead mSensor;
+    private final Listener mListener;
+    private final long mSweepMs;
+    private final long mWindowMs;
+
+    private final EpcSet mTags = new EpcSet(1024);
+    private final ArrayList<SensorSeries> mSeries = new ArrayList<SensorSeries>();
+    private int mSweeps;
+    private long mSamples;
+
+    private volatile boolean mRunning;
+    private Thread mThread;
+    private int mRounds;
+    private int mQ;
+
+    /**
+     * @param sweepMs Time from sweep start to next
+     * @param windowMs Aggregate window per tag
+     */
+    public SensorReadMode(NurApi api, SensorRead sensor, Listener listener, long sweepMs, long windowMs)
+    {
+        mApi = api;
+        mSensor = sensor;
+        mListener = listener;
+        mSweepMs = sweepMs;
+        mWindowMs = windowMs;
+    }
+
+    public SensorRead getSensor() { return mSensor; }
+    public boolean isRunning() { return mRunning; }
+
+    /**
+     * Turn sensor read on in reader and start sweeping in own thread
+     */
+    public synchronized void start() throws Exception
+    {
+        if (mRunning)
+            return;
+        enable();
+        mRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sweepLoop();
+            }
+        }, "SensorReadMode");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Stop sweeping, reader read off. Open windows are closed and reported.
+     */
+    public void stop() throws Exception
+    {
+        Thread thread;
+        synchronized (this) {
+            if (!mRunning)
+                return;
+            mRunning = false;
+            thread = mThread;
+            mThread = null;
+        }
+        thread.interrupt();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            InventoryRead.disable(mApi);
+        }
+        finally {
+            flushWindows();
+        }
+    }
+
+    /**
+     * Reader setup for sweep() without thread. Done by start().
+     */
+    public void enable() throws Exception
+    {
+        mRounds = mApi.getSetupInventoryRounds();
+        mQ = mApi.getSetupInventoryQ();
+        mSensor.read.enable(mApi);
+    }
+
+    private void sweepLoop()
+    {
+        while (mRunning) {
+            long start = System.currentTimeMillis();
+            try {
+                Sweep sweep = sweep();
+                if (mListener != null)
+                    mListener.onSweep(sweep);
+            }
+            catch (Exception ex) {
+                if (mRunning && mListener != null)
+                    mListener.onError(ex);
+            }
+            long wait = start + mSweepMs - System.currentTimeMillis();
+            try {
+                Thread.sleep(Math.max(wait, 1));
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inventory once, store value of each tag read
+     */
+    public Sweep sweep() throws Exception
+    {
+        long startNanos = System.nanoTime();
+        long now = System.currentTimeMillis();
+        NurTagStorage storage = mApi.getStorage();
+        mApi.clearIdBuffer();
+        try {
+            NurRespInventory resp = mApi.inventory(mRounds, mQ, 0);
+            if (resp.numTagsFound > 0)
+                mApi.fetchTags(true);
+        }
+        catch (NurApiException ex) {
+            //Empty field is empty sweep, not error
+            if (ex.error != NurApiErrors.NO_TAG)
+                throw ex;
+        }
+
+        int number;
+        int tags;
+        int missing = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        long sum = 0;
+        synchronized (this) {
+            synchronized (storage) {
+                tags = storage.size();
+                for (int x = 0; x < tags; x++) {
+                    NurTag tag = storage.get(x);
+                    int raw = mSensor.decode(tag.getIrData());
+                    if (raw == SensorRead.NO_VALUE) {
+                        missing++;
+                        continue;
+                    }
+                    add(tag.getEpc(), now, raw);
+                    sum += raw;
+                    if (raw < min)
+                        min = raw;
+                    if (raw > max)
+                        max = raw;
+                }
+            }
+            number = ++mSweeps;
+        }
+        return new Sweep(mSensor, number, now, (System.nanoTime() - startNanos) / 1000000, tags, missing, min, max, sum);
+    }
+
+    /**
+     * Store sample of tag
+     * @return Tag index
+     */
+    synchronized int add(byte[] epc, long timeMs, int raw)
+    {
+        int index = mTags.add(epc);
+        if (index == mSeries.size())
+            mSeries.add(new SensorSeries(mWindowMs));
+        SensorSeries.Window closed = mSeries.get(index).add(timeMs, raw);
+        mSamples++;
+        if (closed != null && mListener != null)
+            mListener.onWindow(index, closed);
+        return index;
+    }
+
+    private synchronized void flushWindows()
+    {
+        for (int x = 0; x < mSeries.size(); x++) {
+            SensorSeries.Window closed = mSeries.get(x).flushWindow();
+            if (closed != null && mListener != null)
+                mListener.onWindow(x, closed);
+        }
+    }
+
+    public synchronized int getTagCount() { return mTags.size(); }
+    public synchronized int getSweeps() { return mSweeps; }
+    public synchronized long getSamples() { return mSamples; }
+    public synchronized byte[] getEpc(int tagIndex) { return mTags.get(tagIndex); }
+
+    /**
+     * Series of tag. Not thread safe, read while stopped or in Listener.
+     */
+    public synchronized SensorSeries getSeries(int tagIndex) { return mSeries.get(tagIndex); }
+
+    /**
+     * @return Tag index, -1 if tag has no values
+     */
+    public synchronized int indexOf(byte[] epc) { return mTags.indexOf(epc); }
+
+    /**
+     * Samples kept in all series, older ones dropped over cap
+     */
+    public synchronized long getSamplesKept()
+    {
+        long kept = 0;
+        for (int x = 0; x < mSeries.size(); x++)
+            kept += mSeries.get(x).size();
+        return kept;
+    }
+
+    /**
+     * Encoded bytes of all series per sample kept
+     */
+    public synchronized double bytesPerSample()
+    {
+        long bytes = 0;
+        for (int x = 0; x < mSeries.size(); x++)
+            bytes += mSeries.get(x).bytes();
+        long kept = getSamplesKept();
+        return kept > 0 ? (double)bytes / kept : 0;
+    }
+
+    /**
+     * "120 tags, 14 sweeps, 1680 values (1680 kept), 2.1 bytes/value"
+     */
+    public synchronized String summary()
+    {
+        return String.format("%d tags, %d sweeps, %d values (%d kept), %.1f bytes/value", mTags.size(), mSweeps, mSamples,
+                getSamplesKept(), bytesPerSample());
+    }
+}
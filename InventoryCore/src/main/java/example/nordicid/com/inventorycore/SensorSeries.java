@@ -0,0 +1,235 @@
+package example.nordicid.com.inventorycore;
+
+import java.util.Arrays;
+
+/**
+ * Time series of raw sensor values of one tag.
+ *
+ * Samples are delta encoded into one byte array: time as delta of previous delta (0 when sweeps are regular)
+ * and value as delta of previous value, both zigzag varints. Regular sweeps of slowly changing value take
+ * 2 bytes per sample. Samples kept are capped: when cap is exceeded oldest quarter is dropped and rest
+ * re-encoded, so long sessions take bounded memory per tag.
+ *
+ * Min/max/mean are kept incrementally per window aligned to multiples of window length, so all tags have
+ * same window boundaries. Window is closed by first sample after it or by flushWindow().
+ */
+public class SensorSeries {
+
+    //Per tag cap by default, 2 hours of 5 s sweeps
+    public static final int DEFAULT_MAX_SAMPLES = 1440;
+
+    /**
+     * Aggregate of closed window, raw values
+     */
+    public static class Window {
+        public final long startMs;
+        public final int count;
+        public final int min;
+        public final int max;
+        public final long sum;
+
+        Window(long startMs, int count, int min, int max, long sum)
+        {
+            this.startMs = startMs;
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.sum = sum;
+        }
+
+        public double mean() { return count > 0 ? (double)sum / count : 0; }
+    }
+
+    /**
+     * Decodes samples in order. Sees samples stored when created.
+     */
+    public class Cursor {
+        private final byte[] mBuf = mData;
+        private final int mEnd = mCount;
+        private int mPos;
+        private int mIndex;
+        private long mTime;
+        private long mDelta;
+        private int mRaw;
+
+        public boolean next()
+        {
+            if (mIndex >= mEnd)
+                return false;
+            if (mIndex == 0) {
+                mTime = readVarLong();
+                mRaw = (int)readVarLong();
+            } else {
+                mDelta += readVarLong();
+                mTime += mDelta;
+                mRaw += (int)readVarLong();
+            }
+            mIndex++;
+            return true;
+        }
+
+        public long time() { return mTime; }
+        public int raw() { return mRaw; }
+
+        private long readVarLong()
+        {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                byte b = mBuf[mPos++];
+                value |= (long)(b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+                shift += 7;
+            }
+            //Zigzag
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+
+    private final long mWindowMs;
+    private final int mMaxSamples;
+
+    private byte[] mData;
+    private int mLen;
+    private int mCount;
+    private long mLastTime;
+    private long mLastDelta;
+    private int mLastRaw;
+    private long mDropped;
+
+    //Current window
+    private long mWinStart;
+    private int mWinCount;
+    private int mWinMin;
+    private int mWinMax;
+    private long mWinSum;
+    private Window mLastWindow;
+
+    /**
+     * @param windowMs Aggregate window length
+     */
+    public SensorSeries(long windowMs)
+    {
+        this(windowMs, DEFAULT_MAX_SAMPLES);
+    }
+
+    /**
+     * @param windowMs Aggregate window length
+     * @param maxSamples Samples kept, oldest dropped beyond this
+     */
+    public SensorSeries(long windowMs, int maxSamples)
+    {
+        if (windowMs <= 0)
+            throw new IllegalArgumentException("Window " + windowMs + " ms");
+        if (maxSamples < 4)
+            throw new IllegalArgumentException("Max samples " + maxSamples);
+        mWindowMs = windowMs;
+        mMaxSamples = maxSamples;
+        mData = new byte[16];
+    }
+
+    /**
+     * Add sample. Time should not go backwards, earlier sample still goes to current window.
+     * @return Window closed by this sample, null if none
+     */
+    public Window add(long timeMs, int raw)
+    {
+        Window closed = null;
+        if (mWinCount > 0 && timeMs >= mWinStart + mWindowMs)
+            closed = flushWindow();
+        if (mWinCount == 0) {
+            mWinStart = timeMs - timeMs % mWindowMs;
+            mWinMin = raw;
+            mWinMax = raw;
+            mWinSum = 0;
+        }
+        mWinCount++;
+        mWinSum += raw;
+        if (raw < mWinMin)
+            mWinMin = raw;
+        if (raw > mWinMax)
+            mWinMax = raw;
+
+        if (mCount == mMaxSamples)
+            dropOldest(mMaxSamples / 4);
+        encode(timeMs, raw);
+        return closed;
+    }
+
+    private void encode(long timeMs, int raw)
+    {
+        if (mCount == 0) {
+            writeVarLong(timeMs);
+            writeVarLong(raw);
+        } else {
+            long delta = timeMs - mLastTime;
+            writeVarLong(delta - mLastDelta);
+            writeVarLong((long)raw - mLastRaw);
+            mLastDelta = delta;
+        }
+        mLastTime = timeMs;
+        mLastRaw = raw;
+        mCount++;
+    }
+
+    /**
+     * Re-encode samples after oldest ones, first kept sample becomes absolute. Windows are not affected.
+     */
+    private void dropOldest(int drop)
+    {
+        Cursor cursor = new Cursor();
+        for (int x = 0; x < drop; x++)
+            cursor.next();
+        int keep = mCount - drop;
+        mData = new byte[Math.max(16, mLen - cursor.mPos + 16)];
+        mLen = 0;
+        mCount = 0;
+        mLastDelta = 0;
+        for (int x = 0; x < keep; x++) {
+            cursor.next();
+            encode(cursor.time(), cursor.raw());
+        }
+        mDropped += drop;
+    }
+
+    /**
+     * Close current window now, e.g. when reading stops
+     * @return Window, null if no samples since last closed
+     */
+    public Window flushWindow()
+    {
+        if (mWinCount == 0)
+            return null;
+        mLastWindow = new Window(mWinStart, mWinCount, mWinMin, mWinMax, mWinSum);
+        mWinCount = 0;
+        return mLastWindow;
+    }
+
+    //Samples kept
+    public int size() { return mCount; }
+    //Oldest samples dropped over cap
+    public long getDropped() { return mDropped; }
+    //Encoded size
+    public int bytes() { return mLen; }
+    public long getLastTime() { return mLastTime; }
+    public int getLastRaw() { return mLastRaw; }
+    //Last closed window, null if none yet
+    public Window getLastWindow() { return mLastWindow; }
+    //Samples in open window
+    public int getWindowCount() { return mWinCount; }
+    public Cursor cursor() { return new Cursor(); }
+
+    private void writeVarLong(long value)
+    {
+        //Zigzag, small negative numbers in few bytes too
+        long v = (value << 1) ^ (value >> 63);
+        if (mLen + 10 > mData.length)
+            mData = Arrays.copyOf(mData, Math.max(mData.length + (mData.length >> 1), mLen + 10));
+        while ((v & ~0x7FL) != 0) {
+            mData[mLen++] = (byte)((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        mData[mLen++] = (byte)v;
+    }
+}
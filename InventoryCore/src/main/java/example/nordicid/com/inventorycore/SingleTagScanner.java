@@ -0,0 +1,160 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurRespInventory;
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.tdt.EPCTagEngine;
+
+/**
+ * Reads one tag held close to reader. Inventory runs with low TX level and small Q until same single tag is
+ * seen REQUIRED_HITS rounds in row, or time runs out. Any round seeing more than one tag starts count over.
+ * TX level of reader is restored when done.
+ */
+public class SingleTagScanner {
+
+    //Same tag seen this many rounds in row is accepted
+    public static final int REQUIRED_HITS = 3;
+    public static final long DEFAULT_TIMEOUT_MS = 7000;
+
+    public interface Listener {
+        /**
+         * Inventory round done
+         * @param round Rounds done so far
+         * @param hits Rounds in row same single tag seen
+         * @param tagsSeen Tags seen in this round
+         */
+        void onRound(int round, int hits, int tagsSeen);
+    }
+
+    public static class Result {
+        //Null if no single tag found
+        public final NurTag tag;
+        //GS1 pure identity URI of tag, null if not GS1 coded or not found
+        public final String pureIdentityUri;
+        public final int rounds;
+        public final boolean cancelled;
+
+        Result(NurTag tag, String pureIdentityUri, int rounds, boolean cancelled)
+        {
+            this.tag = tag;
+            this.pureIdentityUri = pureIdentityUri;
+            this.rounds = rounds;
+            this.cancelled = cancelled;
+        }
+
+        public boolean isFound() { return tag != null; }
+    }
+
+    private final NurApi mApi;
+    private volatile boolean mCancelled;
+    private volatile boolean mScanning;
+
+    public SingleTagScanner(NurApi api)
+    {
+        mApi = api;
+    }
+
+    public boolean isScanning() { return mScanning; }
+
+    /**
+     * Stop scan in progress. scan() returns after current round.
+     */
+    public void cancel()
+    {
+        mCancelled = true;
+    }
+
+    /**
+     * Scan in calling thread
+     * @param txLevel TX level during scan, NurApi.TXLEVEL_xx. Low level so tag must be close.
+     * @param listener Round progress, may be null
+     * @throws Exception if TX level can not be read or set. Errors of single rounds are retried until timeout.
+     */
+    public Result scan(int txLevel, long timeoutMs, Listener listener) throws Exception
+    {
+        mCancelled = false;
+        int txLevelBefore = mApi.getSetupTxLevel();
+        mApi.setSetupTxLevel(txLevel);
+        mScanning = true;
+        try {
+            return scanRounds(timeoutMs, listener);
+        }
+        finally {
+            mScanning = false;
+            //Original TX level back
+            mApi.setSetupTxLevel(txLevelBefore);
+        }
+    }
+
+    private Result scanRounds(long timeoutMs, Listener listener) throws Exception
+    {
+        long end = System.currentTimeMillis() + timeoutMs;
+        byte[] lastEpc = null;
+        int hits = 0;
+        int rounds = 0;
+        Exception lastError = null;
+
+        while (!mCancelled && System.currentTimeMillis() < end) {
+            int seen = 0;
+            try {
+                mApi.clearIdBuffer(); //Clear buffer from existing tags
+                //Small rounds and Q, looking for single tag
+                NurRespInventory resp = mApi.inventory(2, 4, NurApi.SESSION_S0);
+                rounds++;
+                seen = resp.numTagsFound;
+                if (seen > 1) {
+                    hits = 0;
+                    lastEpc = null;
+                } else if (seen == 1) {
+                    NurTag tag = mApi.fetchTagAt(true, 0); //Get tag information from pos 0
+                    //Same tag must be seen rounds in row
+                    if (EpcCodec.sameEpc(tag.getEpc(), lastEpc)) {
+                        hits++;
+                    } else {
+                        hits = 1;
+                        lastEpc = tag.getEpc();
+                    }
+                    if (hits == REQUIRED_HITS) {
+                        if (listener != null)
+                            listener.onRound(rounds, hits, seen);
+                        return new Result(tag, pureIdentityUri(tag.getEpc()), rounds, false);
+                    }
+                }
+                lastError = null;
+            } catch (Exception ex) {
+                lastError = ex;
+            }
+            if (listener != null)
+                listener.onRound(rounds, hits, seen);
+        }
+        if (lastError != null && rounds == 0)
+            throw lastError;
+        return new Result(null, null, rounds, mCancelled);
+    }
+
+    /**
+     * @return GS1 pure identity URI, null if EPC is not GS1 coded.
+     * 96 bit SGTIN, SSCC, SGLN, GRAI and GIAI are decoded from precompiled tables, other schemes with TDT library.
+     */
+    public static String pureIdentityUri(byte[] epc)
+    {
+        if (Gs1EpcDecoder.isSupported(epc))
+            return Gs1EpcDecoder.pureIdentityUri(epc);
+        try {
+            return new EPCTagEngine(EpcCodec.toHexString(epc)).buildPureIdentityURI();
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return GS1 pure identity URI of EPC in hex, null if not hex or not GS1 coded
+     */
+    public static String pureIdentityUri(String epcHex)
+    {
+        byte[] epc = new byte[epcHex.length() / 2];
+        if (EpcCodec.decode(epcHex, 0, epcHex.length(), epc) < 0)
+            return null;
+        return pureIdentityUri(epc);
+    }
+}
@@ -0,0 +1,100 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApiTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * TCP/IP connection to fixed reader (e.g. Sampo S2, AR82) without Android dependencies.
+ * Android socket transport of NurApiAndroid logs with android.util.Log so it can not be used on gateway.
+ */
+public class SocketTransport implements NurApiTransport {
+
+    public static final int DEFAULT_PORT = 4333;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+
+    private final String mHost;
+    private final int mPort;
+    private Socket mSocket;
+    private InputStream mIn;
+    private OutputStream mOut;
+
+    public SocketTransport(String host, int port)
+    {
+        mHost = host;
+        mPort = port;
+    }
+
+    @Override
+    public int readData(byte[] buffer) throws IOException
+    {
+        InputStream in = mIn;
+        if (in == null)
+            throw new IOException("Not connected");
+        int len = in.read(buffer);
+        if (len < 0)
+            throw new IOException("Connection closed by reader");
+        return len;
+    }
+
+    @Override
+    public int writeData(byte[] buffer, int len) throws IOException
+    {
+        OutputStream out = mOut;
+        if (out == null)
+            throw new IOException("Not connected");
+        out.write(buffer, 0, len);
+        out.flush();
+        return len;
+    }
+
+    @Override
+    public synchronized void connect() throws Exception
+    {
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(mHost, mPort), CONNECT_TIMEOUT_MS);
+        mSocket = socket;
+        mIn = socket.getInputStream();
+        mOut = socket.getOutputStream();
+    }
+
+    @Override
+    public synchronized void disconnect()
+    {
+        Socket socket = mSocket;
+        mSocket = null;
+        mIn = null;
+        mOut = null;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                //Closed anyway
+            }
+        }
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        Socket socket = mSocket;
+        return socket != null && socket.isConnected() && !socket.isClosed();
+    }
+
+    @Override
+    public boolean disableAck()
+    {
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return mHost + ":" + mPort;
+    }
+}
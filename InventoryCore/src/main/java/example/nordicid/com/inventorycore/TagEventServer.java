@@ -0,0 +1,387 @@
+package example.nordicid.com.inventorycore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Publishes tag stream to TCP clients. One selector thread serves all clients with non-blocking NIO.
+ *
+ * publish() only copies frame to buffer of each client, it never waits for network. Client whose buffer has no room
+ * for next frame is too slow and is dropped, so slow consumer can not hold back inventory or other clients.
+ * Clients only read, data sent by client is ignored.
+ *
+ * Frame, big endian:
+ *   u8  type (FRAME_TAG)
+ *   u8  EPC length in bytes
+ *   s8  RSSI dBm
+ *   u8  antenna id
+ *   s64 time ms
+ *   EPC bytes
+ */
+public class TagEventServer {
+
+    public static final int FRAME_TAG = 1;
+    public static final int HEADER_SIZE = 12;
+    public static final int DEFAULT_CLIENT_BUFFER = 64 * 1024;
+
+    public interface Listener {
+        /**
+         * Called from selector thread
+         */
+        void onClientConnected(String address, int clients);
+
+        /**
+         * Client closed connection or was dropped
+         * @param slow true if dropped because buffer was full
+         */
+        void onClientDisconnected(String address, int clients, boolean slow);
+
+        /**
+         * Selector failed, server stopped serving. Clients are closed by stop().
+         */
+        void onServerFailed(IOException ex);
+    }
+
+    /**
+     * Decoded tag frame
+     */
+    public static class TagFrame {
+        public final byte[] epc;
+        public final int rssi;
+        public final int antennaId;
+        public final long timeMs;
+
+        TagFrame(byte[] epc, int rssi, int antennaId, long timeMs)
+        {
+            this.epc = epc;
+            this.rssi = rssi;
+            this.antennaId = antennaId;
+            this.timeMs = timeMs;
+        }
+    }
+
+    private static class Client {
+        final SocketChannel channel;
+        final String address;
+        final ByteBuffer out;
+        //Buffer full, closed by selector thread
+        boolean slow;
+
+        Client(SocketChannel channel, int bufferSize)
+        {
+            this.channel = channel;
+            this.address = String.valueOf(channel.socket().getRemoteSocketAddress());
+            this.out = ByteBuffer.allocate(bufferSize);
+        }
+    }
+
+    private final int mPort;
+    private final int mClientBuffer;
+    private final Listener mListener;
+    private final CopyOnWriteArrayList<Client> mClients = new CopyOnWriteArrayList<Client>();
+    //Frame is encoded once and copied to all clients. Only publishing thread uses it.
+    private final byte[] mFrame = new byte[HEADER_SIZE + 255];
+
+    private volatile Selector mSelector;
+    private ServerSocketChannel mServer;
+    private Thread mThread;
+    private volatile boolean mWakeupPending;
+
+    private volatile long mFramesPublished;
+    private volatile long mBytesSent;
+    private volatile int mSlowDropped;
+
+    /**
+     * @param port TCP port, 0 for any free port (see getPort())
+     * @param clientBuffer Bytes buffered per client before it is dropped as slow
+     * @param listener Client connects and disconnects, may be null
+     */
+    public TagEventServer(int port, int clientBuffer, Listener listener)
+    {
+        if (clientBuffer < HEADER_SIZE + 255)
+            throw new IllegalArgumentException("Client buffer too small for one frame");
+        mPort = port;
+        mClientBuffer = clientBuffer;
+        mListener = listener;
+    }
+
+    public synchronized void start() throws IOException
+    {
+        if (mThread != null)
+            return;
+        mSelector = Selector.open();
+        mServer = ServerSocketChannel.open();
+        mServer.configureBlocking(false);
+        mServer.socket().setReuseAddress(true);
+        mServer.socket().bind(new InetSocketAddress(mPort));
+        mServer.register(mSelector, SelectionKey.OP_ACCEPT);
+
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                selectLoop();
+            }
+        }, "TagEventServer");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Close server and all clients
+     */
+    public void stop()
+    {
+        Thread thread;
+        synchronized (this) {
+            thread = mThread;
+            mThread = null;
+            if (thread == null)
+                return;
+            try {
+                mSelector.close();
+            } catch (IOException ex) {
+                //Closing anyway
+            }
+        }
+        try {
+            thread.join(1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (Client client : mClients)
+            closeQuietly(client.channel);
+        mClients.clear();
+        closeQuietly(mServer);
+    }
+
+    /**
+     * Port server listens, actual port when started with 0
+     */
+    public int getPort()
+    {
+        ServerSocketChannel server = mServer;
+        return server != null ? server.socket().getLocalPort() : mPort;
+    }
+
+    public int getClientCount() { return mClients.size(); }
+    public long getFramesPublished() { return mFramesPublished; }
+    public long getBytesSent() { return mBytesSent; }
+    public int getSlowDropped() { return mSlowDropped; }
+
+    /**
+     * Queue tag to all clients. Call from one thread at a time (NurApi event thread).
+     * Returns immediately, sending is done by selector thread.
+     */
+    public void publish(byte[] epc, int rssi, int antennaId, long timeMs)
+    {
+        if (mClients.isEmpty())
+            return;
+        int len = encode(mFrame, epc, rssi, antennaId, timeMs);
+        boolean queued = false;
+        for (Client client : mClients) {
+            synchronized (client) {
+                if (client.slow)
+                    continue;
+                if (client.out.remaining() < len) {
+                    client.slow = true;
+                } else {
+                    client.out.put(mFrame, 0, len);
+                }
+            }
+            queued = true;
+        }
+        mFramesPublished++;
+        //One wakeup per select round is enough, selector thread then sends all buffered frames
+        if (queued && !mWakeupPending) {
+            mWakeupPending = true;
+            Selector selector = mSelector;
+            if (selector != null)
+                selector.wakeup();
+        }
+    }
+
+    /**
+     * Encode tag frame
+     * @return Frame length
+     */
+    public static int encode(byte[] dst, byte[] epc, int rssi, int antennaId, long timeMs)
+    {
+        int epcLen = Math.min(epc.length, 255);
+        dst[0] = FRAME_TAG;
+        dst[1] = (byte) epcLen;
+        dst[2] = (byte) Math.max(-128, Math.min(127, rssi));
+        dst[3] = (byte) antennaId;
+        for (int x = 0; x < 8; x++)
+            dst[4 + x] = (byte) (timeMs >>> (56 - x * 8));
+        System.arraycopy(epc, 0, dst, HEADER_SIZE, epcLen);
+        return HEADER_SIZE + epcLen;
+    }
+
+    /**
+     * Decode next frame from buffer in read mode
+     * @return Frame, or null if buffer does not hold full frame yet (position not moved)
+     * @throws IOException Unknown frame type
+     */
+    public static TagFrame decode(ByteBuffer in) throws IOException
+    {
+        if (in.remaining() < HEADER_SIZE)
+            return null;
+        int start = in.position();
+        int type = in.get(start) & 0xFF;
+        if (type != FRAME_TAG)
+            throw new IOException("Unknown frame type " + type);
+        int epcLen = in.get(start + 1) & 0xFF;
+        if (in.remaining() < HEADER_SIZE + epcLen)
+            return null;
+        in.position(start + 2);
+        int rssi = in.get();
+        int antennaId = in.get() & 0xFF;
+        long timeMs = in.getLong();
+        byte[] epc = new byte[epcLen];
+        in.get(epc);
+        return new TagFrame(epc, rssi, antennaId, timeMs);
+    }
+
+    private void selectLoop()
+    {
+        ByteBuffer readBuffer = ByteBuffer.allocate(256);
+        try {
+            while (mSelector.isOpen()) {
+                mSelector.select();
+                mWakeupPending = false;
+
+                Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        acceptAll();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        if (key.isReadable())
+                            read(client, readBuffer);
+                        if (key.isValid() && key.isWritable())
+                            write(client, key);
+                    }
+                }
+                //Frames published since last round, and slow clients to drop
+                for (Client client : mClients)
+                    updateInterest(client);
+            }
+        } catch (ClosedSelectorException ex) {
+            //Stopped
+        } catch (IOException ex) {
+            //Selector failed, server stops
+            if (mListener != null)
+                mListener.onServerFailed(ex);
+        }
+    }
+
+    /**
+     * Accept pending connections. Failure of one connection (e.g. reset before accepted, out of file handles)
+     * closes only that one, server keeps serving.
+     */
+    private void acceptAll()
+    {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = mServer.accept();
+            } catch (IOException ex) {
+                return; //Tried again on next select
+            }
+            if (channel == null)
+                return;
+            try {
+                addClient(channel);
+            } catch (IOException ex) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    void addClient(SocketChannel channel) throws IOException
+    {
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Client client = new Client(channel, mClientBuffer);
+        channel.register(mSelector, SelectionKey.OP_READ, client);
+        mClients.add(client);
+        if (mListener != null)
+            mListener.onClientConnected(client.address, mClients.size());
+    }
+
+    private void read(Client client, ByteBuffer buffer)
+    {
+        try {
+            buffer.clear();
+            if (client.channel.read(buffer) < 0)
+                drop(client, false);
+        } catch (IOException ex) {
+            drop(client, false);
+        }
+    }
+
+    private void write(Client client, SelectionKey key)
+    {
+        try {
+            synchronized (client) {
+                client.out.flip();
+                mBytesSent += client.channel.write(client.out);
+                client.out.compact();
+            }
+        } catch (IOException ex) {
+            drop(client, false);
+        }
+    }
+
+    private void updateInterest(Client client)
+    {
+        SelectionKey key = client.channel.keyFor(mSelector);
+        if (key == null || !key.isValid())
+            return;
+        boolean slow;
+        boolean pending;
+        synchronized (client) {
+            slow = client.slow;
+            pending = client.out.position() > 0;
+        }
+        if (slow) {
+            mSlowDropped++;
+            drop(client, true);
+            return;
+        }
+        key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void drop(Client client, boolean slow)
+    {
+        if (!mClients.remove(client))
+            return;
+        closeQuietly(client.channel);
+        if (mListener != null)
+            mListener.onClientDisconnected(client.address, mClients.size(), slow);
+    }
+
+    private static void closeQuietly(Closeable closeable)
+    {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException ex) {
+            //Nothing to do
+        }
+    }
+}
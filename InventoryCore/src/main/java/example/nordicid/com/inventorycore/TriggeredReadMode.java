@@ -0,0 +1,266 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurEventIOChange;
+import com.nordicid.nurapi.NurEventInventory;
+import com.nordicid.nurapi.NurEventTriggeredRead;
+import com.nordicid.nurapi.NurGPIOConfig;
+import com.nordicid.nurapi.NurTag;
+
+/**
+ * Reads driven by reader GPIO input, e.g. photo eye on conveyor.
+ *
+ * ACTION_SCAN: reader scans single tag by itself on input edge and reports it with triggered read event.
+ * Fastest, but reader does not tell when edge came, so latency is not known.
+ * ACTION_GATE: reader notifies input changes. Inventory stream runs while input is active, so all tags passing
+ * are read, and latency from edge to first tag is measured.
+ * Tags go to same Listener as tags of inventory stream. GPIO setup changed by start() is restored by stop().
+ * Owner forwards triggered read, I/O and inventory stream events here while mode is active.
+ */
+public class TriggeredReadMode {
+
+    public static final int ACTION_SCAN = NurApi.GPIO_ACT_SCANTAG;
+    public static final int ACTION_GATE = NurApi.GPIO_ACT_NOTIFY;
+
+    public interface Listener {
+        /**
+         * Trigger handled. Called from NurApi thread.
+         * @param source GPIO or sensor that triggered
+         * @param reads Tags read for trigger
+         * @param latencyMs Trigger to first tag, -1 if no tag or not known (ACTION_SCAN)
+         */
+        void onTrigger(int source, int reads, long latencyMs) throws Exception;
+    }
+
+    private final NurApi mApi;
+    private final InventoryController mController;
+    private final InventoryController.Listener mTagListener;
+    private final Listener mListener;
+
+    private volatile boolean mActive;
+    private int mGpio;
+    private int mAction;
+    //GPIO setup before start(), null when nothing to restore
+    private NurGPIOConfig[] mGpioBefore;
+
+    //Gate open time, 0 when closed
+    private long mGateOpenMs;
+    private int mGateTagsBefore;
+    private long mGateFirstTagMs;
+
+    private volatile int mTriggers;
+    private volatile int mTriggersRead;
+    private volatile int mReads;
+    private volatile int mLatencyCount;
+    private volatile long mLatencySumMs;
+    private volatile long mLatencyMinMs = Long.MAX_VALUE;
+    private volatile long mLatencyMaxMs;
+
+    /**
+     * @param controller Runs stream in gate mode, its filter applies in scan mode too
+     * @param tagListener Tags read with triggered read events, normally same listener controller has
+     * @param listener Trigger results, may be null
+     */
+    public TriggeredReadMode(NurApi api, InventoryController controller, InventoryController.Listener tagListener, Listener listener)
+    {
+        mApi = api;
+        mController = controller;
+        mTagListener = tagListener;
+        mListener = listener;
+    }
+
+    public boolean isActive() { return mActive; }
+    public int getGpio() { return mGpio; }
+    public int getAction() { return mAction; }
+
+    /**
+     * Configure GPIO as trigger input and start handling triggers. Counts start over.
+     * @param gpio NurApi.GPIO1..GPIO7
+     * @param edge NurApi.GPIO_EDGE_xx. Gate mode uses both edges.
+     * @param action ACTION_SCAN or ACTION_GATE
+     */
+    public void start(int gpio, int edge, int action) throws Exception
+    {
+        if (gpio < 0 || gpio >= NurApi.MAX_GPIO)
+            throw new IllegalArgumentException("No GPIO " + gpio);
+        if (action != ACTION_SCAN && action != ACTION_GATE)
+            throw new IllegalArgumentException("Unknown action " + action);
+        if (mActive)
+            stop();
+
+        NurGPIOConfig[] configs = mApi.getGPIOConfigure();
+        if (configs == null || gpio >= configs.length || !configs[gpio].available)
+            throw new IllegalArgumentException("GPIO" + (gpio + 1) + " not available on reader");
+        NurGPIOConfig[] before = new NurGPIOConfig[configs.length];
+        for (int x = 0; x < configs.length; x++)
+            before[x] = copy(configs[x]);
+
+        configs[gpio] = new NurGPIOConfig(true, true, NurApi.GPIO_TYPE_INPUT,
+                action == ACTION_GATE ? NurApi.GPIO_EDGE_BOTH : edge, action);
+        mApi.setGPIOConfigure(configs);
+        mGpioBefore = before;
+        mGpio = gpio;
+        mAction = action;
+        mGateOpenMs = 0;
+        resetCounts();
+        mActive = true;
+    }
+
+    /**
+     * Stop handling triggers, close gate if open and restore GPIO setup.
+     * Mode is off even if reader commands fail, call restoreSetup() after reconnect then.
+     */
+    public void stop() throws Exception
+    {
+        if (!mActive)
+            return;
+        mActive = false;
+        if (mGateOpenMs != 0) {
+            mGateOpenMs = 0;
+            mController.stop();
+        }
+        restoreSetup();
+    }
+
+    /**
+     * Put GPIO setup before start() back. Kept for next call if it fails.
+     */
+    public void restoreSetup() throws Exception
+    {
+        NurGPIOConfig[] before = mGpioBefore;
+        if (before != null) {
+            mApi.setGPIOConfigure(before);
+            mGpioBefore = null;
+        }
+    }
+
+    public void resetCounts()
+    {
+        mTriggers = 0;
+        mTriggersRead = 0;
+        mReads = 0;
+        mLatencyCount = 0;
+        mLatencySumMs = 0;
+        mLatencyMinMs = Long.MAX_VALUE;
+        mLatencyMaxMs = 0;
+    }
+
+    private static NurGPIOConfig copy(NurGPIOConfig c)
+    {
+        return new NurGPIOConfig(c.available, c.enabled, c.type, c.edge, c.action);
+    }
+
+    /**
+     * Tag read by reader on trigger edge (ACTION_SCAN), or trigger with no tag found.
+     * Tag passing controller filter goes to tag listener.
+     * @return true if event was handled
+     */
+    public boolean handleTriggeredRead(NurEventTriggeredRead event) throws Exception
+    {
+        if (!mActive)
+            return false;
+        long now = System.currentTimeMillis();
+        int reads = 0;
+        if (event.epc != null && event.epc.length > 0 && mController.getFilter().matches(event.epc)) {
+            NurTag tag = new NurTag(0, event.rssi, event.scaledRssi, 0, 0, 0, event.antennaId, event.epc);
+            mTagListener.onTag(tag, now);
+            mTagListener.onRound(1, 0);
+            reads = 1;
+        }
+        onTriggerDone(event.source, reads, -1);
+        return true;
+    }
+
+    /**
+     * Gate input change (ACTION_GATE). Input active starts stream with empty tag storage so tags are counted per
+     * trigger, inactive stops it.
+     * @return true if event was from trigger GPIO
+     */
+    public boolean handleIOEvent(NurEventIOChange event) throws Exception
+    {
+        if (!mActive || mAction != ACTION_GATE || event.sensor || event.source != mGpio)
+            return false;
+        if (event.direction == 1 && mGateOpenMs == 0) {
+            //Latency counted from input change, stream start time included
+            mGateOpenMs = System.currentTimeMillis();
+            mGateFirstTagMs = 0;
+            try {
+                mController.start();
+            }
+            catch (Exception ex) {
+                mGateOpenMs = 0;
+                throw ex;
+            }
+            mGateTagsBefore = mController.getTagsAdded();
+        }
+        else if (event.direction == 0 && mGateOpenMs != 0) {
+            mController.stop();
+            int reads = mController.getTagsAdded() - mGateTagsBefore;
+            long latency = mGateFirstTagMs != 0 ? mGateFirstTagMs - mGateOpenMs : -1;
+            mGateOpenMs = 0;
+            onTriggerDone(event.source, reads, latency);
+        }
+        return true;
+    }
+
+    /**
+     * Inventory stream event, passed to controller. First tag after gate opened gives latency.
+     * @return New tags accepted
+     */
+    public int handleInventoryEvent(NurEventInventory event) throws Exception
+    {
+        int accepted = mController.handleInventoryEvent(event);
+        if (accepted > 0 && mGateOpenMs != 0 && mGateFirstTagMs == 0)
+            mGateFirstTagMs = System.currentTimeMillis();
+        return accepted;
+    }
+
+    private void onTriggerDone(int source, int reads, long latencyMs) throws Exception
+    {
+        mTriggers++;
+        mReads += reads;
+        if (reads > 0)
+            mTriggersRead++;
+        if (latencyMs >= 0) {
+            mLatencyCount++;
+            mLatencySumMs += latencyMs;
+            mLatencyMinMs = Math.min(mLatencyMinMs, latencyMs);
+            mLatencyMaxMs = Math.max(mLatencyMaxMs, latencyMs);
+        }
+        if (mListener != null)
+            mListener.onTrigger(source, reads, latencyMs);
+    }
+
+    public int getTriggers() { return mTriggers; }
+    public int getTriggersRead() { return mTriggersRead; }
+    public int getReads() { return mReads; }
+
+    public double getReadsPerTrigger()
+    {
+        int triggers = mTriggers;
+        return triggers > 0 ? mReads / (double) triggers : 0;
+    }
+
+    /**
+     * @return Average trigger to first tag ms, -1 if not measured
+     */
+    public long getAvgLatencyMs()
+    {
+        int count = mLatencyCount;
+        return count > 0 ? mLatencySumMs / count : -1;
+    }
+
+    /**
+     * "Triggers 120, read 118 (98.3%), 1.2 reads/trigger, latency 45 ms (20..130)"
+     */
+    public String summary()
+    {
+        int triggers = mTriggers;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Triggers %d, read %d (%.1f%%), %.1f reads/trigger", triggers, mTriggersRead,
+                triggers > 0 ? mTriggersRead * 100.0 / triggers : 0.0, getReadsPerTrigger()));
+        if (mLatencyCount > 0)
+            sb.append(String.format(", latency %d ms (%d..%d)", getAvgLatencyMs(), mLatencyMinMs, mLatencyMaxMs));
+        return sb.toString();
+    }
+}
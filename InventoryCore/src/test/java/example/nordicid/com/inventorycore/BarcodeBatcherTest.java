@@ -0,0 +1,52 @@
+package example.nordicid.com.inventorycore;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BarcodeBatcherTest {
+    @Test
+    public void duplicateInsideWindow_isIgnored() throws Exception {
+        BarcodeBatcher batcher = new BarcodeBatcher(1000);
+        assertTrue(batcher.add("123", 0));
+        assertFalse(batcher.add("123", 500));
+        assertTrue(batcher.add("456", 600));
+        //Window is counted from last time seen
+        assertFalse(batcher.add("123", 1400));
+        assertTrue(batcher.add("123", 2500));
+
+        assertEquals(3, batcher.getResultCount());
+        assertEquals(2, batcher.getDuplicateCount());
+    }
+
+    @Test
+    public void drainBatch_returnsOnlyNewResults() throws Exception {
+        BarcodeBatcher batcher = new BarcodeBatcher(1000);
+        batcher.add("A", 0);
+        batcher.add("B", 10);
+
+        List<String> batch = batcher.drainBatch();
+        assertEquals(2, batch.size());
+        assertTrue(batcher.drainBatch().isEmpty());
+
+        batcher.add("C", 20);
+        batch = batcher.drainBatch();
+        assertEquals(1, batch.size());
+        assertEquals("C", batch.get(0));
+        assertEquals(3, batcher.getResultCount());
+    }
+
+    @Test
+    public void scansPerMinute_scaledFromShortWindow() throws Exception {
+        BarcodeBatcher batcher = new BarcodeBatcher(0);
+        //10 scans in 10 seconds
+        for (int x = 0; x < 10; x++)
+            batcher.add("code" + x, x * 1000);
+
+        assertEquals(60, batcher.getScansPerMinute(10000));
+        //Scans older than minute are not counted
+        assertEquals(0, batcher.getScansPerMinute(200000));
+    }
+}
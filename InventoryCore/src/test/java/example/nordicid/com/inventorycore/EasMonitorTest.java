@@ -0,0 +1,181 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+import com.nordicid.nurapi.NurEventNxpAlarm;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EasMonitorTest {
+
+    /**
+     * Reader answering EAS alarm command when EAS tag is in field. Command takes pollMs.
+     */
+    static class EasReader extends InventoryControllerTest.FakeReader {
+        volatile boolean easInField;
+        volatile long pollMs = 2;
+        volatile int polls;
+        //Polls done while inventory stream was on, should be none
+        volatile int pollsWhileStreaming;
+        boolean alarmStream;
+        int alarmStreamStarts;
+
+        @Override
+        public void nxpAlarm() throws Exception {
+            polls++;
+            if (stream || extendedStream)
+                pollsWhileStreaming++;
+            Thread.sleep(pollMs);
+            if (!easInField)
+                throw new NurApiException("No tag", NurApiErrors.NO_TAG);
+        }
+
+        @Override
+        public void nxpStartAlarmStream() { alarmStream = true; alarmStreamStarts++; }
+        @Override
+        public void nxpStopAlarmStream() { alarmStream = false; }
+        @Override
+        public boolean isNxpAlarmStreamRunning() { return alarmStream; }
+    }
+
+    static class AlarmLog implements EasMonitor.Listener {
+        final List<Boolean> alarms = Collections.synchronizedList(new ArrayList<Boolean>());
+        final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+
+        @Override
+        public void onAlarm(boolean alarm) { alarms.add(alarm); }
+        @Override
+        public void onError(Exception ex) { errors.add(ex); }
+    }
+
+    static void waitFor(List<?> list, int size) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (list.size() < size && System.currentTimeMillis() < end)
+            Thread.sleep(5);
+        assertTrue("waited " + size + ", got " + list, list.size() >= size);
+    }
+
+    @Test
+    public void polling_alongsideInventory() throws Exception {
+        EasReader reader = new EasReader();
+        InventoryController controller = new InventoryController(reader, new InventoryControllerTest.CountingListener());
+        AlarmLog log = new AlarmLog();
+        EasMonitor monitor = new EasMonitor(reader, controller, log, 20, EasMonitor.DEFAULT_LATENCY_BUDGET_MS);
+
+        controller.start();
+        monitor.start();
+        Thread.sleep(100);
+        assertTrue(reader.polls > 0);
+        assertTrue(log.alarms.isEmpty());
+
+        reader.easInField = true;
+        waitFor(log.alarms, 1);
+        assertTrue(log.alarms.get(0));
+        assertTrue(monitor.isAlarm());
+        reader.easInField = false;
+        waitFor(log.alarms, 2);
+        assertFalse(log.alarms.get(1));
+
+        //Stream resumed after each poll
+        assertTrue(reader.stream);
+        assertTrue(controller.isRunning());
+        assertFalse(controller.isPaused());
+        assertEquals(0, reader.pollsWhileStreaming);
+        assertTrue(reader.streamStarts > reader.polls / 2);
+        assertTrue(monitor.summary(), monitor.getInventoryPausePercent() < 50);
+        assertTrue(monitor.summary(), monitor.isWithinBudget());
+        assertTrue(log.errors.isEmpty());
+        System.out.println(monitor.summary());
+
+        monitor.stop();
+        assertFalse(monitor.isRunning());
+        controller.stop();
+    }
+
+    @Test
+    public void polling_keepsDutyPauseAndStop() throws Exception {
+        EasReader reader = new EasReader();
+        reader.pollMs = 5;
+        InventoryController controller = new InventoryController(reader, new InventoryControllerTest.CountingListener());
+        EasMonitor monitor = new EasMonitor(reader, controller, new AlarmLog(), 5, EasMonitor.DEFAULT_LATENCY_BUDGET_MS);
+        controller.start();
+        monitor.start();
+
+        //Duty cycle pause taken while polls pause and resume stream around it
+        for (int x = 0; x < 20; x++) {
+            assertTrue(controller.pause());
+            int polls = reader.polls;
+            while (reader.polls < polls + 2)
+                Thread.sleep(1);
+            assertFalse(reader.stream);
+            assertTrue(controller.isPaused());
+            controller.resume();
+            Thread.sleep(3);
+        }
+        assertTrue(controller.isRunning());
+
+        //Stop from UI while poll holds pause, poll end does not start stream
+        reader.pollMs = 30;
+        int polls = reader.polls;
+        while (reader.polls == polls)
+            Thread.sleep(1);
+        controller.stop();
+        Thread.sleep(50);
+        monitor.stop();
+        assertFalse(reader.stream);
+        assertFalse(controller.isPaused());
+        assertFalse(controller.pause());
+        assertEquals(0, reader.pollsWhileStreaming);
+    }
+
+    @Test
+    public void slowPoll_stretchesInterval() throws Exception {
+        EasReader reader = new EasReader();
+        reader.pollMs = 30;
+        InventoryController controller = new InventoryController(reader, new InventoryControllerTest.CountingListener());
+        EasMonitor monitor = new EasMonitor(reader, controller, new AlarmLog(), 10, EasMonitor.DEFAULT_LATENCY_BUDGET_MS);
+        controller.start();
+        monitor.start();
+        Thread.sleep(600);
+        monitor.stop();
+        //Stream kept on 80% of time: interval at least 4x poll time
+        assertTrue(String.valueOf(monitor.pollIntervalMs()), monitor.pollIntervalMs() >= 4 * 30);
+        assertTrue(monitor.summary(), monitor.getInventoryPausePercent() < 100 - EasMonitor.MIN_STREAM_PERCENT + 5);
+        controller.stop();
+    }
+
+    @Test
+    public void alarmStream_alone() throws Exception {
+        EasReader reader = new EasReader();
+        AlarmLog log = new AlarmLog();
+        EasMonitor monitor = new EasMonitor(reader, null, log, EasMonitor.DEFAULT_POLL_INTERVAL_MS, EasMonitor.DEFAULT_LATENCY_BUDGET_MS);
+        monitor.start();
+        assertTrue(reader.alarmStream);
+
+        NurEventNxpAlarm stopped = new NurEventNxpAlarm();
+        stopped.stopped = true;
+        assertTrue(monitor.handleAlarmEvent(stopped));
+        assertEquals(2, reader.alarmStreamStarts);
+
+        NurEventNxpAlarm armed = new NurEventNxpAlarm();
+        armed.armed = true;
+        monitor.handleAlarmEvent(armed);
+        monitor.handleAlarmEvent(armed);
+        assertEquals(1, log.alarms.size());
+        assertEquals(1, monitor.getAlarms());
+        //Off by monitor thread after hold time without reports
+        waitFor(log.alarms, 2);
+        assertFalse(log.alarms.get(1));
+        assertEquals(0, reader.polls);
+
+        monitor.stop();
+        assertFalse(reader.alarmStream);
+        assertFalse(monitor.handleAlarmEvent(armed));
+    }
+}
@@ -0,0 +1,69 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurInventoryExtendedFilter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EpcFilterTest {
+    @Test
+    public void emptyFilter_passesAll() throws Exception {
+        EpcFilter filter = EpcFilter.parse("  ");
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.matches(NurApi.hexStringToByteArray("E2801160600002054CC2096F")));
+        assertNull(filter.buildReaderFilters());
+    }
+
+    @Test
+    public void hexPrefix() throws Exception {
+        EpcFilter filter = EpcFilter.parse("3074257B");
+        assertTrue(filter.matches(NurApi.hexStringToByteArray("3074257BF7194E4000001A85")));
+        assertFalse(filter.matches(NurApi.hexStringToByteArray("3074257CF7194E4000001A85")));
+        //Too short EPC never matches
+        assertFalse(filter.matches(NurApi.hexStringToByteArray("3074")));
+    }
+
+    @Test
+    public void bitPrefixAndMask() throws Exception {
+        EpcFilter filter = EpcFilter.parse("3070/12, 00000000000000000000000F&0000000000000000000000FF");
+        assertTrue(filter.matches(NurApi.hexStringToByteArray("307F00000000000000000000")));
+        assertFalse(filter.matches(NurApi.hexStringToByteArray("308000000000000000000000")));
+        assertTrue(filter.matches(NurApi.hexStringToByteArray("E2801160600002054CC2090F")));
+        assertEquals(2, filter.getRuleCount());
+    }
+
+    @Test
+    public void companyPrefix_matchesGs1Schemes() throws Exception {
+        EpcFilter filter = EpcFilter.parse("gcp:0614141");
+        //SGTIN-96 urn:epc:id:sgtin:0614141.812345.6789, filter value 3
+        assertTrue(filter.matches(NurApi.hexStringToByteArray("3074257BF7194E4000001A85")));
+        //GIAI-96 urn:epc:id:giai:0614141.x
+        assertTrue(filter.matches(NurApi.hexStringToByteArray("3414257BF460000000000005")));
+        //GRAI-96 with company prefix 000000
+        assertFalse(filter.matches(NurApi.hexStringToByteArray("331800003039000000000001")));
+        assertFalse(filter.matches(NurApi.hexStringToByteArray("E2801160600002054CC2096F")));
+    }
+
+    @Test
+    public void readerFilters_orSemantics() throws Exception {
+        NurInventoryExtendedFilter[] filters = EpcFilter.parse("3074257B, E280/12").buildReaderFilters();
+        assertEquals(2, filters.length);
+        assertEquals(NurInventoryExtendedFilter.FILTER_ACTION_0, filters[0].action);
+        assertEquals(NurInventoryExtendedFilter.FILTER_ACTION_1, filters[1].action);
+        assertEquals(32, filters[0].address);
+        assertEquals(32, filters[0].maskBitLength);
+        assertEquals(12, filters[1].maskBitLength);
+
+        //Company prefix rule selects by header only on reader
+        filters = EpcFilter.parse("gcp:0614141").buildReaderFilters();
+        assertEquals(5, filters.length);
+        assertEquals(8, filters[0].maskBitLength);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRule_throws() throws Exception {
+        EpcFilter.parse("30XY");
+    }
+}
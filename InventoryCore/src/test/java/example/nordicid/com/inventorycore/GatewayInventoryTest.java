@@ -0,0 +1,75 @@
+package example.nordicid.com.inventorycore;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+public class GatewayInventoryTest {
+
+    /**
+     * Reader whose connection can be dropped. Given number of connect attempts fail.
+     */
+    static class DroppingReader extends InventoryControllerTest.FakeReader {
+        volatile boolean connected = true;
+        volatile int failConnects;
+        volatile int connects;
+
+        void drop() {
+            connected = false;
+            getListener().disconnectedEvent();
+        }
+
+        @Override
+        public void connect() throws Exception {
+            connects++;
+            if (failConnects > 0) {
+                failConnects--;
+                throw new Exception("Connection refused");
+            }
+            connected = true;
+            getListener().connectedEvent();
+        }
+
+        @Override
+        public boolean isConnected() { return connected; }
+    }
+
+    static void waitUntilReconnected(GatewayInventory gateway) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (gateway.isConnectionLost() && System.currentTimeMillis() < end)
+            Thread.sleep(5);
+        assertFalse(gateway.isConnectionLost());
+    }
+
+    @Test
+    public void connectionLost_reconnectsAndResumes() throws Exception {
+        DroppingReader reader = new DroppingReader();
+        GatewayInventory gateway = new GatewayInventory(reader, new PrintStream(new ByteArrayOutputStream()));
+        gateway.setReconnectBase(10);
+        InventoryController controller = gateway.getController();
+        controller.start();
+        assertEquals(1, reader.streamStarts);
+
+        reader.failConnects = 2;
+        reader.drop();
+        assertTrue(gateway.isConnectionLost());
+        assertTrue(controller.isPaused());
+        //Drop reported again while reconnecting takes no second pause
+        reader.getListener().disconnectedEvent();
+        waitUntilReconnected(gateway);
+        assertEquals(3, reader.connects);
+        assertTrue(controller.isRunning());
+        assertFalse(controller.isPaused());
+        assertEquals(2, reader.streamStarts);
+
+        //Dispose after close is not retried
+        gateway.close();
+        reader.drop();
+        Thread.sleep(50);
+        assertEquals(3, reader.connects);
+        controller.stop();
+    }
+}
@@ -0,0 +1,157 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.tdt.EPCTagEngine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Gs1EpcDecoderTest {
+
+    static String engineUri(byte[] epc) {
+        try {
+            return new EPCTagEngine(EpcCodec.toHexString(epc)).buildPureIdentityURI();
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    static void putBits(byte[] epc, int start, int count, long value) {
+        for (int x = 0; x < count; x++) {
+            int bit = start + x;
+            if (((value >>> (count - 1 - x)) & 1) != 0)
+                epc[bit >> 3] |= (byte) (0x80 >>> (bit & 7));
+        }
+    }
+
+    /**
+     * Valid EPC of scheme and partition with random values inside digit limits
+     */
+    static byte[] randomEpc(Random random, int scheme, int partition) {
+        byte[] epc = new byte[12];
+        int row = (scheme * Gs1SchemeTables.PARTITIONS + partition) * Gs1SchemeTables.ROW;
+        byte[] t = Gs1SchemeTables.TABLE;
+        epc[0] = (byte) (Gs1SchemeTables.FIRST_HEADER + scheme);
+        putBits(epc, 8, 3, random.nextInt(8));
+        putBits(epc, 11, 3, partition);
+        putBits(epc, 14, t[row], limit(random, t[row], t[row + 1]));
+        putBits(epc, 14 + t[row], t[row + 2], limit(random, t[row + 2], t[row + 3]));
+        if (t[row + 5] > 0)
+            putBits(epc, 14 + t[row] + t[row + 2], t[row + 5], random.nextLong() >>> (64 - t[row + 5]));
+        return epc;
+    }
+
+    static long limit(Random random, int bits, int digits) {
+        long value = random.nextLong() >>> (64 - bits);
+        if (digits < 19) {
+            long max = 1;
+            for (int x = 0; x < digits; x++)
+                max *= 10;
+            value %= max;
+        }
+        return value;
+    }
+
+    /**
+     * Company and reference fit in digits of partition
+     */
+    static boolean inRange(byte[] epc) {
+        long w0 = EpcCodec.word(epc, 0);
+        long w1 = EpcCodec.word(epc, 8);
+        int partition = (int) Gs1EpcDecoder.bits(w0, w1, 11, 3);
+        if (partition >= Gs1SchemeTables.PARTITIONS)
+            return false;
+        int row = ((epc[0] - Gs1SchemeTables.FIRST_HEADER) * Gs1SchemeTables.PARTITIONS + partition) * Gs1SchemeTables.ROW;
+        byte[] t = Gs1SchemeTables.TABLE;
+        return Gs1EpcDecoder.bits(w0, w1, 14, t[row]) == limit(Gs1EpcDecoder.bits(w0, w1, 14, t[row]), t[row + 1]) &&
+               Gs1EpcDecoder.bits(w0, w1, 14 + t[row], t[row + 2]) == limit(Gs1EpcDecoder.bits(w0, w1, 14 + t[row], t[row + 2]), t[row + 3]);
+    }
+
+    static long limit(long value, int digits) {
+        long max = 1;
+        for (int x = 0; x < digits && x < 19; x++)
+            max *= 10;
+        return digits < 19 ? value % max : value;
+    }
+
+    @Test
+    public void knownTags() throws Exception {
+        assertEquals("urn:epc:id:sgtin:0614141.812345.6789", Gs1EpcDecoder.pureIdentityUri(NurApi.hexStringToByteArray("3074257BF7194E4000001A85")));
+        assertEquals("urn:epc:id:sscc:0614141.1234567890", Gs1EpcDecoder.pureIdentityUri(NurApi.hexStringToByteArray("3174257BF4499602D2000000")));
+        assertEquals("urn:epc:id:sgln:0614141.12345.5678", Gs1EpcDecoder.pureIdentityUri(NurApi.hexStringToByteArray("3274257BF46072000000162E")));
+        assertEquals("urn:epc:id:grai:0614141.12345.5678", Gs1EpcDecoder.pureIdentityUri(NurApi.hexStringToByteArray("3374257BF40C0E400000162E")));
+        assertEquals("urn:epc:id:giai:0614141.3355", Gs1EpcDecoder.pureIdentityUri(NurApi.hexStringToByteArray("3474257BF400000000000D1B")));
+        //Not GS1, and GS1 scheme not in tables
+        assertNull(Gs1EpcDecoder.pureIdentityUri(NurApi.hexStringToByteArray("E2801160600002054CC2096F")));
+        assertFalse(Gs1EpcDecoder.isSupported(NurApi.hexStringToByteArray("3574257BF400000000000D1B")));
+        assertNull(Gs1EpcDecoder.pureIdentityUri(new byte[] { 0x30 }));
+    }
+
+    @Test
+    public void tables_matchTdtLib() throws Exception {
+        assertArrayEquals("Run generateGs1Tables", Gs1SchemeTableGenerator.buildTable(), Gs1SchemeTables.TABLE);
+        assertEquals(Arrays.asList(Gs1SchemeTableGenerator.names()), Arrays.asList(Gs1SchemeTables.NAMES));
+    }
+
+    @Test
+    public void sameAsEpcTagEngine() throws Exception {
+        Random random = new Random(42);
+        int valid = 0;
+        for (int x = 0; x < 20000; x++) {
+            byte[] epc;
+            if (x % 4 == 3) {
+                //Random bits, mostly not valid
+                epc = new byte[12];
+                random.nextBytes(epc);
+                epc[0] = (byte) (Gs1SchemeTables.FIRST_HEADER + random.nextInt(Gs1SchemeTables.NAMES.length));
+            } else {
+                epc = randomEpc(random, random.nextInt(Gs1SchemeTables.NAMES.length), random.nextInt(Gs1SchemeTables.PARTITIONS));
+            }
+            String expected = engineUri(epc);
+            String uri = Gs1EpcDecoder.pureIdentityUri(epc);
+            if (uri == null && expected != null && x % 4 == 3) {
+                //EPCTagEngine cuts field with too many digits for partition, decoder rejects it
+                assertFalse(EpcCodec.toHexString(epc), inRange(epc));
+                continue;
+            }
+            assertEquals(EpcCodec.toHexString(epc), expected, uri);
+            if (expected != null)
+                valid++;
+        }
+        assertTrue(valid > 10000);
+    }
+
+    @Test
+    public void benchmark_againstEpcTagEngine() throws Exception {
+        Random random = new Random(7);
+        byte[][] epcs = new byte[1000][];
+        for (int x = 0; x < epcs.length; x++)
+            epcs[x] = randomEpc(random, x % Gs1SchemeTables.NAMES.length, x % Gs1SchemeTables.PARTITIONS);
+
+        int sum = 0;
+        long engineNs = 0;
+        long tableNs = 0;
+        StringBuilder sb = new StringBuilder(64);
+        for (int pass = 0; pass < 5; pass++) {
+            long start = System.nanoTime();
+            for (byte[] epc : epcs)
+                sum += new EPCTagEngine(EpcCodec.toHexString(epc)).buildPureIdentityURI().length();
+            engineNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (byte[] epc : epcs) {
+                sb.setLength(0);
+                Gs1EpcDecoder.appendPureIdentityUri(epc, sb);
+                sum += sb.length();
+            }
+            tableNs = System.nanoTime() - start;
+        }
+        System.out.println(String.format("GS1 decode: EPCTagEngine %.0f ns/tag, Gs1EpcDecoder %.0f ns/tag (%d)",
+                engineNs / (double) epcs.length, tableNs / (double) epcs.length, sum));
+        assertTrue(tableNs < engineNs);
+    }
+}
@@ -0,0 +1,121 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.tdt.GIAI96Scheme;
+import com.nordicid.tdt.GRAI96Scheme;
+import com.nordicid.tdt.SGLN96Scheme;
+import com.nordicid.tdt.SGTIN96Scheme;
+import com.nordicid.tdt.SSCC96Scheme;
+import com.nordicid.tdt.TDTPartitionEntry;
+import com.nordicid.tdt.TDTScheme;
+
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes Gs1SchemeTables.java from TDTLib scheme definitions.
+ * Run after TDTLib update: ./gradlew :InventoryCore:generateGs1Tables
+ * Gs1EpcDecoderTest fails if checked in tables differ from TDTLib.
+ */
+public class Gs1SchemeTableGenerator {
+
+    //Schemes in header order, header of first is Gs1SchemeTables.FIRST_HEADER
+    static TDTScheme[] schemes()
+    {
+        return new TDTScheme[] { new SGTIN96Scheme(), new SSCC96Scheme(), new SGLN96Scheme(), new GRAI96Scheme(), new GIAI96Scheme() };
+    }
+
+    /**
+     * Row per scheme and partition: company bits, company digits, reference bits, reference digits,
+     * reference zero padded (0/1), serial bits (0 if none or reserved)
+     */
+    static byte[] buildTable() throws Exception
+    {
+        TDTScheme[] schemes = schemes();
+        byte[] table = new byte[schemes.length * Gs1SchemeTables.PARTITIONS * Gs1SchemeTables.ROW];
+        int p = 0;
+        for (int s = 0; s < schemes.length; s++) {
+            TDTScheme scheme = schemes[s];
+            if ((scheme.getHeader() & 0xFF) != Gs1SchemeTables.FIRST_HEADER + s || scheme.getTotalBits() != 96)
+                throw new IllegalStateException("Unexpected scheme " + scheme.getName());
+            List<TDTPartitionEntry> partitions = scheme.getPartitionTable();
+            if (partitions.size() != Gs1SchemeTables.PARTITIONS)
+                throw new IllegalStateException("Unexpected partition count in " + scheme.getName());
+            for (TDTPartitionEntry entry : partitions) {
+                table[p++] = (byte) entry.segBits[0];
+                table[p++] = (byte) entry.segDigits[0];
+                table[p++] = (byte) entry.segBits[1];
+                table[p++] = (byte) entry.segDigits[1];
+                table[p++] = (byte) (scheme.getSegmentPad(1) ? 1 : 0);
+                table[p++] = (byte) (scheme.getSegmentReserved(2) ? 0 : entry.segBits[2]);
+            }
+        }
+        return table;
+    }
+
+    static String[] names()
+    {
+        TDTScheme[] schemes = schemes();
+        String[] names = new String[schemes.length];
+        for (int s = 0; s < schemes.length; s++) {
+            try {
+                //"sgtin-96" -> "sgtin", as in pure identity URI
+                String name = schemes[s].getName();
+                names[s] = name.substring(0, name.indexOf('-'));
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        return names;
+    }
+
+    static String source() throws Exception
+    {
+        byte[] table = buildTable();
+        String[] names = names();
+        StringBuilder sb = new StringBuilder();
+        sb.append("package example.nordicid.com.inventorycore;\n\n");
+        sb.append("/**\n");
+        sb.append(" * GS1 96 bit scheme tables for Gs1EpcDecoder.\n");
+        sb.append(" * Generated by Gs1SchemeTableGenerator from TDTLib scheme definitions, do not edit.\n");
+        sb.append(" */\n");
+        sb.append("final class Gs1SchemeTables {\n\n");
+        sb.append("    static final int FIRST_HEADER = 0x").append(Integer.toHexString(Gs1SchemeTables.FIRST_HEADER).toUpperCase()).append(";\n");
+        sb.append("    static final int PARTITIONS = ").append(Gs1SchemeTables.PARTITIONS).append(";\n");
+        sb.append("    static final int ROW = ").append(Gs1SchemeTables.ROW).append(";\n\n");
+        sb.append("    //Pure identity URI scheme names by header - FIRST_HEADER\n");
+        sb.append("    static final String[] NAMES = {");
+        for (int s = 0; s < names.length; s++)
+            sb.append(s == 0 ? " \"" : ", \"").append(names[s]).append('"');
+        sb.append(" };\n\n");
+        sb.append("    //Row per scheme and partition: company bits, company digits, reference bits, reference digits,\n");
+        sb.append("    //reference zero padded, serial bits\n");
+        sb.append("    static final byte[] TABLE = {\n");
+        for (int s = 0; s < names.length; s++) {
+            sb.append("            //").append(names[s]).append("-96\n");
+            for (int part = 0; part < Gs1SchemeTables.PARTITIONS; part++) {
+                sb.append("           ");
+                int row = (s * Gs1SchemeTables.PARTITIONS + part) * Gs1SchemeTables.ROW;
+                for (int x = 0; x < Gs1SchemeTables.ROW; x++)
+                    sb.append(' ').append(table[row + x]).append(',');
+                sb.append('\n');
+            }
+        }
+        sb.append("    };\n\n");
+        sb.append("    private Gs1SchemeTables() { }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        Writer out = new OutputStreamWriter(new FileOutputStream(args[0]), "UTF-8");
+        try {
+            out.write(source());
+        } finally {
+            out.close();
+        }
+        System.out.println("Wrote " + args[0]);
+    }
+}
@@ -0,0 +1,292 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurEventIOChange;
+import com.nordicid.nurapi.NurEventInventory;
+import com.nordicid.nurapi.NurInventoryExtended;
+import com.nordicid.nurapi.NurInventoryExtendedFilter;
+import com.nordicid.nurapi.NurRespInventory;
+import com.nordicid.nurapi.NurSetup;
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InventoryControllerTest {
+
+    /**
+     * Reader without transport. Stream state and setup kept in memory, tags added to storage by test.
+     */
+    static class FakeReader extends NurApi {
+        boolean stream;
+        boolean extendedStream;
+        int streamStarts;
+        NurSetup setup = new NurSetup();
+        int txLevel = NurApi.TXLEVEL_27;
+        //Tags seen by each inventory() call of single tag scan
+        List<byte[][]> rounds = new ArrayList<byte[][]>();
+        int round;
+        byte[][] lastRound = new byte[0][];
+
+        FakeReader() {
+            setup.inventorySession = NurApi.SESSION_S0;
+            setup.inventoryTarget = NurApi.INVTARGET_A;
+        }
+
+        void addTags(int count, String prefix) throws Exception {
+            NurTagStorage storage = getStorage();
+            int first = storage.size();
+            for (int x = 0; x < count; x++) {
+                byte[] epc = NurApi.hexStringToByteArray(prefix + String.format("%016X", first + x));
+                storage.addTag(new NurTag(100, -50, 80, 866300, 0x3000, 0, 0, epc, null));
+            }
+        }
+
+        @Override
+        public void clearIdBuffer() { getStorage().clear(); }
+        @Override
+        public void startInventoryStream() { stream = true; streamStarts++; }
+        @Override
+        public void stopInventoryStream() { stream = false; }
+        @Override
+        public boolean isInventoryStreamRunning() { return stream; }
+        @Override
+        public void startInventoryExtendedStream(NurInventoryExtended inv, NurInventoryExtendedFilter[] filters) {
+            assertEquals(NurApi.INVSELSTATE_SL, inv.inventorySelState);
+            extendedStream = true;
+            streamStarts++;
+        }
+        @Override
+        public void stopInventoryExtendedStream() { extendedStream = false; }
+        @Override
+        public boolean isInventoryExtendedStreamRunning() { return extendedStream; }
+        @Override
+        public int getSetupInventoryQ() { return 0; }
+        @Override
+        public int getSetupInventorySession() { return setup.inventorySession; }
+        @Override
+        public int getSetupInventoryRounds() { return 0; }
+        @Override
+        public int getSetupInventoryTarget() { return setup.inventoryTarget; }
+        @Override
+        public NurSetup getModuleSetup(int flags) {
+            NurSetup copy = new NurSetup();
+            copy.inventorySession = setup.inventorySession;
+            copy.inventoryTarget = setup.inventoryTarget;
+            return copy;
+        }
+        @Override
+        public NurSetup setModuleSetup(NurSetup s, int flags) {
+            setup = s;
+            return s;
+        }
+        @Override
+        public int getSetupTxLevel() { return txLevel; }
+        @Override
+        public void setSetupTxLevel(int level) { txLevel = level; }
+        @Override
+        public NurRespInventory inventory(int rounds, int q, int session) throws Exception {
+            lastRound = round < this.rounds.size() ? this.rounds.get(round++) : new byte[0][];
+            NurRespInventory resp = new NurRespInventory();
+            resp.numTagsFound = lastRound.length;
+            return resp;
+        }
+        @Override
+        public NurTag fetchTagAt(boolean includeMeta, int idx) {
+            return new NurTag(100, -50, 80, 866300, 0x3000, 0, 0, lastRound[idx], null);
+        }
+    }
+
+    static class CountingListener implements InventoryController.Listener {
+        int tags;
+        int accepted;
+        int filtered;
+        int rounds;
+
+        @Override
+        public void onTag(NurTag tag, long nowMs) { tags++; }
+
+        @Override
+        public void onRound(int accepted, int filtered) {
+            this.accepted += accepted;
+            this.filtered += filtered;
+            rounds++;
+        }
+    }
+
+    static NurEventInventory added(int tags) {
+        NurEventInventory event = new NurEventInventory();
+        event.tagsAdded = tags;
+        return event;
+    }
+
+    static NurEventInventory stopped() {
+        NurEventInventory event = new NurEventInventory();
+        event.stopped = true;
+        return event;
+    }
+
+    @Test
+    public void stream_restartedUntilStopped() throws Exception {
+        FakeReader reader = new FakeReader();
+        CountingListener listener = new CountingListener();
+        InventoryController controller = new InventoryController(reader, listener);
+
+        controller.start();
+        assertTrue(reader.stream);
+        reader.addTags(5, "30740000");
+        assertEquals(5, controller.handleInventoryEvent(added(5)));
+        assertEquals(5, listener.tags);
+
+        //Stream stops by itself, started again while running
+        reader.stream = false;
+        controller.handleInventoryEvent(stopped());
+        assertTrue(reader.stream);
+        assertEquals(2, reader.streamStarts);
+
+        //Paused stream is not restarted on stop event, resume keeps tags
+        controller.pause();
+        assertFalse(reader.stream);
+        controller.handleInventoryEvent(stopped());
+        assertFalse(reader.stream);
+        controller.resume();
+        assertTrue(reader.stream);
+        assertEquals(5, reader.getStorage().size());
+
+        controller.stop();
+        assertFalse(reader.stream);
+        controller.handleInventoryEvent(stopped());
+        assertFalse(reader.stream);
+        assertEquals(5, controller.getTagsAdded());
+    }
+
+    @Test
+    public void filter_dropsTagsFromStorage() throws Exception {
+        FakeReader reader = new FakeReader();
+        CountingListener listener = new CountingListener();
+        InventoryController controller = new InventoryController(reader, listener);
+        controller.setFilter(EpcFilter.parse("30740000"));
+
+        controller.start();
+        //Reader side select used for prefix filter
+        assertTrue(reader.extendedStream);
+        reader.addTags(3, "30740000");
+        reader.addTags(2, "E2800000");
+        assertEquals(3, controller.handleInventoryEvent(added(5)));
+        assertEquals(3, reader.getStorage().size());
+        assertEquals(3, listener.accepted);
+        assertEquals(2, listener.filtered);
+        assertEquals(2, controller.getTagsFiltered());
+
+        //Rejected tags removed from storage come again as new, counted once
+        reader.addTags(2, "E2800000");
+        assertEquals(0, controller.handleInventoryEvent(added(2)));
+        assertEquals(3, reader.getStorage().size());
+        assertEquals(2, listener.filtered);
+        assertEquals(2, controller.getTagsFiltered());
+    }
+
+    @Test
+    public void trigger_startsAndStops_strategySetupRestored() throws Exception {
+        FakeReader reader = new FakeReader();
+        InventoryController controller = new InventoryController(reader, new CountingListener());
+        InventoryStrategy s2 = new InventoryStrategy("S2 flip", NurApi.SESSION_S2, NurApi.INVTARGET_A, 2);
+        controller.setStrategy(s2);
+
+        NurEventIOChange io = new NurEventIOChange();
+        io.source = InventoryController.IO_UNPAIR;
+        io.direction = 1;
+        assertFalse(controller.handleIOEvent(io));
+        assertFalse(controller.isRunning());
+
+        io.source = InventoryController.IO_TRIGGER;
+        assertTrue(controller.handleIOEvent(io));
+        assertTrue(controller.isRunning());
+        assertEquals(NurApi.SESSION_S2, reader.setup.inventorySession);
+
+        //Two idle rounds flip target, stream restarted
+        reader.addTags(1, "30740000");
+        controller.handleInventoryEvent(added(1));
+        controller.handleInventoryEvent(added(0));
+        controller.handleInventoryEvent(added(0));
+        assertEquals(NurApi.INVTARGET_B, reader.setup.inventoryTarget);
+        assertTrue(reader.stream);
+
+        io.direction = 0;
+        controller.handleIOEvent(io);
+        assertFalse(controller.isRunning());
+        assertEquals(NurApi.SESSION_S0, reader.setup.inventorySession);
+        assertEquals(NurApi.INVTARGET_A, reader.setup.inventoryTarget);
+        assertTrue(controller.strategyText().startsWith("S2 flip"));
+    }
+
+    /**
+     * Stream event handling on JVM without reader: 100 000 new tags in events of 100 through GCP filter.
+     * Fixed gateway readers report a few thousand tags/s, handling must stay well above that.
+     */
+    @Test
+    public void throughput_aboveGatewayRate() throws Exception {
+        FakeReader reader = new FakeReader();
+        CountingListener listener = new CountingListener();
+        InventoryController controller = new InventoryController(reader, listener);
+        controller.setFilter(EpcFilter.parse("3074257B&FFFFFFFF"));
+        controller.start();
+
+        long nanos = 0;
+        for (int x = 0; x < 1000; x++) {
+            reader.addTags(100, "3074257B");
+            long start = System.nanoTime();
+            controller.handleInventoryEvent(added(100));
+            nanos += System.nanoTime() - start;
+        }
+        double tagsPerSec = 100000 * 1e9 / nanos;
+        System.out.println(String.format("InventoryController: %.0f tags/s", tagsPerSec));
+        assertEquals(100000, controller.getTagsAdded());
+        assertTrue(tagsPerSec > 50000);
+    }
+
+    @Test
+    public void singleTag_sameTagThreeRoundsInRow() throws Exception {
+        FakeReader reader = new FakeReader();
+        byte[] a = NurApi.hexStringToByteArray("3074257BF7194E4000001A85");
+        byte[] b = NurApi.hexStringToByteArray("E2801160600002054CC2096F");
+        reader.rounds.add(new byte[][] { a });
+        reader.rounds.add(new byte[][] { a, b });
+        reader.rounds.add(new byte[][] { a });
+        reader.rounds.add(new byte[][] { b });
+        reader.rounds.add(new byte[][] { a });
+        reader.rounds.add(new byte[][] { a });
+        reader.rounds.add(new byte[][] { a });
+
+        final int[] lastHits = new int[1];
+        SingleTagScanner scanner = new SingleTagScanner(reader);
+        SingleTagScanner.Result result = scanner.scan(NurApi.TXLEVEL_8, 5000, new SingleTagScanner.Listener() {
+            @Override
+            public void onRound(int round, int hits, int tagsSeen) {
+                lastHits[0] = hits;
+            }
+        });
+        assertTrue(result.isFound());
+        assertEquals(7, result.rounds);
+        assertEquals(SingleTagScanner.REQUIRED_HITS, lastHits[0]);
+        assertArrayEquals(a, result.tag.getEpc());
+        assertEquals("urn:epc:id:sgtin:0614141.812345.6789", result.pureIdentityUri);
+        //TX level restored
+        assertEquals(NurApi.TXLEVEL_27, reader.txLevel);
+    }
+
+    @Test
+    public void singleTag_timesOut() throws Exception {
+        FakeReader reader = new FakeReader();
+        SingleTagScanner.Result result = new SingleTagScanner(reader).scan(NurApi.TXLEVEL_8, 20, null);
+        assertFalse(result.isFound());
+        assertFalse(result.cancelled);
+        assertTrue(result.rounds > 0);
+        assertNull(SingleTagScanner.pureIdentityUri("E2801160600002054CC2096F"));
+    }
+}
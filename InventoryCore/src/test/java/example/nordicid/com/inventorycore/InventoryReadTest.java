@@ -0,0 +1,167 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurRespInventory;
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InventoryReadTest {
+
+    /**
+     * Reader with fixed tag population. Each command takes simulated air time.
+     */
+    static class MemoryReader extends InventoryControllerTest.FakeReader {
+        static final int TAGS = 20;
+        boolean irOn;
+        int irBank = -1;
+        int irWords;
+        int inventories;
+        int reads;
+
+        static void airTime(long ms) {
+            try {
+                Thread.sleep(ms);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void setIRConfig(int type, int bank, int addr, int words) {
+            assertEquals(NurApi.IRTYPE_EPCDATA, type);
+            irBank = bank;
+            irWords = words;
+        }
+
+        @Override
+        public void setIRState(boolean on) { irOn = on; }
+
+        @Override
+        public NurRespInventory inventory(int rounds, int q, int session) {
+            inventories++;
+            airTime(irOn ? 3 : 2);
+            NurRespInventory resp = new NurRespInventory();
+            resp.numTagsFound = TAGS;
+            return resp;
+        }
+
+        @Override
+        public void fetchTags(boolean includeMeta) throws Exception {
+            for (int x = 0; x < TAGS; x++) {
+                byte[] epc = NurApi.hexStringToByteArray(String.format("3074257B%016X", x));
+                byte[] tid = irOn ? NurApi.hexStringToByteArray(String.format("E2801160%016X", x)) : null;
+                getStorage().addTag(new NurTag(100, -50, 80, 866300, 0x3000, 0, 0, epc, tid));
+            }
+        }
+
+        @Override
+        public byte[] readTagByEpc(byte[] epc, int epcLen, int bank, int addr, int bytes) throws Exception {
+            assertEquals(irBank, bank);
+            assertEquals(irWords * 2, bytes);
+            reads++;
+            airTime(1);
+            return new byte[bytes];
+        }
+    }
+
+    @Test
+    public void parse() {
+        assertNull(InventoryRead.parse(" "));
+        assertSame(InventoryRead.TID, InventoryRead.parse("TID"));
+        InventoryRead user = InventoryRead.parse("user:4:8");
+        assertEquals(NurApi.BANK_USER, user.bank);
+        assertEquals(4, user.wordAddress);
+        assertEquals(8, user.wordCount);
+        assertEquals("user:4:8", user.toString());
+        for (String bad : new String[] { "epc", "user:1", "tid:a:2", "user:0:0", "user:0:33" }) {
+            try {
+                InventoryRead.parse(bad);
+                fail(bad);
+            } catch (IllegalArgumentException ex) {
+                //Expected
+            }
+        }
+    }
+
+    @Test
+    public void controller_readOnWhileRunning() throws Exception {
+        MemoryReader reader = new MemoryReader();
+        InventoryController controller = new InventoryController(reader, new InventoryControllerTest.CountingListener());
+        controller.start();
+        assertFalse(reader.irOn);
+        controller.stop();
+
+        controller.setInventoryRead(InventoryRead.TID);
+        controller.start();
+        assertTrue(reader.irOn);
+        assertEquals(NurApi.BANK_TID, reader.irBank);
+        assertEquals(InventoryRead.TID_WORDS, reader.irWords);
+        controller.stop();
+        assertFalse(reader.irOn);
+    }
+
+    /**
+     * Keeps TID of each reported tag
+     */
+    static class TidListener extends InventoryControllerTest.CountingListener {
+        final List<String> tids = new ArrayList<String>();
+
+        @Override
+        public void onTag(NurTag tag, long nowMs) {
+            super.onTag(tag, nowMs);
+            tids.add(tag.getEpcString() + "/" + NurApi.byteArrayToHexString(tag.getIrData()));
+        }
+    }
+
+    @Test
+    public void controller_clonedEpcTidsBothReported() throws Exception {
+        MemoryReader reader = new MemoryReader();
+        TidListener listener = new TidListener();
+        InventoryController controller = new InventoryController(reader, listener);
+        controller.setInventoryRead(InventoryRead.TID);
+        controller.start();
+
+        byte[] epc = NurApi.hexStringToByteArray("3074257BF7194E4000001A85");
+        byte[] tidA = NurApi.hexStringToByteArray("E2801160200060000000000A");
+        byte[] tidB = NurApi.hexStringToByteArray("E2801160200060000000000B");
+        NurTagStorage storage = reader.getStorage();
+        //Round 1: both chips answer, storage merges them into one entry
+        storage.addTag(new NurTag(100, -50, 80, 866300, 0x3000, 0, 0, epc, tidA));
+        storage.addTag(new NurTag(100, -52, 80, 866300, 0x3000, 0, 0, epc, tidB));
+        assertEquals(1, controller.handleInventoryEvent(InventoryControllerTest.added(1)));
+        //Round 2: chip B comes as new tag with own TID, chip A again is not reported
+        storage.addTag(new NurTag(100, -52, 80, 866300, 0x3000, 0, 0, epc, tidB));
+        assertEquals(1, controller.handleInventoryEvent(InventoryControllerTest.added(1)));
+        storage.addTag(new NurTag(100, -50, 80, 866300, 0x3000, 0, 0, epc, tidA));
+        assertEquals(0, controller.handleInventoryEvent(InventoryControllerTest.added(1)));
+
+        assertEquals(2, listener.tags);
+        assertEquals("3074257BF7194E4000001A85/E2801160200060000000000A", listener.tids.get(0));
+        assertEquals("3074257BF7194E4000001A85/E2801160200060000000000B", listener.tids.get(1));
+        assertEquals(2, controller.getTagsAdded());
+        //Tags kept for export after NurApi storage entries removed
+        controller.stop();
+        assertEquals(0, storage.size());
+        assertEquals(1, controller.getTagStorage().size());
+    }
+
+    @Test
+    public void compare_inventoryReadFaster() throws Exception {
+        MemoryReader reader = new MemoryReader();
+        InventoryRead.Comparison result = InventoryRead.TID.compare(reader, 5);
+        System.out.println("TID read " + result);
+        assertFalse(reader.irOn);
+        assertEquals(MemoryReader.TAGS, result.tags);
+        assertEquals(10, reader.inventories);
+        assertEquals(5 * MemoryReader.TAGS, reader.reads);
+        assertEquals(0, result.followUpFailed);
+        assertTrue(result.toString(), result.inventoryReadTagsPerSec > result.followUpTagsPerSec);
+    }
+}
@@ -0,0 +1,75 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InventoryStrategyTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void run_countsCoverageAndRate() throws Exception {
+        InventoryStrategy.Run run = new InventoryStrategy.Run(InventoryStrategy.PRESETS[2], NurApi.INVTARGET_A, 0);
+        //100 tags: 90 in first 100 ms, then 1 per 100 ms
+        run.onRound(90, 100 * MS);
+        for (int x = 1; x <= 10; x++)
+            run.onRound(1, (100 + x * 100) * MS);
+
+        assertEquals(100, run.getUniqueTags());
+        assertEquals(11, run.getRounds());
+        assertEquals(100 / 1.1, run.getTagsPerSec(), 0.001);
+        //95th tag found 5 rounds after first
+        assertEquals(600.0, run.getCoverageMs(0.95), 0.001);
+        assertEquals(100.0, run.getCoverageMs(0.5), 0.001);
+        assertEquals(1100.0, run.getCoverageMs(1.0), 0.001);
+        assertTrue(run.summary().startsWith("S1 A: 100 tags, 90.9 tags/s, 95% in 0.6 s"));
+    }
+
+    @Test
+    public void run_flipsTargetWhenIdle() throws Exception {
+        InventoryStrategy flip = new InventoryStrategy("flip", NurApi.SESSION_S2, NurApi.INVTARGET_A, 3);
+        InventoryStrategy.Run run = new InventoryStrategy.Run(flip, NurApi.INVTARGET_A, 0);
+        run.onRound(10, MS);
+        assertFalse(run.onRound(0, 2 * MS));
+        assertFalse(run.onRound(0, 3 * MS));
+        assertTrue(run.onRound(0, 4 * MS));
+        assertEquals(NurApi.INVTARGET_B, run.getTarget());
+        //New tag resets idle count
+        assertFalse(run.onRound(0, 5 * MS));
+        assertFalse(run.onRound(1, 6 * MS));
+        assertFalse(run.onRound(0, 7 * MS));
+        assertFalse(run.onRound(0, 8 * MS));
+        assertTrue(run.onRound(0, 9 * MS));
+        assertEquals(NurApi.INVTARGET_A, run.getTarget());
+        assertEquals(2, run.getFlips());
+
+        //No flipping without flip rounds or when target kept
+        InventoryStrategy.Run s0 = new InventoryStrategy.Run(InventoryStrategy.PRESETS[1], NurApi.INVTARGET_A, 0);
+        InventoryStrategy.Run keep = new InventoryStrategy.Run(InventoryStrategy.PRESETS[0], InventoryStrategy.KEEP, 0);
+        for (int x = 0; x < 100; x++) {
+            assertFalse(s0.onRound(0, x * MS));
+            assertFalse(keep.onRound(0, x * MS));
+        }
+    }
+
+    @Test
+    public void setupFlags_onlyChangedFields() throws Exception {
+        assertEquals(0, InventoryStrategy.PRESETS[0].setupFlags());
+        InventoryStrategy dual = InventoryStrategy.PRESETS[InventoryStrategy.PRESETS.length - 1];
+        assertEquals(NurApi.SETUP_INVSESSION | NurApi.SETUP_INVTARGET, dual.setupFlags());
+        assertEquals(NurApi.INVTARGET_AB, dual.setup(dual.target).inventoryTarget);
+        assertEquals(NurApi.SESSION_S2, dual.setup(dual.target).inventorySession);
+        assertEquals(InventoryStrategy.PRESETS.length, InventoryStrategy.presetNames().length);
+    }
+
+    @Test
+    public void run_manyTagsGrowsStorage() throws Exception {
+        InventoryStrategy.Run run = new InventoryStrategy.Run(InventoryStrategy.PRESETS[4], NurApi.INVTARGET_A, 0);
+        for (int x = 1; x <= 1000; x++)
+            run.onRound(7, x * MS);
+        assertEquals(7000, run.getUniqueTags());
+        assertEquals(950.0, run.getCoverageMs(0.95), 0.001);
+    }
+}
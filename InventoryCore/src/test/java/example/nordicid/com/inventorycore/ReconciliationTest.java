@@ -0,0 +1,116 @@
+package example.nordicid.com.inventorycore;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class ReconciliationTest {
+
+    static byte[] epc(int serial) {
+        byte[] epc = { 0x30, 0x74, 0x25, 0x7B, (byte) 0xF7, 0x19, 0x4E, 0x40, 0, 0, 0, 0 };
+        epc[8] = (byte) (serial >> 24);
+        epc[9] = (byte) (serial >> 16);
+        epc[10] = (byte) (serial >> 8);
+        epc[11] = (byte) serial;
+        return epc;
+    }
+
+    static String manifest(int count) {
+        StringBuilder sb = new StringBuilder(count * 26);
+        for (int x = 0; x < count; x++)
+            sb.append(EpcCodec.toHexString(epc(x))).append('\n');
+        return sb.toString();
+    }
+
+    @Test
+    public void epcSet_growsAndFindsAll() throws Exception {
+        EpcSet set = new EpcSet(1);
+        for (int x = 0; x < 5000; x++)
+            assertEquals(x, set.add(epc(x)));
+        //Different length is different EPC
+        assertEquals(5000, set.add(new byte[] { 0x30, 0x74 }));
+        assertEquals(3, set.add(epc(3)));
+        assertEquals(5001, set.size());
+        for (int x = 0; x < 5000; x++)
+            assertEquals(x, set.indexOf(epc(x)));
+        assertEquals(-1, set.indexOf(epc(5000)));
+        assertArrayEquals(epc(4321), set.get(4321));
+
+        set.clear();
+        assertEquals(0, set.size());
+        assertEquals(-1, set.indexOf(epc(1)));
+    }
+
+    @Test
+    public void load_csvWithHeaderAndQuotes() throws Exception {
+        String csv = "epc,sku,location\n" +
+                "# shelf 12\n" +
+                "\"3074257BF7194E4000000001\",812345,A1\n" +
+                "3074257bf7194e4000000002;812345\n" +
+                "\n" +
+                "  3074257BF7194E4000000003\t812345\n" +
+                "3074257BF7194E4000000003\n";
+        Reconciliation r = Reconciliation.load("shelf12.csv", new StringReader(csv));
+        assertEquals(3, r.getExpectedCount());
+
+        assertEquals(Reconciliation.RESULT_FOUND, r.mark(epc(1)));
+        assertEquals(Reconciliation.RESULT_ALREADY_FOUND, r.mark(epc(1)));
+        assertEquals(Reconciliation.RESULT_UNEXPECTED, r.mark(epc(9)));
+        assertEquals(Reconciliation.RESULT_ALREADY_UNEXPECTED, r.mark(epc(9)));
+        assertEquals(Reconciliation.RESULT_FOUND, r.mark(epc(3)));
+
+        assertEquals(2, r.getFoundCount());
+        assertEquals(1, r.getMissingCount());
+        assertEquals(1, r.getUnexpectedCount());
+        assertTrue(r.isFound(epc(3)));
+        assertFalse(r.isFound(epc(2)));
+        assertEquals("3074257BF7194E4000000002", r.getMissing(10).get(0));
+        assertEquals("3074257BF7194E4000000009", r.getUnexpected(10).get(0));
+        assertEquals("shelf12.csv: found 2/3 (66.7%), missing 1, unexpected 1", r.summary());
+
+        r.reset();
+        assertEquals(0, r.getFoundCount());
+        assertEquals(3, r.getMissingCount());
+        assertEquals(0, r.getUnexpectedCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void load_rejectsNonManifest() throws Exception {
+        Reconciliation.load("x", new StringReader("name,price\nfoo,1\nbar,2\n"));
+    }
+
+    /**
+     * 100k item manifest: load time and cost of read against it. Reads are half found, half unexpected.
+     */
+    @Test
+    public void benchmark_100kManifest() throws Exception {
+        String text = manifest(100000);
+        long start = System.nanoTime();
+        Reconciliation r = Reconciliation.load("bench", new StringReader(text));
+        long loadMs = (System.nanoTime() - start) / 1000000;
+        assertEquals(100000, r.getExpectedCount());
+
+        byte[][] reads = new byte[200000][];
+        for (int x = 0; x < reads.length; x++)
+            reads[x] = epc(x * 7 % 200000);
+        //Warm up, then measure on fresh count
+        for (int pass = 0; pass < 5; pass++) {
+            for (byte[] epc : reads)
+                r.mark(epc);
+            r.reset();
+        }
+        start = System.nanoTime();
+        for (byte[] epc : reads)
+            r.mark(epc);
+        double nsPerRead = (System.nanoTime() - start) / (double) reads.length;
+
+        System.out.println(String.format("Reconciliation: 100k manifest loaded in %d ms, %.0f ns/read", loadMs, nsPerRead));
+        assertEquals(100000, r.getFoundCount());
+        assertEquals(100000, r.getUnexpectedCount());
+        assertTrue("load " + loadMs + " ms", loadMs < 2000);
+        assertTrue(nsPerRead + " ns/read", nsPerRead < 5000);
+    }
+}
@@ -0,0 +1,276 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+import com.nordicid.nurapi.NurRespInventory;
+import com.nordicid.nurapi.NurTag;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SensorReadModeTest {
+
+    /**
+     * Sensor tag population. Value of tag x in sweep n is x % 500 + n (9 bits), every 50th tag returns no sensor data.
+     */
+    static class SensorReader extends InventoryControllerTest.FakeReader {
+        final int tags;
+        boolean irOn;
+        int irBank = -1;
+        int irAddr;
+        int sweeps;
+
+        SensorReader(int tags) { this.tags = tags; }
+
+        static int value(int tag, int sweep) { return tag % 500 + sweep; }
+
+        @Override
+        public void setIRConfig(int type, int bank, int addr, int words) {
+            irBank = bank;
+            irAddr = addr;
+        }
+
+        @Override
+        public void setIRState(boolean on) { irOn = on; }
+
+        @Override
+        public NurRespInventory inventory(int rounds, int q, int session) throws Exception {
+            assertEquals(0, session);
+            sweeps++;
+            NurRespInventory resp = new NurRespInventory();
+            resp.numTagsFound = tags;
+            return resp;
+        }
+
+        @Override
+        public void fetchTags(boolean includeMeta) throws Exception {
+            for (int x = 0; x < tags; x++) {
+                byte[] epc = NurApi.hexStringToByteArray(String.format("E2C06F92%016X", x));
+                byte[] data = null;
+                if (irOn && x % 50 != 49) {
+                    int v = value(x, sweeps) | 0xFE00; //Bits outside mask set, must be ignored
+                    data = new byte[] { (byte)(v >> 8), (byte)v };
+                }
+                getStorage().addTag(new NurTag(100, -50, 80, 866300, 0x3000, 0, 0, epc, data));
+            }
+        }
+    }
+
+    static class SensorLog implements SensorReadMode.Listener {
+        final List<SensorReadMode.Sweep> sweeps = new ArrayList<SensorReadMode.Sweep>();
+        int windows;
+        int windowSamples;
+
+        @Override
+        public void onSweep(SensorReadMode.Sweep sweep) { sweeps.add(sweep); }
+        @Override
+        public void onWindow(int tagIndex, SensorSeries.Window window) {
+            windows++;
+            windowSamples += window.count;
+        }
+        @Override
+        public void onError(Exception ex) { fail(ex.toString()); }
+    }
+
+    @Test
+    public void series_roundTripAndWindows() {
+        Random random = new Random(7);
+        int[] raws = new int[2000];
+        SensorSeries series = new SensorSeries(60000, raws.length);
+        long t = 1700000000000L;
+        long[] times = new long[raws.length];
+        List<SensorSeries.Window> windows = new ArrayList<SensorSeries.Window>();
+        for (int x = 0; x < raws.length; x++) {
+            //Regular 5 s sweeps with some jitter, slowly drifting value
+            t += 5000 + (x % 10 == 0 ? random.nextInt(40) : 0);
+            times[x] = t;
+            raws[x] = 2000 + (int)(300 * Math.sin(x / 50.0)) + random.nextInt(3);
+            SensorSeries.Window w = series.add(t, raws[x]);
+            if (w != null)
+                windows.add(w);
+        }
+        windows.add(series.flushWindow());
+        assertNull(series.flushWindow());
+        assertEquals(raws.length, series.size());
+        assertTrue("bytes " + series.bytes(), series.bytes() <= raws.length * 3);
+
+        SensorSeries.Cursor cursor = series.cursor();
+        for (int x = 0; x < raws.length; x++) {
+            assertTrue(cursor.next());
+            assertEquals(times[x], cursor.time());
+            assertEquals(raws[x], cursor.raw());
+        }
+        assertFalse(cursor.next());
+
+        //Incremental windows equal to computing each window from samples
+        int sample = 0;
+        for (SensorSeries.Window w : windows) {
+            assertEquals(0, w.startMs % 60000);
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            long sum = 0;
+            for (int x = 0; x < w.count; x++, sample++) {
+                assertTrue(times[sample] >= w.startMs && times[sample] < w.startMs + 60000);
+                min = Math.min(min, raws[sample]);
+                max = Math.max(max, raws[sample]);
+                sum += raws[sample];
+            }
+            assertEquals(min, w.min);
+            assertEquals(max, w.max);
+            assertEquals((double)sum / w.count, w.mean(), 1e-9);
+        }
+        assertEquals(raws.length, sample);
+
+        //Negative and large jumps
+        SensorSeries jumps = new SensorSeries(1000);
+        int[] values = { -32768, 32767, 0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE + 1 };
+        for (int x = 0; x < values.length; x++)
+            jumps.add(x * 100000L, values[x]);
+        cursor = jumps.cursor();
+        for (int value : values) {
+            assertTrue(cursor.next());
+            assertEquals(value, cursor.raw());
+        }
+    }
+
+    @Test
+    public void series_capDropsOldest() {
+        SensorSeries series = new SensorSeries(1000, 100);
+        int windows = 0;
+        int windowSamples = 0;
+        for (int x = 0; x < 1000; x++) {
+            SensorSeries.Window w = series.add(5000L * x + (x % 3), 1000 + x % 17 - x / 10);
+            if (w != null) {
+                windows++;
+                windowSamples += w.count;
+            }
+        }
+        assertTrue(series.size() <= 100);
+        assertEquals(1000, series.size() + series.getDropped());
+        assertTrue("bytes " + series.bytes(), series.bytes() <= 100 * 4);
+        //Windows cover dropped samples too
+        assertEquals(999, windows);
+        assertEquals(999, windowSamples);
+
+        //Newest samples kept, decoded from re-encoded start
+        SensorSeries.Cursor cursor = series.cursor();
+        for (int x = 1000 - series.size(); x < 1000; x++) {
+            assertTrue(cursor.next());
+            assertEquals(5000L * x + (x % 3), cursor.time());
+            assertEquals(1000 + x % 17 - x / 10, cursor.raw());
+        }
+        assertFalse(cursor.next());
+        assertEquals(5000L * 999, series.getLastTime());
+    }
+
+    @Test
+    public void sensorRead_decode() {
+        byte[] data = { 0x12, (byte)0xF5 };
+        assertEquals(0xF5, SensorRead.MAGNUS_MOISTURE.decode(data));
+        assertEquals(0x15, SensorRead.MAGNUS_S2_MOISTURE.decode(data));
+        assertEquals(0x1FF, SensorRead.MAGNUS_MOISTURE.decode(new byte[] { (byte)0xFF, (byte)0xFF }));
+        assertSame(SensorRead.MAGNUS_S2_MOISTURE, SensorRead.parse("magnus-s2"));
+        assertEquals(SensorRead.NO_VALUE, SensorRead.MAGNUS_MOISTURE.decode(null));
+        assertEquals(SensorRead.NO_VALUE, SensorRead.MAGNUS_MOISTURE.decode(new byte[1]));
+        assertEquals(NurApi.BANK_PASSWD, SensorRead.MAGNUS_MOISTURE.read.bank);
+        assertSame(SensorRead.MAGNUS_RSSI, SensorRead.parse("Magnus-RSSI"));
+
+        SensorRead temp = SensorRead.parse("user:4:0.01:-40");
+        assertEquals(NurApi.BANK_USER, temp.read.bank);
+        assertEquals(4, temp.read.wordAddress);
+        int raw = temp.decode(new byte[] { (byte)0xFF, (byte)0x9C });
+        assertEquals(-100, raw);
+        assertEquals(-41.0, temp.value(raw), 1e-9);
+        for (String bad : new String[] { "tid", "user:1", "user:a:1", "magnus:1" }) {
+            try {
+                SensorRead.parse(bad);
+                fail(bad);
+            } catch (IllegalArgumentException ex) {
+                //Expected
+            }
+        }
+    }
+
+    @Test
+    public void sweeps_thousandsOfTags() throws Exception {
+        SensorReader reader = new SensorReader(3000);
+        SensorLog log = new SensorLog();
+        SensorReadMode mode = new SensorReadMode(reader, SensorRead.MAGNUS_MOISTURE, log, 10, 20);
+        mode.enable();
+        assertTrue(reader.irOn);
+        assertEquals(NurApi.BANK_PASSWD, reader.irBank);
+        assertEquals(0xC, reader.irAddr);
+
+        int sweeps = 5;
+        long start = System.nanoTime();
+        SensorReadMode.Sweep last = null;
+        for (int n = 0; n < sweeps; n++) {
+            if (n > 0)
+                Thread.sleep(25);
+            last = mode.sweep();
+        }
+        long ms = (System.nanoTime() - start) / 1000000 - (sweeps - 1) * 25;
+        System.out.println(last + ", " + mode.summary() + ", store " + ms + " ms total");
+
+        int withValue = 3000 - 3000 / 50;
+        assertEquals(3000, last.tags);
+        assertEquals(3000 / 50, last.missing);
+        assertEquals(sweeps, last.min);
+        //Tag 499 has no sensor data
+        assertEquals(498 + sweeps, last.max);
+        assertEquals(sweeps, last.number);
+        assertEquals(withValue, mode.getTagCount());
+        assertEquals((long)withValue * sweeps, mode.getSamples());
+        assertTrue(mode.summary(), mode.bytesPerSample() < 4);
+        //Each sweep after first closed window of every tag
+        assertEquals(withValue * (sweeps - 1), log.windows);
+
+        byte[] epc = NurApi.hexStringToByteArray(String.format("E2C06F92%016X", 70));
+        SensorSeries series = mode.getSeries(mode.indexOf(epc));
+        SensorSeries.Cursor cursor = series.cursor();
+        for (int n = 1; n <= sweeps; n++) {
+            assertTrue(cursor.next());
+            assertEquals(SensorReader.value(70, n), cursor.raw());
+        }
+        assertEquals(-1, mode.indexOf(NurApi.hexStringToByteArray(String.format("E2C06F92%016X", 49))));
+    }
+
+    @Test
+    public void emptyField_emptySweepNotError() throws Exception {
+        SensorReader reader = new SensorReader(0) {
+            @Override
+            public NurRespInventory inventory(int rounds, int q, int session) throws Exception {
+                sweeps++;
+                throw new NurApiException("No tag", NurApiErrors.NO_TAG);
+            }
+        };
+        SensorLog log = new SensorLog();
+        SensorReadMode mode = new SensorReadMode(reader, SensorRead.MAGNUS_MOISTURE, log, 10, SensorReadMode.DEFAULT_WINDOW_MS);
+        mode.enable();
+        SensorReadMode.Sweep sweep = mode.sweep();
+        assertEquals(0, sweep.tags);
+        assertEquals(0, sweep.values());
+        assertEquals(1, sweep.number);
+    }
+
+    @Test
+    public void startStop_sweepsInThreadAndFlushes() throws Exception {
+        SensorReader reader = new SensorReader(100);
+        SensorLog log = new SensorLog();
+        SensorReadMode mode = new SensorReadMode(reader, SensorRead.MAGNUS_MOISTURE, log, 10, SensorReadMode.DEFAULT_WINDOW_MS);
+        mode.start();
+        Thread.sleep(100);
+        mode.stop();
+        assertFalse(mode.isRunning());
+        assertFalse(reader.irOn);
+        assertTrue(mode.getSweeps() >= 3);
+        assertEquals(mode.getSweeps(), log.sweeps.size());
+        //Open windows reported on stop, all samples in them
+        assertEquals(mode.getSamples(), log.windowSamples);
+    }
+}
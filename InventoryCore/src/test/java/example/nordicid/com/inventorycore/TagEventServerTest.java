@@ -0,0 +1,167 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.Assert.*;
+
+public class TagEventServerTest {
+
+    static class CountingListener implements TagEventServer.Listener {
+        volatile int connected;
+        volatile int slow;
+        volatile IOException failure;
+
+        @Override
+        public void onClientConnected(String address, int clients) { connected++; }
+
+        @Override
+        public void onClientDisconnected(String address, int clients, boolean slow) {
+            if (slow)
+                this.slow++;
+        }
+
+        @Override
+        public void onServerFailed(IOException ex) { failure = ex; }
+    }
+
+    static void waitFor(TagEventServer server, int clients) throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while (server.getClientCount() != clients && System.currentTimeMillis() < end)
+            Thread.sleep(5);
+        assertEquals(clients, server.getClientCount());
+    }
+
+    static Socket connect(TagEventServer server) throws Exception {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress("127.0.0.1", server.getPort()), 2000);
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    static TagEventServer.TagFrame readFrame(InputStream in, ByteBuffer buffer) throws Exception {
+        while (true) {
+            buffer.flip();
+            TagEventServer.TagFrame frame = TagEventServer.decode(buffer);
+            buffer.compact();
+            if (frame != null)
+                return frame;
+            int b = in.read();
+            assertTrue("closed", b >= 0);
+            buffer.put((byte) b);
+        }
+    }
+
+    @Test
+    public void frame_roundTrip() throws Exception {
+        byte[] epc = NurApi.hexStringToByteArray("3074257BF7194E4000001A85");
+        byte[] dst = new byte[TagEventServer.HEADER_SIZE + 255];
+        int len = TagEventServer.encode(dst, epc, -62, 3, 1500000000123L);
+        assertEquals(24, len);
+
+        //Partial frame is not decoded
+        ByteBuffer in = ByteBuffer.wrap(dst, 0, len - 1);
+        assertNull(TagEventServer.decode(in));
+        assertEquals(0, in.position());
+
+        TagEventServer.TagFrame frame = TagEventServer.decode(ByteBuffer.wrap(dst, 0, len));
+        assertArrayEquals(epc, frame.epc);
+        assertEquals(-62, frame.rssi);
+        assertEquals(3, frame.antennaId);
+        assertEquals(1500000000123L, frame.timeMs);
+    }
+
+    @Test
+    public void tags_publishedToAllClients() throws Exception {
+        CountingListener listener = new CountingListener();
+        TagEventServer server = new TagEventServer(0, TagEventServer.DEFAULT_CLIENT_BUFFER, listener);
+        server.start();
+        Socket a = connect(server);
+        Socket b = connect(server);
+        try {
+            waitFor(server, 2);
+            for (int x = 0; x < 100; x++)
+                server.publish(new byte[] { 0x30, (byte) x }, -50, 1, x);
+
+            ByteBuffer buffer = ByteBuffer.allocate(512);
+            for (Socket socket : new Socket[] { a, b }) {
+                buffer.clear();
+                for (int x = 0; x < 100; x++) {
+                    TagEventServer.TagFrame frame = readFrame(socket.getInputStream(), buffer);
+                    assertEquals(x, frame.timeMs);
+                    assertEquals((byte) x, frame.epc[1]);
+                }
+            }
+            assertEquals(2, listener.connected);
+            assertEquals(100, server.getFramesPublished());
+
+            //Closed client is removed, other still served
+            a.close();
+            waitFor(server, 1);
+        }
+        finally {
+            b.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void failedClient_serverKeepsAccepting() throws Exception {
+        CountingListener listener = new CountingListener();
+        TagEventServer server = new TagEventServer(0, TagEventServer.DEFAULT_CLIENT_BUFFER, listener);
+        server.start();
+        //Connection failing setup, e.g. reset before accepted
+        SocketChannel broken = SocketChannel.open();
+        broken.close();
+        try {
+            server.addClient(broken);
+            fail();
+        } catch (IOException ex) {
+            //Expected, only this client affected
+        }
+        Socket a = connect(server);
+        try {
+            waitFor(server, 1);
+            assertEquals(1, listener.connected);
+            assertNull(listener.failure);
+        }
+        finally {
+            a.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void slowClient_droppedWithoutBlockingPublish() throws Exception {
+        CountingListener listener = new CountingListener();
+        TagEventServer server = new TagEventServer(0, 4096, listener);
+        server.start();
+        //Client that never reads. Socket buffers fill, then server side buffer.
+        Socket slow = connect(server);
+        slow.setReceiveBufferSize(4096);
+        try {
+            waitFor(server, 1);
+            byte[] epc = new byte[12];
+            long start = System.nanoTime();
+            for (int x = 0; x < 2000000 && listener.slow == 0; x++)
+                server.publish(epc, -50, 1, x);
+            long ms = (System.nanoTime() - start) / 1000000;
+            waitFor(server, 0);
+            assertEquals(1, listener.slow);
+            assertEquals(1, server.getSlowDropped());
+            assertTrue("publish blocked " + ms + " ms", ms < 5000);
+        }
+        finally {
+            slow.close();
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package example.nordicid.com.inventorycore;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurEventIOChange;
+import com.nordicid.nurapi.NurEventTriggeredRead;
+import com.nordicid.nurapi.NurGPIOConfig;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TriggeredReadModeTest {
+
+    /**
+     * Reader with GPIO setup in memory
+     */
+    static class GpioReader extends InventoryControllerTest.FakeReader {
+        NurGPIOConfig[] gpio = new NurGPIOConfig[NurApi.MAX_GPIO];
+
+        GpioReader() {
+            for (int x = 0; x < gpio.length; x++)
+                gpio[x] = new NurGPIOConfig(x < 4, false, NurApi.GPIO_TYPE_OUTPUT, NurApi.GPIO_EDGE_FALLING, NurApi.GPIO_ACT_NONE);
+        }
+
+        @Override
+        public NurGPIOConfig[] getGPIOConfigure() {
+            NurGPIOConfig[] copy = new NurGPIOConfig[gpio.length];
+            for (int x = 0; x < gpio.length; x++)
+                copy[x] = new NurGPIOConfig(gpio[x].available, gpio[x].enabled, gpio[x].type, gpio[x].edge, gpio[x].action);
+            return copy;
+        }
+
+        @Override
+        public void setGPIOConfigure(NurGPIOConfig[] configs) {
+            gpio = configs;
+        }
+    }
+
+    static class TriggerLog implements TriggeredReadMode.Listener {
+        List<long[]> triggers = new ArrayList<long[]>();
+
+        @Override
+        public void onTrigger(int source, int reads, long latencyMs) {
+            triggers.add(new long[] { source, reads, latencyMs });
+        }
+    }
+
+    static NurEventTriggeredRead read(int source, byte[] epc) {
+        NurEventTriggeredRead event = new NurEventTriggeredRead();
+        event.source = source;
+        event.epc = epc;
+        event.rssi = -45;
+        event.antennaId = 1;
+        return event;
+    }
+
+    static NurEventIOChange io(int source, int direction) {
+        NurEventIOChange event = new NurEventIOChange();
+        event.source = source;
+        event.direction = direction;
+        return event;
+    }
+
+    @Test
+    public void scan_configuresGpioAndCountsReads() throws Exception {
+        GpioReader reader = new GpioReader();
+        InventoryControllerTest.CountingListener tags = new InventoryControllerTest.CountingListener();
+        InventoryController controller = new InventoryController(reader, tags);
+        TriggerLog log = new TriggerLog();
+        TriggeredReadMode mode = new TriggeredReadMode(reader, controller, tags, log);
+
+        assertFalse(mode.handleTriggeredRead(read(NurApi.GPIO2, new byte[12])));
+        mode.start(NurApi.GPIO2, NurApi.GPIO_EDGE_RISING, TriggeredReadMode.ACTION_SCAN);
+        NurGPIOConfig config = reader.gpio[NurApi.GPIO2];
+        assertTrue(config.enabled);
+        assertEquals(NurApi.GPIO_TYPE_INPUT, config.type);
+        assertEquals(NurApi.GPIO_EDGE_RISING, config.edge);
+        assertEquals(NurApi.GPIO_ACT_SCANTAG, config.action);
+
+        assertTrue(mode.handleTriggeredRead(read(NurApi.GPIO2, NurApi.hexStringToByteArray("3074257BF7194E4000001A85"))));
+        assertTrue(mode.handleTriggeredRead(read(NurApi.GPIO2, new byte[0])));
+        assertTrue(mode.handleTriggeredRead(read(NurApi.GPIO2, NurApi.hexStringToByteArray("3074257BF7194E4000001A86"))));
+        assertEquals(2, tags.tags);
+        assertEquals(3, mode.getTriggers());
+        assertEquals(2, mode.getTriggersRead());
+        assertEquals(-1, mode.getAvgLatencyMs());
+        assertEquals(-1, log.triggers.get(0)[2]);
+        assertEquals(0, log.triggers.get(1)[1]);
+
+        //Controller filter applies to triggered reads too
+        controller.setFilter(EpcFilter.parse("E280"));
+        mode.handleTriggeredRead(read(NurApi.GPIO2, NurApi.hexStringToByteArray("3074257BF7194E4000001A87")));
+        assertEquals(2, tags.tags);
+        assertEquals(4, mode.getTriggers());
+
+        mode.stop();
+        assertFalse(reader.gpio[NurApi.GPIO2].enabled);
+        assertEquals(NurApi.GPIO_ACT_NONE, reader.gpio[NurApi.GPIO2].action);
+        assertEquals(NurApi.GPIO_TYPE_OUTPUT, reader.gpio[NurApi.GPIO2].type);
+    }
+
+    @Test
+    public void gate_streamsWhileActive() throws Exception {
+        GpioReader reader = new GpioReader();
+        InventoryControllerTest.CountingListener tags = new InventoryControllerTest.CountingListener();
+        InventoryController controller = new InventoryController(reader, tags);
+        TriggerLog log = new TriggerLog();
+        TriggeredReadMode mode = new TriggeredReadMode(reader, controller, tags, log);
+
+        mode.start(NurApi.GPIO1, NurApi.GPIO_EDGE_RISING, TriggeredReadMode.ACTION_GATE);
+        assertEquals(NurApi.GPIO_EDGE_BOTH, reader.gpio[NurApi.GPIO1].edge);
+        assertEquals(NurApi.GPIO_ACT_NOTIFY, reader.gpio[NurApi.GPIO1].action);
+
+        //Handheld trigger and other GPIOs are not gate
+        assertFalse(mode.handleIOEvent(io(InventoryController.IO_TRIGGER, 1)));
+        assertFalse(mode.handleIOEvent(io(NurApi.GPIO2, 1)));
+
+        for (int carton = 0; carton < 3; carton++) {
+            assertTrue(mode.handleIOEvent(io(NurApi.GPIO1, 1)));
+            assertTrue(controller.isRunning());
+            assertTrue(reader.stream);
+            Thread.sleep(5);
+            reader.addTags(2, "30742500");
+            mode.handleInventoryEvent(InventoryControllerTest.added(2));
+            reader.addTags(1, "30742500");
+            mode.handleInventoryEvent(InventoryControllerTest.added(1));
+            assertTrue(mode.handleIOEvent(io(NurApi.GPIO1, 0)));
+            assertFalse(controller.isRunning());
+            assertFalse(reader.stream);
+        }
+        //Empty gate
+        mode.handleIOEvent(io(NurApi.GPIO1, 1));
+        mode.handleIOEvent(io(NurApi.GPIO1, 0));
+
+        assertEquals(4, mode.getTriggers());
+        assertEquals(3, mode.getTriggersRead());
+        assertEquals(9, mode.getReads());
+        assertEquals(3, log.triggers.get(0)[1]);
+        assertTrue(log.triggers.get(0)[2] >= 5);
+        assertEquals(-1, log.triggers.get(3)[2]);
+        assertTrue(mode.getAvgLatencyMs() >= 5);
+        assertTrue(mode.summary(), mode.summary().startsWith("Triggers 4, read 3 (75.0%), 2.3 reads/trigger, latency"));
+
+        //Stream start time counts in latency from input change
+        GpioReader slow = new GpioReader() {
+            @Override
+            public void startInventoryStream() {
+                try { Thread.sleep(30); } catch (InterruptedException e) { }
+                super.startInventoryStream();
+            }
+        };
+        InventoryController slowController = new InventoryController(slow, tags);
+        TriggeredReadMode slowMode = new TriggeredReadMode(slow, slowController, tags, log);
+        slowMode.start(NurApi.GPIO1, NurApi.GPIO_EDGE_RISING, TriggeredReadMode.ACTION_GATE);
+        slowMode.handleIOEvent(io(NurApi.GPIO1, 1));
+        slow.addTags(1, "30742501");
+        slowMode.handleInventoryEvent(InventoryControllerTest.added(1));
+        slowMode.handleIOEvent(io(NurApi.GPIO1, 0));
+        assertTrue(String.valueOf(slowMode.getAvgLatencyMs()), slowMode.getAvgLatencyMs() >= 30);
+        slowMode.stop();
+
+        //Stop while gate open stops stream
+        mode.handleIOEvent(io(NurApi.GPIO1, 1));
+        mode.stop();
+        assertFalse(controller.isRunning());
+        assertEquals(NurApi.GPIO_ACT_NONE, reader.gpio[NurApi.GPIO1].action);
+        assertFalse(mode.handleIOEvent(io(NurApi.GPIO1, 0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void start_gpioNotAvailable() throws Exception {
+        GpioReader reader = new GpioReader();
+        InventoryControllerTest.CountingListener tags = new InventoryControllerTest.CountingListener();
+        TriggeredReadMode mode = new TriggeredReadMode(reader, new InventoryController(reader, tags), tags, null);
+        mode.start(NurApi.GPIO7, NurApi.GPIO_EDGE_RISING, TriggeredReadMode.ACTION_SCAN);
+    }
+}
@@ -0,0 +1,76 @@
+package example.nordicid.com.nursampleandroid;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * MainActivity start to interactive (StartupTrace) on device. Activity is started LAUNCHES times in test process,
+ * so these are warm starts; cold start is in logcat with tag NUR_SAMPLE when app is launched normally.
+ * Budgets catch regressions where heavy init is moved back to main thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    private static final int LAUNCHES = 10;
+    //Main thread time in onCreate
+    private static final long ON_CREATE_BUDGET_MS = 100;
+    private static final long FIRST_FRAME_BUDGET_MS = 500;
+    private static final long INTERACTIVE_BUDGET_MS = 1000;
+    private static final long WAIT_MS = 5000;
+
+    @Test
+    public void benchmark_startToInteractive() throws Exception {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        long[] onCreate = new long[LAUNCHES];
+        long[] firstFrame = new long[LAUNCHES];
+        long[] interactive = new long[LAUNCHES];
+
+        for (int x = 0; x < LAUNCHES; x++) {
+            Intent intent = new Intent(Intent.ACTION_MAIN);
+            intent.setClassName(instrumentation.getTargetContext(), MainActivity.class.getName());
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            Activity activity = instrumentation.startActivitySync(intent);
+
+            StartupTrace trace = StartupTrace.get();
+            long deadline = System.currentTimeMillis() + WAIT_MS;
+            while (!trace.isInteractive() && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            assertTrue("not interactive in " + WAIT_MS + " ms", trace.isInteractive());
+            Log.i(MainActivity.TAG, trace.summary());
+
+            onCreate[x] = trace.getMarkMs("onCreate done") - trace.getMarkMs("onCreate");
+            firstFrame[x] = trace.getFirstFrameMs();
+            interactive[x] = trace.getInteractiveMs();
+
+            activity.finish();
+            instrumentation.waitForIdleSync();
+        }
+
+        long onCreateMs = median(onCreate);
+        long firstFrameMs = median(firstFrame);
+        long interactiveMs = median(interactive);
+        Log.i(MainActivity.TAG, String.format("Startup median of %d: onCreate %d ms, first frame %d ms, interactive %d ms",
+                LAUNCHES, onCreateMs, firstFrameMs, interactiveMs));
+        assertTrue("onCreate " + onCreateMs + " ms", onCreateMs < ON_CREATE_BUDGET_MS);
+        assertTrue("first frame " + firstFrameMs + " ms", firstFrameMs < FIRST_FRAME_BUDGET_MS);
+        assertTrue("interactive " + interactiveMs + " ms", interactiveMs < INTERACTIVE_BUDGET_MS);
+    }
+
+    private static long median(long[] values)
+    {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
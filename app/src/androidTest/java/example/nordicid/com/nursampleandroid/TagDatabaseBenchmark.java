@@ -0,0 +1,137 @@
+package example.nordicid.com.nursampleandroid;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import example.nordicid.com.inventorycore.EpcCodec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * TagDatabase insert throughput and query latency on device.
+ * Results in logcat with tag NUR_SAMPLE.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TagDatabaseBenchmark {
+
+    private static final String DB_NAME = "tags_benchmark.db";
+    private static final int ROWS = 1000000;
+    private static final int DISTINCT_EPCS = 50000;
+    private static final long DAY_MS = 24 * 3600 * 1000L;
+
+    private Context mContext;
+    private TagDatabase mDb;
+
+    private static byte[] epc(int n)
+    {
+        byte[] epc = new byte[12];
+        epc[0] = 0x30;
+        epc[1] = 0x74;
+        epc[8] = (byte) (n >> 24);
+        epc[9] = (byte) (n >> 16);
+        epc[10] = (byte) (n >> 8);
+        epc[11] = (byte) n;
+        return epc;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DB_NAME);
+        mDb = new TagDatabase(mContext, DB_NAME);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mDb.close();
+        mContext.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void queries() throws Exception {
+        long t = 1000000;
+        mDb.insert(epc(1), -50, 0, t);
+        mDb.insert(epc(1), -45, 2, t + 10);
+        mDb.insert(epc(2), -60, 1, t + 20);
+        mDb.insert(new byte[] { 0x30, 0x75 }, -60, 1, t + 30);
+        mDb.flush();
+
+        TagDatabase.EpcSummary s = mDb.lookup(epc(1), 0, Long.MAX_VALUE);
+        assertEquals(2, s.count);
+        assertEquals(t, s.firstSeen);
+        assertEquals(t + 10, s.lastSeen);
+        assertEquals(-45, s.maxRssi);
+        assertEquals(2, s.lastAntenna);
+        assertEquals(0, mDb.lookup(epc(1), t + 11, Long.MAX_VALUE).count);
+
+        List<byte[]> epcs = mDb.findByPrefix(new byte[] { 0x30, 0x74 }, 10);
+        assertEquals(2, epcs.size());
+        assertTrue(EpcCodec.sameEpc(epc(1), epcs.get(0)));
+        assertEquals(3, mDb.findByPrefix(new byte[] { 0x30 }, 10).size());
+
+        assertEquals(3, mDb.countBetween(t, t + 30));
+        assertEquals(-60, mDb.readsBetween(t + 15, t + 100, 10).get(0).rssi);
+
+        mDb.deleteBefore(t + 15);
+        assertEquals(2, mDb.countBetween(0, Long.MAX_VALUE));
+
+        assertArrayEquals(new byte[] { 0x30, 0x75 }, TagDatabase.nextPrefix(new byte[] { 0x30, 0x74 }));
+        assertArrayEquals(new byte[] { 0x31 }, TagDatabase.nextPrefix(new byte[] { 0x30, (byte) 0xFF }));
+        assertNull(TagDatabase.nextPrefix(new byte[] { (byte) 0xFF }));
+    }
+
+    /**
+     * Insert 1M reads through the queue as inventory stream would, then measure lookups.
+     * Target: insert well above stream rate (~1000 reads/s), EPC lookup under 10 ms.
+     */
+    @Test
+    public void benchmark_millionRows() throws Exception {
+        Random random = new Random(1);
+        long start = System.currentTimeMillis() - 7 * DAY_MS;
+
+        long t0 = System.nanoTime();
+        for (int x = 0; x < ROWS; x++)
+            mDb.insert(epc(random.nextInt(DISTINCT_EPCS)), -40 - random.nextInt(40), random.nextInt(4), start + x * 600L);
+        mDb.flush();
+        double insertSec = (System.nanoTime() - t0) / 1e9;
+        double insertRate = ROWS / insertSec;
+        Log.i(TagDatabase.TAG, String.format("TagDatabase insert %d rows: %.1f s, %.0f rows/s", ROWS, insertSec, insertRate));
+        assertEquals(ROWS, mDb.getRowsWritten());
+        assertTrue("insert rate " + insertRate, insertRate > 5000);
+
+        long today = start + 6 * DAY_MS;
+        int lookups = 200;
+        long worst = 0;
+        t0 = System.nanoTime();
+        for (int x = 0; x < lookups; x++) {
+            long l0 = System.nanoTime();
+            mDb.lookup(epc(random.nextInt(DISTINCT_EPCS)), today, Long.MAX_VALUE);
+            worst = Math.max(worst, System.nanoTime() - l0);
+        }
+        double avgMs = (System.nanoTime() - t0) / 1e6 / lookups;
+        Log.i(TagDatabase.TAG, String.format("TagDatabase lookup: avg %.2f ms, worst %.2f ms", avgMs, worst / 1e6));
+        assertTrue("lookup avg " + avgMs + " ms", avgMs < 10);
+
+        t0 = System.nanoTime();
+        List<byte[]> epcs = mDb.findByPrefix(new byte[] { 0x30, 0x74, 0, 0, 0, 0, 0, 0, 0, 0 }, 100);
+        double prefixMs = (System.nanoTime() - t0) / 1e6;
+        Log.i(TagDatabase.TAG, String.format("TagDatabase prefix query: %d EPCs %.2f ms", epcs.size(), prefixMs));
+        assertEquals(100, epcs.size());
+
+        t0 = System.nanoTime();
+        List<TagDatabase.Read> reads = mDb.readsBetween(today, today + 3600 * 1000L, 10000);
+        double rangeMs = (System.nanoTime() - t0) / 1e6;
+        Log.i(TagDatabase.TAG, String.format("TagDatabase time range: %d reads %.2f ms", reads.size(), rangeMs));
+        assertEquals(6000, reads.size());
+    }
+}
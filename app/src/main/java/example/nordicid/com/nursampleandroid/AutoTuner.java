@@ -0,0 +1,235 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+import com.nordicid.nurapi.NurRespInventory;
+import com.nordicid.nurapi.NurSetup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds reader profile giving most unique tags in dwell time against tags currently in field. Among candidates
+ * finding equally many tags the one finding them fastest wins.
+ *
+ * Full grid of all settings would take too long, so settings are swept one at a time (coordinate descent):
+ * link profile, Q, session, rounds and TX level in this order, each step keeping the best value found so far.
+ * Each trial applies the candidate with one setup command, clears module tag buffer and runs inventory rounds
+ * for dwell time. Module deduplicates EPCs, so unique count is numTagsMem of last round and tags are not fetched.
+ * On equal coverage candidate must beat rate of current best by MIN_GAIN to replace it, so measurement noise
+ * does not move the result.
+ *
+ * Tags read in session 1..3 stay silent for a while after trial. Settle time before each trial
+ * lets them return to A state so next trial is not penalized. tune() blocks, call from background thread.
+ */
+public class AutoTuner {
+
+    //Candidate must be this much better than current best
+    static final double MIN_GAIN = 1.05;
+
+    //Link frequency and RX decoding pairs to try
+    static final int[][] LINKS = {
+            { NurApi.LINK_FREQUENCY_160000, NurApi.RXDECODING_M4 },
+            { NurApi.LINK_FREQUENCY_256000, NurApi.RXDECODING_M2 },
+            { NurApi.LINK_FREQUENCY_256000, NurApi.RXDECODING_M4 },
+            { NurApi.LINK_FREQUENCY_256000, NurApi.RXDECODING_M8 },
+            { NurApi.LINK_FREQUENCY_320000, NurApi.RXDECODING_M2 },
+    };
+    static final int[] Q_VALUES = { 0, 4, 6, 8, 10 };
+    static final int[] SESSIONS = { NurApi.SESSION_S0, NurApi.SESSION_S1 };
+    static final int[] ROUNDS = { 0, 1, 4 };
+    static final int[] TX_LEVELS = { NurApi.TXLEVEL_27, NurApi.TXLEVEL_24, NurApi.TXLEVEL_21 };
+
+    /**
+     * Result of one candidate
+     */
+    public static class Trial {
+        public final ReaderProfile profile;
+        public int uniqueTags;
+        public int inventories;
+        //Unique tags per second until last new tag
+        public double tagsPerSec;
+        //NurApi error if reader rejected profile or inventory failed, 0 if ok
+        public int error;
+
+        Trial(ReaderProfile profile)
+        {
+            this.profile = profile;
+        }
+
+        /**
+         * Coverage first: rate of profile finding a few near tags fast is not comparable to one finding
+         * more tags, so rates are compared only when both found same number of tags.
+         */
+        boolean beats(Trial best)
+        {
+            if (error != 0)
+                return false;
+            if (uniqueTags != best.uniqueTags)
+                return uniqueTags > best.uniqueTags;
+            return tagsPerSec > best.tagsPerSec * MIN_GAIN;
+        }
+    }
+
+    /**
+     * Progress listener. Called from tuning thread after each trial.
+     */
+    public interface Listener {
+        void onTrial(Trial trial, Trial best, int done, int total);
+    }
+
+    private final NurApi mApi;
+    private final long mDwellMs;
+    private final long mSettleMs;
+    private volatile boolean mCancelled;
+    private final List<Trial> mTrials = new ArrayList<Trial>();
+    private int mDone;
+
+    /**
+     * @param api Connected NurApi. Inventory stream must not be running.
+     * @param dwellMs Inventory time per candidate
+     * @param settleMs Pause before each candidate
+     */
+    public AutoTuner(NurApi api, long dwellMs, long settleMs)
+    {
+        mApi = api;
+        mDwellMs = dwellMs;
+        mSettleMs = settleMs;
+    }
+
+    public void cancel()
+    {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return mCancelled;
+    }
+
+    /**
+     * @return All measured trials in order
+     */
+    public List<Trial> getTrials()
+    {
+        return mTrials;
+    }
+
+    /**
+     * Number of trials tune() runs
+     */
+    public static int trialCount()
+    {
+        return 1 + LINKS.length + Q_VALUES.length + SESSIONS.length + ROUNDS.length + TX_LEVELS.length;
+    }
+
+    /**
+     * Sweep settings starting from start profile. Best profile is left applied on reader.
+     * If cancelled or reader fails, setup that was on reader before tuning is restored.
+     * @param start Starting point, usually current reader setup
+     * @param name Name of resulting profile
+     * @param listener Progress listener, may be null
+     * @return Best trial, its profile is named name
+     */
+    public Trial tune(ReaderProfile start, String name, Listener listener) throws Exception
+    {
+        NurSetup original = mApi.getModuleSetup(ReaderProfile.SETUP_FLAGS);
+        int total = trialCount();
+        Trial best;
+        try {
+            best = measure(start.rename(name));
+            report(listener, best, best, total);
+
+            for (int[] link : LINKS)
+                best = step(best, best.profile.withLink(link[0], link[1]), listener, total);
+            for (int q : Q_VALUES)
+                best = step(best, best.profile.withQ(q), listener, total);
+            for (int session : SESSIONS)
+                best = step(best, best.profile.withSession(session), listener, total);
+            for (int rounds : ROUNDS)
+                best = step(best, best.profile.withRounds(rounds), listener, total);
+            for (int tx : TX_LEVELS)
+                best = step(best, best.profile.withTxLevel(tx), listener, total);
+        } catch (Exception ex) {
+            mApi.setModuleSetup(original, ReaderProfile.SETUP_FLAGS);
+            throw ex;
+        }
+
+        if (mCancelled)
+            mApi.setModuleSetup(original, ReaderProfile.SETUP_FLAGS);
+        else
+            best.profile.apply(mApi);
+        return best;
+    }
+
+    private Trial step(Trial best, ReaderProfile candidate, Listener listener, int total) throws Exception
+    {
+        if (mCancelled)
+            return best;
+        Trial trial;
+        if (candidate.equals(best.profile)) {
+            //Already measured, count it for progress only
+            trial = best;
+        }
+        else {
+            trial = measure(candidate);
+            if (trial.beats(best))
+                best = trial;
+        }
+        report(listener, trial, best, total);
+        return best;
+    }
+
+    private void report(Listener listener, Trial trial, Trial best, int total)
+    {
+        mDone++;
+        if (listener != null)
+            listener.onTrial(trial, best, mDone, total);
+    }
+
+    /**
+     * Apply profile and count unique tags in dwell time.
+     * Rate is unique tags divided by time until last new tag was found. It tells which of candidates with
+     * same coverage finds the tags sooner, see Trial.beats().
+     */
+    Trial measure(ReaderProfile profile) throws Exception
+    {
+        Trial trial = new Trial(profile);
+        mTrials.add(trial);
+        try {
+            profile.apply(mApi);
+        } catch (NurApiException ex) {
+            //Combination not supported by this reader
+            trial.error = ex.error;
+            return trial;
+        }
+        if (mSettleMs > 0)
+            Thread.sleep(mSettleMs);
+
+        mApi.clearIdBuffer();
+        long start = System.nanoTime();
+        long end = start + mDwellMs * 1000000L;
+        long now = start;
+        long lastNew = start;
+        while (now < end && !mCancelled) {
+            try {
+                NurRespInventory resp = mApi.inventory();
+                if (resp.numTagsMem > trial.uniqueTags) {
+                    trial.uniqueTags = resp.numTagsMem;
+                    lastNew = System.nanoTime();
+                }
+            } catch (NurApiException ex) {
+                if (ex.error != NurApiErrors.NO_TAG) {
+                    trial.error = ex.error;
+                    break;
+                }
+            }
+            trial.inventories++;
+            now = System.nanoTime();
+        }
+        double sec = (lastNew - start) / 1e9;
+        trial.tagsPerSec = sec > 0 ? trial.uniqueTags / sec : 0;
+        return trial;
+    }
+}
@@ -4,15 +4,27 @@ import android.app.Activity;
 import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.graphics.Color;
+import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
-import android.util.Log;
+import android.widget.CompoundButton;
 import android.widget.TextView;
 import android.widget.Toast;
+import android.widget.ToggleButton;
 
 import com.nordicid.nuraccessory.*;
 import com.nordicid.nurapi.*;
 
+import example.nordicid.com.inventorycore.BarcodeBatcher;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * Barcode activity is used by devices equipped with accessories and Imager
  */
@@ -22,6 +34,7 @@ public class Barcode extends Activity {
 
     private static NurApi mNurApi;
     private static NurAccessoryExtension mAccessoryApi;
+    private final FieldLog mLog = MainActivity.GetLog();
 
     //UI
     private TextView mResultTextView;
@@ -38,6 +51,33 @@ public class Barcode extends Activity {
     private boolean mScanning;
     private boolean mAiming;
 
+    //====== Continuous scan mode ======
+    //In continuous mode imager is re-armed right after each result while trigger is down.
+    private static final int CONTINUOUS_TIMEOUT_MS = 5000;
+    //Same barcode read again inside this window is not counted
+    private static final long DEDUP_WINDOW_MS = 3000;
+    //How often batched results are shown on UI and written to file
+    private static final long FLUSH_INTERVAL_MS = 250;
+    //How many latest barcodes shown in the list
+    private static final int LIST_MAX_LINES = 10;
+
+    private boolean mContinuous;
+    private volatile boolean mContinuousActive;
+    private final BarcodeBatcher mBatcher = new BarcodeBatcher(DEDUP_WINDOW_MS);
+    private TextView mListTextView;
+    private ToggleButton mContinuousButton;
+    private Handler mFlushHandler;
+    //Results are appended to file in app files dir. Writing done in background.
+    private ExecutorService mFileWriter;
+    private File mResultFile;
+    //===================================
+
+    //Records reader events and barcode results to file when enabled in Setup. Null if not recording.
+    private SessionRecorder mRecorder;
+
+    //Length of GS1 company prefix used when barcode converted to EPC URI. Set to your own prefix length.
+    private static final int GS1_COMPANY_PREFIX_LENGTH = 7;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -49,11 +89,38 @@ public class Barcode extends Activity {
 
         //Set event listener for this activity
         mNurApi.setListener(mNurApiEventListener);
+        if (Settings.isRecordSessions()) {
+            try {
+                mRecorder = SessionRecorder.create(getExternalFilesDir(Setup.SESSIONS_DIR), "barcode", mNurApi, mNurApiEventListener);
+                mNurApi.setListener(mRecorder);
+            } catch (Exception ex) {
+                mLog.log(FieldLog.WARN, TAG, "Session recording failed {}", ex.getMessage());
+            }
+        }
 
         mAccessoryApi.registerBarcodeResultListener(mResultListener);
 
         mResultTextView = (TextView)findViewById(R.id.text_result);
         mStatusTextView = (TextView)findViewById(R.id.text_status);
+        mListTextView = (TextView)findViewById(R.id.text_list);
+
+        mFlushHandler = new Handler();
+        mFileWriter = Executors.newSingleThreadExecutor();
+        mResultFile = new File(getFilesDir(), "barcodes.txt");
+
+        mContinuousButton = (ToggleButton)findViewById(R.id.toggleButtonContinuous);
+        mContinuousButton.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (mScanning || mAiming) {
+                    //Mode cannot change in the middle of scan
+                    buttonView.setChecked(mContinuous);
+                    return;
+                }
+                mContinuous = isChecked;
+                mUiStatusText = mContinuous ? "Continuous. Keep trigger down for scanning" : "Waiting trigger...";
+                showOnUI();
+            }
+        });
 
         mUiResultText = "result";
         mUiStatusText = "Waiting trigger...";
@@ -99,7 +166,15 @@ public class Barcode extends Activity {
         @Override
         public void onBarcodeResult(AccessoryBarcodeResult result) {
 
-            Log.i(TAG, "BarcodeResult " + result.strBarcode);
+            if (mRecorder != null)
+                mRecorder.recordBarcode(result.status, result.strBarcode);
+
+            if (mContinuousActive) {
+                handleContinuousResult(result);
+                return;
+            }
+
+            mLog.log(FieldLog.INFO, TAG, "BarcodeResult {}", result.strBarcode);
 
             if (result.status == NurApiErrors.NO_TAG) {
                 mUiStatusText="No barcode found";
@@ -123,9 +198,20 @@ public class Barcode extends Activity {
             else {
                 //Barcode scan success. Show result on the screen.
                 mUiResultText = result.strBarcode;
+
+                //GS1 barcodes are shown in same EPC URI form than GS1 coded RFID tags in Inventory
+                Gs1Parser.Gs1Data gs1 = Gs1Parser.parse(result.strBarcode);
+                if (gs1 != null) {
+                    String uri = gs1.toPureIdentityUri(GS1_COMPANY_PREFIX_LENGTH);
+                    mUiResultText = formatGs1(gs1, uri);
+                }
                 mUiStatusText = "Waiting trigger...";
                 Beeper.beep(Beeper.BEEP_100MS); //Beep on phone
 
+                UploadQueue uploadQueue = MainActivity.GetUploadQueue();
+                if (uploadQueue != null)
+                    uploadQueue.offerBarcode(result.strBarcode, System.currentTimeMillis());
+
                 try {
                     mAccessoryApi.beepAsync(100); //Beep on device
                     if (mAccessoryApi.getConfig().hasVibrator()) {
@@ -145,6 +231,173 @@ public class Barcode extends Activity {
         }
     };
 
+    /**
+     * Text shown from GS1 barcode. EPC URI (if any) and AI's found.
+     */
+    private static String formatGs1(Gs1Parser.Gs1Data gs1, String uri)
+    {
+        StringBuilder sb = new StringBuilder();
+        if (uri != null)
+            sb.append(uri).append('\n');
+        if (gs1.getGtin() != null) sb.append("GTIN: ").append(gs1.getGtin()).append('\n');
+        if (gs1.getSscc() != null) sb.append("SSCC: ").append(gs1.getSscc()).append('\n');
+        if (gs1.getBatch() != null) sb.append("Batch: ").append(gs1.getBatch()).append('\n');
+        if (gs1.getExpiry() != null) sb.append("Expiry: ").append(gs1.getExpiry()).append('\n');
+        if (gs1.getSerial() != null) sb.append("Serial: ").append(gs1.getSerial()).append('\n');
+        if (!gs1.isValid()) sb.append("(Unknown AI, rest of barcode not parsed)");
+        return sb.toString();
+    }
+
+    /**
+     * Barcode result in continuous mode. Imager re-armed first, then result is given to batcher.
+     * UI is not updated from here, flush runnable shows batched results.
+     */
+    private void handleContinuousResult(AccessoryBarcodeResult result)
+    {
+        if (result.status == NurApiErrors.NOT_READY) {
+            //Cancelled by trigger release
+            return;
+        }
+
+        if (result.status == NurApiErrors.HW_MISMATCH) {
+            mContinuousActive = false;
+            mScanning = false;
+            mUiStatusText = "No hardware found";
+            Beeper.beep(Beeper.FAIL);
+            showOnUI();
+            return;
+        }
+
+        //Re-arm imager immediately so next label can be read while this one is handled
+        try {
+            mAccessoryApi.readBarcodeAsync(CONTINUOUS_TIMEOUT_MS);
+        }
+        catch (Exception ex) {
+            mContinuousActive = false;
+            mScanning = false;
+            mUiStatusText = ex.getMessage();
+            showOnUI();
+        }
+
+        if (result.status != NurApiErrors.NUR_SUCCESS)
+            return; //Nothing found during timeout. Just keep scanning.
+
+        boolean accepted;
+        synchronized (mBatcher) {
+            accepted = mBatcher.add(result.strBarcode, System.currentTimeMillis());
+        }
+
+        if (accepted) {
+            UploadQueue uploadQueue = MainActivity.GetUploadQueue();
+            if (uploadQueue != null)
+                uploadQueue.offerBarcode(result.strBarcode, System.currentTimeMillis());
+            try {
+                mAccessoryApi.beepAsync(40);
+            }
+            catch (Exception ex) {
+                mLog.log(FieldLog.WARN, TAG, "Beep failed {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Start continuous scanning. Called when trigger pressed down in continuous mode.
+     */
+    private void startContinuous() throws Exception
+    {
+        mContinuousActive = true;
+        mScanning = true;
+        mAccessoryApi.readBarcodeAsync(CONTINUOUS_TIMEOUT_MS);
+        mUiStatusText = "Continuous scanning...";
+        mFlushHandler.removeCallbacks(mFlushRunnable);
+        mFlushHandler.postDelayed(mFlushRunnable, FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * Stop continuous scanning. Called when trigger released or activity stopping.
+     */
+    private void stopContinuous() throws Exception
+    {
+        if (!mContinuousActive)
+            return;
+
+        mContinuousActive = false;
+        mScanning = false;
+        mAccessoryApi.cancelBarcodeAsync();
+        mUiStatusText = "Continuous. Keep trigger down for scanning";
+        //Show what is left in the batch
+        mFlushHandler.post(mFlushRunnable);
+    }
+
+    /**
+     * Show batched results on UI and hand them to file writer. Runs on UI thread.
+     */
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            List<String> batch;
+            int total;
+            int perMinute;
+            synchronized (mBatcher) {
+                batch = mBatcher.drainBatch();
+                total = mBatcher.getResultCount();
+                perMinute = mBatcher.getScansPerMinute(System.currentTimeMillis());
+            }
+
+            if (!batch.isEmpty()) {
+                appendToFile(batch);
+                mUiResultText = batch.get(batch.size() - 1);
+                mListTextView.setText(buildListText());
+            }
+
+            mResultTextView.setText(mUiResultText);
+            mStatusTextView.setText(mUiStatusText + "\nScanned:" + total + " (" + perMinute + " scans/min)");
+
+            if (mContinuousActive)
+                mFlushHandler.postDelayed(this, FLUSH_INTERVAL_MS);
+        }
+    };
+
+    /**
+     * Latest barcodes newest first
+     */
+    private String buildListText()
+    {
+        StringBuilder sb = new StringBuilder();
+        synchronized (mBatcher) {
+            List<String> results = mBatcher.getResults();
+            for (int x = results.size() - 1; x >= 0 && x >= results.size() - LIST_MAX_LINES; x--)
+                sb.append(results.get(x)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Append batch to result file. One barcode per line.
+     */
+    private void appendToFile(final List<String> batch)
+    {
+        mFileWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                Writer writer = null;
+                try {
+                    writer = new FileWriter(mResultFile, true);
+                    for (String code : batch)
+                        writer.write(code + "\n");
+                }
+                catch (IOException ex) {
+                    mLog.log(FieldLog.WARN, TAG, "Barcode file write failed {}", ex.getMessage());
+                }
+                finally {
+                    try {
+                        if (writer != null) writer.close();
+                    } catch (IOException ex) { }
+                }
+            }
+        });
+    }
+
     /**
      *  Handle I/O events from reader.
      *  When user press button on reader, event fired and handled in this function.
@@ -157,14 +410,21 @@ public class Barcode extends Activity {
      */
     private void HandleIOEvent(NurEventIOChange event)
     {
-        Log.i(TAG, "BarcodeKey " + event.source + " Dir=" + event.direction);
+        mLog.log(FieldLog.INFO, TAG, "BarcodeKey {} Dir={}", event.source, event.direction);
 
         try {
-            if (event.source == 100 && event.direction == 1) {
+            if (event.source == 100 && mContinuous) {
+                //Continuous mode. Scan as long as trigger is down.
+                if (event.direction == 1)
+                    startContinuous();
+                else if (event.direction == 0)
+                    stopContinuous();
+            }
+            else if (event.source == 100 && event.direction == 1) {
                 if(mScanning) {
                     //There is mScanning ongoing so we need just abort it
                     mAccessoryApi.cancelBarcodeAsync();
-                    Log.i(TAG, "Cancelling..");
+                    mLog.log(FieldLog.INFO, TAG, "Cancelling..");
                 }
                 else {
                     mAiming = true;
@@ -214,7 +474,10 @@ public class Barcode extends Activity {
         super.onStop();
 
         try {
-            if (mScanning) {
+            if (mContinuousActive) {
+                stopContinuous();
+            }
+            else if (mScanning) {
                 //There is mScanning ongoing so we need just abort it
                 mAccessoryApi.cancelBarcodeAsync();
             }
@@ -225,10 +488,50 @@ public class Barcode extends Activity {
             }
         }
         catch (Exception ex) {
-            Log.i(TAG, "Exception barcode onStop:" + ex.getMessage());
+            mLog.log(FieldLog.WARN, TAG, "Exception barcode onStop: {}", ex.getMessage());
         }
     }
 
+    /**
+     * Connection lost. Results so far are kept while session reconnects.
+     * Activity exits only if connection was closed on purpose.
+     */
+    private void handleDisconnected()
+    {
+        ResilientSession session = MainActivity.GetSession();
+        session.onDisconnected(System.currentTimeMillis());
+        if (!session.isOutage()) {
+            finish(); //Device disconnected. Exit from this activity
+            return;
+        }
+        //Scan in progress is lost with connection. Trigger press needed after reconnect.
+        mScanning = false;
+        mAiming = false;
+        if (mContinuousActive) {
+            mContinuousActive = false;
+            mFlushHandler.post(mFlushRunnable); //Show what is left in the batch
+        }
+        mUiStatusText = "Connection lost, reconnecting...";
+        showOnUI();
+    }
+
+    private void handleConnected()
+    {
+        ResilientSession session = MainActivity.GetSession();
+        session.onConnected(System.currentTimeMillis());
+        mUiStatusText = "Reconnected. " + session.summary() + "\nWaiting trigger...";
+        showOnUI();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mFlushHandler.removeCallbacks(mFlushRunnable);
+        mFileWriter.shutdown(); //Pending writes still completed
+        if (mRecorder != null)
+            mRecorder.close();
+    }
+
     /**
      * NurApi event handlers. Each activity has own NurApiListener and event handlers
      * NOTE: All NurApi events are called from NurApi thread, thus direct UI updates are not allowed.
@@ -245,7 +548,9 @@ public class Barcode extends Activity {
         @Override
         public void nxpEasAlarmEvent(NurEventNxpAlarm event) { }
         @Override
-        public void logEvent(int level, String txt) { }
+        public void logEvent(int level, String txt) {
+            mLog.logNurApi(level, txt);
+        }
         @Override
         public void inventoryStreamEvent(NurEventInventory event) { }
         @Override
@@ -256,14 +561,18 @@ public class Barcode extends Activity {
         public void epcEnumEvent(NurEventEpcEnum event) { }
         @Override
         public void disconnectedEvent() {
-            finish(); //Device disconnected. Exit from this activity
+            handleDisconnected();
         }
         @Override
         public void deviceSearchEvent(NurEventDeviceInfo event) { }
         @Override
-        public void debugMessageEvent(String event) { }
+        public void debugMessageEvent(String event) {
+            mLog.log(FieldLog.DEBUG, "NurApi", "{}", event);
+        }
         @Override
-        public void connectedEvent() { }
+        public void connectedEvent() {
+            handleConnected();
+        }
         @Override
         public void clientDisconnectedEvent(NurEventClientInfo event) { }
         @Override
@@ -15,7 +15,8 @@ public class Beeper {
     public static final int FAIL = 3;
     private static final int LAST = 4;
 
-    static SoundPool mSoundPool = null;
+    //Made in background at startup, beeps before that are skipped
+    static volatile SoundPool mSoundPool = null;
     static boolean mEnabled = true;
 
     static int[] mSoundIDs = new int[LAST];
@@ -33,27 +34,33 @@ public class Beeper {
         if (!mEnabled)
             return;
 
-        if (mSoundPool == null)
+        SoundPool pool = mSoundPool;
+        if (pool == null)
             return;
 
         int id = mSoundIDs[type];
         try {
-            mSoundPool.stop(id);
+            pool.stop(id);
         } catch (Exception e) { }
         try {
-            mSoundPool.play(id, 1, 1, 1, 0, 1);
+            pool.play(id, 1, 1, 1, 0, 1);
         } catch (Exception e) { }
     }
 
-    static public void init(Context ctx)
+    /**
+     * Load sounds. Reads sound files, call from background thread. Use application context.
+     */
+    static public synchronized void init(Context ctx)
     {
         if (mSoundPool == null)
         {
-            mSoundPool = new SoundPool(LAST, AudioManager.STREAM_MUSIC, 0);
-            mSoundIDs[BEEP_40MS] = mSoundPool.load( ctx, R.raw.blep_40ms, 1);
-            mSoundIDs[BEEP_100MS] = mSoundPool.load(ctx, R.raw.blep_100ms, 1);
-            mSoundIDs[BEEP_300MS] = mSoundPool.load(ctx, R.raw.blep_300ms, 1);
-            mSoundIDs[FAIL] = mSoundPool.load(ctx, R.raw.blipblipblip, 1);
+            SoundPool pool = new SoundPool(LAST, AudioManager.STREAM_MUSIC, 0);
+            mSoundIDs[BEEP_40MS] = pool.load( ctx, R.raw.blep_40ms, 1);
+            mSoundIDs[BEEP_100MS] = pool.load(ctx, R.raw.blep_100ms, 1);
+            mSoundIDs[BEEP_300MS] = pool.load(ctx, R.raw.blep_300ms, 1);
+            mSoundIDs[FAIL] = pool.load(ctx, R.raw.blipblipblip, 1);
+            //Published after ids are set
+            mSoundPool = pool;
         }
     }
 }
@@ -0,0 +1,214 @@
+package example.nordicid.com.nursampleandroid;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.CompoundButton;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
+import android.widget.ToggleButton;
+
+import com.nordicid.nurapi.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk write activity. Programs list of tags with BulkWriter.
+ * Job list has one tag per line: TARGET_EPC,NEW_EPC[,USER_DATA] in hex.
+ */
+public class BulkWrite extends Activity {
+
+    public static final String TAG = "NUR_SAMPLE";
+
+    //Write attempts per tag
+    private static final int MAX_ATTEMPTS = 3;
+    //Passes without any target tag in field before stopping
+    private static final int IDLE_PASSES = 20;
+
+    private NurApi mNurApi;
+
+    //UI
+    private EditText mJobsEditText;
+    private TextView mStatusTextView;
+    private ToggleButton mStartButton;
+
+    private String mUiStatusMsg;
+    private int mUiStatusColor;
+    private boolean mUiRunning;
+
+    private volatile BulkWriter mWriter;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_bulk_write);
+
+        //Get NurApi handle from MainActivity
+        mNurApi = MainActivity.GetNurApi();
+
+        //Set event listener for this activity
+        mNurApi.setListener(mNurApiEventListener);
+
+        mJobsEditText = (EditText)findViewById(R.id.edit_jobs);
+        mStatusTextView = (TextView)findViewById(R.id.text_bulk_status);
+        mStartButton = (ToggleButton)findViewById(R.id.toggleButtonBulkWrite);
+        mStartButton.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (isChecked && mWriter == null)
+                    startWrite();
+                else if (!isChecked && mWriter != null)
+                    mWriter.cancel();
+            }
+        });
+
+        mUiStatusMsg = "One tag per line: TARGET_EPC,NEW_EPC[,USER_DATA]";
+        mUiStatusColor = Color.BLACK;
+        showOnUI();
+    }
+
+    /**
+     * Parse job list and start writing in background thread
+     */
+    private void startWrite()
+    {
+        final List<BulkWriter.Job> jobs = new ArrayList<BulkWriter.Job>();
+        try {
+            for (String line : mJobsEditText.getText().toString().split("\n")) {
+                if (line.trim().length() > 0)
+                    jobs.add(BulkWriter.Job.parse(line));
+            }
+        }
+        catch (IllegalArgumentException ex) {
+            Toast.makeText(this, ex.getMessage(), Toast.LENGTH_LONG).show();
+            mStartButton.setChecked(false);
+            return;
+        }
+        if (jobs.isEmpty()) {
+            Toast.makeText(this, "No tags to write", Toast.LENGTH_SHORT).show();
+            mStartButton.setChecked(false);
+            return;
+        }
+
+        mWriter = new BulkWriter(mNurApi, jobs, MAX_ATTEMPTS);
+        mUiRunning = true;
+        Thread writeThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    BulkWriter.Stats stats = mWriter.run(new BulkWriter.Listener() {
+                        @Override
+                        public void onProgress(BulkWriter.Stats stats) {
+                            mUiStatusMsg = formatStats(stats);
+                            mUiStatusColor = Color.BLACK;
+                            showOnUI();
+                        }
+                    }, IDLE_PASSES);
+                    mUiStatusMsg = "Finished\n" + formatStats(stats);
+                    mUiStatusColor = stats.failed == 0 && stats.pending == 0 ? Color.rgb(0, 128, 0) : Color.RED;
+                    if (stats.failed == 0 && stats.pending == 0)
+                        Beeper.beep(Beeper.BEEP_300MS);
+                    else
+                        Beeper.beep(Beeper.FAIL);
+                }
+                catch (Exception ex) {
+                    mUiStatusMsg = "Error: " + ex.getMessage();
+                    mUiStatusColor = Color.RED;
+                    Log.i(TAG, "Bulk write failed " + ex.getMessage());
+                }
+                mWriter = null;
+                mUiRunning = false;
+                showOnUI();
+            }
+        });
+        writeThread.start();
+    }
+
+    private static String formatStats(BulkWriter.Stats stats)
+    {
+        String s = String.format("Done %d / %d, failed %d, pending %d\n%.0f tags/min, %d passes",
+                stats.done, stats.total, stats.failed, stats.pending, stats.tagsPerMinute, stats.passes);
+        if (!stats.failureCauses.isEmpty())
+            s += "\nFailures: " + stats.failureText();
+        return s;
+    }
+
+    /**
+     * Show UI items
+     */
+    private void showOnUI() {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mStatusTextView.setText(mUiStatusMsg);
+                mStatusTextView.setTextColor(mUiStatusColor);
+                mStartButton.setChecked(mUiRunning);
+                mJobsEditText.setEnabled(!mUiRunning);
+            }
+        });
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        //Stop after current tag when leaving
+        BulkWriter writer = mWriter;
+        if (writer != null)
+            writer.cancel();
+    }
+
+    /**
+     * NurApi event handlers.
+     * NOTE: All NurApi events are called from NurApi thread, thus direct UI updates are not allowed.
+     */
+    private NurApiListener mNurApiEventListener = new NurApiListener()
+    {
+        @Override
+        public void triggeredReadEvent(NurEventTriggeredRead event) { }
+        @Override
+        public void traceTagEvent(NurEventTraceTag event) { }
+        @Override
+        public void programmingProgressEvent(NurEventProgrammingProgress event) { }
+        @Override
+        public void nxpEasAlarmEvent(NurEventNxpAlarm event) { }
+        @Override
+        public void logEvent(int level, String txt) { }
+        @Override
+        public void inventoryStreamEvent(NurEventInventory event) { }
+        @Override
+        public void inventoryExtendedStreamEvent(NurEventInventory event) { }
+        @Override
+        public void frequencyHopEvent(NurEventFrequencyHop event) { }
+        @Override
+        public void epcEnumEvent(NurEventEpcEnum event) { }
+        @Override
+        public void disconnectedEvent() {
+            BulkWriter writer = mWriter;
+            if (writer != null)
+                writer.cancel();
+            finish(); //Device disconnected. Exit from this activity
+        }
+        @Override
+        public void deviceSearchEvent(NurEventDeviceInfo event) { }
+        @Override
+        public void debugMessageEvent(String event) { }
+        @Override
+        public void connectedEvent() { }
+        @Override
+        public void clientDisconnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void clientConnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void bootEvent(String event) { }
+        @Override
+        public void IOChangeEvent(NurEventIOChange event) { }
+        @Override
+        public void autotuneEvent(NurEventAutotune event) { }
+        @Override
+        public void tagTrackingScanEvent(NurEventTagTrackingData event) { }
+        @Override
+        public void tagTrackingChangeEvent(NurEventTagTrackingChange event) { }
+    };
+}
@@ -0,0 +1,341 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+import com.nordicid.nurapi.NurTagStorage;
+
+import example.nordicid.com.inventorycore.EpcCodec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bulk tag programming. Writes new EPC and/or user memory to list of tags identified by their current EPC.
+ *
+ * Work is done in passes so that reader time goes to tags which are really in the field:
+ *  1. One inventory finds which target tags are present. Absent tags cost nothing (no select timeouts).
+ *  2. Each present tag is written with select by EPC. User memory is verified by reading it back.
+ *  3. One inventory after the pass verifies all new EPCs at once, instead of reading back every tag.
+ * Failed tags are retried in next passes until maxAttempts. Failure causes are counted by NurApi error code.
+ *
+ * run() blocks, call it from background thread. Inventory stream must not be running.
+ */
+public class BulkWriter {
+
+    /**
+     * One tag to program
+     */
+    public static class Job {
+        public static final int PENDING = 0;
+        public static final int DONE = 1;
+        public static final int FAILED = 2;
+
+        final byte[] mTargetEpc;
+        final byte[] mNewEpc;
+        final byte[] mUserData;
+        final int mUserAddress;
+
+        int mState = PENDING;
+        int mAttempts;
+        int mLastError;
+        boolean mUserWritten;
+
+        /**
+         * @param targetEpc Current EPC of the tag
+         * @param newEpc EPC to write, null to keep EPC
+         * @param userData User memory to write, null if none. Even number of bytes.
+         * @param userAddress User memory word address
+         */
+        public Job(byte[] targetEpc, byte[] newEpc, byte[] userData, int userAddress)
+        {
+            if (newEpc == null && userData == null)
+                throw new IllegalArgumentException("Nothing to write");
+            if (newEpc != null && (newEpc.length == 0 || newEpc.length % 2 != 0 || newEpc.length > NurApi.MAX_EPC_LENGTH))
+                throw new IllegalArgumentException("EPC must be whole words");
+            if (userData != null && (userData.length == 0 || userData.length % 2 != 0))
+                throw new IllegalArgumentException("User data must be whole words");
+            mTargetEpc = targetEpc;
+            mNewEpc = newEpc;
+            mUserData = userData;
+            mUserAddress = userAddress;
+        }
+
+        /**
+         * Parse job from text line: TARGET_EPC,NEW_EPC[,USER_DATA]. NEW_EPC may be empty. Values in hex.
+         * @throws IllegalArgumentException if line is not valid
+         */
+        public static Job parse(String line)
+        {
+            String[] parts = line.trim().split("\\s*,\\s*");
+            if (parts.length < 2 || parts.length > 3)
+                throw new IllegalArgumentException("Expected TARGET_EPC,NEW_EPC[,USER_DATA]: " + line);
+            return new Job(hex(parts[0], line), parts[1].length() == 0 ? null : hex(parts[1], line),
+                    parts.length == 3 ? hex(parts[2], line) : null, 0);
+        }
+
+        private static byte[] hex(String s, String line)
+        {
+            byte[] b = new byte[s.length() / 2];
+            if (s.length() == 0 || EpcCodec.decode(s, 0, s.length(), b) < 0)
+                throw new IllegalArgumentException("Invalid hex in: " + line);
+            return b;
+        }
+
+        public byte[] getTargetEpc() { return mTargetEpc; }
+        public byte[] getNewEpc() { return mNewEpc; }
+        public int getState() { return mState; }
+        public int getAttempts() { return mAttempts; }
+        public int getLastError() { return mLastError; }
+    }
+
+    /**
+     * Progress snapshot
+     */
+    public static class Stats {
+        public int total;
+        public int done;
+        public int failed;
+        public int pending;
+        public int passes;
+        public double tagsPerMinute;
+        //NurApi error code -> count of failed attempts
+        public final Map<Integer, Integer> failureCauses = new TreeMap<Integer, Integer>();
+
+        /**
+         * Failure causes as text in error code order, "No tag x1, Write x3"
+         */
+        public String failureText()
+        {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<Integer, Integer> e : failureCauses.entrySet()) {
+                if (sb.length() > 0)
+                    sb.append(", ");
+                sb.append(errorName(e.getKey())).append(" x").append(e.getValue());
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Progress listener. Called from thread running BulkWriter.
+     */
+    public interface Listener {
+        void onProgress(Stats stats);
+    }
+
+    //Error code used when new EPC was written without error but not seen in verify inventory
+    public static final int ERROR_VERIFY = -1;
+
+    private final NurApi mApi;
+    private final List<Job> mJobs;
+    private final int mMaxAttempts;
+    private volatile boolean mCancelled;
+    private final Stats mStats = new Stats();
+    private long mStartNanos;
+
+    /**
+     * @param api Connected NurApi
+     * @param jobs Tags to program
+     * @param maxAttempts Write attempts per tag before it is marked failed
+     */
+    public BulkWriter(NurApi api, List<Job> jobs, int maxAttempts)
+    {
+        mApi = api;
+        mJobs = new ArrayList<Job>(jobs);
+        mMaxAttempts = maxAttempts;
+        mStats.total = mJobs.size();
+    }
+
+    public void cancel()
+    {
+        mCancelled = true;
+    }
+
+    /**
+     * Program tags until all done or failed, cancelled, or no target tag seen in idlePasses passes in a row.
+     * @param listener Progress listener, may be null
+     * @param idlePasses Passes without any target tag in field before giving up. 0 = run until cancelled.
+     * @return Final stats
+     */
+    public Stats run(Listener listener, int idlePasses) throws Exception
+    {
+        mStartNanos = System.nanoTime();
+        int idle = 0;
+
+        while (!mCancelled && pendingCount() > 0) {
+            mStats.passes++;
+            int written = runPass();
+            updateStats();
+            if (listener != null)
+                listener.onProgress(mStats);
+
+            if (written == 0) {
+                idle++;
+                if (idlePasses > 0 && idle >= idlePasses)
+                    break;
+            }
+            else {
+                idle = 0;
+            }
+        }
+        updateStats();
+        return mStats;
+    }
+
+    /**
+     * One pass: find present targets, write them, verify new EPCs.
+     * @return Number of jobs written this pass
+     */
+    int runPass() throws Exception
+    {
+        //Pending jobs by current EPC of tag and by EPC to be written
+        HashMap<String, Job> byTarget = new HashMap<String, Job>();
+        HashMap<String, Job> byNew = new HashMap<String, Job>();
+        for (Job job : mJobs) {
+            if (job.mState != Job.PENDING)
+                continue;
+            byTarget.put(key(job.mTargetEpc), job);
+            if (job.mNewEpc != null)
+                byNew.put(key(job.mNewEpc), job);
+        }
+
+        List<Job> present = new ArrayList<Job>();
+        NurTagStorage storage = inventory();
+        for (int x = 0; x < storage.size(); x++) {
+            String epc = key(storage.get(x).getEpc());
+            Job job = byTarget.get(epc);
+            if (job != null) {
+                present.add(job);
+                continue;
+            }
+            //New EPC written earlier but tag was out of field in verify inventory
+            job = byNew.get(epc);
+            if (job != null && (job.mUserData == null || job.mUserWritten))
+                job.mState = Job.DONE;
+        }
+        if (present.isEmpty())
+            return 0;
+
+        List<Job> verify = new ArrayList<Job>();
+        for (Job job : present) {
+            if (mCancelled)
+                break;
+            job.mAttempts++;
+            try {
+                writeJob(job);
+                if (job.mNewEpc != null)
+                    verify.add(job);
+                else
+                    job.mState = Job.DONE;
+            } catch (NurApiException ex) {
+                fail(job, ex.error);
+            }
+        }
+
+        if (!verify.isEmpty()) {
+            storage = inventory();
+            for (Job job : verify) {
+                if (storage.hasTag(job.mNewEpc))
+                    job.mState = Job.DONE;
+                else
+                    fail(job, ERROR_VERIFY);
+            }
+        }
+        return present.size();
+    }
+
+    private void writeJob(Job job) throws Exception
+    {
+        byte[] epc = job.mTargetEpc;
+
+        //User memory first while tag still has the EPC it is selected with. Not written again on retry.
+        if (job.mUserData != null && !job.mUserWritten) {
+            mApi.writeTagByEpc(epc, epc.length, NurApi.BANK_USER, job.mUserAddress, job.mUserData);
+            byte[] read = mApi.readTagByEpc(epc, epc.length, NurApi.BANK_USER, job.mUserAddress, job.mUserData.length);
+            if (!Arrays.equals(read, job.mUserData))
+                throw new NurApiException("User memory verify failed", ERROR_VERIFY);
+            job.mUserWritten = true;
+        }
+
+        if (job.mNewEpc != null)
+            mApi.writeEpcByEpc(epc, epc.length, job.mNewEpc.length, job.mNewEpc);
+    }
+
+    private void fail(Job job, int error)
+    {
+        job.mLastError = error;
+        Integer count = mStats.failureCauses.get(error);
+        mStats.failureCauses.put(error, count == null ? 1 : count + 1);
+        if (job.mAttempts >= mMaxAttempts)
+            job.mState = Job.FAILED;
+    }
+
+    private NurTagStorage inventory() throws Exception
+    {
+        mApi.clearIdBuffer();
+        try {
+            mApi.inventory();
+            mApi.fetchTags();
+        } catch (NurApiException ex) {
+            if (ex.error != NurApiErrors.NO_TAG)
+                throw ex;
+        }
+        return mApi.getStorage();
+    }
+
+    private int pendingCount()
+    {
+        int n = 0;
+        for (Job job : mJobs) {
+            if (job.mState == Job.PENDING)
+                n++;
+        }
+        return n;
+    }
+
+    private void updateStats()
+    {
+        int done = 0, failed = 0;
+        for (Job job : mJobs) {
+            if (job.mState == Job.DONE) done++;
+            else if (job.mState == Job.FAILED) failed++;
+        }
+        mStats.done = done;
+        mStats.failed = failed;
+        mStats.pending = mStats.total - done - failed;
+        double minutes = (System.nanoTime() - mStartNanos) / 60e9;
+        mStats.tagsPerMinute = minutes > 0 ? done / minutes : 0;
+    }
+
+    public List<Job> getJobs()
+    {
+        return mJobs;
+    }
+
+    private static String key(byte[] epc)
+    {
+        return EpcCodec.toHexString(epc);
+    }
+
+    static String errorName(int error)
+    {
+        switch (error) {
+            case ERROR_VERIFY: return "Verify";
+            case NurApiErrors.NO_TAG: return "No tag";
+            case NurApiErrors.G2_SELECT: return "Select";
+            case NurApiErrors.G2_ACCESS: return "Access";
+            case NurApiErrors.G2_WRITE: return "Write";
+            case NurApiErrors.G2_WR_PART: return "Partial write";
+            case NurApiErrors.G2_TAG_MEM_OVERRUN: return "Memory overrun";
+            case NurApiErrors.G2_TAG_MEM_LOCKED: return "Memory locked";
+            case NurApiErrors.G2_TAG_INSUF_POWER: return "Insufficient power";
+            case NurApiErrors.TR_TIMEOUT: return "Timeout";
+            default: return "Error " + error;
+        }
+    }
+}
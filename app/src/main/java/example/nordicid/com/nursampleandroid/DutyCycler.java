@@ -0,0 +1,76 @@
+package example.nordicid.com.nursampleandroid;
+
+/**
+ * On/off timing for duty cycled inventory. Reader runs bursts of fixed length with pauses between them.
+ * Pause is adapted to new tag rate: when a burst finds new tags pause drops to minimum so arriving tags
+ * are read fast, when bursts find nothing pause doubles up to maximum because field is static.
+ * Radio is off during the pause, which is where battery is saved.
+ */
+public class DutyCycler {
+
+    private final long mOnMs;
+    private final long mMinOffMs;
+    private final long mMaxOffMs;
+    private long mOffMs;
+
+    //Totals for duty ratio
+    private long mTotalOnMs;
+    private long mTotalOffMs;
+    private int mBursts;
+
+    /**
+     * @param onMs Burst length
+     * @param minOffMs Pause while tags arriving, more than zero
+     * @param maxOffMs Longest pause in static field
+     */
+    public DutyCycler(long onMs, long minOffMs, long maxOffMs)
+    {
+        if (onMs <= 0 || minOffMs <= 0 || maxOffMs < minOffMs)
+            throw new IllegalArgumentException("Invalid duty cycle times");
+        mOnMs = onMs;
+        mMinOffMs = minOffMs;
+        mMaxOffMs = maxOffMs;
+        mOffMs = minOffMs;
+    }
+
+    public long getOnMs()
+    {
+        return mOnMs;
+    }
+
+    /**
+     * Burst ended
+     * @param newTags New tags found in burst
+     * @return Pause before next burst in ms
+     */
+    public long onBurstEnd(int newTags)
+    {
+        if (newTags > 0)
+            mOffMs = mMinOffMs;
+        else
+            mOffMs = Math.min(mMaxOffMs, mOffMs * 2);
+        mBursts++;
+        mTotalOnMs += mOnMs;
+        mTotalOffMs += mOffMs;
+        return mOffMs;
+    }
+
+    public long getOffMs()
+    {
+        return mOffMs;
+    }
+
+    public int getBursts()
+    {
+        return mBursts;
+    }
+
+    /**
+     * @return Share of time radio was on, 0..100
+     */
+    public double getDutyPercent()
+    {
+        long total = mTotalOnMs + mTotalOffMs;
+        return total > 0 ? mTotalOnMs * 100.0 / total : 100;
+    }
+}
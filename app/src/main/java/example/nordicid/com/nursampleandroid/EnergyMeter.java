@@ -0,0 +1,74 @@
+package example.nordicid.com.nursampleandroid;
+
+/**
+ * Charge used by reader, integrated from battery current samples (NurAccessoryBattery.current).
+ * Samples are combined with trapezoid rule, sign of current is ignored.
+ * If reader reports no current, charge is estimated from drop of battery percentage and capacity instead.
+ */
+public class EnergyMeter {
+
+    private long mLastMs = -1;
+    private int mLastCurrentMa;
+    private double mMah;
+    private int mSamples;
+
+    private int mFirstPercent = -1;
+    private int mLastPercent = -1;
+    private int mCapacityMah;
+
+    /**
+     * Add battery sample
+     * @param currentMa Battery current in mA, 0 if not known
+     * @param percent Battery level in percent, -1 if not known
+     * @param capacityMah Battery capacity in mAh, 0 if not known
+     */
+    public synchronized void addSample(int currentMa, int percent, int capacityMah, long nowMs)
+    {
+        int current = Math.abs(currentMa);
+        if (mLastMs >= 0 && nowMs > mLastMs)
+            mMah += (mLastCurrentMa + current) / 2.0 * (nowMs - mLastMs) / 3600000.0;
+        mLastMs = nowMs;
+        mLastCurrentMa = current;
+        if (current > 0)
+            mSamples++;
+
+        if (percent >= 0) {
+            if (mFirstPercent < 0)
+                mFirstPercent = percent;
+            mLastPercent = percent;
+        }
+        if (capacityMah > 0)
+            mCapacityMah = capacityMah;
+    }
+
+    /**
+     * @return Charge used since first sample in mAh
+     */
+    public synchronized double getMah()
+    {
+        if (mSamples > 0)
+            return mMah;
+        //No current reported, use level drop
+        if (mFirstPercent >= 0 && mCapacityMah > 0 && mLastPercent < mFirstPercent)
+            return (mFirstPercent - mLastPercent) * mCapacityMah / 100.0;
+        return 0;
+    }
+
+    /**
+     * @return Reads per mAh, 0 if charge not known yet
+     */
+    public synchronized double readsPerMah(long reads)
+    {
+        double mah = getMah();
+        return mah > 0 ? reads / mah : 0;
+    }
+
+    public synchronized void reset()
+    {
+        mLastMs = -1;
+        mLastCurrentMa = 0;
+        mMah = 0;
+        mSamples = 0;
+        mFirstPercent = mLastPercent = -1;
+    }
+}
@@ -0,0 +1,448 @@
+package example.nordicid.com.nursampleandroid;
+
+import android.util.Log;
+
+import com.nordicid.nurapi.NurApi;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log for field diagnostics, cheap enough for NurApi and UI thread hot paths.
+ *
+ * Entries go to preallocated ring: level is checked first, then slot is claimed with CAS and message template
+ * and arguments are stored as is. No locks, no string building and no boxing in caller thread.
+ * Writer thread formats entries ("{}" in template replaced by arguments in order) and writes them to
+ * rotating files name.log, name.log.1 ... Entries logged before start() wait in ring.
+ * When ring is full new entries are dropped and counted, caller never waits for writer.
+ */
+public class FieldLog {
+
+    //Same values as android.util.Log
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final long DEFAULT_FILE_BYTES = 512 * 1024;
+    public static final int DEFAULT_FILES = 4;
+
+    //Writer sleep when ring empty. Producer wakes it earlier when ring fills past high water mark.
+    private static final long IDLE_MS = 50;
+    private static final String LEVELS = "??VDIWE";
+
+    //Argument kinds of entry
+    private static final int ARGS_NONE = 0;
+    private static final int ARGS_LONG = 1;
+    private static final int ARGS_LONG_LONG = 2;
+    private static final int ARGS_OBJ = 3;
+    private static final int ARGS_OBJ_LONG = 4;
+
+    private final int mMask;
+    //Entries waiting in ring when writer is woken
+    private final int mHighWater;
+    //Sequence+1 of entry in slot when published
+    private final AtomicLongArray mPublished;
+    private final long[] mTime;
+    private final int[] mLevels;
+    private final int[] mArgKinds;
+    private final String[] mTags;
+    private final String[] mTemplates;
+    private final Object[] mObjs;
+    private final long[] mArgA;
+    private final long[] mArgB;
+
+    //Next sequence to claim
+    private final AtomicLong mHead = new AtomicLong();
+    //Next sequence to write, only writer moves it
+    private volatile long mTail;
+    private final AtomicLong mDropped = new AtomicLong();
+    private volatile long mWritten;
+    private volatile int mLevel = INFO;
+    private volatile boolean mEcho;
+
+    private volatile boolean mRunning;
+    private volatile Thread mThread;
+    //Writer is sleeping, set by writer only
+    private volatile boolean mIdle;
+
+    //Used by writer only
+    private File mDir;
+    private String mName;
+    private long mMaxFileBytes;
+    private int mMaxFiles;
+    private Writer mWriter;
+    private long mFileBytes;
+    private volatile String mLastError;
+    private final StringBuilder mLine = new StringBuilder(256);
+    private final SimpleDateFormat mDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+    private final Date mDate = new Date();
+
+    /**
+     * @param capacity Entries in ring, rounded up to power of two
+     */
+    public FieldLog(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mMask = size - 1;
+        mHighWater = size / 4;
+        mPublished = new AtomicLongArray(size);
+        mTime = new long[size];
+        mLevels = new int[size];
+        mArgKinds = new int[size];
+        mTags = new String[size];
+        mTemplates = new String[size];
+        mObjs = new Object[size];
+        mArgA = new long[size];
+        mArgB = new long[size];
+    }
+
+    public int getCapacity() { return mMask + 1; }
+
+    /**
+     * Entries below level are not stored
+     */
+    public void setLevel(int level) { mLevel = level; }
+    public int getLevel() { return mLevel; }
+    public boolean isLoggable(int level) { return level >= mLevel; }
+
+    /**
+     * Also print lines to logcat (from writer thread)
+     */
+    public void setEcho(boolean echo) { mEcho = echo; }
+
+    public long getWritten() { return mWritten; }
+    public long getDropped() { return mDropped.get(); }
+    public String getLastError() { return mLastError; }
+
+    public void log(int level, String tag, String template)
+    {
+        if (level < mLevel)
+            return;
+        long seq = claim();
+        if (seq >= 0)
+            publish(seq, level, tag, template, ARGS_NONE, null, 0, 0);
+    }
+
+    public void log(int level, String tag, String template, long a)
+    {
+        if (level < mLevel)
+            return;
+        long seq = claim();
+        if (seq >= 0)
+            publish(seq, level, tag, template, ARGS_LONG, null, a, 0);
+    }
+
+    public void log(int level, String tag, String template, long a, long b)
+    {
+        if (level < mLevel)
+            return;
+        long seq = claim();
+        if (seq >= 0)
+            publish(seq, level, tag, template, ARGS_LONG_LONG, null, a, b);
+    }
+
+    /**
+     * @param obj Formatted with String.valueOf() in writer thread, so it must not change after logging
+     */
+    public void log(int level, String tag, String template, Object obj)
+    {
+        if (level < mLevel)
+            return;
+        long seq = claim();
+        if (seq >= 0)
+            publish(seq, level, tag, template, ARGS_OBJ, obj, 0, 0);
+    }
+
+    public void log(int level, String tag, String template, Object obj, long a)
+    {
+        if (level < mLevel)
+            return;
+        long seq = claim();
+        if (seq >= 0)
+            publish(seq, level, tag, template, ARGS_OBJ_LONG, obj, a, 0);
+    }
+
+    /**
+     * NurApi logEvent. Errors logged as ERROR, user messages INFO and verbose/data DEBUG.
+     */
+    public void logNurApi(int nurLevel, String text)
+    {
+        int level;
+        if ((nurLevel & NurApi.LOG_ERROR) != 0)
+            level = ERROR;
+        else if ((nurLevel & NurApi.LOG_USER) != 0)
+            level = INFO;
+        else
+            level = DEBUG;
+        log(level, "NurApi", "{}", text);
+    }
+
+    /**
+     * @return Sequence of free slot, -1 if ring full
+     */
+    private long claim()
+    {
+        while (true) {
+            long head = mHead.get();
+            if (head - mTail > mMask) {
+                mDropped.incrementAndGet();
+                return -1;
+            }
+            if (mHead.compareAndSet(head, head + 1))
+                return head;
+        }
+    }
+
+    private void publish(long seq, int level, String tag, String template, int argKind, Object obj, long a, long b)
+    {
+        int i = (int)(seq & mMask);
+        mTime[i] = System.currentTimeMillis();
+        mLevels[i] = level;
+        mTags[i] = tag;
+        mTemplates[i] = template;
+        mArgKinds[i] = argKind;
+        mObjs[i] = obj;
+        mArgA[i] = a;
+        mArgB[i] = b;
+        //Volatile write makes fields above visible to writer
+        mPublished.set(i, seq + 1);
+        if (mIdle && seq - mTail >= mHighWater) {
+            Thread writer = mThread;
+            if (writer != null)
+                LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Start writer thread. Directory is created if missing, current file is appended.
+     * @param name File name without .log
+     * @param maxFileBytes File rotated when it grows over this
+     * @param maxFiles Files kept including current one
+     */
+    public synchronized void start(File dir, String name, long maxFileBytes, int maxFiles) throws IOException
+    {
+        if (mRunning)
+            return;
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Cannot create " + dir);
+        mDir = dir;
+        mName = name;
+        mMaxFileBytes = maxFileBytes;
+        mMaxFiles = Math.max(1, maxFiles);
+        openFile();
+        mRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writerLoop();
+            }
+        }, "FieldLog");
+        mThread.setDaemon(true);
+        mThread.setPriority(Thread.MIN_PRIORITY);
+        mThread.start();
+    }
+
+    /**
+     * Stop writer thread. Entries in ring are written and file is closed.
+     */
+    public void stop()
+    {
+        Thread thread;
+        synchronized (this) {
+            if (!mRunning)
+                return;
+            mRunning = false;
+            thread = mThread;
+            mThread = null;
+        }
+        thread.interrupt();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        closeFile();
+    }
+
+    public boolean isRunning() { return mRunning; }
+
+    File currentFile() { return new File(mDir, mName + ".log"); }
+
+    private void writerLoop()
+    {
+        while (mRunning) {
+            if (drain() > 0)
+                continue;
+            flush();
+            mIdle = true;
+            LockSupport.parkNanos(IDLE_MS * 1000000);
+            mIdle = false;
+            if (Thread.interrupted())
+                return;
+        }
+    }
+
+    /**
+     * Write published entries. Writer thread only.
+     * @return Entries written
+     */
+    private int drain()
+    {
+        int count = 0;
+        while (true) {
+            long tail = mTail;
+            int i = (int)(tail & mMask);
+            if (mPublished.get(i) != tail + 1)
+                return count;
+            format(i);
+            //Slot free for producers after this, do not keep references
+            mObjs[i] = null;
+            mTemplates[i] = null;
+            mTail = tail + 1;
+            writeLine();
+            count++;
+        }
+    }
+
+    private void format(int i)
+    {
+        StringBuilder line = mLine;
+        line.setLength(0);
+        mDate.setTime(mTime[i]);
+        line.append(mDateFormat.format(mDate)).append(' ')
+                .append(LEVELS.charAt(Math.min(mLevels[i], LEVELS.length() - 1))).append('/')
+                .append(mTags[i]).append(": ");
+        int start = line.length();
+        String template = mTemplates[i];
+        int kind = mArgKinds[i];
+        int arg = 0;
+        int pos = 0;
+        while (template != null) {
+            int at = template.indexOf("{}", pos);
+            if (at < 0 || arg >= argCount(kind)) {
+                line.append(template, pos, template.length());
+                break;
+            }
+            line.append(template, pos, at);
+            appendArg(line, i, kind, arg++);
+            pos = at + 2;
+        }
+        if (mEcho)
+            Log.println(mLevels[i], mTags[i], line.substring(start));
+    }
+
+    private static int argCount(int kind)
+    {
+        switch (kind) {
+            case ARGS_LONG:
+            case ARGS_OBJ:
+                return 1;
+            case ARGS_LONG_LONG:
+            case ARGS_OBJ_LONG:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    private void appendArg(StringBuilder line, int i, int kind, int arg)
+    {
+        if (kind == ARGS_OBJ || kind == ARGS_OBJ_LONG) {
+            //Object first, then long
+            if (arg == 0)
+                line.append(String.valueOf(mObjs[i]));
+            else
+                line.append(mArgA[i]);
+        }
+        else
+            line.append(arg == 0 ? mArgA[i] : mArgB[i]);
+    }
+
+    private void writeLine()
+    {
+        mLine.append('\n');
+        if (mWriter == null) {
+            //Open failed earlier, try again on each line so log continues when storage is back
+            try {
+                openFile();
+            } catch (IOException ex) {
+                mLastError = ex.getMessage();
+                mDropped.incrementAndGet();
+                return;
+            }
+        }
+        try {
+            mWriter.append(mLine);
+            mFileBytes += mLine.length();
+            mWritten++;
+            if (mFileBytes >= mMaxFileBytes)
+                rotate();
+        } catch (IOException ex) {
+            mLastError = ex.getMessage();
+            mDropped.incrementAndGet();
+            closeFile();
+        }
+    }
+
+    private void openFile() throws IOException
+    {
+        File file = currentFile();
+        mFileBytes = file.length();
+        mWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"), 8192);
+    }
+
+    private void flush()
+    {
+        if (mWriter == null)
+            return;
+        try {
+            mWriter.flush();
+        } catch (IOException ex) {
+            mLastError = ex.getMessage();
+            closeFile();
+        }
+    }
+
+    private void closeFile()
+    {
+        if (mWriter == null)
+            return;
+        try {
+            mWriter.close();
+        } catch (IOException ex) {
+            mLastError = ex.getMessage();
+        }
+        mWriter = null;
+    }
+
+    /**
+     * name.log -> name.log.1 -> name.log.2 ..., oldest deleted
+     */
+    private void rotate() throws IOException
+    {
+        closeFile();
+        File base = currentFile();
+        new File(mDir, base.getName() + "." + (mMaxFiles - 1)).delete();
+        for (int n = mMaxFiles - 2; n >= 1; n--)
+            new File(mDir, base.getName() + "." + n).renameTo(new File(mDir, base.getName() + "." + (n + 1)));
+        if (mMaxFiles > 1)
+            base.renameTo(new File(mDir, base.getName() + ".1"));
+        else
+            base.delete();
+        openFile();
+    }
+}
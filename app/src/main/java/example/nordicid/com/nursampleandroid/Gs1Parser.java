@@ -0,0 +1,322 @@
+package example.nordicid.com.nursampleandroid;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parser for GS1 element strings read from GS1-128, GS1 DataMatrix and GS1 QR barcodes.
+ * Application identifiers (AI) are tokenized by walking the string once. Length of the AI and
+ * its data comes from GS1 General Specifications. Variable length fields end at GS (FNC1) character.
+ * Human readable form "(01)...(21)..." is accepted too.
+ *
+ * Parsed results are cached because continuous scanning reads the same labels many times.
+ */
+public class Gs1Parser {
+
+    //Group separator. Scanners transmit FNC1 inside barcode as this.
+    public static final char GS = '\u001D';
+
+    private static final int CACHE_SIZE = 128;
+
+    private static final LinkedHashMap<String, Gs1Data> mCache = new LinkedHashMap<String, Gs1Data>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Gs1Data> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private static int mCacheHits;
+
+    /**
+     * Parse barcode. Result is cached.
+     * @param barcode Barcode as received from imager
+     * @return Parsed data or null if barcode is not GS1 element string
+     */
+    public static Gs1Data parse(String barcode)
+    {
+        if (barcode == null)
+            return null;
+
+        synchronized (mCache) {
+            if (mCache.containsKey(barcode)) {
+                mCacheHits++;
+                return mCache.get(barcode);
+            }
+        }
+
+        Gs1Data data = parseUncached(barcode);
+
+        synchronized (mCache) {
+            mCache.put(barcode, data); //Also non GS1 results cached as null
+        }
+        return data;
+    }
+
+    public static int getCacheHits()
+    {
+        synchronized (mCache) {
+            return mCacheHits;
+        }
+    }
+
+    public static void clearCache()
+    {
+        synchronized (mCache) {
+            mCache.clear();
+            mCacheHits = 0;
+        }
+    }
+
+    /**
+     * Parse barcode without cache.
+     * @return Parsed data or null if barcode is not GS1 element string
+     */
+    static Gs1Data parseUncached(String barcode)
+    {
+        int pos = 0;
+        int len = barcode.length();
+        boolean symbologyId = false;
+
+        //Symbology identifier. ]C1 = GS1-128, ]d2 = GS1 DataMatrix, ]Q3 = GS1 QR, ]e0 = GS1 DataBar.
+        //Other identifiers, e.g. ]C0 plain Code 128, are not GS1.
+        if (len > 0 && barcode.charAt(0) == ']') {
+            if (len <= 3 || !isGs1SymbologyId(barcode))
+                return null;
+            pos = 3;
+            symbologyId = true;
+        }
+
+        //Some scanners send leading FNC1
+        while (pos < len && barcode.charAt(pos) == GS)
+            pos++;
+
+        if (pos < len && barcode.charAt(pos) == '(')
+            return parseHumanReadable(barcode, pos);
+
+        Gs1Data data = new Gs1Data();
+        while (pos < len) {
+            int aiLen = aiLength(barcode, pos);
+            if (aiLen == 0 || pos + aiLen > len)
+                return symbologyId ? data.invalid() : null;
+
+            String ai = barcode.substring(pos, pos + aiLen);
+            pos += aiLen;
+
+            int fixed = fixedDataLength(ai);
+            int end;
+            if (fixed > 0) {
+                end = pos + fixed;
+                if (end > len)
+                    return symbologyId ? data.invalid() : null;
+            }
+            else {
+                end = pos;
+                while (end < len && barcode.charAt(end) != GS)
+                    end++;
+            }
+
+            data.put(ai, barcode.substring(pos, end));
+            pos = end;
+            while (pos < len && barcode.charAt(pos) == GS)
+                pos++;
+        }
+
+        //Without symbology identifier plain number could look like GS1. Require known primary key.
+        if (!symbologyId && data.getGtin() == null && data.getSscc() == null)
+            return null;
+
+        return data;
+    }
+
+    private static boolean isGs1SymbologyId(String barcode)
+    {
+        return barcode.startsWith("]C1") || barcode.startsWith("]d2") || barcode.startsWith("]Q3") || barcode.startsWith("]e0");
+    }
+
+    /**
+     * Parse "(01)12345678901231(21)ABC" form
+     */
+    private static Gs1Data parseHumanReadable(String barcode, int pos)
+    {
+        Gs1Data data = new Gs1Data();
+        int len = barcode.length();
+        while (pos < len) {
+            if (barcode.charAt(pos) != '(')
+                return data.invalid();
+            int close = barcode.indexOf(')', pos);
+            if (close < 0)
+                return data.invalid();
+            String ai = barcode.substring(pos + 1, close);
+            int end = barcode.indexOf('(', close);
+            if (end < 0)
+                end = len;
+            data.put(ai, barcode.substring(close + 1, end));
+            pos = end;
+        }
+        return data;
+    }
+
+    /**
+     * Length of AI starting at pos. Decided by first two digits as in GS1 General Specifications.
+     * @return 2, 3 or 4. Zero if not a known AI.
+     */
+    static int aiLength(String s, int pos)
+    {
+        if (pos + 2 > s.length())
+            return 0;
+        char c0 = s.charAt(pos);
+        char c1 = s.charAt(pos + 1);
+        if (c0 < '0' || c0 > '9' || c1 < '0' || c1 > '9')
+            return 0;
+
+        int prefix = (c0 - '0') * 10 + (c1 - '0');
+        if (prefix <= 30)
+            return (prefix == 23 || prefix == 24 || prefix == 25) ? 3 : 2;
+        if (prefix <= 36)
+            return 4; //31nn-36nn measures
+        if (prefix == 37)
+            return 2;
+        if (prefix == 39)
+            return 4;
+        if (prefix >= 40 && prefix <= 42)
+            return 3;
+        if (prefix == 71)
+            return 3; //710-717 national healthcare reimbursement numbers
+        if (prefix >= 70 && prefix <= 89)
+            return 4;
+        if (prefix >= 90)
+            return 2;
+        return 0;
+    }
+
+    /**
+     * Fixed data length of AI.
+     * @return Data length or 0 if data is variable length terminated by FNC1
+     */
+    static int fixedDataLength(String ai)
+    {
+        int prefix = (ai.charAt(0) - '0') * 10 + (ai.charAt(1) - '0');
+        switch (prefix) {
+            case 0: return 18;
+            case 1:
+            case 2: return 14;
+            case 11: case 12: case 13: case 15: case 16: case 17: return 6;
+            case 20: return 2;
+            case 31: case 32: case 33: case 34: case 35: case 36: return 6;
+            case 41: return 13; //GLN
+        }
+        if (ai.equals("422") || ai.equals("424") || ai.equals("426"))
+            return 3;
+        return 0;
+    }
+
+    /**
+     * Parsed GS1 element string
+     */
+    public static class Gs1Data {
+        //AI -> data in order found
+        private final LinkedHashMap<String, String> mElements = new LinkedHashMap<String, String>();
+        private boolean mValid = true;
+
+        void put(String ai, String value)
+        {
+            mElements.put(ai, value);
+        }
+
+        Gs1Data invalid()
+        {
+            mValid = false;
+            return this;
+        }
+
+        /**
+         * False if parsing stopped to unknown AI or truncated data. Elements before that are available.
+         */
+        public boolean isValid() { return mValid; }
+
+        public Map<String, String> getElements() { return mElements; }
+        public String get(String ai) { return mElements.get(ai); }
+
+        public String getGtin() { return mElements.get("01"); }
+        public String getSscc() { return mElements.get("00"); }
+        public String getBatch() { return mElements.get("10"); }
+        public String getExpiry() { return mElements.get("17"); }
+        public String getSerial() { return mElements.get("21"); }
+        public String getGiai() { return mElements.get("8004"); }
+        public String getGrai() { return mElements.get("8003"); }
+        public String getGln() { return mElements.get("414"); }
+
+        /**
+         * Build EPC pure identity URI from the identification keys.
+         * Result is same form than EPCTagEngine.buildPureIdentityURI() gives from RFID tag so
+         * barcode and tag identity can be compared as strings.
+         * @param companyPrefixLength Length of GS1 company prefix (6..12). It cannot be detected from barcode.
+         * @return URI or null if barcode does not contain serialized identity
+         */
+        public String toPureIdentityUri(int companyPrefixLength)
+        {
+            int cp = companyPrefixLength;
+            if (cp < 6 || cp > 12)
+                return null;
+
+            String gtin = getGtin();
+            String serial = getSerial();
+            if (gtin != null && serial != null && gtin.length() == 14) {
+                //Indicator digit moves in front of item reference, check digit dropped
+                return "urn:epc:id:sgtin:" + gtin.substring(1, 1 + cp) + "." +
+                        gtin.charAt(0) + gtin.substring(1 + cp, 13) + "." + escape(serial);
+            }
+
+            String sscc = getSscc();
+            if (sscc != null && sscc.length() == 18) {
+                //Extension digit moves in front of serial reference, check digit dropped
+                return "urn:epc:id:sscc:" + sscc.substring(1, 1 + cp) + "." +
+                        sscc.charAt(0) + sscc.substring(1 + cp, 17);
+            }
+
+            String grai = getGrai();
+            if (grai != null && grai.length() > 14) {
+                //Leading zero, company prefix + asset type, check digit, serial
+                return "urn:epc:id:grai:" + grai.substring(1, 1 + cp) + "." +
+                        grai.substring(1 + cp, 13) + "." + escape(grai.substring(14));
+            }
+
+            String giai = getGiai();
+            if (giai != null && giai.length() > cp) {
+                return "urn:epc:id:giai:" + giai.substring(0, cp) + "." + escape(giai.substring(cp));
+            }
+
+            String gln = getGln();
+            if (gln != null && gln.length() == 13) {
+                String ext = get("254");
+                return "urn:epc:id:sgln:" + gln.substring(0, cp) + "." +
+                        gln.substring(cp, 12) + "." + (ext != null ? escape(ext) : "0");
+            }
+
+            return null;
+        }
+
+        /**
+         * Escape characters which are not allowed in EPC URI as %HH
+         */
+        static String escape(String s)
+        {
+            StringBuilder sb = null;
+            for (int x = 0; x < s.length(); x++) {
+                char c = s.charAt(x);
+                boolean esc = c == '"' || c == '%' || c == '&' || c == '/' || c == '<' || c == '>' || c == '?' || c == '#';
+                if (esc && sb == null) {
+                    sb = new StringBuilder(s.length() + 8);
+                    sb.append(s, 0, x);
+                }
+                if (sb != null) {
+                    if (esc)
+                        sb.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16))).append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+                    else
+                        sb.append(c);
+                }
+            }
+            return sb == null ? s : sb.toString();
+        }
+    }
+}
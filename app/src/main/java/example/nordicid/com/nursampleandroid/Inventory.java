@@ -9,25 +9,58 @@ import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.support.annotation.UiThread;
-import android.util.Log;
 import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.CompoundButton;
+import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 import android.widget.ToggleButton;
 
+import com.nordicid.nuraccessory.NurAccessoryBattery;
 import com.nordicid.nuraccessory.NurAccessoryExtension;
 import com.nordicid.nurapi.*;
-import com.nordicid.tdt.*;
+
+import example.nordicid.com.inventorycore.EpcCodec;
+import example.nordicid.com.inventorycore.EpcFilter;
+import example.nordicid.com.inventorycore.EasMonitor;
+import example.nordicid.com.inventorycore.InventoryController;
+import example.nordicid.com.inventorycore.InventoryRead;
+import example.nordicid.com.inventorycore.InventoryStrategy;
+import example.nordicid.com.inventorycore.Reconciliation;
+import example.nordicid.com.inventorycore.SensorRead;
+import example.nordicid.com.inventorycore.SensorReadMode;
+import example.nordicid.com.inventorycore.SensorSeries;
+import example.nordicid.com.inventorycore.SingleTagScanner;
+import example.nordicid.com.inventorycore.TriggeredReadMode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 public class Inventory extends Activity {
 
     public static final String TAG = "NUR_SAMPLE";
 
+    //Subdirectory of external files dir where tag exports go
+    public static final String EXPORT_DIR = "exports";
+    //Subdirectory of external files dir where cycle count manifests are read from
+    public static final String MANIFEST_DIR = "manifests";
+
     //Handles of these will be fetch from MainActivity
     private NurApi mNurApi;
     private NurAccessoryExtension mAccessoryApi;
+    private final FieldLog mLog = MainActivity.GetLog();
 
     //UI
     private TextView mResultTextView;
@@ -39,33 +72,77 @@ public class Inventory extends Activity {
     private String mUiStatusMsg;
     private String mUiResultMsg;
     private String mUiEpcMsg;
+    //EPC shown when mUiEpcMsg is null. Converted to hex only when UI updated.
+    private volatile byte[] mUiEpcBytes;
+    private final char[] mUiEpcChars = new char[NurApi.MAX_EE_EPCLEN * 2 * 4];
     private int mUiStatusColor;
     private int mUiResultColor;
     private int mUiEpcColor;
 
-    //Need to keep track when state change on trigger button
-    private boolean mTriggerDown;
-
-    //This demo (Inventory stream) just counts different tags found
-    private int mTagsAddedCounter;
-
-    //====== Global variables for ScanSingleTag thread operation ======
-    //This counter add by one when single tag found after inventory. Reset to zero if multiple tags found.
-    int mSingleTagFoundCount;
+    //Inventory stream control, EPC filter and session/target strategy. Running while trigger is down.
+    //Shared with headless gateway in InventoryCore module.
+    private InventoryController mController;
+    //New tags accepted in current stream event, EPC of first one is shown
+    private int mRoundTags;
+
+    private EditText mFilterEditText;
+    private TextView mStrategyTextView;
+    private String mUiStrategyMsg = "";
+
+    //Duty cycled stream: bursts of DUTY_ON_MS with adaptive pause, when active profile has duty cycle on
+    private static final long DUTY_ON_MS = 1000;
+    private static final long DUTY_MIN_OFF_MS = 250;
+    private static final long DUTY_MAX_OFF_MS = 8000;
+    private static final long BATTERY_SAMPLE_MS = 5000;
+    //Null when stream runs flat out. Controller is paused between bursts.
+    private volatile DutyCycler mDutyCycler;
+    private int mDutyBurstStartTags;
+    //Controller pause of duty cycle not yet resumed
+    private boolean mDutyPaused;
+    //Charge used during stream from accessory battery info, for tags per mAh
+    private final EnergyMeter mEnergyMeter = new EnergyMeter();
+    private final Handler mDutyHandler = new Handler();
+    //Battery info is blocking accessory command, run off UI thread. Set while one is in progress.
+    private ExecutorService mBatteryReader;
+    private volatile boolean mBatteryReading;
+
+    //Cycle count against expected manifest. Null when no manifest loaded.
+    private volatile Reconciliation mReconciliation;
+    private TextView mManifestTextView;
+    private String mUiManifestMsg;
+
+    //Reads triggered by reader GPIO input (photo eye on conveyor). Off until toggled.
+    private TriggeredReadMode mTriggeredRead;
+    private ToggleButton mTriggeredButton;
+    private TextView mTriggerTextView;
+    private String mUiTriggerMsg;
+    private static final String[] TRIGGER_ACTIONS = { "Reader scans tag", "Gate: stream while active" };
+
+    //NXP EAS alarm polled between inventory. Off until toggled.
+    private EasMonitor mEasMonitor;
+    private ToggleButton mEasButton;
+    private TextView mEasTextView;
+    private String mUiEasMsg;
+    private int mUiEasColor = Color.BLACK;
+
+    //Sensor tag sweeps with synchronous inventory. Null until toggled.
+    private volatile SensorReadMode mSensorMode;
+    private ToggleButton mSensorButton;
+    private TextView mSensorTextView;
+    private String mUiSensorMsg;
+    private static final SensorRead[] SENSORS = { SensorRead.MAGNUS_MOISTURE, SensorRead.MAGNUS_S2_MOISTURE, SensorRead.MAGNUS_RSSI };
+
+    //Export of tag storage to file is running
+    private volatile boolean mExporting;
+
+    //Records reader events to file when enabled in Setup. Null if not recording.
+    private SessionRecorder mRecorder;
+
+    //Single tag read with low TX level
+    private SingleTagScanner mSingleTagScanner;
 
     //This is true while searching single tag operation ongoing.
-    boolean mSingleTagDoTask;
-
-    //This counts scan rounds and when reaching 15 it's time to stop.
-    int mSingleTagRoundCount;
-
-    //Temporary storing current TX level because single tag will be search using low TX level
-    int mSingleTempTxLevel;
-
-    //This variable hold last tag epc for making sure same tag found 3 times in row.
-    static String mTagUnderReview;
-
-    //===================================================================
+    private volatile boolean mSingleTagDoTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -75,14 +152,160 @@ public class Inventory extends Activity {
         //Get NurApi and Accessory handles from MainActivity
         mNurApi = MainActivity.GetNurApi();
         mAccessoryApi = MainActivity.GetNurAccessory();
+        mBatteryReader = Executors.newSingleThreadExecutor();
+
+        mController = new InventoryController(mNurApi, mControllerListener);
+        mSingleTagScanner = new SingleTagScanner(mNurApi);
+        mTriggeredRead = new TriggeredReadMode(mNurApi, mController, mControllerListener, mTriggerListener);
+        mEasMonitor = new EasMonitor(mNurApi, mController, mEasListener,
+                EasMonitor.DEFAULT_POLL_INTERVAL_MS, EasMonitor.DEFAULT_LATENCY_BUDGET_MS);
 
         //Set event listener for this activity
         mNurApi.setListener(mNurApiEventListener);
+        if (Settings.isRecordSessions()) {
+            try {
+                mRecorder = SessionRecorder.create(getExternalFilesDir(Setup.SESSIONS_DIR), "inventory", mNurApi, mNurApiEventListener);
+                mNurApi.setListener(mRecorder);
+            } catch (Exception ex) {
+                mLog.log(FieldLog.WARN, TAG, "Session recording failed {}", ex.getMessage());
+            }
+        }
 
         mResultTextView = (TextView)findViewById(R.id.text_result);
         mStatusTextView = (TextView)findViewById(R.id.text_status);
         mEPCTextView = (TextView)findViewById(R.id.text_epc);
 
+        mFilterEditText = (EditText)findViewById(R.id.edit_filter);
+        Button mApplyFilterButton = (Button) findViewById(R.id.buttonApplyFilter);
+        mApplyFilterButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                applyFilter();
+            }
+        });
+
+        Button mExportButton = (Button) findViewById(R.id.buttonExport);
+        mExportButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                exportTags();
+            }
+        });
+
+        mManifestTextView = (TextView)findViewById(R.id.text_manifest);
+        Button mManifestButton = (Button) findViewById(R.id.buttonManifest);
+        mManifestButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                loadManifest();
+            }
+        });
+
+        Button mHistoryButton = (Button) findViewById(R.id.buttonHistory);
+        mHistoryButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                Intent historyIntent = new Intent(Inventory.this, TagHistory.class);
+                byte[] epc = mUiEpcBytes;
+                if (epc != null)
+                    historyIntent.putExtra(TagHistory.EXTRA_EPC, EpcCodec.toHexString(epc));
+                startActivity(historyIntent);
+            }
+        });
+
+        Button mLocateButton = (Button) findViewById(R.id.buttonLocate);
+        mLocateButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                //Trace and inventory stream can not run at the same time
+                StopInventoryStream();
+                Intent locateIntent = new Intent(Inventory.this, Locate.class);
+                byte[] epc = mUiEpcBytes;
+                if (epc != null)
+                    locateIntent.putExtra(Locate.EXTRA_EPC, EpcCodec.toHexString(epc));
+                startActivity(locateIntent);
+            }
+        });
+
+        mStrategyTextView = (TextView)findViewById(R.id.text_strategy_stats);
+        Spinner strategySpinner = (Spinner)findViewById(R.id.spinnerStrategy);
+        ArrayAdapter<String> strategyAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item, InventoryStrategy.presetNames());
+        strategyAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        strategySpinner.setAdapter(strategyAdapter);
+        strategySpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                //Taken in use when inventory stream started next time
+                mController.setStrategy(InventoryStrategy.PRESETS[position]);
+            }
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) { }
+        });
+
+        //TID read in same inventory as EPC, stored to history for telling cloned EPCs apart
+        CheckBox readTidCheckBox = (CheckBox)findViewById(R.id.checkBoxReadTid);
+        readTidCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                //Taken in use when inventory stream started next time
+                mController.setInventoryRead(isChecked ? InventoryRead.TID : null);
+            }
+        });
+        Button compareReadButton = (Button) findViewById(R.id.buttonCompareRead);
+        compareReadButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                compareInventoryRead();
+            }
+        });
+
+        final Spinner gpioSpinner = (Spinner)findViewById(R.id.spinnerTriggerGpio);
+        String[] gpioNames = new String[NurApi.MAX_GPIO];
+        for (int x = 0; x < gpioNames.length; x++)
+            gpioNames[x] = "GPIO" + (x + 1);
+        ArrayAdapter<String> gpioAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item, gpioNames);
+        gpioAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        gpioSpinner.setAdapter(gpioAdapter);
+        final Spinner actionSpinner = (Spinner)findViewById(R.id.spinnerTriggerAction);
+        ArrayAdapter<String> actionAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item, TRIGGER_ACTIONS);
+        actionAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        actionSpinner.setAdapter(actionAdapter);
+
+        mTriggerTextView = (TextView)findViewById(R.id.text_trigger_stats);
+        mTriggeredButton = (ToggleButton)findViewById(R.id.toggleButtonTriggered);
+        mTriggeredButton.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (isChecked) {
+                    int action = actionSpinner.getSelectedItemPosition() == 1 ? TriggeredReadMode.ACTION_GATE : TriggeredReadMode.ACTION_SCAN;
+                    StartTriggeredRead(gpioSpinner.getSelectedItemPosition(), action);
+                } else {
+                    StopTriggeredRead();
+                }
+                showOnUI();
+            }
+        });
+
+        final Spinner sensorSpinner = (Spinner)findViewById(R.id.spinnerSensor);
+        ArrayAdapter<SensorRead> sensorAdapter = new ArrayAdapter<SensorRead>(this, android.R.layout.simple_spinner_item, SENSORS);
+        sensorAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        sensorSpinner.setAdapter(sensorAdapter);
+        mSensorTextView = (TextView)findViewById(R.id.text_sensor_stats);
+        mSensorButton = (ToggleButton)findViewById(R.id.toggleButtonSensors);
+        mSensorButton.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (isChecked)
+                    StartSensorSweep(SENSORS[sensorSpinner.getSelectedItemPosition()]);
+                else
+                    StopSensorSweep();
+                showOnUI();
+            }
+        });
+
+        mEasTextView = (TextView)findViewById(R.id.text_eas);
+        mEasButton = (ToggleButton)findViewById(R.id.toggleButtonEas);
+        mEasButton.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (isChecked)
+                    StartEasMonitor();
+                else
+                    StopEasMonitor();
+                showOnUI();
+            }
+        });
+
         Button mScanSingleButton = (Button) findViewById(R.id.buttonScanSingleTag);
         mInvStreamButton = (ToggleButton)findViewById(R.id.toggleButtonInvStream);
 
@@ -97,10 +320,7 @@ public class Inventory extends Activity {
         TextView mSingleTagTxt3 = (TextView)findViewById(R.id.textViewSingle3);
         TextView mSingleTagTxt4 = (TextView)findViewById(R.id.textViewSingle4);
 
-        mTriggerDown = false;
         mSingleTagDoTask = false;
-        mTagsAddedCounter = 0;
-        mTagUnderReview = "";
 
         if(MainActivity.IsAccessorySupported())
         {
@@ -148,6 +368,150 @@ public class Inventory extends Activity {
         }
     }
 
+    /**
+     * Parse filter rules from UI. New filter taken in use when inventory stream started next time.
+     */
+    private void applyFilter()
+    {
+        try {
+            EpcFilter filter = EpcFilter.parse(mFilterEditText.getText().toString());
+            mController.setFilter(filter);
+            if (filter.isEmpty())
+                Toast.makeText(this, "Filter off", Toast.LENGTH_SHORT).show();
+            else if (filter.buildReaderFilters() != null)
+                Toast.makeText(this, "Filter on (reader select + phone)", Toast.LENGTH_SHORT).show();
+            else
+                Toast.makeText(this, "Filter on (phone only)", Toast.LENGTH_SHORT).show();
+        }
+        catch (IllegalArgumentException ex) {
+            Toast.makeText(this, ex.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * Export tags found to file in background. Format and compression selected in Setup.
+     * Progress and speed shown in status line.
+     */
+    private void exportTags()
+    {
+        if (mExporting)
+            return;
+
+        final TagExporter exporter = new TagExporter(Settings.getExportFormat(), Settings.isExportGzip());
+        final File dir = getExternalFilesDir(EXPORT_DIR);
+        if (dir == null || (!dir.exists() && !dir.mkdirs())) {
+            Toast.makeText(this, "Cannot create export directory", Toast.LENGTH_LONG).show();
+            return;
+        }
+        final File file = new File(dir, "tags_" + System.currentTimeMillis() + exporter.getExtension());
+
+        mExporting = true;
+        Thread exportThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    OutputStream out = new FileOutputStream(file);
+                    int count = exporter.export(mController.getTagStorage(), out, new TagExporter.ProgressListener() {
+                        @Override
+                        public void onProgress(int tagsDone, int tagsTotal, long bytes, double mbPerSec) {
+                            mUiStatusMsg = String.format("Exporting %d/%d (%.1f MB/s)", tagsDone, tagsTotal, mbPerSec);
+                            mUiStatusColor = Color.BLACK;
+                            showOnUI();
+                        }
+                    });
+                    mUiStatusMsg = "Exported " + count + " tags to " + file.getName();
+                }
+                catch (Exception ex) {
+                    mUiStatusMsg = "Export failed: " + ex.getMessage();
+                    mUiStatusColor = Color.RED;
+                }
+                mExporting = false;
+                showOnUI();
+            }
+        });
+        exportThread.start();
+    }
+
+    /**
+     * Load newest manifest file from manifest directory in background. Count starts over.
+     * File has one EPC per line, or EPC in first column of CSV.
+     */
+    private void loadManifest()
+    {
+        final File dir = getExternalFilesDir(MANIFEST_DIR);
+        File newest = null;
+        File[] files = dir != null && (dir.exists() || dir.mkdirs()) ? dir.listFiles() : null;
+        if (files != null) {
+            for (File f : files) {
+                if (f.isFile() && (newest == null || f.lastModified() > newest.lastModified()))
+                    newest = f;
+            }
+        }
+        if (newest == null) {
+            Toast.makeText(this, "Copy manifest (.txt/.csv) to " + dir, Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        final File file = newest;
+        mUiManifestMsg = "Loading " + file.getName() + "...";
+        showOnUI();
+        Thread loadThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long start = System.nanoTime();
+                    Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+                    Reconciliation reconciliation;
+                    try {
+                        reconciliation = Reconciliation.load(file.getName(), reader);
+                    } finally {
+                        reader.close();
+                    }
+                    long ms = (System.nanoTime() - start) / 1000000;
+                    mLog.log(FieldLog.INFO, TAG, "Manifest {} EPCs loaded in {} ms", reconciliation.getExpectedCount(), ms);
+                    mReconciliation = reconciliation;
+                    mUiManifestMsg = reconciliation.summary() + "\nLoaded " + reconciliation.getExpectedCount() + " EPCs in " + ms + " ms";
+                }
+                catch (Exception ex) {
+                    mUiManifestMsg = "Manifest failed: " + ex.getMessage();
+                }
+                showOnUI();
+            }
+        });
+        loadThread.start();
+    }
+
+    /**
+     * Measure TID read during inventory against inventory followed by read of each tag, with tags in front of reader.
+     * Runs synchronous inventories in background, stream must be off.
+     */
+    private void compareInventoryRead()
+    {
+        if (mSingleTagDoTask || mController.isRunning() || mTriggeredRead.isActive() || isSensorSweeping() || mExporting)
+            return;
+        mSingleTagDoTask = true;
+        mUiStatusMsg = "Comparing TID read methods...";
+        mUiStatusColor = Color.BLACK;
+        showOnUI();
+        Thread compareThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    InventoryRead.Comparison result = InventoryRead.TID.compare(mNurApi, 10);
+                    mLog.log(FieldLog.INFO, TAG, "TID read {}", result);
+                    mUiStatusMsg = result.toString();
+                }
+                catch (Exception ex) {
+                    mUiStatusMsg = "Compare failed: " + ex.getMessage();
+                    mUiStatusColor = Color.RED;
+                }
+                mSingleTagDoTask = false;
+                showOnUI();
+            }
+        });
+        compareThread.start();
+    }
+
     /**
      * Show UI items
      */
@@ -157,9 +521,24 @@ public class Inventory extends Activity {
             public void run() {
                 mResultTextView.setText(mUiResultMsg);
                 mResultTextView.setTextColor(mUiResultColor);
+                mStrategyTextView.setText(mUiStrategyMsg);
+                if (mUiManifestMsg != null)
+                    mManifestTextView.setText(mUiManifestMsg);
+                if (mUiTriggerMsg != null)
+                    mTriggerTextView.setText(mUiTriggerMsg);
+                if (mUiSensorMsg != null)
+                    mSensorTextView.setText(mUiSensorMsg);
+                if (mUiEasMsg != null) {
+                    mEasTextView.setText(mUiEasMsg);
+                    mEasTextView.setTextColor(mUiEasColor);
+                }
                 mStatusTextView.setText(mUiStatusMsg);
                 mStatusTextView.setTextColor(mUiStatusColor);
-                mEPCTextView.setText(mUiEpcMsg);
+                byte[] epc = mUiEpcBytes;
+                if (mUiEpcMsg == null && epc != null && epc.length * 2 <= mUiEpcChars.length)
+                    mEPCTextView.setText(mUiEpcChars, 0, EpcCodec.encode(epc, mUiEpcChars, 0));
+                else
+                    mEPCTextView.setText(mUiEpcMsg);
                 mEPCTextView.setTextColor(mUiEpcColor);
             }
         });
@@ -169,7 +548,7 @@ public class Inventory extends Activity {
     @Override
     protected void onStart() {
         super.onStart();
-        Log.i(TAG, "Inventory onStart ");
+        mLog.log(FieldLog.INFO, TAG, "Inventory onStart ");
         mUiEpcMsg="EPC";
         mUiResultMsg = "Result";
         mUiStatusMsg = "Waiting button press...";
@@ -179,12 +558,36 @@ public class Inventory extends Activity {
         showOnUI();
     }
 
+    @Override
+    protected void onRestart() {
+        super.onRestart();
+        //Locate sets own listener. Take events back when returning.
+        mNurApi.setListener(mRecorder != null ? mRecorder : mNurApiEventListener);
+    }
+
     @Override
     protected void onStop() {
         super.onStop();
-        Log.i(TAG, "Inventory onStop ");
+        mLog.log(FieldLog.INFO, TAG, "Inventory onStop ");
         //Make sure going out from ScanSingleTagThread
-        mSingleTagDoTask=false;
+        mSingleTagScanner.cancel();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mDutyHandler.removeCallbacks(mDutyBurstEnd);
+        mDutyHandler.removeCallbacks(mDutyBurstStart);
+        mDutyHandler.removeCallbacks(mBatterySample);
+        mBatteryReader.shutdownNow();
+        //GPIO setup of reader back as it was
+        StopTriggeredRead();
+        StopEasMonitor();
+        StopSensorSweep();
+        if (mRecorder != null) {
+            mRecorder.close();
+            mLog.log(FieldLog.INFO, TAG, "Session recorded {} records", mRecorder.getRecordCount());
+        }
     }
 
     /**
@@ -192,116 +595,52 @@ public class Inventory extends Activity {
      */
     private void ScanSingleTagThread()
     {
-        if(mSingleTagDoTask  || mTriggerDown) return; //Already running tasks so let's not disturb that operation.
+        if(mSingleTagDoTask  || mController.isRunning() || isSensorSweeping()) return; //Already running tasks so let's not disturb that operation.
+        mSingleTagDoTask = true;
 
         Thread sstThread = new Thread(new Runnable() {
             @Override
             public void run() {
-                //Store current TX level of RFID reader
-                try {
-                    mSingleTempTxLevel = mNurApi.getSetupTxLevel();
-                    //Set rather low TX power. You need to get close to tag for successful reading
-                    mNurApi.setSetupTxLevel(NurApi.TXLEVEL_8); //This is attenuation level as dBm from max level 27dBm
-                }
-                catch (Exception ex)
-                {
-                    mUiStatusMsg = ex.getMessage();
-                    mUiStatusColor = Color.RED;
-                    showOnUI();
-                    return;
-                }
-
                 mUiResultMsg = ".";
                 mUiResultColor = Color.BLUE;
                 mUiEpcMsg="";
                 mUiEpcColor = Color.BLACK;
 
-                mSingleTagDoTask = true;
-                mSingleTagRoundCount = 0;
-                mSingleTagFoundCount = 0;
-
-                long time_start = System.currentTimeMillis();
-
-                while (mSingleTagDoTask)
-                {
-                    mUiStatusMsg="Scan single tag (round:" + String.valueOf(mSingleTagRoundCount) + ")";
-                    showOnUI();
-                    try {
-                        mNurApi.clearIdBuffer(); //Clear buffer from existing tags
-                        //Do the inventory with small rounds and Q values. We looking for single tag..
-                        NurRespInventory resp = mNurApi.inventory(2, 4, 0); //Rounds=2, Q=4, Session=0
-                        mSingleTagRoundCount++;
-                        if (resp.numTagsFound > 1) {
-                            mUiResultMsg = String.valueOf("Too many tags seen");
-                            mUiResultColor=Color.RED;
-                            mSingleTagFoundCount = 0;
-                        } else if (resp.numTagsFound == 1) {
-                            NurTag tag = mNurApi.fetchTagAt(true, 0); //Get tag information from pos 0
-
-                            //We looking for same tag in antenna field seen 3 times in row. isSameTag function make sure it is.
-                            if (isSameTag(tag.getEpcString())) mSingleTagFoundCount++;
-                            else mSingleTagFoundCount = 1; //It was not. Start all over.
-
-                            if (mSingleTagFoundCount == 3) {
-                                //Single tag found multiple times (3) in row so let's accept.
-                                try {
-                                    //Check if tag is GS1 coded. Exception fired if not and plain EPC shown.
-                                    //This is TDT (TagDataTranslation) library feature.
-                                    EPCTagEngine engine = new EPCTagEngine(tag.getEpcString());
-                                    //Looks like it is GS1 coded, show pure Identity URI
-                                    String gs = engine.buildPureIdentityURI();
-                                    mUiResultMsg = "GS1 coded tag!";
-                                    mUiEpcMsg = gs;
-                                } catch (Exception ex) {
-                                    //Not GS1 coded, show EPC only
-                                    mUiResultMsg = "Single Tag found!";
-                                    mUiEpcMsg = tag.getEpcString();
-                                }
-
-                                //Set nice 'success' color to result text
-                                mUiResultColor = Color.rgb(0, 128, 0);
-                                //give good beep for user on device if available
-                                if(MainActivity.IsAccessorySupported())
-                                    mAccessoryApi.beepAsync(500);
-                                //..and on phone
-                                Beeper.beep(Beeper.BEEP_300MS);
-                                //We are done here
-                                mSingleTagDoTask = false;
-                                mUiStatusMsg = "Waiting button press...";
-                            } else {
-                                String dots = ".";
-                                for (int x = 0; x < mSingleTagFoundCount; x++)
-                                    dots += ".";
-
-                                mUiResultMsg=dots;
-                                mUiResultColor =  Color.BLUE;
-                            }
-                        }
-
-                        //We try scan max 7000 millisec
-                        if(System.currentTimeMillis() >= time_start+7000) {
-                            //Give up.
-                            mUiResultMsg = "No single tag found";
-                            mUiResultColor = Color.RED;
-                            mUiStatusMsg = "Waiting button press...";
-                            //give some kind of "timeout beeps" for user
-                            if(MainActivity.IsAccessorySupported())
-                                mAccessoryApi.beepAsync(300);
-                            else
-                                Beeper.beep(Beeper.BEEP_300MS);
-
-                            mSingleTagDoTask = false;
+                try {
+                    //Rather low TX power. You need to get close to tag for successful reading.
+                    //This is attenuation level as dBm from max level 27dBm
+                    SingleTagScanner.Result result = mSingleTagScanner.scan(NurApi.TXLEVEL_8, SingleTagScanner.DEFAULT_TIMEOUT_MS, mSingleTagListener);
+                    if (result.isFound()) {
+                        //Single tag found multiple times in row so let's accept.
+                        //GS1 coded tag shown as pure identity URI. This is TDT (TagDataTranslation) library feature.
+                        if (result.pureIdentityUri != null) {
+                            mUiResultMsg = "GS1 coded tag!";
+                            mUiEpcMsg = result.pureIdentityUri;
+                        } else {
+                            //Not GS1 coded, show EPC only
+                            mUiResultMsg = "Single Tag found!";
+                            mUiEpcMsg = result.tag.getEpcString();
                         }
 
-                    } catch (Exception ex) {
-                        mUiStatusMsg=ex.getMessage();
-                        mUiStatusColor = Color.RED;
+                        //Set nice 'success' color to result text
+                        mUiResultColor = Color.rgb(0, 128, 0);
+                        //give good beep for user on device if available
+                        if(MainActivity.IsAccessorySupported())
+                            mAccessoryApi.beepAsync(500);
+                        //..and on phone
+                        Beeper.beep(Beeper.BEEP_300MS);
                     }
-                }
-
-                //Original TX level back
-                try {
-                    mNurApi.setSetupTxLevel(mSingleTempTxLevel);
+                    else if (!result.cancelled) {
+                        //Give up.
+                        mUiResultMsg = "No single tag found";
+                        mUiResultColor = Color.RED;
+                        //give some kind of "timeout beeps" for user
+                        if(MainActivity.IsAccessorySupported())
+                            mAccessoryApi.beepAsync(300);
+                        else
+                            Beeper.beep(Beeper.BEEP_300MS);
+                    }
+                    mUiStatusMsg = "Waiting button press...";
                 }
                 catch (Exception ex)
                 {
@@ -309,6 +648,7 @@ public class Inventory extends Activity {
                     mUiStatusColor = Color.RED;
                 }
 
+                mSingleTagDoTask = false;
                 showOnUI();
                 Beeper.beep(Beeper.BEEP_100MS);
             }
@@ -318,24 +658,46 @@ public class Inventory extends Activity {
         sstThread.start();
     }
 
+    /**
+     * Progress of single tag scan. Dots tell how many rounds in row same tag seen.
+     */
+    private final SingleTagScanner.Listener mSingleTagListener = new SingleTagScanner.Listener() {
+        @Override
+        public void onRound(int round, int hits, int tagsSeen) {
+            mUiStatusMsg = "Scan single tag (round:" + round + ")";
+            if (tagsSeen > 1) {
+                mUiResultMsg = "Too many tags seen";
+                mUiResultColor = Color.RED;
+            } else if (tagsSeen == 1) {
+                String dots = ".";
+                for (int x = 0; x < hits; x++)
+                    dots += ".";
+                mUiResultMsg = dots;
+                mUiResultColor = Color.BLUE;
+            }
+            showOnUI();
+        }
+    };
+
     /**
      * Start inventory streaming. After this you can receive InventoryStream events.
      * Inventory stream is active around 20 sec then stopped automatically. Event received about the state of streaming so you can start it immediately again.
      */
     private void StartInventoryStream()
     {
-        if(mSingleTagDoTask  || mTriggerDown) {
+        if(mSingleTagDoTask  || mController.isRunning() || mTriggeredRead.isActive() || isSensorSweeping()) {
             mInvStreamButton.setChecked(false);
             return; //Already running tasks so let's not disturb that operation.
         }
 
         try {
-            mNurApi.clearIdBuffer(); //This command clears all tag data currently stored into the module’s memory as well as the API's internal storage.
-            mNurApi.startInventoryStream(); //Kick inventory stream on. Now inventoryStreamEvent handler offers inventory results.
-            mTriggerDown = true; //Flag to indicate inventory stream running
-            mTagsAddedCounter = 0;
-            mUiResultMsg = "Tags:" + String.valueOf(mTagsAddedCounter);
+            //Clears tags found before, applies strategy and kicks inventory stream on.
+            //Now inventoryStreamEvent handler offers inventory results.
+            mController.start();
+            mUiResultMsg = "Tags:0";
             mUiStatusMsg = "Inventory streaming...";
+            startDutyCycle();
+            MainActivity.GetSession().setStreaming(true, System.currentTimeMillis());
         }
         catch (Exception ex)
         {
@@ -343,16 +705,167 @@ public class Inventory extends Activity {
         }
     }
 
+    /**
+     * Start burst timing if active profile has duty cycle on, and battery sampling in both modes
+     * so tags per mAh of duty cycled and flat out streaming can be compared.
+     */
+    private void startDutyCycle()
+    {
+        ReaderProfile active = MainActivity.GetProfileManager().getActive();
+        mDutyBurstStartTags = 0;
+        if (active != null && active.dutyCycle) {
+            mDutyCycler = new DutyCycler(DUTY_ON_MS, DUTY_MIN_OFF_MS, DUTY_MAX_OFF_MS);
+            mDutyHandler.postDelayed(mDutyBurstEnd, DUTY_ON_MS);
+            mUiStatusMsg = "Inventory duty cycled (" + active.name + ")...";
+        }
+        else
+            mDutyCycler = null;
+        mEnergyMeter.reset();
+        mDutyHandler.post(mBatterySample);
+    }
+
+    private void stopDutyCycle()
+    {
+        mDutyHandler.removeCallbacks(mDutyBurstEnd);
+        mDutyHandler.removeCallbacks(mDutyBurstStart);
+        mDutyHandler.removeCallbacks(mBatterySample);
+        mDutyPaused = false; //Controller stop() ends all pauses
+    }
+
+    /**
+     * Burst over: stop stream and wait pause given by cycler. Pause is short if burst found new tags.
+     */
+    private final Runnable mDutyBurstEnd = new Runnable() {
+        @Override
+        public void run() {
+            DutyCycler cycler = mDutyCycler;
+            if (!mController.isRunning() || cycler == null)
+                return;
+            try {
+                mDutyPaused = mController.pause();
+            }
+            catch (Exception ex) {
+                mLog.log(FieldLog.WARN, TAG, "Duty cycle stop failed {}", ex.getMessage());
+            }
+            long offMs = cycler.onBurstEnd(mController.getTagsAdded() - mDutyBurstStartTags);
+            mDutyHandler.postDelayed(mDutyBurstStart, offMs);
+            mUiStatusMsg = dutyText();
+            showOnUI();
+        }
+    };
+
+    private final Runnable mDutyBurstStart = new Runnable() {
+        @Override
+        public void run() {
+            DutyCycler cycler = mDutyCycler;
+            if (!mController.isRunning() || cycler == null)
+                return;
+            mDutyBurstStartTags = mController.getTagsAdded();
+            try {
+                mDutyPaused = false;
+                mController.resume();
+            }
+            catch (Exception ex) {
+                mUiStatusMsg = ex.getMessage();
+                mUiStatusColor = Color.RED;
+                showOnUI();
+            }
+            mDutyHandler.postDelayed(mDutyBurstEnd, cycler.getOnMs());
+        }
+    };
+
+    /**
+     * Battery current sample for tags per mAh while stream on. Timed on UI thread, read on battery reader thread.
+     * Sample skipped if previous read still in progress.
+     */
+    private final Runnable mBatterySample = new Runnable() {
+        @Override
+        public void run() {
+            if (!mController.isRunning() || !MainActivity.IsAccessorySupported())
+                return;
+            if (!mBatteryReading) {
+                mBatteryReading = true;
+                try {
+                    mBatteryReader.execute(mBatteryRead);
+                }
+                catch (RejectedExecutionException ex) {
+                    mBatteryReading = false; //Activity destroyed
+                    return;
+                }
+            }
+            mDutyHandler.postDelayed(this, BATTERY_SAMPLE_MS);
+        }
+    };
+
+    private final Runnable mBatteryRead = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                NurAccessoryBattery battery = mAccessoryApi.getBatteryInfo();
+                mEnergyMeter.addSample(battery.current, battery.percentage, battery.capacity, System.currentTimeMillis());
+            }
+            catch (Exception ex) {
+                mLog.log(FieldLog.WARN, TAG, "Battery info failed {}", ex.getMessage());
+            }
+            finally {
+                mBatteryReading = false;
+            }
+            if (mDutyCycler == null && mController.isRunning()) {
+                mUiStatusMsg = "Inventory streaming..." + energyText();
+                showOnUI();
+            }
+        }
+    };
+
+    /**
+     * Duty ratio, current pause and tags per mAh
+     */
+    private String dutyText()
+    {
+        DutyCycler cycler = mDutyCycler;
+        if (cycler == null)
+            return energyText();
+        return String.format("Duty cycled: radio on %.0f%%, pause %d ms", cycler.getDutyPercent(), cycler.getOffMs()) +
+                energyText();
+    }
+
+    /**
+     * Only new tags are reported by stream, so this is unique tags per mAh
+     */
+    private String energyText()
+    {
+        double mah = mEnergyMeter.getMah();
+        if (mah <= 0)
+            return "";
+        return String.format("\n%.0f tags/mAh (%.2f mAh)", mEnergyMeter.readsPerMah(mController.getTagsAdded()), mah);
+    }
+
     /**
      * Stop streaming.
      */
     private void StopInventoryStream()
     {
+        MainActivity.GetSession().setStreaming(false, System.currentTimeMillis());
+        if (!mNurApi.isConnected()) {
+            //Stopped while connection lost. Nothing to stop on reader, just do not resume.
+            //Setup changed by strategy is restored when connected again.
+            stopDutyCycle();
+            try {
+                mController.stop();
+            }
+            catch (Exception ex) {
+                mLog.log(FieldLog.INFO, TAG, "Stop while disconnected {}", ex.getMessage());
+            }
+            mUiStatusMsg = "Connection lost, reconnecting...";
+            mUiStatusColor = Color.RED;
+            return;
+        }
         try {
-            if (mNurApi.isInventoryStreamRunning())
-                mNurApi.stopInventoryStream();
-            mTriggerDown = false;
-            mUiStatusMsg = "Waiting button press...";
+            stopDutyCycle();
+            String energy = dutyText();
+            mController.stop();
+            mUiStrategyMsg = mController.strategyText();
+            mUiStatusMsg = "Waiting button press..." + (energy.length() > 0 ? "\nLast: " + energy.trim() : "");
             mUiStatusColor = Color.BLACK;
         }
         catch (Exception ex)
@@ -362,6 +875,185 @@ public class Inventory extends Activity {
         }
     }
 
+    /**
+     * Configure reader GPIO as trigger input. Reads come with triggeredReadEvent (reader scans tag on edge),
+     * or stream runs while input active (gate). Tags go to same handling as inventory stream.
+     */
+    private void StartTriggeredRead(int gpio, int action)
+    {
+        if (mSingleTagDoTask || mController.isRunning() || isSensorSweeping()) {
+            mTriggeredButton.setChecked(false);
+            return;
+        }
+        try {
+            mTriggeredRead.start(gpio, NurApi.GPIO_EDGE_RISING, action);
+            mUiTriggerMsg = "Waiting GPIO" + (gpio + 1) + " trigger...";
+            mUiStatusMsg = "Triggered read on";
+            mUiStatusColor = Color.BLACK;
+        }
+        catch (Exception ex)
+        {
+            mTriggeredButton.setChecked(false);
+            mUiTriggerMsg = "GPIO trigger failed: " + ex.getMessage();
+        }
+    }
+
+    private void StopTriggeredRead()
+    {
+        if (!mTriggeredRead.isActive())
+            return;
+        try {
+            mTriggeredRead.stop();
+            mUiTriggerMsg = "Last: " + mTriggeredRead.summary();
+            mUiStatusMsg = "Waiting button press...";
+        }
+        catch (Exception ex)
+        {
+            mUiTriggerMsg = "GPIO restore failed: " + ex.getMessage();
+        }
+    }
+
+    private boolean isSensorSweeping()
+    {
+        SensorReadMode mode = mSensorMode;
+        return mode != null && mode.isRunning();
+    }
+
+    /**
+     * Sweep sensor tags every few seconds. Values are kept per tag as time series for this session.
+     */
+    private void StartSensorSweep(SensorRead sensor)
+    {
+        if (mSingleTagDoTask || mController.isRunning() || mTriggeredRead.isActive() || mExporting) {
+            mSensorButton.setChecked(false);
+            return;
+        }
+        SensorReadMode mode = new SensorReadMode(mNurApi, sensor, mSensorListener,
+                SensorReadMode.DEFAULT_SWEEP_MS, SensorReadMode.DEFAULT_WINDOW_MS);
+        try {
+            mode.start();
+            mSensorMode = mode;
+            mUiSensorMsg = "Sweeping " + sensor.name + "...";
+        }
+        catch (Exception ex)
+        {
+            mSensorButton.setChecked(false);
+            mUiSensorMsg = "Sensor read failed: " + ex.getMessage();
+        }
+    }
+
+    private void StopSensorSweep()
+    {
+        SensorReadMode mode = mSensorMode;
+        if (mode == null || !mode.isRunning())
+            return;
+        try {
+            mode.stop();
+            mUiSensorMsg = "Last: " + mode.summary();
+        }
+        catch (Exception ex)
+        {
+            mUiSensorMsg = "Sensor read stop failed: " + ex.getMessage();
+        }
+    }
+
+    /**
+     * Sweep results. Called in sweep thread.
+     */
+    private final SensorReadMode.Listener mSensorListener = new SensorReadMode.Listener() {
+        @Override
+        public void onSweep(SensorReadMode.Sweep sweep) {
+            SensorReadMode mode = mSensorMode;
+            mUiSensorMsg = sweep + (mode != null ? "\n" + mode.summary() : "");
+            showOnUI();
+        }
+
+        @Override
+        public void onWindow(int tagIndex, SensorSeries.Window window) {
+            //Per tag windows are kept in series, sweep line is enough on screen
+        }
+
+        @Override
+        public void onError(Exception ex) {
+            mUiSensorMsg = "Sweep failed: " + ex.getMessage();
+            showOnUI();
+        }
+    };
+
+    /**
+     * EAS alarm check between inventory. Stream is paused for each check, so tags and alarm
+     * both come while trigger is held.
+     */
+    private void StartEasMonitor()
+    {
+        try {
+            mEasMonitor.start();
+            mUiEasMsg = "EAS monitoring...";
+            mUiEasColor = Color.BLACK;
+        }
+        catch (Exception ex)
+        {
+            mEasButton.setChecked(false);
+            mUiEasMsg = "EAS start failed: " + ex.getMessage();
+            mUiEasColor = Color.RED;
+        }
+    }
+
+    private void StopEasMonitor()
+    {
+        if (!mEasMonitor.isRunning())
+            return;
+        try {
+            mEasMonitor.stop();
+            mUiEasMsg = "Last: " + mEasMonitor.summary();
+        }
+        catch (Exception ex)
+        {
+            mUiEasMsg = "EAS stop failed: " + ex.getMessage();
+        }
+        mUiEasColor = Color.BLACK;
+    }
+
+    /**
+     * EAS alarm on/off. Called in monitor thread. Beep is the feedback, latency measured to it.
+     */
+    private final EasMonitor.Listener mEasListener = new EasMonitor.Listener() {
+        @Override
+        public void onAlarm(boolean alarm) throws Exception {
+            if (alarm)
+                Beeper.beep(Beeper.BEEP_300MS);
+            mUiEasMsg = (alarm ? "EAS ALARM\n" : "") + mEasMonitor.summary();
+            mUiEasColor = alarm ? Color.RED : Color.BLACK;
+            showOnUI();
+        }
+
+        @Override
+        public void onError(Exception ex) {
+            mUiEasMsg = "EAS check failed: " + ex.getMessage();
+            mUiEasColor = Color.RED;
+            showOnUI();
+        }
+    };
+
+    /**
+     * Trigger results. Called in NurApi thread.
+     */
+    private final TriggeredReadMode.Listener mTriggerListener = new TriggeredReadMode.Listener() {
+        @Override
+        public void onTrigger(int source, int reads, long latencyMs) {
+            mUiTriggerMsg = mTriggeredRead.summary();
+            if (reads == 0) {
+                mUiResultMsg = "Trigger " + mTriggeredRead.getTriggers() + ": no tag";
+                mUiResultColor = Color.RED;
+            } else {
+                mUiResultMsg = "Trigger " + mTriggeredRead.getTriggers() + ": " + reads + (reads == 1 ? " tag" : " tags") +
+                        (latencyMs >= 0 ? " in " + latencyMs + " ms" : "");
+                mUiResultColor = Color.rgb(0, 128, 0);
+            }
+            showOnUI();
+        }
+    };
+
     /**
      *  Handle I/O events from reader.
      *  When user press button on reader, event fired and handled in this function.
@@ -375,7 +1067,10 @@ public class Inventory extends Activity {
     private void HandleIOEvent(NurEventIOChange event)
     {
         try {
-            if (event.source == 100) {
+            if (mTriggeredRead.handleIOEvent(event)) {
+                //Gate input of triggered read mode. Stream started or stopped there.
+            }
+            else if (event.source == InventoryController.IO_TRIGGER) {
                 //Trigger down.
                 if(mSingleTagDoTask) return; //Only if Single scan not running
                 if(event.direction == 1)
@@ -383,11 +1078,11 @@ public class Inventory extends Activity {
                 else if (event.direction == 0)
                     StopInventoryStream(); //Trigger released. Stop streaming if running.
             }
-            else if(event.source == 101)
+            else if(event.source == InventoryController.IO_POWER)
             {
                 //Power button pressed or released.
             }
-            else if(event.source == 102)
+            else if(event.source == InventoryController.IO_UNPAIR)
             {
                 //Unpair button pressed or released.
                 //Single scan operation start when Unpair button push down but no need to keep down during operation.
@@ -406,18 +1101,152 @@ public class Inventory extends Activity {
     }
 
     /**
-     * Check is tag same as previous one
-     * @param epc
-     * @return
+     * Tags of inventory stream passed to controller. New tags not matching EPC filter are dropped there.
+     */
+    private void handleInventoryStreamEvent(NurEventInventory event)
+    {
+        try {
+            //Stream restarted by controller when it stops by itself while trigger is down.
+            //Passed through triggered read mode, it measures latency from gate open to first tag.
+            mTriggeredRead.handleInventoryEvent(event);
+        }
+        catch (Exception ex)
+        {
+            mUiStatusMsg = ex.getMessage();
+            mUiStatusColor = Color.RED;
+            showOnUI();
+        }
+    }
+
+    /**
+     * Tag read by reader itself on GPIO trigger edge
+     */
+    private void handleTriggeredRead(NurEventTriggeredRead event)
+    {
+        try {
+            mTriggeredRead.handleTriggeredRead(event);
+        }
+        catch (Exception ex)
+        {
+            mUiStatusMsg = ex.getMessage();
+            mUiStatusColor = Color.RED;
+            showOnUI();
+        }
+    }
+
+    /**
+     * New tags from controller. Called in NurApi thread.
+     */
+    private final InventoryController.Listener mControllerListener = new InventoryController.Listener() {
+        @Override
+        public void onTag(NurTag tag, long nowMs) {
+            //Real application should handle all tags here.
+            //This one stores them to history, queues them for backend and shows EPC of last one.
+            TagDatabase tagDatabase = MainActivity.GetTagDatabase();
+            UploadQueue uploadQueue = MainActivity.GetUploadQueue();
+            if (tagDatabase != null)
+                tagDatabase.insert(tag.getEpc(), tag.getIrData(), tag.getRssi(), tag.getAntennaId(), nowMs);
+            if (uploadQueue != null)
+                uploadQueue.offerTag(tag.getEpc(), tag.getRssi(), tag.getAntennaId(), nowMs);
+            Reconciliation reconciliation = mReconciliation;
+            if (reconciliation != null)
+                reconciliation.mark(tag.getEpc());
+            if (mRoundTags == 0) {
+                //showing just EPC of last tag. Hex string made later in UI thread.
+                mUiEpcBytes = tag.getEpc();
+                mUiEpcMsg = null;
+            }
+            mRoundTags++;
+        }
+
+        @Override
+        public void onRound(int accepted, int filtered) throws Exception {
+            mRoundTags = 0;
+            mUiStrategyMsg = mController.strategyText();
+            if (accepted == 0)
+                return; //Nothing interesting
+
+            Reconciliation reconciliation = mReconciliation;
+            if (reconciliation != null)
+                mUiManifestMsg = reconciliation.summary();
+
+            //At least one new tag found
+            if(MainActivity.IsAccessorySupported())
+                mAccessoryApi.beepAsync(20); //Beep on device
+            else
+                Beeper.beep(Beeper.BEEP_40MS); //Cannot beep on device so we beep on phone
+
+            //Finally show count of tags found
+            MainActivity.GetSession().onNewTags(accepted);
+            mUiResultMsg = "Tags:" + String.valueOf(mController.getTagsAdded());
+            if (!mController.getFilter().isEmpty())
+                mUiResultMsg += " (filtered:" + mController.getTagsFiltered() + ")";
+            mUiResultColor = Color.rgb(0, 128, 0);
+            showOnUI(); //Show results on UI
+        }
+    };
+
+    /**
+     * Connection lost. Tags and stream intent are kept while session reconnects.
+     * Activity exits only if connection was closed on purpose.
      */
-    static boolean isSameTag(String epc)
+    private void handleDisconnected()
     {
-            if(epc.compareTo(mTagUnderReview) == 0)
-                return true;
-            else //set new
-                mTagUnderReview = epc;
+        ResilientSession session = MainActivity.GetSession();
+        session.onDisconnected(System.currentTimeMillis());
+        if (!session.isOutage()) {
+            finish(); //Device disconnected. Exit from this activity
+            return;
+        }
+        mDutyHandler.removeCallbacks(mDutyBurstEnd);
+        mDutyHandler.removeCallbacks(mDutyBurstStart);
+        mDutyHandler.removeCallbacks(mBatterySample);
+        mController.onConnectionLost();
+        if (mDutyPaused) {
+            //Burst start cancelled, connection loss keeps stream paused until reconnected
+            mDutyPaused = false;
+            try {
+                mController.resume();
+            }
+            catch (Exception ex) {
+                mLog.log(FieldLog.WARN, TAG, "Duty cycle resume failed {}", ex.getMessage());
+            }
+        }
+        mUiStatusMsg = "Connection lost, reconnecting..." + (mController.isRunning() ? " Stream resumes after." : "");
+        mUiStatusColor = Color.RED;
+        showOnUI();
+    }
 
-            return false;
+    /**
+     * Reconnected after drop. Stream is started again without clearing tags found before.
+     */
+    private void handleConnected()
+    {
+        ResilientSession session = MainActivity.GetSession();
+        boolean resume = session.onConnected(System.currentTimeMillis());
+        try {
+            if (resume && mController.isRunning()) {
+                mController.resume();
+                if (mDutyCycler != null) {
+                    mDutyBurstStartTags = mController.getTagsAdded();
+                    mDutyHandler.postDelayed(mDutyBurstEnd, mDutyCycler.getOnMs());
+                }
+                mDutyHandler.post(mBatterySample);
+                mUiStatusMsg = "Reconnected, stream resumed. " + session.summary();
+            }
+            else {
+                //Stream stopped during outage. Restore setup strategy changed.
+                mController.restoreSetup();
+                mUiStrategyMsg = mController.strategyText();
+                mUiStatusMsg = "Reconnected. " + session.summary();
+            }
+            mUiStatusColor = Color.BLACK;
+        }
+        catch (Exception ex) {
+            mUiStatusMsg = "Resume failed: " + ex.getMessage();
+            mUiStatusColor = Color.RED;
+        }
+        showOnUI();
     }
 
     /**
@@ -428,78 +1257,53 @@ public class Inventory extends Activity {
     private NurApiListener mNurApiEventListener = new NurApiListener()
     {
         @Override
-        public void triggeredReadEvent(NurEventTriggeredRead event) { }
+        public void triggeredReadEvent(NurEventTriggeredRead event) {
+            handleTriggeredRead(event);
+        }
         @Override
         public void traceTagEvent(NurEventTraceTag event) { }
         @Override
         public void programmingProgressEvent(NurEventProgrammingProgress event) { }
         @Override
-        public void nxpEasAlarmEvent(NurEventNxpAlarm event) { }
-        @Override
-        public void logEvent(int level, String txt) { }
-        @Override
-        public void inventoryStreamEvent(NurEventInventory event) {
-
+        public void nxpEasAlarmEvent(NurEventNxpAlarm event) {
             try {
-                if (event.stopped) {
-                    //InventoryStreaming is not active for ever. It automatically stopped after ~20 sec but it can be started again immediately if needed.
-                    //check if need to restart streaming
-                    if (mTriggerDown)
-                        mNurApi.startInventoryStream(); //Trigger button still down so start it again.
-
-                } else {
-
-                    if(event.tagsAdded>0) {
-                        //At least one new tag found
-                        if(MainActivity.IsAccessorySupported())
-                            mAccessoryApi.beepAsync(20); //Beep on device
-                        else
-                            Beeper.beep(Beeper.BEEP_40MS); //Cannot beep on device so we beep on phone
-
-                        NurTagStorage tagStorage = mNurApi.getStorage(); //Storage contains all tags found
-
-                        //Iterate just received tags based on event.tagsAdded
-                        for(int x=mTagsAddedCounter;x<mTagsAddedCounter+event.tagsAdded;x++) {
-                            //Real application should handle all tags iterated here.
-                            //But this just show how to get tag from storage.
-                            String epcString;
-                            NurTag tag = tagStorage.get(x);
-                            epcString = NurApi.byteArrayToHexString(tag.getEpc());
-                            //showing just EPC of last tag
-                            mUiEpcMsg = epcString;
-                        }
-
-                        //Finally show count of tags found
-                        mTagsAddedCounter += event.tagsAdded;
-                        mUiResultMsg = "Tags:" + String.valueOf(mTagsAddedCounter);
-                        mUiResultColor = Color.rgb(0, 128, 0);
-                        showOnUI(); //Show results on UI
-                    }
-                }
+                mEasMonitor.handleAlarmEvent(event);
             }
-            catch (Exception ex)
-            {
-                mStatusTextView.setText(ex.getMessage());
-                mUiStatusColor = Color.RED;
-                showOnUI();
+            catch (Exception ex) {
+                mLog.log(FieldLog.WARN, TAG, "EAS alarm stream restart failed {}", ex.getMessage());
             }
         }
         @Override
-        public void inventoryExtendedStreamEvent(NurEventInventory event) {}
+        public void logEvent(int level, String txt) {
+            mLog.logNurApi(level, txt);
+        }
+        @Override
+        public void inventoryStreamEvent(NurEventInventory event) {
+            handleInventoryStreamEvent(event);
+        }
+        @Override
+        public void inventoryExtendedStreamEvent(NurEventInventory event) {
+            //Stream with reader side filters. Results handled in same way.
+            handleInventoryStreamEvent(event);
+        }
         @Override
         public void frequencyHopEvent(NurEventFrequencyHop event) { }
         @Override
         public void epcEnumEvent(NurEventEpcEnum event) { }
         @Override
         public void disconnectedEvent() {
-            finish(); //Device disconnected. Exit from this activity
+            handleDisconnected();
         }
         @Override
         public void deviceSearchEvent(NurEventDeviceInfo event) { }
         @Override
-        public void debugMessageEvent(String event) { }
+        public void debugMessageEvent(String event) {
+            mLog.log(FieldLog.DEBUG, "NurApi", "{}", event);
+        }
         @Override
-        public void connectedEvent() { }
+        public void connectedEvent() {
+            handleConnected();
+        }
         @Override
         public void clientDisconnectedEvent(NurEventClientInfo event) { }
         @Override
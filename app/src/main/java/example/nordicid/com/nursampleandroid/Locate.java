@@ -0,0 +1,273 @@
+package example.nordicid.com.nursampleandroid;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+import android.widget.CompoundButton;
+import android.widget.EditText;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.ToggleButton;
+
+import com.nordicid.nurapi.*;
+
+import example.nordicid.com.inventorycore.EpcCodec;
+
+/**
+ * Locate activity. Traces one EPC continuously and beeps faster when signal gets stronger (Geiger counter).
+ * Trace is started with trigger button or toggle button.
+ *
+ * Beep decision is made in traceTagEvent on NurApi thread so feedback does not wait for UI thread.
+ * Timer beeps between trace results and lets beeping die out when tag is lost.
+ */
+public class Locate extends Activity {
+
+    public static final String TAG = "NUR_SAMPLE";
+
+    //EPC to locate as hex string
+    public static final String EXTRA_EPC = "epc";
+
+    //Level drops to zero if tag not seen this long
+    private static final long LOST_TIMEOUT_MS = 500;
+    //Beep timer period. Short compared to fastest beep interval.
+    private static final long TICK_MS = 20;
+    //UI update period. Level bar does not need to follow every trace result.
+    private static final long UI_PERIOD_MS = 100;
+
+    private NurApi mNurApi;
+    private final LocateFeedback mFeedback = new LocateFeedback(LOST_TIMEOUT_MS);
+    private final Handler mHandler = new Handler();
+
+    //UI
+    private EditText mEpcEditText;
+    private ToggleButton mTraceButton;
+    private ProgressBar mLevelBar;
+    private TextView mLevelTextView;
+    private TextView mStatsTextView;
+    private TextView mStatusTextView;
+
+    private String mUiStatusMsg;
+    private int mUiStatusColor;
+
+    private volatile boolean mTracing;
+    private long mLastUiNanos;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_locate);
+
+        //Get NurApi handle from MainActivity
+        mNurApi = MainActivity.GetNurApi();
+
+        //Set event listener for this activity
+        mNurApi.setListener(mNurApiEventListener);
+
+        mEpcEditText = (EditText)findViewById(R.id.edit_locate_epc);
+        mTraceButton = (ToggleButton)findViewById(R.id.toggleButtonLocate);
+        mLevelBar = (ProgressBar)findViewById(R.id.progress_locate_level);
+        mLevelTextView = (TextView)findViewById(R.id.text_locate_level);
+        mStatsTextView = (TextView)findViewById(R.id.text_locate_stats);
+        mStatusTextView = (TextView)findViewById(R.id.text_locate_status);
+
+        String epc = getIntent().getStringExtra(EXTRA_EPC);
+        if (epc != null)
+            mEpcEditText.setText(epc);
+
+        mTraceButton.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (isChecked && !mTracing)
+                    startTrace();
+                else if (!isChecked && mTracing)
+                    stopTrace();
+            }
+        });
+
+        mUiStatusMsg = "Keep trigger down or press Start to locate";
+        mUiStatusColor = Color.BLACK;
+        showOnUI();
+    }
+
+    /**
+     * Start continuous trace of EPC in edit box
+     */
+    private void startTrace()
+    {
+        String hex = mEpcEditText.getText().toString().trim();
+        byte[] epc = new byte[hex.length() / 2];
+        if (hex.length() == 0 || hex.length() % 2 != 0 || EpcCodec.decode(hex, 0, hex.length(), epc) < 0) {
+            mUiStatusMsg = "Invalid EPC";
+            mUiStatusColor = Color.RED;
+            mTracing = false;
+            showOnUI();
+            return;
+        }
+
+        try {
+            mFeedback.reset();
+            mNurApi.traceTagByEpc(epc, epc.length, NurApi.TRACETAG_START_CONTINUOUS);
+            mTracing = true;
+            mHandler.post(mTicker);
+            mUiStatusMsg = "Locating...";
+            mUiStatusColor = Color.BLACK;
+        }
+        catch (Exception ex) {
+            mTracing = false;
+            mUiStatusMsg = "Trace failed: " + ex.getMessage();
+            mUiStatusColor = Color.RED;
+        }
+        showOnUI();
+    }
+
+    private void stopTrace()
+    {
+        mTracing = false;
+        mHandler.removeCallbacks(mTicker);
+        try {
+            if (mNurApi.isTraceTagRunning())
+                mNurApi.stopTraceTag();
+        }
+        catch (Exception ex) {
+            Log.i(TAG, "Stop trace failed " + ex.getMessage());
+        }
+        mUiStatusMsg = "Stopped";
+        mUiStatusColor = Color.BLACK;
+        showOnUI();
+    }
+
+    /**
+     * Beeps between trace results and refreshes level. Runs on UI thread while tracing.
+     */
+    private final Runnable mTicker = new Runnable() {
+        @Override
+        public void run() {
+            if (!mTracing)
+                return;
+            long now = System.nanoTime();
+            if (mFeedback.shouldBeep(now))
+                Beeper.beep(Beeper.BEEP_40MS);
+            if (now - mLastUiNanos >= UI_PERIOD_MS * 1000000L) {
+                mLastUiNanos = now;
+                showLevel(now);
+            }
+            mHandler.postDelayed(this, TICK_MS);
+        }
+    };
+
+    private void showLevel(long now)
+    {
+        int level = mFeedback.getLevel(now);
+        mLevelBar.setProgress(level);
+        mLevelTextView.setText(level > 0 ? "Signal " + level : "Not found");
+        mStatsTextView.setText(String.format("Updates %.1f/s, period avg %.0f ms max %.0f ms\nHandling avg %.2f ms max %.2f ms, loop max %.0f ms",
+                mFeedback.getUpdateRate(), mFeedback.getAvgPeriodMs(), mFeedback.getMaxPeriodMs(),
+                mFeedback.getAvgLatencyMs(), mFeedback.getMaxLatencyMs(), mFeedback.getMaxLoopMs()));
+    }
+
+    /**
+     * Show UI items
+     */
+    private void showOnUI() {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mStatusTextView.setText(mUiStatusMsg);
+                mStatusTextView.setTextColor(mUiStatusColor);
+                mTraceButton.setChecked(mTracing);
+                mEpcEditText.setEnabled(!mTracing);
+                showLevel(System.nanoTime());
+            }
+        });
+    }
+
+    private void handleTraceEvent(NurEventTraceTag event)
+    {
+        long now = System.nanoTime();
+        if (event.scaledRssi > 0)
+            mFeedback.onReading(event.scaledRssi, now);
+        else
+            mFeedback.onMiss(now);
+
+        if (mFeedback.shouldBeep(now))
+            Beeper.beep(Beeper.BEEP_40MS);
+        mFeedback.addLatency(System.nanoTime() - now);
+    }
+
+    private void handleIOEvent(NurEventIOChange event)
+    {
+        if (event.source != 100)
+            return;
+        //Trigger down starts, release stops. Toggle button handler does the work on UI thread.
+        final boolean pressed = event.direction == 1;
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mTraceButton.setChecked(pressed);
+            }
+        });
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (mTracing)
+            stopTrace();
+    }
+
+    /**
+     * NurApi event handlers.
+     * NOTE: All NurApi events are called from NurApi thread, thus direct UI updates are not allowed.
+     */
+    private NurApiListener mNurApiEventListener = new NurApiListener()
+    {
+        @Override
+        public void triggeredReadEvent(NurEventTriggeredRead event) { }
+        @Override
+        public void traceTagEvent(NurEventTraceTag event) {
+            handleTraceEvent(event);
+        }
+        @Override
+        public void programmingProgressEvent(NurEventProgrammingProgress event) { }
+        @Override
+        public void nxpEasAlarmEvent(NurEventNxpAlarm event) { }
+        @Override
+        public void logEvent(int level, String txt) { }
+        @Override
+        public void inventoryStreamEvent(NurEventInventory event) { }
+        @Override
+        public void inventoryExtendedStreamEvent(NurEventInventory event) { }
+        @Override
+        public void frequencyHopEvent(NurEventFrequencyHop event) { }
+        @Override
+        public void epcEnumEvent(NurEventEpcEnum event) { }
+        @Override
+        public void disconnectedEvent() {
+            mTracing = false;
+            finish(); //Device disconnected. Exit from this activity
+        }
+        @Override
+        public void deviceSearchEvent(NurEventDeviceInfo event) { }
+        @Override
+        public void debugMessageEvent(String event) { }
+        @Override
+        public void connectedEvent() { }
+        @Override
+        public void clientDisconnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void clientConnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void bootEvent(String event) { }
+        @Override
+        public void IOChangeEvent(NurEventIOChange event) {
+            handleIOEvent(event);
+        }
+        @Override
+        public void autotuneEvent(NurEventAutotune event) { }
+        @Override
+        public void tagTrackingScanEvent(NurEventTagTrackingData event) { }
+        @Override
+        public void tagTrackingChangeEvent(NurEventTagTrackingChange event) { }
+    };
+}
@@ -0,0 +1,175 @@
+package example.nordicid.com.nursampleandroid;
+
+/**
+ * Signal level and beep cadence for locating tag with trace.
+ *
+ * Scaled RSSI (0..100) of trace results is smoothed with exponential moving average in fixed point:
+ * level += (rssi - level) / 4. No floating point or allocation per update. Missed trace rounds pull level down
+ * the same way, and level drops to zero when tag has not been seen in lost timeout.
+ * Beep interval goes linearly from MAX_INTERVAL_MS at weak signal to MIN_INTERVAL_MS at strong signal.
+ *
+ * Update period (time between trace results) and handler latency are measured so the feedback loop
+ * (reader round + handling + beep) can be checked against target.
+ */
+public class LocateFeedback {
+
+    public static final long MIN_INTERVAL_MS = 60;
+    public static final long MAX_INTERVAL_MS = 1000;
+
+    //Level in 8 bit fixed point
+    private static final int FP_SHIFT = 8;
+    //Smoothing: new value weight 1/4
+    private static final int ALPHA_SHIFT = 2;
+
+    private final long mLostTimeoutNanos;
+
+    private int mLevelFp;
+    private boolean mHasLevel;
+    private long mLastSeenNanos;
+    private long mLastBeepNanos;
+
+    //Statistics
+    private long mLastUpdateNanos;
+    private long mUpdates;
+    private long mPeriodSumNanos;
+    private long mPeriodMaxNanos;
+    private long mLatencySumNanos;
+    private long mLatencyMaxNanos;
+    private long mLatencyCount;
+
+    /**
+     * @param lostTimeoutMs Level goes to zero when tag not seen this long
+     */
+    public LocateFeedback(long lostTimeoutMs)
+    {
+        mLostTimeoutNanos = lostTimeoutMs * 1000000L;
+    }
+
+    /**
+     * Trace round found the tag.
+     * @param scaledRssi Scaled RSSI 0..100
+     * @param nowNanos System.nanoTime()
+     */
+    public synchronized void onReading(int scaledRssi, long nowNanos)
+    {
+        update(nowNanos);
+        int v = Math.max(0, Math.min(100, scaledRssi)) << FP_SHIFT;
+        if (!mHasLevel || nowNanos - mLastSeenNanos > mLostTimeoutNanos) {
+            //First reading or tag found again. Start from reading, do not ramp up from zero.
+            mLevelFp = v;
+            mHasLevel = true;
+        }
+        else {
+            mLevelFp += (v - mLevelFp) >> ALPHA_SHIFT;
+        }
+        mLastSeenNanos = nowNanos;
+    }
+
+    /**
+     * Trace round did not find the tag
+     */
+    public synchronized void onMiss(long nowNanos)
+    {
+        update(nowNanos);
+        mLevelFp -= mLevelFp >> ALPHA_SHIFT;
+    }
+
+    private void update(long nowNanos)
+    {
+        if (mUpdates > 0) {
+            long period = nowNanos - mLastUpdateNanos;
+            mPeriodSumNanos += period;
+            if (period > mPeriodMaxNanos)
+                mPeriodMaxNanos = period;
+        }
+        mLastUpdateNanos = nowNanos;
+        mUpdates++;
+    }
+
+    /**
+     * @return Smoothed signal level 0..100. Zero if tag lost.
+     */
+    public synchronized int getLevel(long nowNanos)
+    {
+        if (!mHasLevel || nowNanos - mLastSeenNanos > mLostTimeoutNanos)
+            return 0;
+        return (mLevelFp + (1 << (FP_SHIFT - 1))) >> FP_SHIFT;
+    }
+
+    /**
+     * @return Beep interval for level, -1 if no beeping (level zero)
+     */
+    public static long beepInterval(int level)
+    {
+        if (level <= 0)
+            return -1;
+        return MAX_INTERVAL_MS - (MAX_INTERVAL_MS - MIN_INTERVAL_MS) * Math.min(level, 100) / 100;
+    }
+
+    /**
+     * Check if it is time to beep. Call on every trace result and from timer between results.
+     * @return true if caller should beep now
+     */
+    public synchronized boolean shouldBeep(long nowNanos)
+    {
+        long interval = beepInterval(getLevel(nowNanos));
+        if (interval < 0)
+            return false;
+        if (nowNanos - mLastBeepNanos < interval * 1000000L)
+            return false;
+        mLastBeepNanos = nowNanos;
+        return true;
+    }
+
+    /**
+     * Record time from trace event arrival to feedback given
+     */
+    public synchronized void addLatency(long nanos)
+    {
+        mLatencySumNanos += nanos;
+        mLatencyCount++;
+        if (nanos > mLatencyMaxNanos)
+            mLatencyMaxNanos = nanos;
+    }
+
+    public synchronized long getUpdates() { return mUpdates; }
+
+    /**
+     * @return Trace results per second
+     */
+    public synchronized double getUpdateRate()
+    {
+        return mPeriodSumNanos > 0 ? (mUpdates - 1) * 1e9 / mPeriodSumNanos : 0;
+    }
+
+    public synchronized double getAvgPeriodMs()
+    {
+        return mUpdates > 1 ? mPeriodSumNanos / 1e6 / (mUpdates - 1) : 0;
+    }
+
+    public synchronized double getMaxPeriodMs() { return mPeriodMaxNanos / 1e6; }
+
+    public synchronized double getAvgLatencyMs()
+    {
+        return mLatencyCount > 0 ? mLatencySumNanos / 1e6 / mLatencyCount : 0;
+    }
+
+    public synchronized double getMaxLatencyMs() { return mLatencyMaxNanos / 1e6; }
+
+    /**
+     * @return Worst case feedback loop estimate: slowest trace round plus slowest handling
+     */
+    public synchronized double getMaxLoopMs()
+    {
+        return getMaxPeriodMs() + getMaxLatencyMs();
+    }
+
+    public synchronized void reset()
+    {
+        mHasLevel = false;
+        mLevelFp = 0;
+        mUpdates = 0;
+        mPeriodSumNanos = mPeriodMaxNanos = 0;
+        mLatencySumNanos = mLatencyMaxNanos = mLatencyCount = 0;
+    }
+}
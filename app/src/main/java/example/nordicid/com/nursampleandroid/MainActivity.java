@@ -10,9 +10,11 @@ import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.os.Handler;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.ImageButton;
 import android.widget.LinearLayout;
@@ -26,14 +28,52 @@ import com.nordicid.nurapi.*;
 
 import org.w3c.dom.Text;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
 public class MainActivity extends AppCompatActivity {
 
     public static final String TAG = "NUR_SAMPLE"; //Can be used for filtering Log's at Logcat
     private final int APP_PERMISSION_REQ_CODE = 41;
 
+    //Cold start trace begins when class is loaded
+    static {
+        StartupTrace.get().begin(System.nanoTime());
+    }
+
     private NurApiAutoConnectTransport hAcTr;
-    private static NurApi mNurApi;
-    private static NurAccessoryExtension mAccessoryApi = null;
+    //NurApi, accessory, upload queue and profiles are made in background at startup (startBackgroundInit)
+    private static volatile NurApi mNurApi;
+    private static volatile NurAccessoryExtension mAccessoryApi = null;
+    //Counted down when background init done
+    private static volatile CountDownLatch mStartupDone;
+    private static boolean mBleScannerInit;
+
+    //Outbound queue of reads to backend. Endpoint set in Setup.
+    private static volatile UploadQueue mUploadQueue;
+    private static final int UPLOAD_BATCH_RECORDS = 500;
+    private static final long UPLOAD_BATCH_AGE_MS = 5000;
+
+    //Diagnostics log to app files (FieldLog). Entries before background init wait in ring.
+    private static final FieldLog mLog = new FieldLog(FieldLog.DEFAULT_CAPACITY);
+    public static final String LOG_DIR = "logs";
+
+    //Local history of tag reads (TagHistory activity)
+    private static TagDatabase mTagDatabase;
+
+    //Reconnects after transport drop and keeps stream intent so activities can resume (ResilientSession).
+    //setAddress() restarts BLE scan and connect, so an attempt in progress is not restarted before it has
+    //had time to finish. First attempt after that too, transport starts its own right after the drop.
+    private static final long BLE_CONNECT_MS = 5000;
+    private static final long RECONNECT_BASE_MS = BLE_CONNECT_MS;
+    private static final long RECONNECT_MAX_MS = 20000;
+    //Start of last connect by setAddress(), UI thread only
+    private long mConnectStartMs;
+    private static final ResilientSession mSession = new ResilientSession(RECONNECT_BASE_MS, RECONNECT_MAX_MS);
+
+    //Named reader setups and auto tuned setup per reader (Profiles activity)
+    private static volatile ProfileManager mProfileManager;
 
     //Need to keep track connection state with NurApi IsConnected
     private boolean mIsConnected;
@@ -41,8 +81,13 @@ public class MainActivity extends AppCompatActivity {
     private Button mConnectButton;
     private TextView mConnectionStatusTextView;
 
-    public static NurApi GetNurApi() {return mNurApi;}
-    public static NurAccessoryExtension GetNurAccessory() {return mAccessoryApi;}
+    public static NurApi GetNurApi() {awaitStartup(); return mNurApi;}
+    public static NurAccessoryExtension GetNurAccessory() {awaitStartup(); return mAccessoryApi;}
+    public static UploadQueue GetUploadQueue() {return mUploadQueue;}
+    public static TagDatabase GetTagDatabase() {return mTagDatabase;}
+    public static ProfileManager GetProfileManager() {awaitStartup(); return mProfileManager;}
+    public static ResilientSession GetSession() {return mSession;}
+    public static FieldLog GetLog() {return mLog;}
 
     //When connected, this flag is set depending if Accessories like barcode scan, beep etc supported.
     private static boolean mIsAccessorySupported;
@@ -56,9 +101,198 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState)
     {
-        Log.i(TAG, "onCreate()");
+        mLog.log(FieldLog.INFO, TAG, "onCreate()");
+        StartupTrace trace = StartupTrace.get();
+        if (trace.isInteractive())
+            trace.begin(System.nanoTime()); //Activity created again in same process, warm start
+        trace.mark("onCreate", System.nanoTime());
+
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_main);
+        trace.mark("content", System.nanoTime());
+
+        //This app uses portrait orientation only
+        this.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT );
+
+        //Application settings (Setup activity)
+        Settings.init(this);
+
+        //SQLiteOpenHelper opens database on first use, not here
+        if (mTagDatabase == null)
+            mTagDatabase = new TagDatabase(this, "tags.db");
+
+        mIsConnected = false;
+
+        mConnectButton = (Button)findViewById(R.id.button_connect);
+        mConnectionStatusTextView = (TextView)findViewById((R.id.text_conn_status));
+
+        mUiConnStatusText = "Disconnected!";
+        mUiConnStatusTextColor = Color.RED;
+        mUiConnButtonText = "CONNECT";
+        showOnUI();
+
+        //Sounds, NurApi, upload queue and profiles are made in background so first frame is not waiting for them.
+        //BleScanner is initialized when connect is clicked.
+        startBackgroundInit();
+
+        //First frame marked when its draw pass is done: OnDrawListener is called during draw,
+        //runnable posted to front of UI queue from there runs right after it
+        final View decorView = getWindow().getDecorView();
+        final Handler uiHandler = new Handler();
+        decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean mDrawn;
+
+            @Override
+            public void onDraw() {
+                if (mDrawn)
+                    return;
+                mDrawn = true;
+                final ViewTreeObserver.OnDrawListener listener = this;
+                uiHandler.postAtFrontOfQueue(new Runnable() {
+                    @Override
+                    public void run() {
+                        onStartupStep(StartupTrace.get().firstFrame(System.nanoTime()));
+                        //Can not be removed inside onDraw()
+                        decorView.getViewTreeObserver().removeOnDrawListener(listener);
+                        checkPermissions();
+                    }
+                });
+            }
+        });
+        trace.mark("onCreate done", System.nanoTime());
+    }
+
+    /**
+     * Make components not needed for first frame in background thread. Getters of them wait until done.
+     */
+    private void startBackgroundInit()
+    {
+        final CountDownLatch startupDone = new CountDownLatch(1);
+        mStartupDone = startupDone;
+        final android.content.Context appContext = getApplicationContext();
+
+        Thread initThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                StartupTrace trace = StartupTrace.get();
+                try {
+                    //Log writer to files, logcat gets same lines from writer thread
+                    if (!mLog.isRunning()) {
+                        try {
+                            File logDir = appContext.getExternalFilesDir(LOG_DIR);
+                            mLog.setEcho(true);
+                            mLog.start(logDir != null ? logDir : new File(appContext.getFilesDir(), LOG_DIR), "nursample",
+                                    FieldLog.DEFAULT_FILE_BYTES, FieldLog.DEFAULT_FILES);
+                        } catch (IOException ex) {
+                            Log.e(TAG, "Field log failed " + ex.getMessage());
+                        }
+                    }
+                    trace.mark("FieldLog", System.nanoTime());
+
+                    //Create NurApi handle.
+                    NurApi api = new NurApi();
+                    //NurApi errors and user messages come to logEvent and go to field log
+                    api.setLogLevel(NurApi.LOG_ERROR | NurApi.LOG_USER);
+                    //Accessory extension contains device specific API like barcode read, beep etc..
+                    mAccessoryApi = new NurAccessoryExtension(api);
+                    mNurApi = api;
+                    trace.mark("NurApi", System.nanoTime());
+
+                    //Init beeper to make some noise at various situations. Loads sound files.
+                    Beeper.init(appContext);
+                    Beeper.setEnabled(true);
+                    trace.mark("Beeper", System.nanoTime());
+
+                    //Reads are queued to app files dir and sent to backend when endpoint set and network available
+                    if (mUploadQueue == null) {
+                        try {
+                            UploadQueue queue = new UploadQueue(new File(appContext.getFilesDir(), "upload"), UPLOAD_BATCH_RECORDS, UPLOAD_BATCH_AGE_MS);
+                            queue.setEndpoint(Settings.getUploadUrl());
+                            queue.start();
+                            mUploadQueue = queue;
+                        } catch (IOException ex) {
+                            mLog.log(FieldLog.ERROR, TAG, "Upload queue failed {}", ex.getMessage());
+                        }
+                    }
+                    trace.mark("UploadQueue", System.nanoTime());
+
+                    if (mProfileManager == null) {
+                        ProfileManager profiles = new ProfileManager();
+                        profiles.decode(Settings.getProfiles());
+                        mProfileManager = profiles;
+                    }
+                    trace.mark("Profiles", System.nanoTime());
+                }
+                finally {
+                    startupDone.countDown();
+                }
+
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // In this activity, we use mNurApiListener for receiving events
+                        if (mNurApi != null)
+                            mNurApi.setListener(mNurApiListener);
+                        onStartupStep(StartupTrace.get().backgroundDone(System.nanoTime()));
+                    }
+                });
+            }
+        });
+        initThread.start();
+    }
+
+    /**
+     * Wait until background init done. Returns at once after startup.
+     */
+    private static void awaitStartup()
+    {
+        CountDownLatch startupDone = mStartupDone;
+        if (startupDone == null)
+            return;
+        try {
+            startupDone.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean isStartupDone()
+    {
+        CountDownLatch startupDone = mStartupDone;
+        return startupDone == null || startupDone.getCount() == 0;
+    }
+
+    /**
+     * First frame drawn or background init done. When both done, startup is logged and reported to system.
+     */
+    private void onStartupStep(boolean interactive)
+    {
+        if (!interactive)
+            return;
+        mLog.log(FieldLog.INFO, TAG, "{}", StartupTrace.get().summary());
+        try {
+            reportFullyDrawn();
+        } catch (SecurityException ex) {
+            //Some Android 4.4/5.0 builds require UPDATE_DEVICE_STATS permission for this
+        }
+    }
+
+    /**
+     * Bluetooth LE scanner need to find EXA's near. Initialized on first connect instead of startup.
+     */
+    private void initBleScanner()
+    {
+        if (mBleScannerInit)
+            return;
+        BleScanner.init(this);
+        mBleScannerInit = true;
+    }
 
-        /** Bluetooth Permission checks **/
+    /**
+     * Bluetooth Permission checks. Done after first frame so permission dialog does not delay UI.
+     */
+    private void checkPermissions()
+    {
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED  ||
                 ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED  ||
                 ContextCompat.checkSelfPermission(this, Manifest.permission.READ_EXTERNAL_STORAGE) != PackageManager.PERMISSION_GRANTED ||
@@ -79,38 +313,6 @@ public class MainActivity extends AppCompatActivity {
                         APP_PERMISSION_REQ_CODE);
             }
         }
-
-        super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_main);
-
-        //This app uses portrait orientation only
-        this.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT );
-
-        //Init beeper to make some noise at various situations
-        Beeper.init(this);
-        Beeper.setEnabled(true);
-
-        //Bluetooth LE scanner need to find EXA's near
-        BleScanner.init(this);
-
-        mIsConnected = false;
-
-        //Create NurApi handle.
-        mNurApi = new NurApi();
-
-        //Accessory extension contains device specific API like barcode read, beep etc..
-        mAccessoryApi = new NurAccessoryExtension(mNurApi);
-
-        // In this activity, we use mNurApiListener for receiving events
-        mNurApi.setListener(mNurApiListener);
-
-        mConnectButton = (Button)findViewById(R.id.button_connect);
-        mConnectionStatusTextView = (TextView)findViewById((R.id.text_conn_status));
-
-        mUiConnStatusText = "Disconnected!";
-        mUiConnStatusTextColor = Color.RED;
-        mUiConnButtonText = "CONNECT";
-        showOnUI();
     }
 
     /**
@@ -143,7 +345,9 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public void nxpEasAlarmEvent(NurEventNxpAlarm event) { }
         @Override
-        public void logEvent(int level, String txt) { }
+        public void logEvent(int level, String txt) {
+            mLog.logNurApi(level, txt);
+        }
         @Override
         public void inventoryStreamEvent(NurEventInventory event) { }
         @Override
@@ -155,8 +359,9 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public void disconnectedEvent() {
             mIsConnected = false;
-            Log.i(TAG, "Disconnected!");
-            mUiConnStatusText = "Disconnected";
+            mLog.log(FieldLog.INFO, TAG, "Disconnected!");
+            mSession.onDisconnected(System.currentTimeMillis());
+            mUiConnStatusText = mSession.isOutage() ? "Connection lost, reconnecting..." : "Disconnected";
             mUiConnStatusTextColor = Color.RED;
             mUiConnButtonText = "CONNECT";
             showOnUI();
@@ -164,7 +369,9 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public void deviceSearchEvent(NurEventDeviceInfo event) { }
         @Override
-        public void debugMessageEvent(String event) { }
+        public void debugMessageEvent(String event) {
+            mLog.log(FieldLog.DEBUG, "NurApi", "{}", event);
+        }
         @Override
         public void connectedEvent() {
             //Device is connected.
@@ -188,8 +395,26 @@ public class MainActivity extends AppCompatActivity {
                 mUiConnStatusText = ex.getMessage();
             }
 
+            //Take auto tuned profile of this reader in use
+            try {
+                ReaderProfile tuned = mProfileManager.getTuned(mNurApi.getReaderInfo().serial);
+                if (tuned != null) {
+                    tuned.apply(mNurApi);
+                    mProfileManager.setActive(tuned.name);
+                    mLog.log(FieldLog.INFO, TAG, "Tuned profile applied {}", tuned.describe());
+                }
+            }
+            catch (Exception ex) {
+                mLog.log(FieldLog.WARN, TAG, "Tuned profile not applied {}", ex.getMessage());
+            }
+
+            boolean wasOutage = mSession.isOutage();
+            mSession.onConnected(System.currentTimeMillis());
+            if (wasOutage)
+                mLog.log(FieldLog.INFO, TAG, "Reconnected. {}", mSession.summary());
+
             mIsConnected  = true;
-            Log.i(TAG, "Connected!");
+            mLog.log(FieldLog.INFO, TAG, "Connected!");
             Beeper.beep(Beeper.BEEP_100MS);
 
             mUiConnStatusTextColor = Color.GREEN;
@@ -204,7 +429,7 @@ public class MainActivity extends AppCompatActivity {
         public void bootEvent(String event) {}
         @Override
         public void IOChangeEvent(NurEventIOChange event) {
-            Log.i(TAG, "Key " + event.source);
+            mLog.log(FieldLog.INFO, TAG, "Key {}", event.source);
         }
         @Override
         public void autotuneEvent(NurEventAutotune event) { }
@@ -222,10 +447,9 @@ public class MainActivity extends AppCompatActivity {
     public void onButtonSetup(View v)
     {
         try {
-            if (mNurApi.isConnected()) {
-                //Intent setupIntent = new Intent(MainActivity.this, Barcode.class);
-                //startActivityForResult(setupIntent,0);
-                Toast.makeText(MainActivity.this, "Under construction", Toast.LENGTH_LONG).show();
+            if (GetNurApi().isConnected()) {
+                Intent setupIntent = new Intent(MainActivity.this, Setup.class);
+                startActivityForResult(setupIntent,0);
             }
             else
             {
@@ -245,7 +469,7 @@ public class MainActivity extends AppCompatActivity {
     public void onButtonBarcode(View v)
     {
         try {
-            if (mNurApi.isConnected()) {
+            if (GetNurApi().isConnected()) {
                 if(IsAccessorySupported()) {
                     Intent barcodeIntent = new Intent(MainActivity.this, Barcode.class);
                     startActivityForResult(barcodeIntent, 0);
@@ -271,7 +495,7 @@ public class MainActivity extends AppCompatActivity {
     public void onButtonInventory(View v)
     {
         try {
-            if (mNurApi.isConnected()) {
+            if (GetNurApi().isConnected()) {
                     Intent inventoryIntent = new Intent(MainActivity.this, Inventory.class);
                     startActivityForResult(inventoryIntent, 0);
             }
@@ -286,6 +510,50 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Handle bulk write click. Start BulkWrite activity. See BulkWrite.java
+     * @param v View parameter as passed from the system when the button is clicked.
+     */
+    public void onButtonBulkWrite(View v)
+    {
+        try {
+            if (GetNurApi().isConnected()) {
+                Intent bulkWriteIntent = new Intent(MainActivity.this, BulkWrite.class);
+                startActivityForResult(bulkWriteIntent, 0);
+            }
+            else
+            {
+                Toast.makeText(MainActivity.this, "Reader not connected!", Toast.LENGTH_LONG).show();
+            }
+        }
+        catch(Exception ex)
+        {
+            Toast.makeText(MainActivity.this, ex.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * Handle RF diagnostics click. Start RfDiagnostics activity. See RfDiagnostics.java
+     * @param v View parameter as passed from the system when the button is clicked.
+     */
+    public void onButtonRfDiagnostics(View v)
+    {
+        try {
+            if (GetNurApi().isConnected()) {
+                Intent rfDiagIntent = new Intent(MainActivity.this, RfDiagnostics.class);
+                startActivityForResult(rfDiagIntent, 0);
+            }
+            else
+            {
+                Toast.makeText(MainActivity.this, "Reader not connected!", Toast.LENGTH_LONG).show();
+            }
+        }
+        catch(Exception ex)
+        {
+            Toast.makeText(MainActivity.this, ex.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+
     /**
      * Handle power off click.
      * Sends PowerOff command to reader.
@@ -294,7 +562,7 @@ public class MainActivity extends AppCompatActivity {
     public void onPowerOffClick(View v)
     {
         try {
-            if (mNurApi.isConnected()) {
+            if (GetNurApi().isConnected()) {
 
                 if(IsAccessorySupported()) { //Only device with accessory can be power off by command
                     mAccessoryApi.powerDown(); //Power off device
@@ -324,8 +592,12 @@ public class MainActivity extends AppCompatActivity {
      */
     public void onConnectClick(View v)
     {
-        if(mNurApi.isConnected()) hAcTr.dispose();
+        if(GetNurApi().isConnected()) {
+            mSession.release(); //Disconnect on purpose, no reconnect
+            hAcTr.dispose();
+        }
         else {
+            initBleScanner();
             Toast.makeText(MainActivity.this, "Start searching. Make sure device power ON!", Toast.LENGTH_LONG).show();
             NurDeviceListActivity.startDeviceRequest(MainActivity.this, mNurApi);
         }
@@ -354,11 +626,34 @@ public class MainActivity extends AppCompatActivity {
                         hAcTr.dispose();
                     }
 
-                    String strAddress;
+                    final String strAddress;
                     hAcTr = NurDeviceSpec.createAutoConnectTransport(this, mNurApi, spec);
                     strAddress = spec.getAddress();
-                    Log.i(TAG, "Dev selected: code = " + strAddress);
+                    mLog.log(FieldLog.INFO, TAG, "Dev selected: code = {}", strAddress);
                     hAcTr.setAddress(strAddress);
+                    mConnectStartMs = System.currentTimeMillis();
+
+                    //Transport retries by itself too. Session kicks new attempt with backoff while connection is lost.
+                    final NurApiAutoConnectTransport transport = hAcTr;
+                    mSession.setReconnector(new ResilientSession.Reconnector() {
+                        @Override
+                        public void reconnect() {
+                            runOnUiThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (hAcTr != transport || mNurApi.isConnected())
+                                        return;
+                                    if (System.currentTimeMillis() - mConnectStartMs < BLE_CONNECT_MS) {
+                                        mLog.log(FieldLog.INFO, TAG, "Reconnect attempt {} skipped, connect in progress", mSession.getAttempts());
+                                        return;
+                                    }
+                                    mLog.log(FieldLog.INFO, TAG, "Reconnect attempt {}", mSession.getAttempts());
+                                    transport.setAddress(strAddress);
+                                    mConnectStartMs = System.currentTimeMillis();
+                                }
+                            });
+                        }
+                    });
 
                     mUiConnStatusText = "Connecting to " + strAddress;
                     mUiConnStatusTextColor = Color.YELLOW;
@@ -378,7 +673,7 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onPause() {
-        Log.i(TAG, "onPause()");
+        mLog.log(FieldLog.INFO, TAG, "onPause()");
         super.onPause();
         //if (hAcTr != null)
         //    hAcTr.onPause();
@@ -386,9 +681,12 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onResume() {
-        Log.i(TAG, "onResume()" );
+        mLog.log(FieldLog.INFO, TAG, "onResume()");
         super.onResume();
 
+        //On first resume background init still running. It sets listener when done.
+        if (!isStartupDone())
+            return;
         mNurApi.setListener(mNurApiListener);
         if(!mNurApi.isConnected() && mIsConnected)
             mNurApiListener.disconnectedEvent();
@@ -396,7 +694,7 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onStop() {
-        Log.i(TAG, "onStop()" );
+        mLog.log(FieldLog.INFO, TAG, "onStop()");
         super.onStop();
         //if (hAcTr != null)
         //    hAcTr.onStop();
@@ -404,11 +702,21 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onDestroy() {
-        Log.i(TAG, "onDestroy()");
+        mLog.log(FieldLog.INFO, TAG, "onDestroy()");
         super.onDestroy();
         //Kill connection when app killed
+        mSession.release();
         if (hAcTr != null)
             hAcTr.onDestroy();
+        //Unsent reads are stored and sent on next start
+        if (mUploadQueue != null) {
+            mUploadQueue.stop();
+            mUploadQueue = null;
+        }
+        if (mTagDatabase != null) {
+            mTagDatabase.close();
+            mTagDatabase = null;
+        }
     }
 
     /**
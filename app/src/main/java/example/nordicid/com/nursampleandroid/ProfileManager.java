@@ -0,0 +1,170 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.NurApi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Named reader profiles, auto tuned profile of each reader by serial number and active profile.
+ * Saved as text (encode/decode) in Settings. Built-in profiles are always present and can not be removed.
+ */
+public class ProfileManager {
+
+    public static final String PROFILE_DENSE = "Dense";
+    public static final String PROFILE_FAST = "Fast";
+    public static final String PROFILE_NEAR = "Near";
+    public static final String PROFILE_SAVER = "Saver";
+
+    private static final String LINE_PROFILE = "profile;";
+    private static final String LINE_TUNED = "tuned;";
+    private static final String LINE_ACTIVE = "active;";
+
+    private final LinkedHashMap<String, ReaderProfile> mProfiles = new LinkedHashMap<String, ReaderProfile>();
+    private final HashMap<String, ReaderProfile> mTuned = new HashMap<String, ReaderProfile>();
+    //Name of profile last applied to reader, null if none
+    private String mActive;
+
+    public ProfileManager()
+    {
+        //Many tags: session 1 so read tags stay quiet, robust M4 link
+        put(new ReaderProfile(PROFILE_DENSE, NurApi.TXLEVEL_27, 0, NurApi.SESSION_S1, NurApi.INVTARGET_A, 0,
+                NurApi.LINK_FREQUENCY_256000, NurApi.RXDECODING_M4, NurApi.TXMODULATION_PRASK));
+        //Few tags, fastest link
+        put(new ReaderProfile(PROFILE_FAST, NurApi.TXLEVEL_27, 0, NurApi.SESSION_S0, NurApi.INVTARGET_A, 0,
+                NurApi.LINK_FREQUENCY_256000, NurApi.RXDECODING_M2, NurApi.TXMODULATION_PRASK));
+        //Single tag close to reader, same low power ScanSingleTagThread uses
+        put(new ReaderProfile(PROFILE_NEAR, NurApi.TXLEVEL_8, 0, NurApi.SESSION_S0, NurApi.INVTARGET_A, 0,
+                NurApi.LINK_FREQUENCY_256000, NurApi.RXDECODING_M4, NurApi.TXMODULATION_PRASK));
+        //Handheld on battery: dense settings with duty cycled inventory
+        put(new ReaderProfile(PROFILE_SAVER, NurApi.TXLEVEL_27, 0, NurApi.SESSION_S1, NurApi.INVTARGET_A, 0,
+                NurApi.LINK_FREQUENCY_256000, NurApi.RXDECODING_M4, NurApi.TXMODULATION_PRASK, true));
+    }
+
+    public static boolean isBuiltIn(String name)
+    {
+        return PROFILE_DENSE.equals(name) || PROFILE_FAST.equals(name) || PROFILE_NEAR.equals(name) ||
+                PROFILE_SAVER.equals(name);
+    }
+
+    /**
+     * Add or replace profile
+     */
+    public synchronized void put(ReaderProfile profile)
+    {
+        mProfiles.put(profile.name, profile);
+    }
+
+    /**
+     * @return Profile or null if not found
+     */
+    public synchronized ReaderProfile get(String name)
+    {
+        return mProfiles.get(name);
+    }
+
+    /**
+     * @return false if not found or built-in
+     */
+    public synchronized boolean remove(String name)
+    {
+        if (isBuiltIn(name))
+            return false;
+        return mProfiles.remove(name) != null;
+    }
+
+    public synchronized List<String> getNames()
+    {
+        return new ArrayList<String>(mProfiles.keySet());
+    }
+
+    /**
+     * Remember auto tuned profile of reader
+     */
+    public synchronized void setTuned(String serial, ReaderProfile profile)
+    {
+        checkSerial(serial);
+        mTuned.put(serial, profile);
+    }
+
+    /**
+     * @return Auto tuned profile of reader, null if reader not tuned
+     */
+    public synchronized ReaderProfile getTuned(String serial)
+    {
+        return mTuned.get(serial);
+    }
+
+    /**
+     * Remember profile applied to reader
+     * @param name Profile name, null to clear
+     */
+    public synchronized void setActive(String name)
+    {
+        mActive = name;
+    }
+
+    /**
+     * @return Profile last applied to reader, null if none or removed
+     */
+    public synchronized ReaderProfile getActive()
+    {
+        return mActive == null ? null : mProfiles.get(mActive);
+    }
+
+    private static void checkSerial(String serial)
+    {
+        if (serial == null || serial.length() == 0 || serial.indexOf(';') >= 0 || serial.indexOf('\n') >= 0)
+            throw new IllegalArgumentException("Invalid serial: " + serial);
+    }
+
+    /**
+     * Profiles as text, one per line. Built-in profiles are included so changes to them are kept.
+     */
+    public synchronized String encode()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (ReaderProfile p : mProfiles.values())
+            sb.append(LINE_PROFILE).append(p.encode()).append('\n');
+        for (String serial : mTuned.keySet())
+            sb.append(LINE_TUNED).append(serial).append(';').append(mTuned.get(serial).encode()).append('\n');
+        if (mActive != null)
+            sb.append(LINE_ACTIVE).append(mActive).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * Load profiles saved with encode(). Invalid lines are skipped.
+     * @return Number of lines skipped
+     */
+    public synchronized int decode(String text)
+    {
+        int skipped = 0;
+        for (String line : text.split("\n")) {
+            if (line.length() == 0)
+                continue;
+            try {
+                if (line.startsWith(LINE_PROFILE)) {
+                    put(ReaderProfile.decode(line.substring(LINE_PROFILE.length())));
+                }
+                else if (line.startsWith(LINE_TUNED)) {
+                    int sep = line.indexOf(';', LINE_TUNED.length());
+                    if (sep < 0)
+                        throw new IllegalArgumentException(line);
+                    setTuned(line.substring(LINE_TUNED.length(), sep), ReaderProfile.decode(line.substring(sep + 1)));
+                }
+                else if (line.startsWith(LINE_ACTIVE)) {
+                    setActive(line.substring(LINE_ACTIVE.length()));
+                }
+                else {
+                    skipped++;
+                }
+            } catch (IllegalArgumentException ex) {
+                skipped++;
+            }
+        }
+        return skipped;
+    }
+}
@@ -0,0 +1,304 @@
+package example.nordicid.com.nursampleandroid;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
+import android.widget.ToggleButton;
+
+import com.nordicid.nurapi.*;
+
+/**
+ * Reader profiles activity. Apply, save and delete named reader setups (ProfileManager)
+ * and auto tune reader against tags in field (AutoTuner). Tuned profile is saved for reader serial
+ * and applied automatically when that reader connects.
+ */
+public class Profiles extends Activity {
+
+    public static final String TAG = "NUR_SAMPLE";
+
+    //Auto tune inventory time per candidate
+    private static final long TUNE_DWELL_MS = 2000;
+    //Pause before each candidate so session 1 tags return to A state
+    private static final long TUNE_SETTLE_MS = 1000;
+
+    private NurApi mNurApi;
+    private ProfileManager mProfiles;
+    private String mSerial;
+
+    //UI
+    private EditText mNameEditText;
+    private CheckBox mDutyCheckBox;
+    private TextView mProfilesTextView;
+    private TextView mStatusTextView;
+    private ToggleButton mTuneButton;
+
+    private String mUiStatusMsg;
+    private int mUiStatusColor;
+    private boolean mUiTuning;
+
+    private volatile AutoTuner mTuner;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_profiles);
+
+        //Get NurApi handle from MainActivity
+        mNurApi = MainActivity.GetNurApi();
+        mProfiles = MainActivity.GetProfileManager();
+
+        //Set event listener for this activity
+        mNurApi.setListener(mNurApiEventListener);
+
+        mNameEditText = (EditText)findViewById(R.id.edit_profile_name);
+        mProfilesTextView = (TextView)findViewById(R.id.text_profiles);
+        mDutyCheckBox = (CheckBox)findViewById(R.id.checkBoxDutyCycle);
+        mStatusTextView = (TextView)findViewById(R.id.text_profile_status);
+        mTuneButton = (ToggleButton)findViewById(R.id.toggleButtonAutoTune);
+
+        Button applyButton = (Button)findViewById(R.id.buttonProfileApply);
+        applyButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                applyProfile(mNameEditText.getText().toString().trim());
+            }
+        });
+
+        Button saveButton = (Button)findViewById(R.id.buttonProfileSave);
+        saveButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                saveCurrent(mNameEditText.getText().toString().trim());
+            }
+        });
+
+        Button deleteButton = (Button)findViewById(R.id.buttonProfileDelete);
+        deleteButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                String name = mNameEditText.getText().toString().trim();
+                if (mProfiles.remove(name)) {
+                    Settings.setProfiles(mProfiles.encode());
+                    setStatus("Deleted " + name, Color.BLACK);
+                }
+                else {
+                    setStatus("Can not delete " + name, Color.RED);
+                }
+            }
+        });
+
+        mTuneButton.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (isChecked && mTuner == null)
+                    startTune();
+                else if (!isChecked && mTuner != null)
+                    mTuner.cancel();
+            }
+        });
+
+        try {
+            mSerial = mNurApi.getReaderInfo().serial;
+        }
+        catch (Exception ex) {
+            Log.i(TAG, "Reader info failed " + ex.getMessage());
+        }
+
+        setStatus("Enter profile name", Color.BLACK);
+    }
+
+    private void applyProfile(String name)
+    {
+        ReaderProfile profile = mProfiles.get(name);
+        if (profile == null) {
+            setStatus("No profile " + name, Color.RED);
+            return;
+        }
+        try {
+            profile.apply(mNurApi);
+            //Inventory reads duty cycle flag of active profile
+            mProfiles.setActive(name);
+            Settings.setProfiles(mProfiles.encode());
+            setStatus("Applied " + profile, Color.rgb(0, 128, 0));
+        }
+        catch (Exception ex) {
+            setStatus("Apply failed: " + ex.getMessage(), Color.RED);
+        }
+    }
+
+    /**
+     * Save setup currently on reader as named profile, duty cycle from check box
+     */
+    private void saveCurrent(String name)
+    {
+        try {
+            ReaderProfile profile = ReaderProfile.fromSetup(name, mNurApi.getModuleSetup(ReaderProfile.SETUP_FLAGS))
+                    .withDutyCycle(mDutyCheckBox.isChecked());
+            mProfiles.put(profile);
+            Settings.setProfiles(mProfiles.encode());
+            setStatus("Saved " + profile, Color.rgb(0, 128, 0));
+        }
+        catch (IllegalArgumentException ex) {
+            Toast.makeText(this, ex.getMessage(), Toast.LENGTH_LONG).show();
+        }
+        catch (Exception ex) {
+            setStatus("Save failed: " + ex.getMessage(), Color.RED);
+        }
+    }
+
+    /**
+     * Auto tune in background thread starting from current reader setup
+     */
+    private void startTune()
+    {
+        if (mSerial == null) {
+            setStatus("Reader serial not known", Color.RED);
+            mTuneButton.setChecked(false);
+            return;
+        }
+
+        mTuner = new AutoTuner(mNurApi, TUNE_DWELL_MS, TUNE_SETTLE_MS);
+        mUiTuning = true;
+        setStatus("Tuning. Keep reader still, tags in field.", Color.BLACK);
+
+        Thread tuneThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ReaderProfile start = ReaderProfile.fromSetup("Tuned", mNurApi.getModuleSetup(ReaderProfile.SETUP_FLAGS));
+                    AutoTuner.Trial best = mTuner.tune(start, "Tuned " + mSerial, new AutoTuner.Listener() {
+                        @Override
+                        public void onTrial(AutoTuner.Trial trial, AutoTuner.Trial best, int done, int total) {
+                            mUiStatusMsg = String.format("Trial %d / %d: %.1f tags/s %s\nBest %.1f tags/s (%d tags) %s",
+                                    done, total, trial.tagsPerSec, trial.profile.describe(),
+                                    best.tagsPerSec, best.uniqueTags, best.profile.describe());
+                            mUiStatusColor = Color.BLACK;
+                            showOnUI();
+                        }
+                    });
+
+                    if (mTuner.isCancelled()) {
+                        mUiStatusMsg = "Cancelled, setup restored";
+                        mUiStatusColor = Color.BLACK;
+                    }
+                    else if (best.uniqueTags == 0) {
+                        mUiStatusMsg = "No tags in field, nothing saved";
+                        mUiStatusColor = Color.RED;
+                    }
+                    else {
+                        mProfiles.put(best.profile);
+                        mProfiles.setTuned(mSerial, best.profile);
+                        Settings.setProfiles(mProfiles.encode());
+                        mUiStatusMsg = String.format("Tuned %.1f tags/s (%d tags)\n%s", best.tagsPerSec, best.uniqueTags, best.profile);
+                        mUiStatusColor = Color.rgb(0, 128, 0);
+                        Beeper.beep(Beeper.BEEP_300MS);
+                    }
+                }
+                catch (Exception ex) {
+                    mUiStatusMsg = "Tuning failed: " + ex.getMessage();
+                    mUiStatusColor = Color.RED;
+                    Log.i(TAG, "Auto tune failed " + ex.getMessage());
+                }
+                mTuner = null;
+                mUiTuning = false;
+                showOnUI();
+            }
+        });
+        tuneThread.start();
+    }
+
+    private void setStatus(String msg, int color)
+    {
+        mUiStatusMsg = msg;
+        mUiStatusColor = color;
+        showOnUI();
+    }
+
+    /**
+     * Show UI items
+     */
+    private void showOnUI() {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                StringBuilder sb = new StringBuilder();
+                for (String name : mProfiles.getNames())
+                    sb.append(mProfiles.get(name)).append('\n');
+                ReaderProfile tuned = mSerial != null ? mProfiles.getTuned(mSerial) : null;
+                sb.append("Applied on connect: ").append(tuned != null ? tuned.name : "-");
+                ReaderProfile active = mProfiles.getActive();
+                sb.append("\nActive: ").append(active != null ? active.name : "-");
+                mProfilesTextView.setText(sb.toString());
+                mStatusTextView.setText(mUiStatusMsg);
+                mStatusTextView.setTextColor(mUiStatusColor);
+                mTuneButton.setChecked(mUiTuning);
+            }
+        });
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        //Stop tuning when leaving. Setup before tuning is restored.
+        AutoTuner tuner = mTuner;
+        if (tuner != null)
+            tuner.cancel();
+    }
+
+    /**
+     * NurApi event handlers.
+     * NOTE: All NurApi events are called from NurApi thread, thus direct UI updates are not allowed.
+     */
+    private NurApiListener mNurApiEventListener = new NurApiListener()
+    {
+        @Override
+        public void triggeredReadEvent(NurEventTriggeredRead event) { }
+        @Override
+        public void traceTagEvent(NurEventTraceTag event) { }
+        @Override
+        public void programmingProgressEvent(NurEventProgrammingProgress event) { }
+        @Override
+        public void nxpEasAlarmEvent(NurEventNxpAlarm event) { }
+        @Override
+        public void logEvent(int level, String txt) { }
+        @Override
+        public void inventoryStreamEvent(NurEventInventory event) { }
+        @Override
+        public void inventoryExtendedStreamEvent(NurEventInventory event) { }
+        @Override
+        public void frequencyHopEvent(NurEventFrequencyHop event) { }
+        @Override
+        public void epcEnumEvent(NurEventEpcEnum event) { }
+        @Override
+        public void disconnectedEvent() {
+            AutoTuner tuner = mTuner;
+            if (tuner != null)
+                tuner.cancel();
+            finish(); //Device disconnected. Exit from this activity
+        }
+        @Override
+        public void deviceSearchEvent(NurEventDeviceInfo event) { }
+        @Override
+        public void debugMessageEvent(String event) { }
+        @Override
+        public void connectedEvent() { }
+        @Override
+        public void clientDisconnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void clientConnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void bootEvent(String event) { }
+        @Override
+        public void IOChangeEvent(NurEventIOChange event) { }
+        @Override
+        public void autotuneEvent(NurEventAutotune event) { }
+        @Override
+        public void tagTrackingScanEvent(NurEventTagTrackingData event) { }
+        @Override
+        public void tagTrackingChangeEvent(NurEventTagTrackingChange event) { }
+    };
+}
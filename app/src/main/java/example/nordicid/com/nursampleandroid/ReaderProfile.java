@@ -0,0 +1,175 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurSetup;
+
+/**
+ * Named reader setup: TX level, inventory Q, session, target, rounds and link profile
+ * (link frequency, RX decoding, TX modulation).
+ * Profile is applied with one setModuleSetup() call carrying all fields, so reader never runs with half applied profile
+ * and applying costs one command round trip instead of one per setting.
+ * Duty cycle flag is app side: it selects duty cycled inventory stream (DutyCycler) and is not written to reader.
+ */
+public class ReaderProfile {
+
+    //Module setup fields covered by profile
+    public static final int SETUP_FLAGS = NurApi.SETUP_TXLEVEL | NurApi.SETUP_INVQ | NurApi.SETUP_INVSESSION |
+            NurApi.SETUP_INVTARGET | NurApi.SETUP_INVROUNDS | NurApi.SETUP_LINKFREQ | NurApi.SETUP_RXDEC | NurApi.SETUP_TXMOD;
+
+    public final String name;
+    public final int txLevel;
+    public final int q;
+    public final int session;
+    public final int target;
+    public final int rounds;
+    public final int linkFreq;
+    public final int rxDecoding;
+    public final int txModulation;
+    public final boolean dutyCycle;
+
+    /**
+     * @param name Profile name. Must not contain ';' or new line.
+     * @param txLevel NurApi.TXLEVEL_xx
+     * @param q Inventory Q, 0 = automatic
+     * @param session NurApi.SESSION_Sx
+     * @param target NurApi.INVTARGET_x
+     * @param rounds Inventory rounds, 0 = automatic
+     * @param linkFreq NurApi.LINK_FREQUENCY_xx
+     * @param rxDecoding NurApi.RXDECODING_xx
+     * @param txModulation NurApi.TXMODULATION_xx
+     */
+    public ReaderProfile(String name, int txLevel, int q, int session, int target, int rounds,
+                         int linkFreq, int rxDecoding, int txModulation)
+    {
+        this(name, txLevel, q, session, target, rounds, linkFreq, rxDecoding, txModulation, false);
+    }
+
+    /**
+     * @param dutyCycle Run inventory stream in adaptive on/off bursts to save battery
+     */
+    public ReaderProfile(String name, int txLevel, int q, int session, int target, int rounds,
+                         int linkFreq, int rxDecoding, int txModulation, boolean dutyCycle)
+    {
+        if (name.length() == 0 || name.indexOf(';') >= 0 || name.indexOf('\n') >= 0)
+            throw new IllegalArgumentException("Invalid profile name: " + name);
+        this.name = name;
+        this.txLevel = txLevel;
+        this.q = q;
+        this.session = session;
+        this.target = target;
+        this.rounds = rounds;
+        this.linkFreq = linkFreq;
+        this.rxDecoding = rxDecoding;
+        this.txModulation = txModulation;
+        this.dutyCycle = dutyCycle;
+    }
+
+    /**
+     * Profile from setup read from reader with getModuleSetup(SETUP_FLAGS). Duty cycle off.
+     */
+    public static ReaderProfile fromSetup(String name, NurSetup setup)
+    {
+        return new ReaderProfile(name, setup.txLevel, setup.inventoryQ, setup.inventorySession, setup.inventoryTarget,
+                setup.inventoryRounds, setup.linkFreq, setup.rxDecoding, setup.txModulation);
+    }
+
+    public NurSetup toSetup()
+    {
+        NurSetup setup = new NurSetup();
+        setup.txLevel = txLevel;
+        setup.inventoryQ = q;
+        setup.inventorySession = session;
+        setup.inventoryTarget = target;
+        setup.inventoryRounds = rounds;
+        setup.linkFreq = linkFreq;
+        setup.rxDecoding = rxDecoding;
+        setup.txModulation = txModulation;
+        return setup;
+    }
+
+    /**
+     * Write profile to reader in one setup command
+     */
+    public void apply(NurApi api) throws Exception
+    {
+        api.setModuleSetup(toSetup(), SETUP_FLAGS);
+    }
+
+    /**
+     * Copy with other name
+     */
+    public ReaderProfile rename(String newName)
+    {
+        return new ReaderProfile(newName, txLevel, q, session, target, rounds, linkFreq, rxDecoding, txModulation, dutyCycle);
+    }
+
+    /**
+     * Copy with duty cycle on or off
+     */
+    public ReaderProfile withDutyCycle(boolean v) { return new ReaderProfile(name, txLevel, q, session, target, rounds, linkFreq, rxDecoding, txModulation, v); }
+
+    ReaderProfile withTxLevel(int v) { return new ReaderProfile(name, v, q, session, target, rounds, linkFreq, rxDecoding, txModulation, dutyCycle); }
+    ReaderProfile withQ(int v) { return new ReaderProfile(name, txLevel, v, session, target, rounds, linkFreq, rxDecoding, txModulation, dutyCycle); }
+    ReaderProfile withSession(int v) { return new ReaderProfile(name, txLevel, q, v, target, rounds, linkFreq, rxDecoding, txModulation, dutyCycle); }
+    ReaderProfile withRounds(int v) { return new ReaderProfile(name, txLevel, q, session, target, v, linkFreq, rxDecoding, txModulation, dutyCycle); }
+    ReaderProfile withLink(int freq, int rxDec) { return new ReaderProfile(name, txLevel, q, session, target, rounds, freq, rxDec, txModulation, dutyCycle); }
+
+    /**
+     * One line text form: name;txLevel;q;session;target;rounds;linkFreq;rxDecoding;txModulation;dutyCycle
+     */
+    public String encode()
+    {
+        return name + ";" + txLevel + ";" + q + ";" + session + ";" + target + ";" + rounds + ";" +
+                linkFreq + ";" + rxDecoding + ";" + txModulation + ";" + (dutyCycle ? 1 : 0);
+    }
+
+    /**
+     * Lines saved before duty cycle flag (9 fields) load with duty cycle off.
+     * @throws IllegalArgumentException if line is not valid
+     */
+    public static ReaderProfile decode(String line)
+    {
+        String[] p = line.split(";");
+        if (p.length != 9 && p.length != 10)
+            throw new IllegalArgumentException("Invalid profile: " + line);
+        try {
+            return new ReaderProfile(p[0], Integer.parseInt(p[1]), Integer.parseInt(p[2]), Integer.parseInt(p[3]),
+                    Integer.parseInt(p[4]), Integer.parseInt(p[5]), Integer.parseInt(p[6]), Integer.parseInt(p[7]),
+                    Integer.parseInt(p[8]), p.length == 10 && Integer.parseInt(p[9]) != 0);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid profile: " + line);
+        }
+    }
+
+    /**
+     * Settings as short text, "TX -0dB Q auto S1/A rounds auto 256k M4 duty". TX shown as attenuation from max level.
+     */
+    public String describe()
+    {
+        return "TX -" + txLevel + "dB Q " + (q == 0 ? "auto" : String.valueOf(q)) +
+                " S" + session + "/" + (target == NurApi.INVTARGET_A ? "A" : target == NurApi.INVTARGET_B ? "B" : "AB") +
+                " rounds " + (rounds == 0 ? "auto" : String.valueOf(rounds)) +
+                " " + (linkFreq / 1000) + "k " + (rxDecoding == NurApi.RXDECODING_FM0 ? "FM0" : "M" + (1 << rxDecoding)) +
+                (dutyCycle ? " duty" : "");
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof ReaderProfile))
+            return false;
+        return encode().equals(((ReaderProfile) o).encode());
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return encode().hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + ": " + describe();
+    }
+}
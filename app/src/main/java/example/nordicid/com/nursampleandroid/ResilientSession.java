@@ -0,0 +1,234 @@
+package example.nordicid.com.nursampleandroid;
+
+/**
+ * Connection session that survives transport drops.
+ *
+ * Keeps what operator wants (connected, streaming) apart from what transport currently is. When connection drops
+ * while wanted, reconnect thread asks Reconnector for a new attempt with exponential backoff until connected again.
+ * On reconnect caller gets streaming intent back so it can resume stream without clearing tags it has.
+ * Outage count and time are measured. Tags missed during outage are estimated from new tag rate of streaming
+ * before the drop, reader can not tell which tags passed the field while link was down.
+ */
+public class ResilientSession {
+
+    public interface Reconnector {
+        /**
+         * Start new connection attempt to last reader. Called from reconnect thread.
+         */
+        void reconnect() throws Exception;
+    }
+
+    private final Object mLock = new Object();
+    private final long mBackoffBaseMs;
+    private final long mBackoffMaxMs;
+    private Reconnector mReconnector;
+
+    private boolean mWanted;
+    private boolean mStreaming;
+    private long mStreamStartMs = -1;
+
+    //New tags and time streaming, for rate
+    private long mStreamTags;
+    private long mStreamMs;
+
+    private boolean mOutage;
+    private long mOutageStartMs;
+    private int mAttempts;
+    private int mOutages;
+    private long mLastOutageMs;
+    private long mTotalOutageMs;
+    private double mMissedEstimate;
+
+    private Thread mReconnectThread;
+
+    /**
+     * @param backoffBaseMs Delay before first reconnect attempt. Doubles after each attempt.
+     * @param backoffMaxMs Longest delay between attempts
+     */
+    public ResilientSession(long backoffBaseMs, long backoffMaxMs)
+    {
+        mBackoffBaseMs = backoffBaseMs;
+        mBackoffMaxMs = backoffMaxMs;
+    }
+
+    /**
+     * Set transport to reconnect. Session is wanted from now on.
+     */
+    public void setReconnector(Reconnector reconnector)
+    {
+        synchronized (mLock) {
+            mReconnector = reconnector;
+            mWanted = reconnector != null;
+        }
+    }
+
+    /**
+     * Operator disconnected on purpose. Drops are not recovered until next setReconnector.
+     */
+    public void release()
+    {
+        synchronized (mLock) {
+            mWanted = false;
+            mReconnector = null;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Operator started or stopped inventory stream
+     */
+    public void setStreaming(boolean streaming, long nowMs)
+    {
+        synchronized (mLock) {
+            if (streaming == mStreaming)
+                return;
+            mStreaming = streaming;
+            if (streaming) {
+                mStreamStartMs = nowMs;
+            }
+            else {
+                if (!mOutage)
+                    mStreamMs += nowMs - mStreamStartMs;
+                mStreamStartMs = -1;
+            }
+        }
+    }
+
+    /**
+     * New tags found by stream
+     */
+    public void onNewTags(int count)
+    {
+        synchronized (mLock) {
+            mStreamTags += count;
+        }
+    }
+
+    /**
+     * Transport dropped. Starts reconnect attempts if session is wanted.
+     * @return true if stream was on, so it is resumed on reconnect
+     */
+    public boolean onDisconnected(long nowMs)
+    {
+        synchronized (mLock) {
+            if (mOutage || !mWanted)
+                return mStreaming;
+            mOutage = true;
+            mOutageStartMs = nowMs;
+            mAttempts = 0;
+            if (mStreaming)
+                mStreamMs += nowMs - mStreamStartMs;
+
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    reconnectLoop();
+                }
+            }, "ResilientSession");
+            thread.setDaemon(true);
+            mReconnectThread = thread;
+            thread.start();
+            return mStreaming;
+        }
+    }
+
+    /**
+     * Transport connected. Ends outage if there was one.
+     * @return true if stream was on when connection dropped and should be resumed now
+     */
+    public boolean onConnected(long nowMs)
+    {
+        synchronized (mLock) {
+            if (!mOutage)
+                return false;
+            mOutage = false;
+            mOutages++;
+            mLastOutageMs = nowMs - mOutageStartMs;
+            mTotalOutageMs += mLastOutageMs;
+            if (mStreaming) {
+                mMissedEstimate += getTagRate() * mLastOutageMs / 1000.0;
+                mStreamStartMs = nowMs;
+            }
+            mReconnectThread = null;
+            mLock.notifyAll();
+            return mStreaming;
+        }
+    }
+
+    private void reconnectLoop()
+    {
+        while (true) {
+            Reconnector reconnector;
+            synchronized (mLock) {
+                long delay = backoffDelay(mAttempts + 1);
+                long until = System.currentTimeMillis() + delay;
+                while (isRetrying() && System.currentTimeMillis() < until) {
+                    try {
+                        mLock.wait(Math.max(1, until - System.currentTimeMillis()));
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (!isRetrying())
+                    return;
+                mAttempts++;
+                reconnector = mReconnector;
+            }
+            try {
+                reconnector.reconnect();
+            } catch (Exception ex) {
+                //Next attempt after longer delay
+            }
+        }
+    }
+
+    private boolean isRetrying()
+    {
+        return mOutage && mWanted && mReconnectThread == Thread.currentThread();
+    }
+
+    /**
+     * Delay before attempt. Doubles from base up to max.
+     */
+    long backoffDelay(int attempt)
+    {
+        long delay = mBackoffBaseMs << Math.min(attempt - 1, 20);
+        if (delay <= 0 || delay > mBackoffMaxMs)
+            delay = mBackoffMaxMs;
+        return delay;
+    }
+
+    public boolean isOutage() { synchronized (mLock) { return mOutage; } }
+    public boolean isStreaming() { synchronized (mLock) { return mStreaming; } }
+    public int getAttempts() { synchronized (mLock) { return mAttempts; } }
+    public int getOutages() { synchronized (mLock) { return mOutages; } }
+    public long getLastOutageMs() { synchronized (mLock) { return mLastOutageMs; } }
+    public long getTotalOutageMs() { synchronized (mLock) { return mTotalOutageMs; } }
+
+    /**
+     * @return Estimated tags missed in all outages while streaming
+     */
+    public double getMissedEstimate() { synchronized (mLock) { return mMissedEstimate; } }
+
+    /**
+     * @return New tags per second while stream was on and connected
+     */
+    public double getTagRate()
+    {
+        synchronized (mLock) {
+            return mStreamMs > 0 ? mStreamTags * 1000.0 / mStreamMs : 0;
+        }
+    }
+
+    /**
+     * "Outages 2, last 3.4 s, total 5.1 s, ~12 tags missed"
+     */
+    public String summary()
+    {
+        synchronized (mLock) {
+            return String.format("Outages %d, last %.1f s, total %.1f s, ~%.0f tags missed",
+                    mOutages, mLastOutageMs / 1000.0, mTotalOutageMs / 1000.0, mMissedEstimate);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package example.nordicid.com.nursampleandroid;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+import android.widget.CompoundButton;
+import android.widget.TextView;
+import android.widget.ToggleButton;
+
+import com.nordicid.nurapi.*;
+
+/**
+ * RF diagnostics activity. Runs inventory stream with frequency hop events on and shows last WINDOW_SLOTS seconds of
+ * reads and mean RSSI per channel, RSSI distribution and hop timing (RfStats).
+ * Every read counts: tag storage is emptied after each stream event, so tags seen again are added again.
+ * Channels with hops but few reads are marked; they point to interference on that frequency.
+ */
+public class RfDiagnostics extends Activity {
+
+    public static final String TAG = "NUR_SAMPLE";
+
+    private static final int WINDOW_SLOTS = 30;
+    private static final long SLOT_MS = 1000;
+    private static final long REFRESH_MS = 500;
+    //Channel marked weak if its reads per hop below this fraction of median channel
+    private static final double WEAK_FRACTION = 0.25;
+
+    private NurApi mNurApi;
+    private final RfStats mStats = new RfStats(WINDOW_SLOTS, SLOT_MS);
+    private final Handler mHandler = new Handler();
+
+    //UI
+    private ToggleButton mStreamButton;
+    private TextView mDashTextView;
+    private TextView mStatusTextView;
+
+    private String mUiStatusMsg;
+    private int mUiStatusColor;
+
+    private volatile boolean mRunning;
+    //Op flags before hop events turned on. Restored when stopped.
+    private int mOpFlagsBefore = -1;
+
+    //Reused by refresh, UI thread only
+    private final int[] mHist = new int[Math.max(RfStats.RSSI_BINS, RfStats.HOP_BINS)];
+    private final int[] mWeak = new int[RfStats.MAX_CHANNELS];
+    private final StringBuilder mSb = new StringBuilder(4096);
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_rf_diagnostics);
+
+        //Get NurApi handle from MainActivity
+        mNurApi = MainActivity.GetNurApi();
+
+        //Set event listener for this activity
+        mNurApi.setListener(mNurApiEventListener);
+
+        mStreamButton = (ToggleButton)findViewById(R.id.toggleButtonRfDiag);
+        mDashTextView = (TextView)findViewById(R.id.text_rf_dashboard);
+        mStatusTextView = (TextView)findViewById(R.id.text_rf_status);
+
+        mStreamButton.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (isChecked && !mRunning)
+                    startDiagnostics();
+                else if (!isChecked && mRunning)
+                    stopDiagnostics();
+            }
+        });
+
+        mUiStatusMsg = "Press Start or trigger. Keep tags in field.";
+        mUiStatusColor = Color.BLACK;
+        showOnUI();
+    }
+
+    private void startDiagnostics()
+    {
+        try {
+            mStats.clear();
+            mOpFlagsBefore = mNurApi.getSetupOpFlags();
+            mNurApi.setSetupOpFlags(mOpFlagsBefore | NurApi.OPFLAGS_EN_HOPEVENTS);
+            mNurApi.clearIdBuffer();
+            mNurApi.startInventoryStream();
+            mRunning = true;
+            mHandler.post(mRefresh);
+            mUiStatusMsg = "Running...";
+            mUiStatusColor = Color.BLACK;
+        }
+        catch (Exception ex) {
+            mUiStatusMsg = "Start failed: " + ex.getMessage();
+            mUiStatusColor = Color.RED;
+        }
+        showOnUI();
+    }
+
+    private void stopDiagnostics()
+    {
+        mRunning = false;
+        mHandler.removeCallbacks(mRefresh);
+        try {
+            if (mNurApi.isInventoryStreamRunning())
+                mNurApi.stopInventoryStream();
+            if (mOpFlagsBefore >= 0) {
+                mNurApi.setSetupOpFlags(mOpFlagsBefore);
+                mOpFlagsBefore = -1;
+            }
+            mUiStatusMsg = "Stopped";
+            mUiStatusColor = Color.BLACK;
+        }
+        catch (Exception ex) {
+            mUiStatusMsg = "Stop failed: " + ex.getMessage();
+            mUiStatusColor = Color.RED;
+        }
+        showOnUI();
+    }
+
+    private final Runnable mRefresh = new Runnable() {
+        @Override
+        public void run() {
+            if (!mRunning)
+                return;
+            mDashTextView.setText(formatDashboard());
+            mHandler.postDelayed(this, REFRESH_MS);
+        }
+    };
+
+    /**
+     * Dashboard text. Channel table, RSSI histogram and hop interval histogram as bars.
+     */
+    private String formatDashboard()
+    {
+        mStats.update(System.currentTimeMillis());
+        StringBuilder sb = mSb;
+        sb.setLength(0);
+
+        int weakCount = mStats.getWeakChannels(WEAK_FRACTION, mWeak);
+        sb.append("Last ").append(WINDOW_SLOTS * SLOT_MS / 1000).append(" s: ").append(mStats.getTotalReads())
+                .append(" reads, hop every ").append(String.format("%.0f", mStats.getMeanHopMs())).append(" ms\n");
+        sb.append("Ch  Hops  Reads  Rd/hop  RSSI\n");
+        for (int c = 0; c < RfStats.MAX_CHANNELS; c++) {
+            int hops = mStats.getHops(c);
+            int reads = mStats.getReads(c);
+            if (hops == 0 && reads == 0)
+                continue;
+            sb.append(String.format("%2d %5d %6d %7.1f %5.0f", c, hops, reads,
+                    hops > 0 ? (double) reads / hops : 0.0, mStats.getMeanRssi(c)));
+            for (int x = 0; x < weakCount; x++) {
+                if (mWeak[x] == c)
+                    sb.append(" !");
+            }
+            if (c == mStats.getLastChannel())
+                sb.append(" <");
+            sb.append('\n');
+        }
+
+        sb.append("\nRSSI dBm\n");
+        mStats.getRssiHistogram(mHist);
+        appendBars(sb, mHist, RfStats.RSSI_BINS, RfStats.RSSI_MIN, RfStats.RSSI_BIN_DB);
+
+        sb.append("\nHop interval ms\n");
+        mStats.getHopHistogram(mHist);
+        appendBars(sb, mHist, RfStats.HOP_BINS, 0, RfStats.HOP_BIN_MS);
+        return sb.toString();
+    }
+
+    private static void appendBars(StringBuilder sb, int[] hist, int bins, int first, int step)
+    {
+        int max = 1;
+        for (int b = 0; b < bins; b++)
+            max = Math.max(max, hist[b]);
+        for (int b = 0; b < bins; b++) {
+            if (hist[b] == 0)
+                continue;
+            sb.append(String.format("%4d %6d ", first + b * step, hist[b]));
+            int len = (int) ((long) hist[b] * 20 / max);
+            for (int x = 0; x < Math.max(1, len); x++)
+                sb.append('#');
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * Show UI items
+     */
+    private void showOnUI() {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mStatusTextView.setText(mUiStatusMsg);
+                mStatusTextView.setTextColor(mUiStatusColor);
+                mStreamButton.setChecked(mRunning);
+            }
+        });
+    }
+
+    /**
+     * Add every tag of stream event to stats and empty storage so next reads of same tags are counted too
+     */
+    private void handleInventoryEvent(NurEventInventory event)
+    {
+        if (event.stopped) {
+            //Stream stops by itself after a while. Keep going while diagnostics on.
+            if (mRunning) {
+                try {
+                    mNurApi.startInventoryStream();
+                }
+                catch (Exception ex) {
+                    Log.i(TAG, "Stream restart failed " + ex.getMessage());
+                }
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        NurTagStorage storage = mNurApi.getStorage();
+        synchronized (storage) {
+            for (int x = 0; x < storage.size(); x++) {
+                NurTag tag = storage.get(x);
+                mStats.addRead(tag.getChannel(), tag.getRssi(), now);
+            }
+            storage.clear();
+        }
+    }
+
+    private void handleIOEvent(NurEventIOChange event)
+    {
+        if (event.source != 100)
+            return;
+        final boolean pressed = event.direction == 1;
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mStreamButton.setChecked(pressed);
+            }
+        });
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (mRunning)
+            stopDiagnostics();
+    }
+
+    /**
+     * NurApi event handlers.
+     * NOTE: All NurApi events are called from NurApi thread, thus direct UI updates are not allowed.
+     */
+    private NurApiListener mNurApiEventListener = new NurApiListener()
+    {
+        @Override
+        public void triggeredReadEvent(NurEventTriggeredRead event) { }
+        @Override
+        public void traceTagEvent(NurEventTraceTag event) { }
+        @Override
+        public void programmingProgressEvent(NurEventProgrammingProgress event) { }
+        @Override
+        public void nxpEasAlarmEvent(NurEventNxpAlarm event) { }
+        @Override
+        public void logEvent(int level, String txt) { }
+        @Override
+        public void inventoryStreamEvent(NurEventInventory event) {
+            handleInventoryEvent(event);
+        }
+        @Override
+        public void inventoryExtendedStreamEvent(NurEventInventory event) {
+            handleInventoryEvent(event);
+        }
+        @Override
+        public void frequencyHopEvent(NurEventFrequencyHop event) {
+            mStats.addHop(event.index, System.currentTimeMillis());
+        }
+        @Override
+        public void epcEnumEvent(NurEventEpcEnum event) { }
+        @Override
+        public void disconnectedEvent() {
+            mRunning = false;
+            finish(); //Device disconnected. Exit from this activity
+        }
+        @Override
+        public void deviceSearchEvent(NurEventDeviceInfo event) { }
+        @Override
+        public void debugMessageEvent(String event) { }
+        @Override
+        public void connectedEvent() { }
+        @Override
+        public void clientDisconnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void clientConnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void bootEvent(String event) { }
+        @Override
+        public void IOChangeEvent(NurEventIOChange event) {
+            handleIOEvent(event);
+        }
+        @Override
+        public void autotuneEvent(NurEventAutotune event) { }
+        @Override
+        public void tagTrackingScanEvent(NurEventTagTrackingData event) { }
+        @Override
+        public void tagTrackingChangeEvent(NurEventTagTrackingChange event) { }
+    };
+}
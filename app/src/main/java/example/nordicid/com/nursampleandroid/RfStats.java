@@ -0,0 +1,245 @@
+package example.nordicid.com.nursampleandroid;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window RF statistics: reads and RSSI per channel, RSSI histogram and hop interval histogram.
+ *
+ * Window is a ring of SLOTS time slots. Each event is added to the current slot and to running totals.
+ * When time moves to next slot, the expiring slot is subtracted from totals and cleared, so queries
+ * read totals directly and nothing is allocated or rescanned per event.
+ * All methods are synchronized: reader events add from NurApi thread, UI reads totals.
+ */
+public class RfStats {
+
+    public static final int MAX_CHANNELS = 64;
+
+    //RSSI histogram: RSSI_MIN .. RSSI_MIN + RSSI_BINS * RSSI_BIN_DB, values outside go to end bins
+    public static final int RSSI_MIN = -90;
+    public static final int RSSI_BIN_DB = 4;
+    public static final int RSSI_BINS = 16;
+
+    //Hop interval histogram, last bin collects longer intervals
+    public static final int HOP_BIN_MS = 25;
+    public static final int HOP_BINS = 16;
+
+    private final int mSlots;
+    private final long mSlotMs;
+
+    //Per slot data, slot s at offset s * size
+    private final int[] mSlotReads;
+    private final long[] mSlotRssiSum;
+    private final int[] mSlotHops;
+    private final int[] mSlotRssiHist;
+    private final int[] mSlotHopHist;
+    private final long[] mSlotHopMsSum;
+
+    //Totals over window
+    private final int[] mReads = new int[MAX_CHANNELS];
+    private final long[] mRssiSum = new long[MAX_CHANNELS];
+    private final int[] mHops = new int[MAX_CHANNELS];
+    private final int[] mRssiHist = new int[RSSI_BINS];
+    private final int[] mHopHist = new int[HOP_BINS];
+    private long mHopMsSum;
+    private int mHopIntervals;
+
+    private long mSlotIndex = -1;
+    private long mLastHopMs = -1;
+    private int mLastChannel = -1;
+
+    /**
+     * @param slots Number of time slots in window
+     * @param slotMs Slot length. Window is slots * slotMs.
+     */
+    public RfStats(int slots, long slotMs)
+    {
+        mSlots = slots;
+        mSlotMs = slotMs;
+        mSlotReads = new int[slots * MAX_CHANNELS];
+        mSlotRssiSum = new long[slots * MAX_CHANNELS];
+        mSlotHops = new int[slots * MAX_CHANNELS];
+        mSlotRssiHist = new int[slots * RSSI_BINS];
+        mSlotHopHist = new int[slots * HOP_BINS];
+        mSlotHopMsSum = new long[slots];
+    }
+
+    /**
+     * Tag read on channel
+     * @param channel Channel index of read (NurTag.getChannel())
+     * @param rssi RSSI in dBm
+     */
+    public synchronized void addRead(int channel, int rssi, long nowMs)
+    {
+        int s = advance(nowMs);
+        int bin = rssiBin(rssi);
+        mSlotRssiHist[s * RSSI_BINS + bin]++;
+        mRssiHist[bin]++;
+        if (channel < 0 || channel >= MAX_CHANNELS)
+            return;
+        mSlotReads[s * MAX_CHANNELS + channel]++;
+        mSlotRssiSum[s * MAX_CHANNELS + channel] += rssi;
+        mReads[channel]++;
+        mRssiSum[channel] += rssi;
+    }
+
+    /**
+     * Reader hopped to channel (frequencyHopEvent)
+     */
+    public synchronized void addHop(int channel, long nowMs)
+    {
+        int s = advance(nowMs);
+        if (channel >= 0 && channel < MAX_CHANNELS) {
+            mSlotHops[s * MAX_CHANNELS + channel]++;
+            mHops[channel]++;
+        }
+        if (mLastHopMs >= 0) {
+            long interval = nowMs - mLastHopMs;
+            int bin = (int) Math.min(HOP_BINS - 1, interval / HOP_BIN_MS);
+            mSlotHopHist[s * HOP_BINS + bin]++;
+            mHopHist[bin]++;
+            mSlotHopMsSum[s] += interval;
+            mHopMsSum += interval;
+            mHopIntervals++;
+        }
+        mLastHopMs = nowMs;
+        mLastChannel = channel;
+    }
+
+    static int rssiBin(int rssi)
+    {
+        int bin = (rssi - RSSI_MIN) / RSSI_BIN_DB;
+        if (rssi < RSSI_MIN) return 0;
+        return Math.min(RSSI_BINS - 1, bin);
+    }
+
+    /**
+     * Move window to time. Expired slots are subtracted from totals and cleared.
+     * @return Slot of time
+     */
+    private int advance(long nowMs)
+    {
+        long index = nowMs / mSlotMs;
+        if (mSlotIndex < 0)
+            mSlotIndex = index;
+        //Expire at most whole ring, longer gap clears everything once
+        long expire = Math.min(index - mSlotIndex, mSlots);
+        for (long x = 1; x <= expire; x++)
+            clearSlot((int) ((mSlotIndex + x) % mSlots));
+        if (index > mSlotIndex)
+            mSlotIndex = index;
+        return (int) (mSlotIndex % mSlots);
+    }
+
+    private void clearSlot(int s)
+    {
+        int off = s * MAX_CHANNELS;
+        for (int c = 0; c < MAX_CHANNELS; c++) {
+            mReads[c] -= mSlotReads[off + c];
+            mRssiSum[c] -= mSlotRssiSum[off + c];
+            mHops[c] -= mSlotHops[off + c];
+            mSlotReads[off + c] = 0;
+            mSlotRssiSum[off + c] = 0;
+            mSlotHops[off + c] = 0;
+        }
+        off = s * RSSI_BINS;
+        for (int b = 0; b < RSSI_BINS; b++) {
+            mRssiHist[b] -= mSlotRssiHist[off + b];
+            mSlotRssiHist[off + b] = 0;
+        }
+        off = s * HOP_BINS;
+        for (int b = 0; b < HOP_BINS; b++) {
+            mHopHist[b] -= mSlotHopHist[off + b];
+            mHopIntervals -= mSlotHopHist[off + b];
+            mSlotHopHist[off + b] = 0;
+        }
+        mHopMsSum -= mSlotHopMsSum[s];
+        mSlotHopMsSum[s] = 0;
+    }
+
+    /**
+     * Expire old data without adding events. Call before reading when events may have stopped.
+     */
+    public synchronized void update(long nowMs)
+    {
+        advance(nowMs);
+    }
+
+    public synchronized int getReads(int channel) { return mReads[channel]; }
+    public synchronized int getHops(int channel) { return mHops[channel]; }
+    public synchronized int getLastChannel() { return mLastChannel; }
+
+    public synchronized int getTotalReads()
+    {
+        int n = 0;
+        for (int c = 0; c < MAX_CHANNELS; c++)
+            n += mReads[c];
+        return n;
+    }
+
+    /**
+     * @return Mean RSSI of reads on channel, 0 if none
+     */
+    public synchronized double getMeanRssi(int channel)
+    {
+        return mReads[channel] > 0 ? (double) mRssiSum[channel] / mReads[channel] : 0;
+    }
+
+    /**
+     * @return Mean time between hops in window, 0 if less than two hops
+     */
+    public synchronized double getMeanHopMs()
+    {
+        return mHopIntervals > 0 ? (double) mHopMsSum / mHopIntervals : 0;
+    }
+
+    /**
+     * Copy RSSI histogram to dst (RSSI_BINS)
+     */
+    public synchronized void getRssiHistogram(int[] dst)
+    {
+        System.arraycopy(mRssiHist, 0, dst, 0, RSSI_BINS);
+    }
+
+    /**
+     * Copy hop interval histogram to dst (HOP_BINS)
+     */
+    public synchronized void getHopHistogram(int[] dst)
+    {
+        System.arraycopy(mHopHist, 0, dst, 0, HOP_BINS);
+    }
+
+    /**
+     * Channels visited in window whose reads per hop are below fraction of median of visited channels.
+     * Low reads on a channel the reader dwells on normally points to interference on that frequency.
+     * @param dst Channel numbers written here
+     * @return Number of channels
+     */
+    public synchronized int getWeakChannels(double fraction, int[] dst)
+    {
+        double[] perHop = new double[MAX_CHANNELS];
+        int n = 0;
+        for (int c = 0; c < MAX_CHANNELS; c++) {
+            if (mHops[c] > 0)
+                perHop[n++] = (double) mReads[c] / mHops[c];
+        }
+        if (n < 3)
+            return 0;
+        Arrays.sort(perHop, 0, n);
+        double limit = perHop[n / 2] * fraction;
+        int count = 0;
+        for (int c = 0; c < MAX_CHANNELS && count < dst.length; c++) {
+            if (mHops[c] > 0 && (double) mReads[c] / mHops[c] < limit)
+                dst[count++] = c;
+        }
+        return count;
+    }
+
+    public synchronized void clear()
+    {
+        for (int s = 0; s < mSlots; s++)
+            clearSlot(s);
+        mSlotIndex = -1;
+        mLastHopMs = -1;
+        mLastChannel = -1;
+    }
+}
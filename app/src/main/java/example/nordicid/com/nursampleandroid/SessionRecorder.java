@@ -0,0 +1,301 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records NurApi events into compact binary file so that session can be replayed later with SessionReplayer.
+ * Recorder is set as NurApi listener and it passes every event on to the real listener.
+ * Inventory stream events carry only tag counts, so new tags are read from tag storage and recorded
+ * before the real listener sees the event.
+ *
+ * File format:
+ *  header: "NURSREC" + version byte, start time (epoch ms, long)
+ *  record: type byte, time from previous record (ns, varint), type specific payload
+ */
+public class SessionRecorder implements NurApiListener {
+
+    static final byte[] MAGIC = { 'N', 'U', 'R', 'S', 'R', 'E', 'C' };
+    static final int VERSION = 1;
+
+    static final int REC_INVENTORY = 1;
+    static final int REC_INVENTORY_EX = 2;
+    static final int REC_IO_CHANGE = 3;
+    static final int REC_BARCODE = 4;
+    static final int REC_TRACE_TAG = 5;
+    static final int REC_TRIGGERED_READ = 6;
+    static final int REC_FREQUENCY_HOP = 7;
+    static final int REC_CONNECTED = 8;
+    static final int REC_DISCONNECTED = 9;
+
+    private final NurApi mApi;
+    private final NurApiListener mListener;
+    private final DataOutputStream mOut;
+    private long mLastNanos;
+    private int mRecordCount;
+    private IOException mError;
+
+    /**
+     * Start recording to output stream.
+     * @param api NurApi which tag storage is read on inventory events
+     * @param listener Real listener. All events passed to it.
+     * @param out Output. Closed when recorder closed.
+     */
+    public SessionRecorder(NurApi api, NurApiListener listener, OutputStream out) throws IOException
+    {
+        mApi = api;
+        mListener = listener;
+        mOut = new DataOutputStream(out);
+        mOut.write(MAGIC);
+        mOut.writeByte(VERSION);
+        mOut.writeLong(System.currentTimeMillis());
+        mLastNanos = System.nanoTime();
+    }
+
+    /**
+     * Start recording to new file in directory. File named by prefix and start time.
+     */
+    public static SessionRecorder create(File dir, String prefix, NurApi api, NurApiListener listener) throws IOException
+    {
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Cannot create " + dir);
+        File file = new File(dir, prefix + "_" + System.currentTimeMillis() + ".nurrec");
+        return new SessionRecorder(api, listener, new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+    }
+
+    public int getRecordCount() { return mRecordCount; }
+
+    /**
+     * @return First write error, null if none. Recording stops at first error but events are still passed on.
+     */
+    public IOException getError() { return mError; }
+
+    public synchronized void close()
+    {
+        try {
+            mOut.close();
+        } catch (IOException ex) {
+            if (mError == null) mError = ex;
+        }
+    }
+
+    /**
+     * Record barcode result. Barcode results do not come through NurApiListener, so caller records them.
+     */
+    public synchronized void recordBarcode(int status, String barcode)
+    {
+        if (!begin(REC_BARCODE))
+            return;
+        try {
+            writeVarInt(status);
+            writeString(barcode);
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    private boolean begin(int type)
+    {
+        if (mError != null)
+            return false;
+        long now = System.nanoTime();
+        try {
+            mOut.writeByte(type);
+            writeVarLong(now - mLastNanos);
+            mLastNanos = now;
+            mRecordCount++;
+            return true;
+        } catch (IOException ex) {
+            fail(ex);
+            return false;
+        }
+    }
+
+    private void fail(IOException ex)
+    {
+        if (mError == null)
+            mError = ex;
+    }
+
+    private synchronized void recordInventory(int type, NurEventInventory event)
+    {
+        if (!begin(type))
+            return;
+        try {
+            NurTagStorage storage = mApi.getStorage();
+            int added = event.stopped ? 0 : Math.min(event.tagsAdded, storage.size());
+            mOut.writeBoolean(event.stopped);
+            writeVarInt(event.roundsDone);
+            writeVarInt(event.collisions);
+            writeVarInt(event.Q);
+            writeVarInt(added);
+            for (int x = storage.size() - added; x < storage.size(); x++)
+                writeTag(storage.get(x));
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    private void writeTag(NurTag tag) throws IOException
+    {
+        writeBytes(tag.getEpc());
+        mOut.writeByte(tag.getRssi());
+        mOut.writeByte(tag.getScaledRssi());
+        mOut.writeByte(tag.getAntennaId());
+        writeVarInt(tag.getChannel());
+        writeVarInt(tag.getFreq());
+        writeVarInt(tag.getPC());
+        writeVarInt(tag.getTimestamp());
+        writeBytes(tag.getIrData());
+    }
+
+    private void writeBytes(byte[] b) throws IOException
+    {
+        if (b == null) {
+            writeVarInt(0);
+            return;
+        }
+        writeVarInt(b.length);
+        mOut.write(b);
+    }
+
+    private void writeString(String s) throws IOException
+    {
+        writeBytes(s == null ? null : s.getBytes("UTF-8"));
+    }
+
+    private void writeVarInt(int v) throws IOException
+    {
+        writeVarLong(v & 0xFFFFFFFFL);
+    }
+
+    private void writeVarLong(long v) throws IOException
+    {
+        while ((v & ~0x7FL) != 0) {
+            mOut.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        mOut.writeByte((int) v);
+    }
+
+    //================ NurApiListener. Record, then pass on. ================
+
+    @Override
+    public void inventoryStreamEvent(NurEventInventory event) {
+        recordInventory(REC_INVENTORY, event);
+        mListener.inventoryStreamEvent(event);
+    }
+    @Override
+    public void inventoryExtendedStreamEvent(NurEventInventory event) {
+        recordInventory(REC_INVENTORY_EX, event);
+        mListener.inventoryExtendedStreamEvent(event);
+    }
+    @Override
+    public void IOChangeEvent(NurEventIOChange event) {
+        synchronized (this) {
+            if (begin(REC_IO_CHANGE)) {
+                try {
+                    writeVarInt(event.source);
+                    writeVarInt(event.direction);
+                    mOut.writeBoolean(event.sensor);
+                } catch (IOException ex) {
+                    fail(ex);
+                }
+            }
+        }
+        mListener.IOChangeEvent(event);
+    }
+    @Override
+    public void traceTagEvent(NurEventTraceTag event) {
+        synchronized (this) {
+            if (begin(REC_TRACE_TAG)) {
+                try {
+                    mOut.writeByte(event.rssi);
+                    mOut.writeByte(event.scaledRssi);
+                    mOut.writeByte(event.antennaId);
+                    writeBytes(event.epc);
+                } catch (IOException ex) {
+                    fail(ex);
+                }
+            }
+        }
+        mListener.traceTagEvent(event);
+    }
+    @Override
+    public void triggeredReadEvent(NurEventTriggeredRead event) {
+        synchronized (this) {
+            if (begin(REC_TRIGGERED_READ)) {
+                try {
+                    writeVarInt(event.source);
+                    mOut.writeBoolean(event.sensor);
+                    mOut.writeByte(event.rssi);
+                    mOut.writeByte(event.scaledRssi);
+                    mOut.writeByte(event.antennaId);
+                    writeBytes(event.epc);
+                } catch (IOException ex) {
+                    fail(ex);
+                }
+            }
+        }
+        mListener.triggeredReadEvent(event);
+    }
+    @Override
+    public void frequencyHopEvent(NurEventFrequencyHop event) {
+        synchronized (this) {
+            if (begin(REC_FREQUENCY_HOP)) {
+                try {
+                    writeVarInt(event.regionId);
+                    writeVarInt(event.index);
+                } catch (IOException ex) {
+                    fail(ex);
+                }
+            }
+        }
+        mListener.frequencyHopEvent(event);
+    }
+    @Override
+    public void connectedEvent() {
+        synchronized (this) {
+            begin(REC_CONNECTED);
+        }
+        mListener.connectedEvent();
+    }
+    @Override
+    public void disconnectedEvent() {
+        synchronized (this) {
+            begin(REC_DISCONNECTED);
+        }
+        mListener.disconnectedEvent();
+    }
+
+    @Override
+    public void programmingProgressEvent(NurEventProgrammingProgress event) { mListener.programmingProgressEvent(event); }
+    @Override
+    public void nxpEasAlarmEvent(NurEventNxpAlarm event) { mListener.nxpEasAlarmEvent(event); }
+    @Override
+    public void logEvent(int level, String txt) { mListener.logEvent(level, txt); }
+    @Override
+    public void epcEnumEvent(NurEventEpcEnum event) { mListener.epcEnumEvent(event); }
+    @Override
+    public void deviceSearchEvent(NurEventDeviceInfo event) { mListener.deviceSearchEvent(event); }
+    @Override
+    public void debugMessageEvent(String event) { mListener.debugMessageEvent(event); }
+    @Override
+    public void clientDisconnectedEvent(NurEventClientInfo event) { mListener.clientDisconnectedEvent(event); }
+    @Override
+    public void clientConnectedEvent(NurEventClientInfo event) { mListener.clientConnectedEvent(event); }
+    @Override
+    public void bootEvent(String event) { mListener.bootEvent(event); }
+    @Override
+    public void autotuneEvent(NurEventAutotune event) { mListener.autotuneEvent(event); }
+    @Override
+    public void tagTrackingScanEvent(NurEventTagTrackingData event) { mListener.tagTrackingScanEvent(event); }
+    @Override
+    public void tagTrackingChangeEvent(NurEventTagTrackingChange event) { mListener.tagTrackingChangeEvent(event); }
+}
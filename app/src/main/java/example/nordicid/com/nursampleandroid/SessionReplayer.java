@@ -0,0 +1,468 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.*;
+
+import example.nordicid.com.inventorycore.BarcodeBatcher;
+import example.nordicid.com.inventorycore.EpcFilter;
+import example.nordicid.com.inventorycore.InventoryController;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays back session recorded by SessionRecorder.
+ * Tags of inventory records are put to NurApi tag storage before the event is given to listener,
+ * so listener sees same storage content as it did when recorded. Reader does not need to be connected.
+ * Runs on plain JVM, main() feeds recording through the app's inventory and barcode handlers and prints
+ * time spent in each:
+ *  java -cp app-classes:inventorycore-classes:NurApi.jar example.nordicid.com.nursampleandroid.SessionReplayer session.nurrec [speed] [filter]
+ */
+public class SessionReplayer {
+
+    /**
+     * Receiver of barcode records. Barcode results come through accessory API, not NurApiListener.
+     */
+    public interface BarcodeListener {
+        void barcodeResult(int status, String barcode);
+    }
+
+    private final DataInputStream mIn;
+    private final long mStartTime;
+    private int mRecordCount;
+    private int mTagCount;
+    private long mRecordedNanos;
+
+    public SessionReplayer(InputStream in) throws IOException
+    {
+        mIn = new DataInputStream(in);
+        byte[] magic = new byte[SessionRecorder.MAGIC.length];
+        mIn.readFully(magic);
+        if (!Arrays.equals(magic, SessionRecorder.MAGIC))
+            throw new IOException("Not a session recording");
+        int version = mIn.readUnsignedByte();
+        if (version != SessionRecorder.VERSION)
+            throw new IOException("Unsupported recording version " + version);
+        mStartTime = mIn.readLong();
+    }
+
+    /**
+     * @return Wall clock time when recording started (epoch ms)
+     */
+    public long getStartTime() { return mStartTime; }
+    public int getRecordCount() { return mRecordCount; }
+    public int getTagCount() { return mTagCount; }
+
+    /**
+     * @return Duration of replayed records as recorded (ns)
+     */
+    public long getRecordedNanos() { return mRecordedNanos; }
+
+    /**
+     * Replay all records.
+     * @param api NurApi which tag storage is filled with recorded tags
+     * @param listener Receives NurApi events
+     * @param barcodeListener Receives barcode records. May be null.
+     * @param speed 1 for recorded timing, 10 for ten times faster. Zero or less replays as fast as possible.
+     */
+    public void replay(NurApi api, NurApiListener listener, BarcodeListener barcodeListener, double speed) throws IOException
+    {
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                int type;
+                try {
+                    type = mIn.readUnsignedByte();
+                } catch (EOFException ex) {
+                    return; //End of recording
+                }
+                mRecordedNanos += readVarLong();
+                mRecordCount++;
+
+                if (speed > 0) {
+                    long due = start + (long) (mRecordedNanos / speed);
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0)
+                        LockSupport.parkNanos(wait);
+                }
+
+                dispatch(type, api, listener, barcodeListener);
+            }
+        } catch (EOFException ex) {
+            throw new IOException("Recording truncated at record " + mRecordCount);
+        }
+    }
+
+    private void dispatch(int type, NurApi api, NurApiListener listener, BarcodeListener barcodeListener) throws IOException
+    {
+        switch (type) {
+            case SessionRecorder.REC_INVENTORY:
+            case SessionRecorder.REC_INVENTORY_EX:
+                NurEventInventory inv = readInventory(api);
+                if (type == SessionRecorder.REC_INVENTORY)
+                    listener.inventoryStreamEvent(inv);
+                else
+                    listener.inventoryExtendedStreamEvent(inv);
+                break;
+
+            case SessionRecorder.REC_IO_CHANGE:
+                NurEventIOChange io = new NurEventIOChange();
+                io.source = readVarInt();
+                io.direction = readVarInt();
+                io.sensor = mIn.readBoolean();
+                listener.IOChangeEvent(io);
+                break;
+
+            case SessionRecorder.REC_BARCODE:
+                int status = readVarInt();
+                byte[] code = readBytes();
+                if (barcodeListener != null)
+                    barcodeListener.barcodeResult(status, code == null ? null : new String(code, "UTF-8"));
+                break;
+
+            case SessionRecorder.REC_TRACE_TAG:
+                NurEventTraceTag trace = new NurEventTraceTag();
+                trace.rssi = mIn.readByte();
+                trace.scaledRssi = mIn.readByte();
+                trace.antennaId = mIn.readByte();
+                trace.epc = readBytes();
+                trace.epcStr = trace.epc == null ? "" : NurApi.byteArrayToHexString(trace.epc);
+                listener.traceTagEvent(trace);
+                break;
+
+            case SessionRecorder.REC_TRIGGERED_READ:
+                NurEventTriggeredRead read = new NurEventTriggeredRead();
+                read.source = readVarInt();
+                read.sensor = mIn.readBoolean();
+                read.rssi = mIn.readByte();
+                read.scaledRssi = mIn.readByte();
+                read.antennaId = mIn.readByte();
+                read.epc = readBytes();
+                read.epcStr = read.epc == null ? "" : NurApi.byteArrayToHexString(read.epc);
+                listener.triggeredReadEvent(read);
+                break;
+
+            case SessionRecorder.REC_FREQUENCY_HOP:
+                NurEventFrequencyHop hop = new NurEventFrequencyHop();
+                hop.regionId = readVarInt();
+                hop.index = readVarInt();
+                listener.frequencyHopEvent(hop);
+                break;
+
+            case SessionRecorder.REC_CONNECTED:
+                listener.connectedEvent();
+                break;
+
+            case SessionRecorder.REC_DISCONNECTED:
+                listener.disconnectedEvent();
+                break;
+
+            default:
+                throw new IOException("Unknown record type " + type + " at record " + mRecordCount);
+        }
+    }
+
+    private NurEventInventory readInventory(NurApi api) throws IOException
+    {
+        NurEventInventory event = new NurEventInventory();
+        event.stopped = mIn.readBoolean();
+        event.roundsDone = readVarInt();
+        event.collisions = readVarInt();
+        event.Q = readVarInt();
+        int count = readVarInt();
+
+        NurTagStorage storage = api.getStorage();
+        int added = 0;
+        for (int x = 0; x < count; x++) {
+            byte[] epc = readBytes();
+            int rssi = mIn.readByte();
+            int scaledRssi = mIn.readByte();
+            int antennaId = mIn.readByte();
+            int channel = readVarInt();
+            int freq = readVarInt();
+            int pc = readVarInt();
+            int timestamp = readVarInt();
+            byte[] irData = readBytes();
+            NurTag tag = new NurTag(timestamp, rssi, scaledRssi, freq, pc, channel, antennaId, epc, irData);
+            synchronized (storage) {
+                if (storage.addTag(tag))
+                    added++;
+            }
+        }
+        mTagCount += count;
+        event.tagsAdded = added;
+        return event;
+    }
+
+    private byte[] readBytes() throws IOException
+    {
+        int len = readVarInt();
+        if (len == 0)
+            return null;
+        byte[] b = new byte[len];
+        mIn.readFully(b);
+        return b;
+    }
+
+    private int readVarInt() throws IOException
+    {
+        return (int) readVarLong();
+    }
+
+    private long readVarLong() throws IOException
+    {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = mIn.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    public void close() throws IOException
+    {
+        mIn.close();
+    }
+
+    /**
+     * Reader which is never connected. Stream commands of InventoryController only change state,
+     * tags come from replayed records.
+     */
+    static class ReplayApi extends NurApi {
+        private boolean mStream;
+        private boolean mExtendedStream;
+
+        @Override
+        public void clearIdBuffer() { getStorage().clear(); }
+        @Override
+        public void startInventoryStream() { mStream = true; }
+        @Override
+        public void stopInventoryStream() { mStream = false; }
+        @Override
+        public boolean isInventoryStreamRunning() { return mStream; }
+        @Override
+        public void startInventoryExtendedStream(NurInventoryExtended inv, NurInventoryExtendedFilter[] filters) { mExtendedStream = true; }
+        @Override
+        public void stopInventoryExtendedStream() { mExtendedStream = false; }
+        @Override
+        public boolean isInventoryExtendedStreamRunning() { return mExtendedStream; }
+        @Override
+        public int getSetupInventoryQ() { return 0; }
+        @Override
+        public int getSetupInventorySession() { return NurApi.SESSION_S0; }
+        @Override
+        public int getSetupInventoryRounds() { return 0; }
+        @Override
+        public int getSetupInventoryTarget() { return NurApi.INVTARGET_A; }
+    }
+
+    /**
+     * Time spent in one handler
+     */
+    static class HandlerTime {
+        final String name;
+        int calls;
+        long nanos;
+        long maxNanos;
+
+        HandlerTime(String name) { this.name = name; }
+
+        void add(long start)
+        {
+            long ns = System.nanoTime() - start;
+            calls++;
+            nanos += ns;
+            maxNanos = Math.max(maxNanos, ns);
+        }
+
+        /**
+         * "InventoryController.handleInventoryEvent: 120 calls, 4.1 ms total, 34.2 us avg, 310.0 us max"
+         */
+        @Override
+        public String toString()
+        {
+            return String.format("%s: %d calls, %.1f ms total, %.1f us avg, %.1f us max", name, calls, nanos / 1e6,
+                    calls > 0 ? nanos / 1e3 / calls : 0, maxNanos / 1e3);
+        }
+    }
+
+    /**
+     * Feeds replayed records to the handlers app uses: inventory events and trigger to InventoryController
+     * as in Inventory activity, barcodes to dedup batching and GS1 parse as in Barcode activity.
+     * Time spent in each handler is measured.
+     */
+    static class HandlerProfile implements NurApiListener, BarcodeListener, InventoryController.Listener {
+        //Same as Barcode activity
+        static final long DEDUP_WINDOW_MS = 3000;
+
+        final InventoryController controller;
+        final BarcodeBatcher batcher = new BarcodeBatcher(DEDUP_WINDOW_MS);
+        final HandlerTime inventory = new HandlerTime("InventoryController.handleInventoryEvent");
+        final HandlerTime io = new HandlerTime("InventoryController.handleIOEvent");
+        final HandlerTime batch = new HandlerTime("BarcodeBatcher.add");
+        final HandlerTime gs1 = new HandlerTime("Gs1Parser.parse");
+        private SessionReplayer mReplayer;
+        int barcodes;
+        int gs1Codes;
+        Exception error;
+
+        HandlerProfile(NurApi api)
+        {
+            controller = new InventoryController(api, this);
+        }
+
+        /**
+         * Replay with inventory running from start, as when recorded from Inventory activity
+         */
+        void replay(SessionReplayer replayer, NurApi api, double speed) throws Exception
+        {
+            mReplayer = replayer;
+            controller.start();
+            replayer.replay(api, this, this, speed);
+            controller.stop();
+            synchronized (batcher) {
+                batcher.drainBatch();
+            }
+        }
+
+        /**
+         * Per handler timings, one per line
+         */
+        String report()
+        {
+            return String.format("Tags accepted:%d filtered:%d, barcodes accepted:%d (GS1 %d)\n",
+                    controller.getTagsAdded(), controller.getTagsFiltered(), barcodes, gs1Codes) +
+                    inventory + "\n" + io + "\n" + batch + "\n" + gs1 + "\n";
+        }
+
+        private void handleInventory(NurEventInventory event)
+        {
+            long start = System.nanoTime();
+            try {
+                controller.handleInventoryEvent(event);
+            } catch (Exception ex) {
+                error = ex;
+            }
+            inventory.add(start);
+        }
+
+        @Override
+        public void onTag(NurTag tag, long nowMs) { }
+        @Override
+        public void onRound(int accepted, int filtered) { }
+
+        @Override
+        public void barcodeResult(int status, String barcode)
+        {
+            if (status != NurApiErrors.NUR_SUCCESS || barcode == null)
+                return;
+            //Recorded time so dedup window works as it did live
+            long now = mReplayer.getStartTime() + mReplayer.getRecordedNanos() / 1000000;
+            long start = System.nanoTime();
+            boolean accepted;
+            synchronized (batcher) {
+                accepted = batcher.add(barcode, now);
+            }
+            batch.add(start);
+            if (!accepted)
+                return;
+            barcodes++;
+            start = System.nanoTime();
+            Gs1Parser.Gs1Data data = Gs1Parser.parse(barcode);
+            gs1.add(start);
+            if (data != null)
+                gs1Codes++;
+        }
+
+        @Override
+        public void inventoryStreamEvent(NurEventInventory event) { handleInventory(event); }
+        @Override
+        public void inventoryExtendedStreamEvent(NurEventInventory event) { handleInventory(event); }
+        @Override
+        public void IOChangeEvent(NurEventIOChange event)
+        {
+            long start = System.nanoTime();
+            try {
+                controller.handleIOEvent(event);
+            } catch (Exception ex) {
+                error = ex;
+            }
+            io.add(start);
+        }
+        @Override
+        public void traceTagEvent(NurEventTraceTag event) { }
+        @Override
+        public void triggeredReadEvent(NurEventTriggeredRead event) { }
+        @Override
+        public void logEvent(int level, String txt) { }
+        @Override
+        public void connectedEvent() { }
+        @Override
+        public void disconnectedEvent() { }
+        @Override
+        public void bootEvent(String event) { }
+        @Override
+        public void frequencyHopEvent(NurEventFrequencyHop event) { }
+        @Override
+        public void debugMessageEvent(String event) { }
+        @Override
+        public void programmingProgressEvent(NurEventProgrammingProgress event) { }
+        @Override
+        public void deviceSearchEvent(NurEventDeviceInfo event) { }
+        @Override
+        public void clientConnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void clientDisconnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void nxpEasAlarmEvent(NurEventNxpAlarm event) { }
+        @Override
+        public void epcEnumEvent(NurEventEpcEnum event) { }
+        @Override
+        public void autotuneEvent(NurEventAutotune event) { }
+        @Override
+        public void tagTrackingScanEvent(NurEventTagTrackingData event) { }
+        @Override
+        public void tagTrackingChangeEvent(NurEventTagTrackingChange event) { }
+    }
+
+    /**
+     * Replay file through InventoryController and barcode batching/GS1 parse. Prints timing of each handler.
+     * Args: file [speed] [EPC filter]
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 1) {
+            System.out.println("Usage: SessionReplayer <file.nurrec> [speed, 0 = max] [EPC filter]");
+            return;
+        }
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+
+        ReplayApi api = new ReplayApi();
+        try {
+            HandlerProfile profile = new HandlerProfile(api);
+            if (args.length > 2)
+                profile.controller.setFilter(EpcFilter.parse(args[2]));
+            SessionReplayer replayer = new SessionReplayer(new BufferedInputStream(new FileInputStream(args[0]), 64 * 1024));
+            long t0 = System.nanoTime();
+            profile.replay(replayer, api, speed);
+            long elapsed = System.nanoTime() - t0;
+            replayer.close();
+
+            System.out.println("Records:" + replayer.getRecordCount() + " tags:" + replayer.getTagCount());
+            System.out.print(profile.report());
+            System.out.println("Recorded " + replayer.getRecordedNanos() / 1000000 + " ms, replayed in " + elapsed / 1000000 + " ms");
+            if (profile.error != null)
+                System.out.println("Handler failed: " + profile.error);
+        } finally {
+            //NurApi threads would keep JVM running
+            api.dispose();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package example.nordicid.com.nursampleandroid;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Application settings stored in SharedPreferences. Initialized once from MainActivity.
+ */
+public class Settings {
+
+    private static final String PREFS_NAME = "NurSampleSettings";
+
+    private static final String KEY_RECORD_SESSIONS = "RecordSessions";
+    private static final String KEY_EXPORT_FORMAT = "ExportFormat";
+    private static final String KEY_EXPORT_GZIP = "ExportGzip";
+    private static final String KEY_UPLOAD_URL = "UploadUrl";
+    private static final String KEY_PROFILES = "Profiles";
+
+    private static SharedPreferences mPrefs;
+
+    public static void init(Context context)
+    {
+        mPrefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return true if reader events are recorded to file (SessionRecorder) in Inventory and Barcode
+     */
+    public static boolean isRecordSessions()
+    {
+        return mPrefs != null && mPrefs.getBoolean(KEY_RECORD_SESSIONS, false);
+    }
+
+    public static void setRecordSessions(boolean record)
+    {
+        mPrefs.edit().putBoolean(KEY_RECORD_SESSIONS, record).apply();
+    }
+
+    /**
+     * @return TagExporter.FORMAT_CSV or TagExporter.FORMAT_JSONL
+     */
+    public static int getExportFormat()
+    {
+        return mPrefs == null ? TagExporter.FORMAT_CSV : mPrefs.getInt(KEY_EXPORT_FORMAT, TagExporter.FORMAT_CSV);
+    }
+
+    public static void setExportFormat(int format)
+    {
+        mPrefs.edit().putInt(KEY_EXPORT_FORMAT, format).apply();
+    }
+
+    public static boolean isExportGzip()
+    {
+        return mPrefs != null && mPrefs.getBoolean(KEY_EXPORT_GZIP, false);
+    }
+
+    public static void setExportGzip(boolean gzip)
+    {
+        mPrefs.edit().putBoolean(KEY_EXPORT_GZIP, gzip).apply();
+    }
+
+    /**
+     * @return HTTP endpoint where reads are uploaded. Empty if uploading is off.
+     */
+    public static String getUploadUrl()
+    {
+        return mPrefs == null ? "" : mPrefs.getString(KEY_UPLOAD_URL, "");
+    }
+
+    public static void setUploadUrl(String url)
+    {
+        mPrefs.edit().putString(KEY_UPLOAD_URL, url).apply();
+    }
+
+    /**
+     * @return Reader profiles as saved by ProfileManager.encode()
+     */
+    public static String getProfiles()
+    {
+        return mPrefs == null ? "" : mPrefs.getString(KEY_PROFILES, "");
+    }
+
+    public static void setProfiles(String profiles)
+    {
+        mPrefs.edit().putString(KEY_PROFILES, profiles).apply();
+    }
+}
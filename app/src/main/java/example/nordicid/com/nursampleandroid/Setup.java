@@ -0,0 +1,89 @@
+package example.nordicid.com.nursampleandroid;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
+
+/**
+ * Setup activity for application settings.
+ */
+public class Setup extends Activity {
+
+    public static final String TAG = "NUR_SAMPLE";
+
+    //Subdirectory of external files dir where session recordings go
+    public static final String SESSIONS_DIR = "sessions";
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_setup);
+
+        CheckBox recordCheckBox = (CheckBox)findViewById(R.id.checkBoxRecordSessions);
+        recordCheckBox.setChecked(Settings.isRecordSessions());
+        recordCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                Settings.setRecordSessions(isChecked);
+            }
+        });
+
+        CheckBox jsonCheckBox = (CheckBox)findViewById(R.id.checkBoxExportJson);
+        jsonCheckBox.setChecked(Settings.getExportFormat() == TagExporter.FORMAT_JSONL);
+        jsonCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                Settings.setExportFormat(isChecked ? TagExporter.FORMAT_JSONL : TagExporter.FORMAT_CSV);
+            }
+        });
+
+        CheckBox gzipCheckBox = (CheckBox)findViewById(R.id.checkBoxExportGzip);
+        gzipCheckBox.setChecked(Settings.isExportGzip());
+        gzipCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                Settings.setExportGzip(isChecked);
+            }
+        });
+
+        final EditText uploadEditText = (EditText)findViewById(R.id.edit_upload_url);
+        uploadEditText.setText(Settings.getUploadUrl());
+        Button saveUploadButton = (Button)findViewById(R.id.buttonSaveUploadUrl);
+        saveUploadButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                saveUploadUrl(uploadEditText.getText().toString().trim());
+            }
+        });
+
+        Button profilesButton = (Button)findViewById(R.id.buttonProfiles);
+        profilesButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                startActivity(new Intent(Setup.this, Profiles.class));
+            }
+        });
+
+        TextView recordInfo = (TextView)findViewById(R.id.textViewRecordInfo);
+        recordInfo.setText("Inventory and Barcode events are saved to " + getExternalFilesDir(SESSIONS_DIR) +
+                "\nReplay with SessionReplayer on PC.");
+    }
+
+    /**
+     * Save upload endpoint and take it in use. Empty url stops uploading, reads are still queued.
+     */
+    private void saveUploadUrl(String url)
+    {
+        if (url.length() > 0 && !url.startsWith("http://") && !url.startsWith("https://")) {
+            Toast.makeText(this, "Url must start with http:// or https://", Toast.LENGTH_LONG).show();
+            return;
+        }
+        Settings.setUploadUrl(url);
+        UploadQueue queue = MainActivity.GetUploadQueue();
+        if (queue != null)
+            queue.setEndpoint(url);
+        Toast.makeText(this, url.length() > 0 ? "Upload on" : "Upload off", Toast.LENGTH_SHORT).show();
+    }
+}
@@ -0,0 +1,129 @@
+package example.nordicid.com.nursampleandroid;
+
+/**
+ * Startup timeline from start to interactive. Startup code marks named steps, main thread and background.
+ * Start is interactive when first frame is drawn and background init is done, whichever comes last.
+ * One process wide trace (get()), begun when MainActivity class loads (cold start) or in onCreate when activity
+ * is created again in same process (warm start).
+ */
+public class StartupTrace {
+
+    private static final int MAX_MARKS = 32;
+    private static final StartupTrace sTrace = new StartupTrace();
+
+    private final String[] mNames = new String[MAX_MARKS];
+    private final long[] mNanos = new long[MAX_MARKS];
+    private int mCount;
+    private long mStartNanos = -1;
+    private long mFirstFrameNanos = -1;
+    private long mBackgroundNanos = -1;
+    private long mInteractiveNanos = -1;
+
+    public static StartupTrace get()
+    {
+        return sTrace;
+    }
+
+    /**
+     * Start new trace, earlier marks are dropped
+     */
+    public synchronized void begin(long nowNanos)
+    {
+        mCount = 0;
+        mStartNanos = nowNanos;
+        mFirstFrameNanos = mBackgroundNanos = mInteractiveNanos = -1;
+    }
+
+    public synchronized boolean isStarted()
+    {
+        return mStartNanos >= 0;
+    }
+
+    /**
+     * Step done. Marks after MAX_MARKS are dropped.
+     */
+    public synchronized void mark(String name, long nowNanos)
+    {
+        if (mStartNanos < 0 || mCount == MAX_MARKS)
+            return;
+        mNames[mCount] = name;
+        mNanos[mCount] = nowNanos;
+        mCount++;
+    }
+
+    /**
+     * First frame of UI drawn
+     * @return true if this made start interactive
+     */
+    public synchronized boolean firstFrame(long nowNanos)
+    {
+        mark("first frame", nowNanos);
+        mFirstFrameNanos = nowNanos;
+        return checkInteractive(nowNanos);
+    }
+
+    /**
+     * Background init done
+     * @return true if this made start interactive
+     */
+    public synchronized boolean backgroundDone(long nowNanos)
+    {
+        mark("background done", nowNanos);
+        mBackgroundNanos = nowNanos;
+        return checkInteractive(nowNanos);
+    }
+
+    private boolean checkInteractive(long nowNanos)
+    {
+        if (mInteractiveNanos >= 0 || mFirstFrameNanos < 0 || mBackgroundNanos < 0)
+            return false;
+        mInteractiveNanos = nowNanos;
+        return true;
+    }
+
+    public synchronized boolean isInteractive()
+    {
+        return mInteractiveNanos >= 0;
+    }
+
+    /**
+     * @return Start to interactive in ms, -1 if not interactive yet
+     */
+    public synchronized long getInteractiveMs()
+    {
+        return mInteractiveNanos < 0 ? -1 : (mInteractiveNanos - mStartNanos) / 1000000;
+    }
+
+    /**
+     * @return Start to first frame in ms, -1 if not drawn yet
+     */
+    public synchronized long getFirstFrameMs()
+    {
+        return mFirstFrameNanos < 0 ? -1 : (mFirstFrameNanos - mStartNanos) / 1000000;
+    }
+
+    /**
+     * @return Start to mark in ms, -1 if not marked
+     */
+    public synchronized long getMarkMs(String name)
+    {
+        for (int x = 0; x < mCount; x++) {
+            if (mNames[x].equals(name))
+                return (mNanos[x] - mStartNanos) / 1000000;
+        }
+        return -1;
+    }
+
+    /**
+     * Timeline as text, "Startup 310 ms: onCreate 12, content 85, first frame 140, ..." in ms from start
+     */
+    public synchronized String summary()
+    {
+        StringBuilder sb = new StringBuilder("Startup ");
+        sb.append(mInteractiveNanos < 0 ? "-" : String.valueOf(getInteractiveMs())).append(" ms:");
+        for (int x = 0; x < mCount; x++) {
+            sb.append(x == 0 ? " " : ", ").append(mNames[x]).append(' ').append((mNanos[x] - mStartNanos) / 1000000);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,406 @@
+package example.nordicid.com.nursampleandroid;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import example.nordicid.com.inventorycore.EpcCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local SQLite store of tag reads for history queries on handheld ("was tag X seen today, where, how often").
+ *
+ * Schema is one narrow table. EPC is stored as BLOB so index compares raw bytes and prefix query
+ * becomes index range scan (epc >= prefix AND epc < next prefix). Second index on time serves time range scans.
+ * TID read during inventory is stored with read when available, partial index on it finds EPCs carried by one chip
+ * and (epc, time) index finds TIDs behind one EPC, so cloned EPCs can be told apart.
+ * Database runs in WAL mode with synchronous=NORMAL so readers do not block writer and commits do not fsync.
+ *
+ * insert() only queues the read. Queued reads are written by own thread in one transaction with
+ * precompiled statement, when FLUSH_ROWS reads queued or FLUSH_DELAY_MS passed.
+ */
+public class TagDatabase extends SQLiteOpenHelper {
+
+    public static final String TAG = "NUR_SAMPLE";
+
+    private static final int DB_VERSION = 2;
+    private static final int FLUSH_ROWS = 1000;
+    private static final long FLUSH_DELAY_MS = 200;
+
+    /**
+     * One tag read
+     */
+    public static class Read {
+        public byte[] epc;
+        //Null if TID not read
+        public byte[] tid;
+        public long time;
+        public int rssi;
+        public int antenna;
+    }
+
+    /**
+     * Summary of reads of one EPC in time range
+     */
+    public static class EpcSummary {
+        public int count;
+        public long firstSeen;
+        public long lastSeen;
+        public int maxRssi;
+        public int lastAntenna;
+    }
+
+    private final HandlerThread mWriterThread;
+    private final Handler mWriter;
+    private final Object mLock = new Object();
+    private ArrayList<Read> mPending = new ArrayList<Read>();
+    private boolean mFlushScheduled;
+    //Set by close(), later inserts are rejected
+    private boolean mClosed;
+    private long mRejected;
+    private long mRowsWritten;
+    private SQLiteStatement mInsert;
+
+    /**
+     * @param context Context
+     * @param name Database file name in app database dir
+     */
+    public TagDatabase(Context context, String name)
+    {
+        super(context.getApplicationContext(), name, null, DB_VERSION);
+        setWriteAheadLoggingEnabled(true);
+        mWriterThread = new HandlerThread("TagDatabase");
+        mWriterThread.start();
+        mWriter = new Handler(mWriterThread.getLooper());
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db)
+    {
+        //Commit without fsync. In WAL mode database stays consistent, only last commits may be lost on power cut.
+        db.execSQL("PRAGMA synchronous=NORMAL");
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db)
+    {
+        db.execSQL("CREATE TABLE reads (epc BLOB NOT NULL, time INTEGER NOT NULL, rssi INTEGER NOT NULL, antenna INTEGER NOT NULL, tid BLOB)");
+        db.execSQL("CREATE INDEX reads_epc_time ON reads (epc, time)");
+        db.execSQL("CREATE INDEX reads_time ON reads (time)");
+        createTidIndex(db);
+    }
+
+    private static void createTidIndex(SQLiteDatabase db)
+    {
+        //Most reads have no TID, those are left out of index
+        db.execSQL("CREATE INDEX reads_tid ON reads (tid) WHERE tid IS NOT NULL");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion)
+    {
+        if (oldVersion == 1) {
+            //History kept, old reads have no TID
+            db.execSQL("ALTER TABLE reads ADD COLUMN tid BLOB");
+            createTidIndex(db);
+            return;
+        }
+        db.execSQL("DROP TABLE IF EXISTS reads");
+        onCreate(db);
+    }
+
+    /**
+     * Queue read for writing. Cheap, can be called from NurApi event thread.
+     * @return false if database closed, read is not stored
+     */
+    public boolean insert(byte[] epc, int rssi, int antenna, long time)
+    {
+        return insert(epc, null, rssi, antenna, time);
+    }
+
+    /**
+     * Queue read with TID
+     * @param tid TID read during inventory, null if not read
+     * @return false if database closed, read is not stored
+     */
+    public boolean insert(byte[] epc, byte[] tid, int rssi, int antenna, long time)
+    {
+        Read read = new Read();
+        read.epc = epc;
+        read.tid = tid != null && tid.length > 0 ? tid : null;
+        read.rssi = rssi;
+        read.antenna = antenna;
+        read.time = time;
+
+        synchronized (mLock) {
+            if (mClosed) {
+                //Writer thread gone, read would wait in queue forever
+                if (mRejected++ == 0)
+                    Log.w(TAG, "TagDatabase closed, reads not stored");
+                return false;
+            }
+            mPending.add(read);
+            if (mPending.size() >= FLUSH_ROWS) {
+                mWriter.removeCallbacks(mFlushRunnable);
+                mWriter.post(mFlushRunnable);
+                mFlushScheduled = true;
+            }
+            else if (!mFlushScheduled) {
+                mWriter.postDelayed(mFlushRunnable, FLUSH_DELAY_MS);
+                mFlushScheduled = true;
+            }
+        }
+        return true;
+    }
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            writePending();
+        }
+    };
+
+    /**
+     * Write queued reads now. Blocks until written.
+     */
+    public void flush()
+    {
+        writePending();
+    }
+
+    /**
+     * @return Rows written since opened
+     */
+    public long getRowsWritten()
+    {
+        return mRowsWritten;
+    }
+
+    /**
+     * @return Reads rejected because database was closed
+     */
+    public long getRejected()
+    {
+        synchronized (mLock) {
+            return mRejected;
+        }
+    }
+
+    private synchronized void writePending()
+    {
+        ArrayList<Read> batch;
+        synchronized (mLock) {
+            batch = mPending;
+            mPending = new ArrayList<Read>(Math.max(16, batch.size()));
+            mFlushScheduled = false;
+        }
+        if (batch.isEmpty())
+            return;
+
+        SQLiteDatabase db = getWritableDatabase();
+        if (mInsert == null)
+            mInsert = db.compileStatement("INSERT INTO reads (epc, time, rssi, antenna, tid) VALUES (?, ?, ?, ?, ?)");
+
+        db.beginTransactionNonExclusive();
+        try {
+            for (int x = 0; x < batch.size(); x++) {
+                Read read = batch.get(x);
+                mInsert.bindBlob(1, read.epc);
+                mInsert.bindLong(2, read.time);
+                mInsert.bindLong(3, read.rssi);
+                mInsert.bindLong(4, read.antenna);
+                if (read.tid != null)
+                    mInsert.bindBlob(5, read.tid);
+                else
+                    mInsert.bindNull(5);
+                mInsert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+            mRowsWritten += batch.size();
+        } catch (Exception ex) {
+            Log.e(TAG, "TagDatabase write failed " + ex.getMessage());
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Summary of one EPC in time range. Served from (epc, time) index.
+     * @return Summary, count is zero if not seen
+     */
+    public EpcSummary lookup(byte[] epc, long from, long to)
+    {
+        EpcSummary summary = new EpcSummary();
+        SQLiteDatabase db = getReadableDatabase();
+        String[] args = new String[] { String.valueOf(from), String.valueOf(to) };
+        String epcHex = "X'" + EpcCodec.toHexString(epc) + "'";
+
+        Cursor c = db.rawQuery("SELECT COUNT(*), MIN(time), MAX(time), MAX(rssi) FROM reads WHERE epc = " + epcHex +
+                " AND time >= ? AND time < ?", args);
+        try {
+            if (c.moveToFirst()) {
+                summary.count = c.getInt(0);
+                if (summary.count > 0) {
+                    summary.firstSeen = c.getLong(1);
+                    summary.lastSeen = c.getLong(2);
+                    summary.maxRssi = c.getInt(3);
+                }
+            }
+        } finally {
+            c.close();
+        }
+
+        if (summary.count > 0) {
+            c = db.rawQuery("SELECT antenna FROM reads WHERE epc = " + epcHex +
+                    " AND time >= ? AND time < ? ORDER BY time DESC LIMIT 1", args);
+            try {
+                if (c.moveToFirst())
+                    summary.lastAntenna = c.getInt(0);
+            } finally {
+                c.close();
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Distinct EPCs starting with prefix. Index range scan.
+     * @param prefix EPC prefix bytes, empty for all
+     * @param limit Max EPCs returned
+     */
+    public List<byte[]> findByPrefix(byte[] prefix, int limit)
+    {
+        ArrayList<byte[]> result = new ArrayList<byte[]>();
+        String where = "";
+        if (prefix.length > 0) {
+            where = " WHERE epc >= X'" + EpcCodec.toHexString(prefix) + "'";
+            byte[] upper = nextPrefix(prefix);
+            if (upper != null)
+                where += " AND epc < X'" + EpcCodec.toHexString(upper) + "'";
+        }
+        Cursor c = getReadableDatabase().rawQuery("SELECT DISTINCT epc FROM reads" + where + " ORDER BY epc LIMIT " + limit, null);
+        try {
+            while (c.moveToNext())
+                result.add(c.getBlob(0));
+        } finally {
+            c.close();
+        }
+        return result;
+    }
+
+    /**
+     * Distinct TIDs read with EPC. More than one means EPC is cloned to other chips.
+     */
+    public List<byte[]> tidsOf(byte[] epc, int limit)
+    {
+        return blobs("SELECT DISTINCT tid FROM reads WHERE epc = X'" + EpcCodec.toHexString(epc) +
+                "' AND tid IS NOT NULL LIMIT " + limit);
+    }
+
+    /**
+     * Distinct EPCs read from chip with TID. Served from TID index.
+     */
+    public List<byte[]> findByTid(byte[] tid, int limit)
+    {
+        return blobs("SELECT DISTINCT epc FROM reads WHERE tid = X'" + EpcCodec.toHexString(tid) + "' LIMIT " + limit);
+    }
+
+    private List<byte[]> blobs(String sql)
+    {
+        ArrayList<byte[]> result = new ArrayList<byte[]>();
+        Cursor c = getReadableDatabase().rawQuery(sql, null);
+        try {
+            while (c.moveToNext())
+                result.add(c.getBlob(0));
+        } finally {
+            c.close();
+        }
+        return result;
+    }
+
+    /**
+     * Reads in time range, oldest first. Served from time index.
+     */
+    public List<Read> readsBetween(long from, long to, int limit)
+    {
+        ArrayList<Read> result = new ArrayList<Read>();
+        Cursor c = getReadableDatabase().rawQuery("SELECT epc, time, rssi, antenna, tid FROM reads WHERE time >= ? AND time < ? ORDER BY time LIMIT " + limit,
+                new String[] { String.valueOf(from), String.valueOf(to) });
+        try {
+            while (c.moveToNext()) {
+                Read read = new Read();
+                read.epc = c.getBlob(0);
+                read.time = c.getLong(1);
+                read.rssi = c.getInt(2);
+                read.antenna = c.getInt(3);
+                read.tid = c.isNull(4) ? null : c.getBlob(4);
+                result.add(read);
+            }
+        } finally {
+            c.close();
+        }
+        return result;
+    }
+
+    public long countBetween(long from, long to)
+    {
+        Cursor c = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM reads WHERE time >= ? AND time < ?",
+                new String[] { String.valueOf(from), String.valueOf(to) });
+        try {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Delete reads older than time. Keeps database size bounded.
+     */
+    public void deleteBefore(long time)
+    {
+        getWritableDatabase().execSQL("DELETE FROM reads WHERE time < ?", new Object[] { time });
+    }
+
+    /**
+     * Write pending reads and close. Writer thread stopped.
+     */
+    @Override
+    public synchronized void close()
+    {
+        synchronized (mLock) {
+            mClosed = true;
+        }
+        mWriter.removeCallbacks(mFlushRunnable);
+        writePending();
+        if (mInsert != null) {
+            mInsert.close();
+            mInsert = null;
+        }
+        mWriterThread.quitSafely();
+        super.close();
+    }
+
+    /**
+     * Smallest byte string greater than every string starting with prefix.
+     * @return Upper bound or null if prefix is all 0xFF (no upper bound)
+     */
+    static byte[] nextPrefix(byte[] prefix)
+    {
+        for (int x = prefix.length - 1; x >= 0; x--) {
+            if (prefix[x] != (byte) 0xFF) {
+                byte[] upper = new byte[x + 1];
+                System.arraycopy(prefix, 0, upper, 0, x + 1);
+                upper[x]++;
+                return upper;
+            }
+        }
+        return null;
+    }
+}
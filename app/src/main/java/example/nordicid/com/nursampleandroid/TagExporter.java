@@ -0,0 +1,247 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+import example.nordicid.com.inventorycore.EpcCodec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming exporter of tag storage to CSV or JSON Lines, optionally GZIP compressed.
+ * Tags are encoded as ASCII straight from NurTag fields into one fixed buffer which is written out
+ * when full, so export does not create Strings per tag and memory use does not grow with tag count.
+ * Run on background thread. Exporter instance can be reused but not shared between threads.
+ */
+public class TagExporter {
+
+    public static final int FORMAT_CSV = 0;
+    public static final int FORMAT_JSONL = 1;
+
+    public static final String CSV_HEADER = "epc,rssi,scaled_rssi,antenna,freq_khz,channel,timestamp,read_count,data\n";
+
+    /**
+     * Export progress. Called from exporting thread.
+     */
+    public interface ProgressListener {
+        /**
+         * @param tagsDone Tags written so far
+         * @param tagsTotal Tags in storage when export started
+         * @param bytes Uncompressed bytes written so far
+         * @param mbPerSec Uncompressed write speed
+         */
+        void onProgress(int tagsDone, int tagsTotal, long bytes, double mbPerSec);
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    //Longest record: 62 byte EPC and 64 byte data as hex plus numbers and JSON names
+    private static final int MAX_RECORD = 512;
+    //Tags written between progress calls. Storage is locked for one chunk at a time.
+    private static final int CHUNK = 1024;
+
+    private static final byte[] JSON_EPC = ascii("{\"epc\":\"");
+    private static final byte[] JSON_RSSI = ascii("\",\"rssi\":");
+    private static final byte[] JSON_SCALED = ascii(",\"scaledRssi\":");
+    private static final byte[] JSON_ANTENNA = ascii(",\"antenna\":");
+    private static final byte[] JSON_FREQ = ascii(",\"freqKhz\":");
+    private static final byte[] JSON_CHANNEL = ascii(",\"channel\":");
+    private static final byte[] JSON_TIMESTAMP = ascii(",\"timestamp\":");
+    private static final byte[] JSON_COUNT = ascii(",\"readCount\":");
+    private static final byte[] JSON_DATA = ascii(",\"data\":\"");
+
+    private final int mFormat;
+    private final boolean mGzip;
+    private final byte[] mBuf = new byte[BUFFER_SIZE];
+    private final byte[] mDigits = new byte[11];
+    private int mPos;
+    private long mBytes;
+
+    /**
+     * @param format FORMAT_CSV or FORMAT_JSONL
+     * @param gzip Compress output
+     */
+    public TagExporter(int format, boolean gzip)
+    {
+        if (format != FORMAT_CSV && format != FORMAT_JSONL)
+            throw new IllegalArgumentException("Unknown format " + format);
+        mFormat = format;
+        mGzip = gzip;
+    }
+
+    /**
+     * @return File name extension for format and compression, ".csv.gz" for example
+     */
+    public String getExtension()
+    {
+        return (mFormat == FORMAT_CSV ? ".csv" : ".jsonl") + (mGzip ? ".gz" : "");
+    }
+
+    /**
+     * Write tags of storage to output. Tags added to storage while exporting are not included.
+     * @param storage Tags to export
+     * @param out Output. Closed when done.
+     * @param listener Progress listener, may be null
+     * @return Number of tags written
+     */
+    public int export(NurTagStorage storage, OutputStream out, ProgressListener listener) throws IOException
+    {
+        long start = System.nanoTime();
+        mPos = 0;
+        mBytes = 0;
+
+        OutputStream os = out;
+        if (mGzip) {
+            //Fastest compression level. Tag data compresses well anyway and CPU is the limit on phone.
+            os = new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+        }
+
+        int total = storage.size();
+        int done = 0;
+        try {
+            if (mFormat == FORMAT_CSV)
+                put(CSV_HEADER);
+
+            while (done < total) {
+                synchronized (storage) {
+                    //Storage may have been cleared meanwhile
+                    int end = Math.min(Math.min(total, done + CHUNK), storage.size());
+                    if (end <= done)
+                        break;
+                    for (; done < end; done++) {
+                        if (mPos > BUFFER_SIZE - MAX_RECORD)
+                            flush(os);
+                        NurTag tag = storage.get(done);
+                        if (mFormat == FORMAT_CSV)
+                            putCsv(tag);
+                        else
+                            putJson(tag);
+                    }
+                }
+                if (listener != null)
+                    listener.onProgress(done, total, mBytes + mPos, mbPerSec(mBytes + mPos, start));
+            }
+            flush(os);
+        } finally {
+            os.close();
+        }
+
+        if (listener != null)
+            listener.onProgress(done, total, mBytes, mbPerSec(mBytes, start));
+        return done;
+    }
+
+    private static double mbPerSec(long bytes, long startNanos)
+    {
+        long ns = Math.max(1, System.nanoTime() - startNanos);
+        return bytes / 1048576.0 / (ns / 1e9);
+    }
+
+    private void flush(OutputStream os) throws IOException
+    {
+        os.write(mBuf, 0, mPos);
+        mBytes += mPos;
+        mPos = 0;
+    }
+
+    private void putCsv(NurTag tag)
+    {
+        mPos += EpcCodec.encode(tag.getEpc(), mBuf, mPos);
+        mBuf[mPos++] = ',';
+        putInt(tag.getRssi());
+        mBuf[mPos++] = ',';
+        putInt(tag.getScaledRssi());
+        mBuf[mPos++] = ',';
+        putInt(tag.getAntennaId());
+        mBuf[mPos++] = ',';
+        putInt(tag.getFreq());
+        mBuf[mPos++] = ',';
+        putInt(tag.getChannel());
+        mBuf[mPos++] = ',';
+        putInt(tag.getTimestamp());
+        mBuf[mPos++] = ',';
+        putInt(tag.getUpdateCount());
+        mBuf[mPos++] = ',';
+        byte[] data = tag.getIrData();
+        if (data != null)
+            mPos += EpcCodec.encode(data, mBuf, mPos);
+        mBuf[mPos++] = '\n';
+    }
+
+    private void putJson(NurTag tag)
+    {
+        put(JSON_EPC);
+        mPos += EpcCodec.encode(tag.getEpc(), mBuf, mPos);
+        put(JSON_RSSI);
+        putInt(tag.getRssi());
+        put(JSON_SCALED);
+        putInt(tag.getScaledRssi());
+        put(JSON_ANTENNA);
+        putInt(tag.getAntennaId());
+        put(JSON_FREQ);
+        putInt(tag.getFreq());
+        put(JSON_CHANNEL);
+        putInt(tag.getChannel());
+        put(JSON_TIMESTAMP);
+        putInt(tag.getTimestamp());
+        put(JSON_COUNT);
+        putInt(tag.getUpdateCount());
+        byte[] data = tag.getIrData();
+        if (data != null) {
+            put(JSON_DATA);
+            mPos += EpcCodec.encode(data, mBuf, mPos);
+            mBuf[mPos++] = '"';
+        }
+        mBuf[mPos++] = '}';
+        mBuf[mPos++] = '\n';
+    }
+
+    private void put(byte[] b)
+    {
+        System.arraycopy(b, 0, mBuf, mPos, b.length);
+        mPos += b.length;
+    }
+
+    private void put(String s)
+    {
+        for (int x = 0; x < s.length(); x++)
+            mBuf[mPos++] = (byte) s.charAt(x);
+    }
+
+    /**
+     * Decimal ASCII of int without Integer.toString()
+     */
+    private void putInt(int v)
+    {
+        if (v == 0) {
+            mBuf[mPos++] = '0';
+            return;
+        }
+        long l = v;
+        if (l < 0) {
+            mBuf[mPos++] = '-';
+            l = -l;
+        }
+        int n = 0;
+        while (l > 0) {
+            mDigits[n++] = (byte) ('0' + (l % 10));
+            l /= 10;
+        }
+        while (n > 0)
+            mBuf[mPos++] = mDigits[--n];
+    }
+
+    private static byte[] ascii(String s)
+    {
+        byte[] b = new byte[s.length()];
+        for (int x = 0; x < b.length; x++)
+            b[x] = (byte) s.charAt(x);
+        return b;
+    }
+}
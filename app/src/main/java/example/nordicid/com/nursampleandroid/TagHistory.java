@@ -0,0 +1,150 @@
+package example.nordicid.com.nursampleandroid;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import example.nordicid.com.inventorycore.EpcCodec;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tag history from local TagDatabase. Full EPC shows when and where tag was seen today and before,
+ * shorter hex shows EPCs starting with it.
+ * Database is queried in background thread, result text is posted to UI thread.
+ */
+public class TagHistory extends Activity {
+
+    public static final String TAG = "NUR_SAMPLE";
+
+    //Intent extra: EPC hex to search when activity opened
+    public static final String EXTRA_EPC = "epc";
+
+    private static final int PREFIX_LIST_MAX = 50;
+
+    private EditText mEpcEditText;
+    private TextView mResultTextView;
+    //Searches one at a time in order, off UI thread
+    private ExecutorService mSearchThread;
+    private final SimpleDateFormat mTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_tag_history);
+
+        mEpcEditText = (EditText)findViewById(R.id.edit_history_epc);
+        mResultTextView = (TextView)findViewById(R.id.text_history);
+        mSearchThread = Executors.newSingleThreadExecutor();
+
+        Button searchButton = (Button)findViewById(R.id.buttonHistorySearch);
+        searchButton.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                search(mEpcEditText.getText().toString().trim());
+            }
+        });
+
+        String epc = getIntent().getStringExtra(EXTRA_EPC);
+        if (epc != null) {
+            mEpcEditText.setText(epc);
+            search(epc);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mSearchThread.shutdownNow();
+    }
+
+    private void search(String hex)
+    {
+        final TagDatabase db = MainActivity.GetTagDatabase();
+        if (db == null) {
+            mResultTextView.setText("Tag database not available");
+            return;
+        }
+
+        final byte[] epc = new byte[hex.length() / 2];
+        if (EpcCodec.decode(hex, 0, hex.length(), epc) < 0) {
+            mResultTextView.setText("Enter EPC or EPC prefix as hex (even number of digits)");
+            return;
+        }
+
+        mResultTextView.setText("Searching...");
+        mSearchThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                final String text = query(db, epc);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isFinishing())
+                            mResultTextView.setText(text);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Result text of search. Runs in search thread, flush and queries may hit storage.
+     */
+    private String query(TagDatabase db, byte[] epc)
+    {
+        db.flush(); //Include reads still queued
+
+        //Full EPC: summary. Prefix: matching EPCs.
+        List<byte[]> epcs = db.findByPrefix(epc, PREFIX_LIST_MAX);
+        if (epcs.size() == 1 && EpcCodec.sameEpc(epcs.get(0), epc)) {
+            Calendar cal = Calendar.getInstance();
+            cal.set(Calendar.HOUR_OF_DAY, 0);
+            cal.set(Calendar.MINUTE, 0);
+            cal.set(Calendar.SECOND, 0);
+            cal.set(Calendar.MILLISECOND, 0);
+            long today = cal.getTimeInMillis();
+
+            StringBuilder sb = new StringBuilder();
+            appendSummary(sb, "Today", db.lookup(epc, today, Long.MAX_VALUE));
+            appendSummary(sb, "Before today", db.lookup(epc, 0, today));
+            //TIDs read with EPC (Read TID in inventory). More than one chip with same EPC is clone.
+            List<byte[]> tids = db.tidsOf(epc, PREFIX_LIST_MAX);
+            if (!tids.isEmpty()) {
+                sb.append(tids.size() > 1 ? "CLONED EPC, " + tids.size() + " TIDs:\n" : "TID:\n");
+                for (byte[] tid : tids)
+                    sb.append(EpcCodec.toHexString(tid)).append('\n');
+            }
+            return sb.toString();
+        }
+        if (epcs.isEmpty())
+            return "Not seen";
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(epcs.size() == PREFIX_LIST_MAX ? "First " : "").append(epcs.size()).append(" EPCs:\n");
+        for (byte[] e : epcs)
+            sb.append(EpcCodec.toHexString(e)).append('\n');
+        return sb.toString();
+    }
+
+    private void appendSummary(StringBuilder sb, String title, TagDatabase.EpcSummary s)
+    {
+        sb.append(title).append(": ");
+        if (s.count == 0) {
+            sb.append("not seen\n\n");
+            return;
+        }
+        sb.append(s.count).append(" reads\n");
+        sb.append("First: ").append(mTimeFormat.format(new Date(s.firstSeen))).append('\n');
+        sb.append("Last: ").append(mTimeFormat.format(new Date(s.lastSeen))).append(" antenna ").append(s.lastAntenna).append('\n');
+        sb.append("Best RSSI: ").append(s.maxRssi).append(" dBm\n\n");
+    }
+}
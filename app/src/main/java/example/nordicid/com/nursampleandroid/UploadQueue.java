@@ -0,0 +1,501 @@
+package example.nordicid.com.nursampleandroid;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Durable outbound queue for tag and barcode reads.
+ *
+ * Records are collected as JSON Lines into current batch. Batch is cut when it is full or old enough and
+ * sealed by sender thread: it is gzip compressed and written to queue directory, so unsent batches survive
+ * app restart. Offering a read never waits for disk.
+ * Sender thread posts sealed batches oldest first to HTTP endpoint (Content-Encoding: gzip).
+ * Batch file is deleted after 2xx response. On network errors and 5xx/408/429 responses sending is retried
+ * with exponential backoff. Other 4xx responses mean server will never accept the batch, it is renamed
+ * to .rejected and left in queue directory.
+ *
+ * Without endpoint batches are only stored, they are sent when endpoint is set.
+ */
+public class UploadQueue {
+
+    private static final String BATCH_SUFFIX = ".jsonl.gz";
+    private static final String REJECTED_SUFFIX = ".rejected";
+    private static final int TIMEOUT_MS = 15000;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Batch cut from current one, waiting to be sealed
+     */
+    private static class Batch {
+        final StringBuilder text;
+        final int records;
+
+        Batch(StringBuilder text, int records)
+        {
+            this.text = text;
+            this.records = records;
+        }
+    }
+
+    private final File mDir;
+    private final int mMaxRecords;
+    private final long mMaxAgeMs;
+    private final Object mLock = new Object();
+    private final Object mSealLock = new Object();
+    private final Random mRandom = new Random();
+
+    //Current batch. Guarded by mLock.
+    private StringBuilder mBatch = new StringBuilder(64 * 1024);
+    private int mBatchRecords;
+    private long mBatchStarted;
+    //Cut batches oldest first. Guarded by mLock.
+    private final ArrayDeque<Batch> mCut = new ArrayDeque<Batch>();
+    private int mCutRecords;
+    //Guarded by mSealLock
+    private long mNextSeq;
+
+    private volatile String mEndpoint;
+    private volatile long mBackoffBaseMs = 1000;
+    private volatile long mBackoffMaxMs = 60000;
+    private volatile boolean mRunning;
+    private volatile Thread mSender;
+
+    //Statistics
+    private volatile long mSentRecords;
+    private volatile long mSentBytes;
+    private volatile int mSentBatches;
+    private volatile int mFailedAttempts;
+    private volatile String mLastError;
+
+    /**
+     * @param dir Directory for sealed batches. Created if missing. Batches left there earlier are sent too.
+     * @param maxRecords Batch sealed when it has this many records
+     * @param maxAgeMs Batch sealed when first record is this old
+     */
+    public UploadQueue(File dir, int maxRecords, long maxAgeMs) throws IOException
+    {
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Cannot create " + dir);
+        mDir = dir;
+        mMaxRecords = maxRecords;
+        mMaxAgeMs = maxAgeMs;
+
+        //Continue sequence after batches left from previous run
+        File[] files = listBatches();
+        if (files.length > 0)
+            mNextSeq = seqOf(files[files.length - 1]) + 1;
+    }
+
+    /**
+     * @param url Endpoint where batches are posted. Null or empty stops sending, batches are still stored.
+     */
+    public void setEndpoint(String url)
+    {
+        mEndpoint = (url == null || url.trim().length() == 0) ? null : url.trim();
+        wakeUp();
+    }
+
+    public String getEndpoint() { return mEndpoint; }
+
+    /**
+     * Set retry backoff. Delay doubles after each failed attempt from base up to max.
+     */
+    public void setBackoff(long baseMs, long maxMs)
+    {
+        mBackoffBaseMs = baseMs;
+        mBackoffMaxMs = maxMs;
+    }
+
+    public synchronized void start()
+    {
+        if (mRunning)
+            return;
+        mRunning = true;
+        mSender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                senderLoop();
+            }
+        }, "UploadQueue");
+        mSender.setDaemon(true);
+        mSender.start();
+    }
+
+    /**
+     * Stop sender thread. Current batch is sealed so it gets sent on next start.
+     * Does not wait for sender, send in progress ends in background. Safe to call from UI thread.
+     */
+    public synchronized void stop()
+    {
+        if (!mRunning)
+            return;
+        mRunning = false;
+        mSender = null;
+        wakeUp();
+        synchronized (mLock) {
+            cut();
+        }
+        seal();
+    }
+
+    /**
+     * Add tag read.
+     * @param epc EPC bytes
+     * @param rssi RSSI dBm
+     * @param antenna Antenna id
+     * @param time Read time, epoch ms
+     */
+    public void offerTag(byte[] epc, int rssi, int antenna, long time)
+    {
+        synchronized (mLock) {
+            StringBuilder sb = begin();
+            sb.append("{\"type\":\"tag\",\"epc\":\"");
+            for (int x = 0; x < epc.length; x++)
+                sb.append(HEX[(epc[x] >> 4) & 0xF]).append(HEX[epc[x] & 0xF]);
+            sb.append("\",\"rssi\":").append(rssi)
+              .append(",\"antenna\":").append(antenna)
+              .append(",\"time\":").append(time).append("}\n");
+            end();
+        }
+    }
+
+    /**
+     * Add barcode read.
+     * @param code Barcode content
+     * @param time Read time, epoch ms
+     */
+    public void offerBarcode(String code, long time)
+    {
+        synchronized (mLock) {
+            StringBuilder sb = begin();
+            sb.append("{\"type\":\"barcode\",\"code\":\"");
+            appendJsonEscaped(sb, code);
+            sb.append("\",\"time\":").append(time).append("}\n");
+            end();
+        }
+    }
+
+    private StringBuilder begin()
+    {
+        if (mBatchRecords == 0)
+            mBatchStarted = System.currentTimeMillis();
+        return mBatch;
+    }
+
+    private void end()
+    {
+        mBatchRecords++;
+        if (mBatchRecords >= mMaxRecords) {
+            cut();
+            wakeUp();
+        }
+    }
+
+    /**
+     * Move current batch to be sealed. mLock held.
+     */
+    private void cut()
+    {
+        if (mBatchRecords == 0)
+            return;
+        mCut.addLast(new Batch(mBatch, mBatchRecords));
+        mCutRecords += mBatchRecords;
+        mBatch = new StringBuilder(64 * 1024);
+        mBatchRecords = 0;
+    }
+
+    /**
+     * Compress cut batches and store them to queue directory. Called from sender thread, and from stop()
+     * after it. mLock is not held while writing, so tags offered from NurApi thread do not wait for disk.
+     */
+    private void seal()
+    {
+        synchronized (mSealLock) {
+            while (true) {
+                Batch batch;
+                synchronized (mLock) {
+                    batch = mCut.peekFirst();
+                }
+                if (batch == null || !store(batch))
+                    return;
+                synchronized (mLock) {
+                    mCut.removeFirst();
+                    mCutRecords -= batch.records;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write batch file. mSealLock held.
+     * @return False if failed, records stay in memory and sealing is tried again later
+     */
+    private boolean store(Batch batch)
+    {
+        File tmp = new File(mDir, "batch.tmp");
+        File file = new File(mDir, String.format("%012d", mNextSeq) + BATCH_SUFFIX);
+        OutputStream out = null;
+        try {
+            out = new GZIPOutputStream(new FileOutputStream(tmp), 8192);
+            out.write(batch.text.toString().getBytes("UTF-8"));
+            out.close();
+            out = null;
+            //Rename so half written batch is never sent
+            if (!tmp.renameTo(file))
+                throw new IOException("Cannot rename " + tmp);
+            mNextSeq++;
+            return true;
+        } catch (IOException ex) {
+            mLastError = "Store failed: " + ex.getMessage();
+            return false;
+        } finally {
+            if (out != null) {
+                try { out.close(); } catch (IOException ex) { }
+            }
+        }
+    }
+
+    private void wakeUp()
+    {
+        synchronized (mLock) {
+            mLock.notifyAll();
+        }
+    }
+
+    private void senderLoop()
+    {
+        int failures = 0;
+        //Backoff deadline. Wake ups by new batches only seal them, they do not shorten backoff.
+        long nextAttempt = 0;
+        Thread self = Thread.currentThread();
+        //Old sender still in send after stop() and start() ends here
+        while (mRunning && mSender == self) {
+            //Cut batch which has waited long enough
+            synchronized (mLock) {
+                if (mBatchRecords > 0 && System.currentTimeMillis() - mBatchStarted >= mMaxAgeMs)
+                    cut();
+            }
+            seal();
+
+            long wait = nextAttempt - System.currentTimeMillis();
+            if (wait > 0) {
+                waitFor(Math.min(wait, Math.max(50, mMaxAgeMs / 4)));
+                continue;
+            }
+
+            File[] files = mEndpoint == null ? new File[0] : listBatches();
+            if (files.length == 0) {
+                waitFor(Math.max(50, mMaxAgeMs / 4));
+                continue;
+            }
+
+            int result = send(files[0]);
+            if (result == SEND_OK) {
+                failures = 0;
+                continue; //Next one right away. Backlog drains at link speed.
+            }
+            if (result == SEND_REJECTED) {
+                files[0].renameTo(new File(mDir, files[0].getName() + REJECTED_SUFFIX));
+                continue;
+            }
+
+            failures++;
+            mFailedAttempts++;
+            nextAttempt = System.currentTimeMillis() + backoffDelay(failures);
+        }
+    }
+
+    private static final int SEND_OK = 0;
+    private static final int SEND_RETRY = 1;
+    private static final int SEND_REJECTED = 2;
+
+    /**
+     * Delay before next attempt. Exponential with jitter so that many handhelds do not retry in sync.
+     */
+    long backoffDelay(int failures)
+    {
+        long delay = mBackoffBaseMs << Math.min(failures - 1, 20);
+        if (delay <= 0 || delay > mBackoffMaxMs)
+            delay = mBackoffMaxMs;
+        return delay / 2 + (long) (mRandom.nextDouble() * delay / 2);
+    }
+
+    private int send(File file)
+    {
+        String endpoint = mEndpoint;
+        if (endpoint == null)
+            return SEND_RETRY;
+
+        HttpURLConnection conn = null;
+        try {
+            byte[] body = readFile(file);
+            conn = (HttpURLConnection) new URL(endpoint).openConnection();
+            conn.setConnectTimeout(TIMEOUT_MS);
+            conn.setReadTimeout(TIMEOUT_MS);
+            conn.setDoOutput(true);
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", "application/x-ndjson");
+            conn.setRequestProperty("Content-Encoding", "gzip");
+            conn.setRequestProperty("X-Batch-Id", file.getName());
+            conn.setFixedLengthStreamingMode(body.length);
+
+            OutputStream out = conn.getOutputStream();
+            out.write(body);
+            out.close();
+
+            int code = conn.getResponseCode();
+            drain(code >= 400 ? conn.getErrorStream() : conn.getInputStream());
+
+            if (code >= 200 && code < 300) {
+                mSentBatches++;
+                mSentBytes += body.length;
+                mSentRecords += countRecords(file);
+                if (!file.delete())
+                    mLastError = "Cannot delete sent batch " + file.getName();
+                return SEND_OK;
+            }
+
+            mLastError = "HTTP " + code;
+            if (code >= 500 || code == 408 || code == 429)
+                return SEND_RETRY;
+            return SEND_REJECTED;
+        } catch (IOException ex) {
+            mLastError = ex.getMessage();
+            return SEND_RETRY;
+        } finally {
+            if (conn != null)
+                conn.disconnect();
+        }
+    }
+
+    private void waitFor(long ms)
+    {
+        synchronized (mLock) {
+            if (!mRunning)
+                return;
+            try {
+                mLock.wait(ms);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                mRunning = false;
+            }
+        }
+    }
+
+    private File[] listBatches()
+    {
+        File[] files = mDir.listFiles();
+        if (files == null)
+            return new File[0];
+        int n = 0;
+        for (File f : files) {
+            if (f.getName().endsWith(BATCH_SUFFIX))
+                files[n++] = f;
+        }
+        files = Arrays.copyOf(files, n);
+        //Zero padded sequence number, name order is send order
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static long seqOf(File f)
+    {
+        String name = f.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - BATCH_SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream((int) file.length());
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0)
+                bos.write(buf, 0, n);
+            return bos.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static int countRecords(File file) throws IOException
+    {
+        InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            byte[] buf = new byte[8192];
+            int count = 0;
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                for (int x = 0; x < n; x++) {
+                    if (buf[x] == '\n')
+                        count++;
+                }
+            }
+            return count;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void drain(InputStream in)
+    {
+        if (in == null)
+            return;
+        try {
+            byte[] buf = new byte[1024];
+            while (in.read(buf) > 0) { }
+            in.close();
+        } catch (IOException ex) { }
+    }
+
+    static void appendJsonEscaped(StringBuilder sb, String s)
+    {
+        for (int x = 0; x < s.length(); x++) {
+            char c = s.charAt(x);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c)); //GS separators of GS1 barcodes end up here
+            else
+                sb.append(c);
+        }
+    }
+
+    /**
+     * @return Records in memory not yet sealed to batch
+     */
+    public int getBufferedRecords()
+    {
+        synchronized (mLock) {
+            return mBatchRecords + mCutRecords;
+        }
+    }
+
+    /**
+     * @return Sealed batches waiting to be sent
+     */
+    public int getPendingBatches() { return listBatches().length; }
+
+    public long getSentRecords() { return mSentRecords; }
+    public long getSentBytes() { return mSentBytes; }
+    public int getSentBatches() { return mSentBatches; }
+    public int getFailedAttempts() { return mFailedAttempts; }
+    public String getLastError() { return mLastError; }
+}
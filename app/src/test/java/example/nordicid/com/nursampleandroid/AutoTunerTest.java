@@ -0,0 +1,170 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+import com.nordicid.nurapi.NurRespInventory;
+import com.nordicid.nurapi.NurSetup;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AutoTunerTest {
+
+    /**
+     * Simulated reader with 200 tags in field. Each inventory round takes 2 ms and finds new tags
+     * depending on setup: Q 8 and 256k/M4 find most, 320k link is rejected by module.
+     */
+    static class FakeReader extends NurApi {
+        static final int POPULATION = 200;
+        NurSetup setup = new NurSetup();
+        int setupCalls;
+        int found;
+
+        FakeReader() {
+            setup.txLevel = NurApi.TXLEVEL_27;
+            setup.linkFreq = NurApi.LINK_FREQUENCY_160000;
+            setup.rxDecoding = NurApi.RXDECODING_M8;
+        }
+
+        @Override
+        public NurSetup getModuleSetup(int flags) {
+            return ReaderProfile.fromSetup("x", setup).toSetup();
+        }
+
+        @Override
+        public NurSetup setModuleSetup(NurSetup s, int flags) throws Exception {
+            setupCalls++;
+            assertEquals(ReaderProfile.SETUP_FLAGS, flags);
+            if (s.linkFreq == NurApi.LINK_FREQUENCY_320000)
+                throw new NurApiException(NurApiErrors.INVALID_PARAMETER);
+            setup = s;
+            return s;
+        }
+
+        @Override
+        public void clearIdBuffer() {
+            found = 0;
+        }
+
+        @Override
+        public NurRespInventory inventory() throws Exception {
+            Thread.sleep(2);
+            int perRound = 2;
+            if (setup.inventoryQ == 8) perRound += 6;
+            if (setup.linkFreq == NurApi.LINK_FREQUENCY_256000 && setup.rxDecoding == NurApi.RXDECODING_M4) perRound += 4;
+            if (setup.txLevel != NurApi.TXLEVEL_27) perRound -= 1;
+            found = Math.min(POPULATION, found + perRound);
+            if (found == 0)
+                throw new NurApiException(NurApiErrors.NO_TAG);
+            NurRespInventory resp = new NurRespInventory();
+            resp.numTagsFound = perRound;
+            resp.numTagsMem = found;
+            return resp;
+        }
+    }
+
+    @Test
+    public void tune_findsBestSettingsAndAppliesThem() throws Exception {
+        FakeReader reader = new FakeReader();
+        AutoTuner tuner = new AutoTuner(reader, 60, 0);
+        final int[] reports = new int[1];
+        ReaderProfile start = ReaderProfile.fromSetup("start", reader.getModuleSetup(ReaderProfile.SETUP_FLAGS));
+        AutoTuner.Trial best = tuner.tune(start, "Tuned X", new AutoTuner.Listener() {
+            @Override
+            public void onTrial(AutoTuner.Trial trial, AutoTuner.Trial best, int done, int total) {
+                reports[0]++;
+                assertTrue(best.tagsPerSec >= 0);
+                assertEquals(AutoTuner.trialCount(), total);
+            }
+        });
+
+        assertEquals("Tuned X", best.profile.name);
+        assertEquals(8, best.profile.q);
+        assertEquals(NurApi.LINK_FREQUENCY_256000, best.profile.linkFreq);
+        assertEquals(NurApi.RXDECODING_M4, best.profile.rxDecoding);
+        assertEquals(NurApi.TXLEVEL_27, best.profile.txLevel);
+        assertEquals(AutoTuner.trialCount(), reports[0]);
+
+        //Winner left on reader
+        assertEquals(best.profile, ReaderProfile.fromSetup("Tuned X", reader.setup));
+
+        //Rejected link profile recorded as error, not as winner
+        boolean rejected = false;
+        for (AutoTuner.Trial t : tuner.getTrials()) {
+            if (t.profile.linkFreq == NurApi.LINK_FREQUENCY_320000)
+                rejected = t.error == NurApiErrors.INVALID_PARAMETER;
+        }
+        assertTrue(rejected);
+    }
+
+    @Test
+    public void tune_coverageBeatsFastFewTags() throws Exception {
+        //Lowest TX level reaches only 50 nearest tags, all of them in first round
+        FakeReader reader = new FakeReader() {
+            @Override
+            public NurRespInventory inventory() throws Exception {
+                if (setup.txLevel != NurApi.TXLEVEL_21)
+                    return super.inventory();
+                Thread.sleep(2);
+                found = 50;
+                NurRespInventory resp = new NurRespInventory();
+                resp.numTagsFound = 50;
+                resp.numTagsMem = found;
+                return resp;
+            }
+        };
+        AutoTuner tuner = new AutoTuner(reader, 60, 0);
+        AutoTuner.Trial best = tuner.tune(ReaderProfile.fromSetup("start", reader.getModuleSetup(ReaderProfile.SETUP_FLAGS)), "t", null);
+
+        AutoTuner.Trial near = tuner.getTrials().get(tuner.getTrials().size() - 1);
+        assertEquals(NurApi.TXLEVEL_21, near.profile.txLevel);
+        assertEquals(50, near.uniqueTags);
+        assertTrue(near.tagsPerSec > best.tagsPerSec);
+        assertEquals(FakeReader.POPULATION, best.uniqueTags);
+        assertEquals(NurApi.TXLEVEL_27, best.profile.txLevel);
+    }
+
+    @Test
+    public void cancel_restoresOriginalSetup() throws Exception {
+        final FakeReader reader = new FakeReader();
+        ReaderProfile original = ReaderProfile.fromSetup("o", reader.setup);
+        final AutoTuner tuner = new AutoTuner(reader, 20, 0);
+        tuner.tune(original, "t", new AutoTuner.Listener() {
+            @Override
+            public void onTrial(AutoTuner.Trial trial, AutoTuner.Trial best, int done, int total) {
+                if (done == 3)
+                    tuner.cancel();
+            }
+        });
+        assertTrue(tuner.isCancelled());
+        assertEquals(original, ReaderProfile.fromSetup("o", reader.setup));
+        assertTrue(tuner.getTrials().size() < AutoTuner.trialCount());
+    }
+
+    @Test
+    public void profiles_encodeDecode() throws Exception {
+        ProfileManager pm = new ProfileManager();
+        ReaderProfile custom = new ReaderProfile("Dock door", NurApi.TXLEVEL_24, 6, NurApi.SESSION_S2, NurApi.INVTARGET_AB, 4,
+                NurApi.LINK_FREQUENCY_256000, NurApi.RXDECODING_M8, NurApi.TXMODULATION_ASK);
+        pm.put(custom);
+        pm.setTuned("12345678", custom.rename("Tuned 12345678"));
+
+        ProfileManager loaded = new ProfileManager();
+        assertEquals(2, loaded.decode(pm.encode() + "garbage\nprofile;bad\n"));
+        assertEquals(custom, loaded.get("Dock door"));
+        assertEquals("Tuned 12345678", loaded.getTuned("12345678").name);
+        assertNull(loaded.getTuned("other"));
+        assertEquals(pm.getNames(), loaded.getNames());
+
+        //Built-ins can not be removed
+        assertFalse(loaded.remove(ProfileManager.PROFILE_DENSE));
+        assertTrue(loaded.remove("Dock door"));
+
+        NurSetup setup = custom.toSetup();
+        assertEquals(6, setup.inventoryQ);
+        assertEquals(NurApi.SESSION_S2, setup.inventorySession);
+        assertEquals(custom, ReaderProfile.fromSetup("Dock door", setup));
+    }
+}
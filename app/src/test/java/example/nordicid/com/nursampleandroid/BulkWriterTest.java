@@ -0,0 +1,188 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
+import com.nordicid.nurapi.NurRespInventory;
+import com.nordicid.nurapi.NurTag;
+
+import example.nordicid.com.inventorycore.EpcCodec;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BulkWriterTest {
+
+    /**
+     * Simulated reader. Field holds tags by EPC with their user memory.
+     * Counts reader commands so pass structure can be checked.
+     */
+    static class FakeReader extends NurApi {
+        final HashMap<String, byte[]> field = new HashMap<String, byte[]>();
+        //EPC -> number of next writes failing with G2_WRITE
+        final HashMap<String, Integer> failWrites = new HashMap<String, Integer>();
+        int inventories;
+        int writes;
+        int reads;
+
+        void put(String epc) {
+            field.put(epc, new byte[16]);
+        }
+
+        @Override
+        public void clearIdBuffer() {
+            getStorage().clear();
+        }
+
+        @Override
+        public NurRespInventory inventory() throws Exception {
+            inventories++;
+            if (field.isEmpty())
+                throw new NurApiException(NurApiErrors.NO_TAG);
+            NurRespInventory resp = new NurRespInventory();
+            resp.numTagsFound = field.size();
+            return resp;
+        }
+
+        @Override
+        public void fetchTags() throws Exception {
+            for (String epc : field.keySet())
+                getStorage().addTag(new NurTag(0, -50, 80, 0, 0, 0, 0, NurApi.hexStringToByteArray(epc), null));
+        }
+
+        private String select(byte[] epc, int epcLen) throws Exception {
+            String key = EpcCodec.toHexString(Arrays.copyOf(epc, epcLen));
+            if (!field.containsKey(key))
+                throw new NurApiException(NurApiErrors.G2_SELECT);
+            Integer fails = failWrites.get(key);
+            if (fails != null && fails > 0) {
+                failWrites.put(key, fails - 1);
+                throw new NurApiException(NurApiErrors.G2_WRITE);
+            }
+            return key;
+        }
+
+        @Override
+        public void writeTagByEpc(byte[] epc, int epcLen, int bank, int addr, byte[] data) throws Exception {
+            writes++;
+            String key = select(epc, epcLen);
+            System.arraycopy(data, 0, field.get(key), addr * 2, data.length);
+        }
+
+        @Override
+        public byte[] readTagByEpc(byte[] epc, int epcLen, int bank, int addr, int byteCount) throws Exception {
+            reads++;
+            String key = EpcCodec.toHexString(Arrays.copyOf(epc, epcLen));
+            return Arrays.copyOfRange(field.get(key), addr * 2, addr * 2 + byteCount);
+        }
+
+        @Override
+        public void writeEpcByEpc(byte[] epc, int epcLen, int newEpcLen, byte[] newEpc) throws Exception {
+            writes++;
+            String key = select(epc, epcLen);
+            byte[] user = field.remove(key);
+            field.put(EpcCodec.toHexString(Arrays.copyOf(newEpc, newEpcLen)), user);
+        }
+    }
+
+    @Test
+    public void writesPresentTags_verifiesByInventory() throws Exception {
+        FakeReader reader = new FakeReader();
+        try {
+            List<BulkWriter.Job> jobs = new ArrayList<BulkWriter.Job>();
+            for (int x = 0; x < 20; x++) {
+                String epc = String.format("E28000000000000000%06X", x);
+                reader.put(epc);
+                jobs.add(BulkWriter.Job.parse(epc + "," + String.format("3074257BF7194E40%08X", x)));
+            }
+
+            BulkWriter writer = new BulkWriter(reader, jobs, 3);
+            BulkWriter.Stats stats = writer.run(null, 1);
+
+            assertEquals(20, stats.done);
+            assertEquals(0, stats.failed);
+            //One inventory to find tags + one to verify all, then idle pass is not needed because all done
+            assertEquals(2, reader.inventories);
+            assertEquals(20, reader.writes);
+            assertEquals(0, reader.reads);
+            assertTrue(reader.field.containsKey("3074257BF7194E4000000013"));
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    public void retriesFailedWrites_countsCauses() throws Exception {
+        FakeReader reader = new FakeReader();
+        try {
+            reader.put("E28000000000000000000001");
+            reader.put("E28000000000000000000002");
+            reader.failWrites.put("E28000000000000000000001", 1); //Succeeds on retry
+            reader.failWrites.put("E28000000000000000000002", 5); //Never succeeds
+
+            List<BulkWriter.Job> jobs = new ArrayList<BulkWriter.Job>();
+            jobs.add(BulkWriter.Job.parse("E28000000000000000000001,30000000000000000000000A"));
+            jobs.add(BulkWriter.Job.parse("E28000000000000000000002,30000000000000000000000B"));
+
+            final List<Integer> passes = new ArrayList<Integer>();
+            BulkWriter writer = new BulkWriter(reader, jobs, 3);
+            BulkWriter.Stats stats = writer.run(new BulkWriter.Listener() {
+                @Override
+                public void onProgress(BulkWriter.Stats s) { passes.add(s.passes); }
+            }, 2);
+
+            assertEquals(1, stats.done);
+            assertEquals(1, stats.failed);
+            assertEquals(3, stats.passes);
+            assertEquals(3, passes.size());
+            assertEquals(Integer.valueOf(4), stats.failureCauses.get(NurApiErrors.G2_WRITE));
+            assertEquals("Write x4", stats.failureText());
+            assertEquals(BulkWriter.Job.FAILED, writer.getJobs().get(1).getState());
+            assertEquals(3, writer.getJobs().get(1).getAttempts());
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    public void userMemory_writtenAndReadBack() throws Exception {
+        FakeReader reader = new FakeReader();
+        try {
+            reader.put("E28000000000000000000001");
+            List<BulkWriter.Job> jobs = new ArrayList<BulkWriter.Job>();
+            jobs.add(BulkWriter.Job.parse("E28000000000000000000001,,CAFEBABE"));
+            jobs.add(BulkWriter.Job.parse("E28000000000000000000099,,1234")); //Not in field
+
+            BulkWriter.Stats stats = new BulkWriter(reader, jobs, 3).run(null, 2);
+            assertEquals(1, stats.done);
+            assertEquals(1, stats.pending);
+            assertEquals(1, reader.reads);
+            byte[] user = reader.field.get("E28000000000000000000001");
+            assertEquals("CAFEBABE", EpcCodec.toHexString(Arrays.copyOf(user, 4)));
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    public void invalidJobs_rejected() throws Exception {
+        try {
+            BulkWriter.Job.parse("E280,");
+            fail();
+        } catch (IllegalArgumentException ex) { }
+        try {
+            BulkWriter.Job.parse("E280,123");
+            fail();
+        } catch (IllegalArgumentException ex) { }
+        try {
+            BulkWriter.Job.parse("E280,3000,ABC");
+            fail();
+        } catch (IllegalArgumentException ex) { }
+    }
+}
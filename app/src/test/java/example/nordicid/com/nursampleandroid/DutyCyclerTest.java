@@ -0,0 +1,75 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.NurApi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DutyCyclerTest {
+
+    @Test
+    public void pause_backsOffInStaticField() throws Exception {
+        DutyCycler cycler = new DutyCycler(1000, 250, 4000);
+        assertEquals(250, cycler.onBurstEnd(5));
+        assertEquals(500, cycler.onBurstEnd(0));
+        assertEquals(1000, cycler.onBurstEnd(0));
+        assertEquals(2000, cycler.onBurstEnd(0));
+        assertEquals(4000, cycler.onBurstEnd(0));
+        assertEquals(4000, cycler.onBurstEnd(0));
+        //New tag arriving drops pause back to minimum
+        assertEquals(250, cycler.onBurstEnd(1));
+        assertEquals(7, cycler.getBursts());
+        //7 s on, 12 s off
+        assertEquals(7000 * 100.0 / 19000, cycler.getDutyPercent(), 0.001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroPause_rejected() throws Exception {
+        new DutyCycler(1000, 0, 4000);
+    }
+
+    @Test
+    public void energy_integratesCurrent() throws Exception {
+        EnergyMeter meter = new EnergyMeter();
+        assertEquals(0.0, meter.getMah(), 0.0);
+        //Current reported negative while discharging on some devices
+        meter.addSample(-360, 80, 2000, 0);
+        meter.addSample(-360, 80, 2000, 5000);
+        meter.addSample(-720, 80, 2000, 10000);
+        //360 mA * 5 s + 540 mA * 5 s = 0.5 + 0.75 mAh
+        assertEquals(1.25, meter.getMah(), 0.0001);
+        assertEquals(800.0, meter.readsPerMah(1000), 0.01);
+
+        meter.reset();
+        assertEquals(0.0, meter.getMah(), 0.0);
+    }
+
+    @Test
+    public void energy_fallsBackToLevelDrop() throws Exception {
+        EnergyMeter meter = new EnergyMeter();
+        meter.addSample(0, 90, 2000, 0);
+        meter.addSample(0, 89, 0, 60000);
+        assertEquals(20.0, meter.getMah(), 0.0001);
+    }
+
+    @Test
+    public void profile_dutyFlagEncoded() throws Exception {
+        ReaderProfile p = new ProfileManager().get(ProfileManager.PROFILE_SAVER);
+        assertTrue(p.dutyCycle);
+        assertTrue(p.describe().endsWith(" duty"));
+        assertEquals(p, ReaderProfile.decode(p.encode()));
+        assertTrue(p.withQ(4).dutyCycle);
+
+        //Profiles saved before duty flag load with it off
+        ReaderProfile old = ReaderProfile.decode("Old;0;0;1;0;0;256000;2;1");
+        assertFalse(old.dutyCycle);
+        assertEquals(NurApi.SESSION_S1, old.session);
+
+        ProfileManager manager = new ProfileManager();
+        manager.setActive(ProfileManager.PROFILE_SAVER);
+        ProfileManager loaded = new ProfileManager();
+        assertEquals(0, loaded.decode(manager.encode()));
+        assertSame(loaded.get(ProfileManager.PROFILE_SAVER), loaded.getActive());
+    }
+}
@@ -0,0 +1,90 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.NurApi;
+
+import example.nordicid.com.inventorycore.EpcCodec;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EpcCodecTest {
+    @Test
+    public void encode_sameAsNurApi() throws Exception {
+        Random rnd = new Random(1);
+        char[] buf = new char[64];
+        for (int len = 0; len <= 32; len += 2) {
+            byte[] epc = new byte[len];
+            rnd.nextBytes(epc);
+            int n = EpcCodec.encode(epc, buf, 0);
+            assertEquals(NurApi.byteArrayToHexString(epc), new String(buf, 0, n));
+            assertEquals(NurApi.byteArrayToHexString(epc), EpcCodec.toHexString(epc));
+        }
+    }
+
+    @Test
+    public void decode_roundTrip() throws Exception {
+        byte[] out = new byte[12];
+        assertEquals(12, EpcCodec.decode("3074257bf7194e4000001A85", 0, 24, out));
+        assertArrayEquals(NurApi.hexStringToByteArray("3074257BF7194E4000001A85"), out);
+        assertEquals(-1, EpcCodec.decode("30X4", 0, 4, out));
+    }
+
+    @Test
+    public void sameEpc() throws Exception {
+        byte[] a = NurApi.hexStringToByteArray("3074257BF7194E4000001A85");
+        byte[] b = NurApi.hexStringToByteArray("3074257BF7194E4000001A85");
+        byte[] c = NurApi.hexStringToByteArray("3074257BF7194E4000001A86");
+        assertTrue(EpcCodec.sameEpc(a, b));
+        assertFalse(EpcCodec.sameEpc(a, c));
+        assertFalse(EpcCodec.sameEpc(a, null));
+        assertFalse(EpcCodec.sameEpc(a, NurApi.hexStringToByteArray("3074257BF7194E4000001A")));
+        assertEquals(EpcCodec.hash(a), EpcCodec.hash(b));
+    }
+
+    /**
+     * Compare current String based conversions to codec. Prints time and allocation per EPC.
+     */
+    @Test
+    public void benchmark_againstStringConversions() throws Exception {
+        final int count = 1024;
+        final byte[][] epcs = new byte[count][12];
+        Random rnd = new Random(2);
+        for (int x = 0; x < count; x++) {
+            rnd.nextBytes(epcs[x]);
+        }
+        final char[] buf = new char[64];
+        final long[] sink = new long[1];
+        final String[] underReview = { "" };
+        final byte[][] underReviewBytes = { null };
+
+        int iterations = 200000;
+        MicroBenchmark.run("hex: NurApi.byteArrayToHexString", iterations, new MicroBenchmark.Op() {
+            public void run(int i) { sink[0] += NurApi.byteArrayToHexString(epcs[i & (count - 1)]).length(); }
+        });
+        MicroBenchmark.Result codec = MicroBenchmark.run("hex: EpcCodec.encode", iterations, new MicroBenchmark.Op() {
+            public void run(int i) { sink[0] += EpcCodec.encode(epcs[i & (count - 1)], buf, 0); }
+        });
+        MicroBenchmark.run("compare: hex string compareTo", iterations, new MicroBenchmark.Op() {
+            public void run(int i) {
+                String epc = NurApi.byteArrayToHexString(epcs[i & (count - 1)]);
+                if (epc.compareTo(underReview[0]) == 0) sink[0]++;
+                else underReview[0] = epc;
+            }
+        });
+        MicroBenchmark.run("compare: EpcCodec.sameEpc", iterations, new MicroBenchmark.Op() {
+            public void run(int i) {
+                byte[] epc = epcs[i & (count - 1)];
+                if (EpcCodec.sameEpc(epc, underReviewBytes[0])) sink[0]++;
+                else underReviewBytes[0] = epc;
+            }
+        });
+
+        //Codec must not allocate per EPC
+        if (codec.bytesPerOp >= 0)
+            assertTrue(codec.bytesPerOp < 1);
+        assertTrue(sink[0] > 0);
+    }
+}
@@ -0,0 +1,176 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.NurApi;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FieldLogTest {
+
+    private static File tempDir() throws IOException
+    {
+        File dir = File.createTempFile("fieldlog", "");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static List<String> lines(File file) throws IOException
+    {
+        List<String> lines = new ArrayList<String>();
+        if (!file.exists())
+            return lines;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null)
+                lines.add(line);
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /**
+     * Message part after "I/Tag: "
+     */
+    private static String message(String line)
+    {
+        return line.substring(line.indexOf(": ") + 2);
+    }
+
+    @Test
+    public void levelAndFormatting() throws Exception {
+        File dir = tempDir();
+        FieldLog log = new FieldLog(16);
+        log.setLevel(FieldLog.INFO);
+        assertFalse(log.isLoggable(FieldLog.DEBUG));
+        log.log(FieldLog.DEBUG, "T", "not stored {}", 1);
+        log.log(FieldLog.INFO, "Barcode", "BarcodeKey {} Dir={}", 100, 1);
+        log.log(FieldLog.WARN, "T", "Failed {}", (Object)null);
+        log.log(FieldLog.ERROR, "T", "{} after {} ms", "Timeout", 250);
+        log.log(FieldLog.INFO, "T", "No args {}");
+        log.logNurApi(NurApi.LOG_ERROR, "CRC error");
+        assertEquals(0, log.getDropped());
+
+        log.start(dir, "test", FieldLog.DEFAULT_FILE_BYTES, FieldLog.DEFAULT_FILES);
+        log.stop();
+        List<String> lines = lines(new File(dir, "test.log"));
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0), lines.get(0).matches("\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3} I/Barcode: BarcodeKey 100 Dir=1"));
+        assertEquals("Failed null", message(lines.get(1)));
+        assertTrue(lines.get(2).contains(" E/T: Timeout after 250 ms"));
+        assertEquals("No args {}", message(lines.get(3)));
+        assertTrue(lines.get(4).contains(" E/NurApi: CRC error"));
+        assertEquals(5, log.getWritten());
+    }
+
+    @Test
+    public void fullRing_dropsNewest() throws Exception {
+        File dir = tempDir();
+        FieldLog log = new FieldLog(6);
+        assertEquals(8, log.getCapacity());
+        //Writer not started yet, entries wait in ring
+        for (int x = 0; x < 10; x++)
+            log.log(FieldLog.INFO, "T", "n{}", x);
+        assertEquals(2, log.getDropped());
+
+        log.start(dir, "ring", FieldLog.DEFAULT_FILE_BYTES, FieldLog.DEFAULT_FILES);
+        //Ring full until writer has drained it
+        long end = System.currentTimeMillis() + 2000;
+        while (log.getWritten() < 8 && System.currentTimeMillis() < end)
+            Thread.sleep(5);
+        log.log(FieldLog.INFO, "T", "after start");
+        assertEquals(2, log.getDropped());
+        log.stop();
+        List<String> lines = lines(new File(dir, "ring.log"));
+        assertEquals(9, lines.size());
+        for (int x = 0; x < 8; x++)
+            assertEquals("n" + x, message(lines.get(x)));
+        assertEquals("after start", message(lines.get(8)));
+    }
+
+    @Test
+    public void rotation_keepsMaxFiles() throws Exception {
+        File dir = tempDir();
+        FieldLog log = new FieldLog(256);
+        for (int x = 0; x < 100; x++)
+            log.log(FieldLog.INFO, "T", "line {}", x);
+        log.start(dir, "rot", 500, 3);
+        log.stop();
+
+        assertTrue(new File(dir, "rot.log").exists());
+        assertTrue(new File(dir, "rot.log.1").exists());
+        assertTrue(new File(dir, "rot.log.2").exists());
+        assertFalse(new File(dir, "rot.log.3").exists());
+        assertTrue(new File(dir, "rot.log.1").length() >= 500);
+        assertTrue(new File(dir, "rot.log.1").length() < 600);
+        //Newest lines in current file, oldest rotated out
+        List<String> current = lines(new File(dir, "rot.log"));
+        assertEquals("line 99", message(current.get(current.size() - 1)));
+        assertEquals(100, log.getWritten());
+    }
+
+    @Test
+    public void concurrentProducers_nothingLostSilently() throws Exception {
+        File dir = tempDir();
+        final FieldLog log = new FieldLog(1024);
+        log.start(dir, "mt", 64 * 1024 * 1024, 1);
+        final int threads = 4;
+        final int perThread = 5000;
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            producers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    //Bursts of 50 entries every 5 ms from each thread: ring of 1024 overflows during one idle sleep
+                    for (int x = 0; x < perThread; x++) {
+                        log.log(FieldLog.INFO, "T", "t{} n{}", id, x);
+                        if (x % 50 == 49) {
+                            try {
+                                Thread.sleep(5);
+                            } catch (InterruptedException ex) {
+                                return;
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread p : producers)
+            p.start();
+        for (Thread p : producers)
+            p.join();
+        long ns = System.nanoTime() - start;
+        log.stop();
+        System.out.println(String.format("FieldLog: %d entries, %.0f ns/entry, %d dropped",
+                threads * perThread, (double)ns / (threads * perThread), log.getDropped()));
+
+        assertEquals(threads * perThread, log.getWritten() + log.getDropped());
+        //Writer woken at high water mark instead of sleeping through bursts (over a third dropped when not)
+        assertTrue("dropped " + log.getDropped(), log.getDropped() < threads * perThread / 10);
+        //Each thread's entries are complete and in order
+        long[] last = new long[threads];
+        java.util.Arrays.fill(last, -1);
+        List<String> lines = lines(new File(dir, "mt.log"));
+        assertEquals(log.getWritten(), lines.size());
+        for (String line : lines) {
+            String[] parts = message(line).split(" ");
+            int id = Integer.parseInt(parts[0].substring(1));
+            long n = Long.parseLong(parts[1].substring(1));
+            assertTrue(line, n > last[id]);
+            last[id] = n;
+        }
+    }
+}
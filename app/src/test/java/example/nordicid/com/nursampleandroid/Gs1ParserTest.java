@@ -0,0 +1,69 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.tdt.EPCTagEngine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class Gs1ParserTest {
+    @Test
+    public void parse_fixedAndVariableFields() throws Exception {
+        Gs1Parser.Gs1Data data = Gs1Parser.parseUncached("]d2" + "0180614141123458" + "17261231" + "10LOT42" + Gs1Parser.GS + "216789");
+        assertNotNull(data);
+        assertTrue(data.isValid());
+        assertEquals("80614141123458", data.getGtin());
+        assertEquals("261231", data.getExpiry());
+        assertEquals("LOT42", data.getBatch());
+        assertEquals("6789", data.getSerial());
+    }
+
+    @Test
+    public void parse_humanReadableForm() throws Exception {
+        Gs1Parser.Gs1Data data = Gs1Parser.parseUncached("(00)106141411234567897(10)ABC");
+        assertEquals("106141411234567897", data.getSscc());
+        assertEquals("ABC", data.getBatch());
+    }
+
+    @Test
+    public void parse_plainBarcode_isNotGs1() throws Exception {
+        assertNull(Gs1Parser.parseUncached("6417182001234"));
+        assertNull(Gs1Parser.parseUncached("HELLO"));
+        //Symbology identifier of non GS1 Code 128 and QR
+        assertNull(Gs1Parser.parseUncached("]C0HELLO"));
+        assertNull(Gs1Parser.parseUncached("]Q1" + "0180614141123458"));
+    }
+
+    @Test
+    public void aiLength_healthcareReimbursement() throws Exception {
+        assertEquals(3, Gs1Parser.aiLength("710", 0));
+        assertEquals(3, Gs1Parser.aiLength("717", 0));
+        assertEquals(4, Gs1Parser.aiLength("7003", 0));
+        Gs1Parser.Gs1Data data = Gs1Parser.parseUncached("]C1" + "0180614141123458" + "710ABC123" + Gs1Parser.GS + "10LOT");
+        assertEquals("ABC123", data.get("710"));
+        assertEquals("LOT", data.getBatch());
+    }
+
+    @Test
+    public void sgtinUri_matchesTdtEngine() throws Exception {
+        //SGTIN-96 urn:epc:id:sgtin:0614141.812345.6789
+        String fromTag = new EPCTagEngine("3074257BF7194E4000001A85").buildPureIdentityURI();
+        Gs1Parser.Gs1Data data = Gs1Parser.parse("]C1" + "0180614141123458" + "216789");
+        assertEquals(fromTag, data.toPureIdentityUri(7));
+    }
+
+    @Test
+    public void cache_returnsSameResult() throws Exception {
+        Gs1Parser.clearCache();
+        Gs1Parser.Gs1Data first = Gs1Parser.parse("]C1" + "0180614141123458" + "21X");
+        Gs1Parser.Gs1Data second = Gs1Parser.parse("]C1" + "0180614141123458" + "21X");
+        assertSame(first, second);
+        assertEquals(1, Gs1Parser.getCacheHits());
+    }
+
+    @Test
+    public void serial_isEscaped() throws Exception {
+        Gs1Parser.Gs1Data data = Gs1Parser.parse("(01)80614141123458(21)A/B%");
+        assertEquals("urn:epc:id:sgtin:0614141.812345.A%2FB%25", data.toPureIdentityUri(7));
+    }
+}
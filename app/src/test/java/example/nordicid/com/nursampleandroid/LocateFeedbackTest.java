@@ -0,0 +1,89 @@
+package example.nordicid.com.nursampleandroid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LocateFeedbackTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void level_smoothsAndLosesTag() throws Exception {
+        LocateFeedback fb = new LocateFeedback(500);
+        assertEquals(0, fb.getLevel(0));
+
+        //First reading sets level directly
+        fb.onReading(40, 10 * MS);
+        assertEquals(40, fb.getLevel(10 * MS));
+
+        //Single spike moves level only quarter of the way
+        fb.onReading(80, 30 * MS);
+        assertEquals(50, fb.getLevel(30 * MS));
+
+        //Steady signal converges
+        long t = 30 * MS;
+        for (int x = 0; x < 40; x++) {
+            t += 20 * MS;
+            fb.onReading(80, t);
+        }
+        assertTrue(fb.getLevel(t) >= 79);
+
+        //Misses pull level down
+        fb.onMiss(t + 20 * MS);
+        assertTrue(fb.getLevel(t + 20 * MS) < 79);
+
+        //Lost after timeout
+        assertEquals(0, fb.getLevel(t + 600 * MS));
+        assertFalse(fb.shouldBeep(t + 600 * MS));
+    }
+
+    @Test
+    public void beepCadence_followsLevel() throws Exception {
+        assertEquals(-1, LocateFeedback.beepInterval(0));
+        assertEquals(LocateFeedback.MIN_INTERVAL_MS, LocateFeedback.beepInterval(100));
+        assertTrue(LocateFeedback.beepInterval(20) > LocateFeedback.beepInterval(80));
+
+        LocateFeedback fb = new LocateFeedback(500);
+        long t = 1000 * MS;
+        fb.onReading(100, t);
+        assertTrue(fb.shouldBeep(t));
+        assertFalse(fb.shouldBeep(t + 30 * MS));
+        fb.onReading(100, t + 30 * MS);
+        assertTrue(fb.shouldBeep(t + LocateFeedback.MIN_INTERVAL_MS * MS));
+    }
+
+    @Test
+    public void stats_measureUpdateRateAndLatency() throws Exception {
+        LocateFeedback fb = new LocateFeedback(500);
+        long t = 0;
+        for (int x = 0; x < 11; x++) {
+            fb.onReading(50, t);
+            t += x == 5 ? 40 * MS : 20 * MS;
+        }
+        assertEquals(11, fb.getUpdates());
+        assertEquals(22.0, fb.getAvgPeriodMs(), 0.001);
+        assertEquals(40.0, fb.getMaxPeriodMs(), 0.001);
+        assertEquals(1000.0 / 22.0, fb.getUpdateRate(), 0.001);
+
+        fb.addLatency(2 * MS);
+        fb.addLatency(4 * MS);
+        assertEquals(3.0, fb.getAvgLatencyMs(), 0.001);
+        assertEquals(44.0, fb.getMaxLoopMs(), 0.001);
+    }
+
+    @Test
+    public void handlerCost_farBelowLoopBudget() throws Exception {
+        //Per event work in traceTagEvent: filter update and beep decision. Must be negligible against 50 ms loop.
+        final LocateFeedback fb = new LocateFeedback(500);
+        final long[] t = new long[1];
+        MicroBenchmark.Result r = MicroBenchmark.run("locate event", 200000, new MicroBenchmark.Op() {
+            @Override
+            public void run(int i) {
+                t[0] += 20 * MS;
+                fb.onReading(i & 63, t[0]);
+                fb.shouldBeep(t[0]);
+            }
+        });
+        assertTrue(r.nsPerOp < 50 * MS / 1000);
+    }
+}
@@ -0,0 +1,64 @@
+package example.nordicid.com.nursampleandroid;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Minimal benchmark helper for host side unit tests.
+ * Measures time and heap allocation per operation of current thread.
+ * Allocation is read from HotSpot thread MX bean, reported as -1 if JVM does not support it.
+ */
+public class MicroBenchmark {
+
+    public interface Op {
+        void run(int i) throws Exception;
+    }
+
+    public static class Result {
+        public final String name;
+        public final double nsPerOp;
+        public final double bytesPerOp;
+
+        Result(String name, double nsPerOp, double bytesPerOp) {
+            this.name = name;
+            this.nsPerOp = nsPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-40s %10.1f ns/op %10.1f B/op", name, nsPerOp, bytesPerOp);
+        }
+    }
+
+    /**
+     * Warm up and measure operation. Result printed to stdout.
+     */
+    public static Result run(String name, int iterations, Op op) throws Exception
+    {
+        //Warm up so JIT has compiled the code
+        for (int i = 0; i < iterations; i++)
+            op.run(i);
+
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            op.run(i);
+        long ns = System.nanoTime() - start;
+        long bytesAfter = allocatedBytes();
+
+        double bytes = bytesBefore < 0 ? -1 : (double) (bytesAfter - bytesBefore) / iterations;
+        Result result = new Result(name, (double) ns / iterations, bytes);
+        System.out.println(result);
+        return result;
+    }
+
+    private static long allocatedBytes()
+    {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean)
+                return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        } catch (Throwable t) { }
+        return -1;
+    }
+}
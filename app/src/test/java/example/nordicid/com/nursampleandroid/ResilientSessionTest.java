@@ -0,0 +1,101 @@
+package example.nordicid.com.nursampleandroid;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResilientSessionTest {
+
+    @Test
+    public void backoff_doublesUpToMax() throws Exception {
+        ResilientSession session = new ResilientSession(500, 4000);
+        assertEquals(500, session.backoffDelay(1));
+        assertEquals(1000, session.backoffDelay(2));
+        assertEquals(2000, session.backoffDelay(3));
+        assertEquals(4000, session.backoffDelay(4));
+        assertEquals(4000, session.backoffDelay(100));
+    }
+
+    @Test
+    public void outage_resumesStreamAndEstimatesMissed() throws Exception {
+        ResilientSession session = new ResilientSession(10000, 10000);
+        session.setReconnector(new ResilientSession.Reconnector() {
+            @Override
+            public void reconnect() { }
+        });
+        //20 new tags per second while streaming
+        session.setStreaming(true, 0);
+        session.onNewTags(100);
+        assertTrue(session.onDisconnected(5000));
+        assertTrue(session.isOutage());
+        //Second drop event from other listener is same outage
+        session.onDisconnected(5500);
+
+        assertTrue(session.onConnected(8000));
+        assertFalse(session.isOutage());
+        assertEquals(1, session.getOutages());
+        assertEquals(3000, session.getLastOutageMs());
+        assertEquals(60.0, session.getMissedEstimate(), 0.001);
+        assertEquals(20.0, session.getTagRate(), 0.001);
+
+        //Outage time not counted as streaming time
+        session.onNewTags(40);
+        session.setStreaming(false, 10000);
+        assertEquals(20.0, session.getTagRate(), 0.001);
+
+        //Not streaming: nothing resumed, nothing missed
+        session.onDisconnected(20000);
+        assertFalse(session.onConnected(21000));
+        assertEquals(2, session.getOutages());
+        assertEquals(4000, session.getTotalOutageMs());
+        assertEquals("Outages 2, last 1.0 s, total 4.0 s, ~60 tags missed", session.summary());
+
+        //Connected without outage is not reconnect
+        assertFalse(session.onConnected(22000));
+    }
+
+    @Test
+    public void released_noRecovery() throws Exception {
+        ResilientSession session = new ResilientSession(1, 1);
+        session.setStreaming(true, 0);
+        session.onDisconnected(10);
+        assertFalse(session.isOutage());
+
+        session.setReconnector(new ResilientSession.Reconnector() {
+            @Override
+            public void reconnect() { }
+        });
+        session.release();
+        session.onDisconnected(20);
+        assertFalse(session.isOutage());
+    }
+
+    @Test
+    public void reconnect_retriedUntilConnected() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final ResilientSession session = new ResilientSession(5, 20);
+        session.setReconnector(new ResilientSession.Reconnector() {
+            @Override
+            public void reconnect() throws Exception {
+                //Transport fails twice, connects on third attempt
+                if (calls.incrementAndGet() < 3)
+                    throw new Exception("no link");
+                session.onConnected(System.currentTimeMillis());
+            }
+        });
+        session.onDisconnected(System.currentTimeMillis());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (session.isOutage() && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+        assertFalse(session.isOutage());
+        assertEquals(3, calls.get());
+        assertEquals(3, session.getAttempts());
+
+        //No more attempts after connected
+        Thread.sleep(100);
+        assertEquals(3, calls.get());
+    }
+}
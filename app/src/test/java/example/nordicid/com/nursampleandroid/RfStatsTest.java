@@ -0,0 +1,97 @@
+package example.nordicid.com.nursampleandroid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RfStatsTest {
+
+    @Test
+    public void readsAndRssi_perChannel() throws Exception {
+        RfStats stats = new RfStats(10, 1000);
+        stats.addRead(3, -50, 100);
+        stats.addRead(3, -60, 200);
+        stats.addRead(7, -80, 300);
+        stats.addRead(99, -70, 300); //Channel out of range counts only to RSSI histogram
+
+        assertEquals(2, stats.getReads(3));
+        assertEquals(1, stats.getReads(7));
+        assertEquals(3, stats.getTotalReads());
+        assertEquals(-55.0, stats.getMeanRssi(3), 0.001);
+
+        int[] hist = new int[RfStats.RSSI_BINS];
+        stats.getRssiHistogram(hist);
+        assertEquals(1, hist[RfStats.rssiBin(-50)]);
+        assertEquals(1, hist[RfStats.rssiBin(-70)]);
+        int sum = 0;
+        for (int h : hist) sum += h;
+        assertEquals(4, sum);
+
+        //Out of range RSSI goes to end bins
+        assertEquals(0, RfStats.rssiBin(-120));
+        assertEquals(RfStats.RSSI_BINS - 1, RfStats.rssiBin(0));
+    }
+
+    @Test
+    public void window_expiresOldSlots() throws Exception {
+        RfStats stats = new RfStats(5, 1000);
+        stats.addRead(1, -50, 0);
+        stats.addRead(1, -50, 2500);
+        stats.addHop(1, 2600);
+        stats.addHop(2, 2800);
+        assertEquals(2, stats.getReads(1));
+        assertEquals(200.0, stats.getMeanHopMs(), 0.001);
+
+        //Slot 0 leaves window at 5 s
+        stats.update(5000);
+        assertEquals(1, stats.getReads(1));
+        assertEquals(1, stats.getHops(2));
+
+        //Long gap clears everything
+        stats.update(60000);
+        assertEquals(0, stats.getTotalReads());
+        assertEquals(0, stats.getHops(1));
+        assertEquals(0.0, stats.getMeanHopMs(), 0.001);
+        int[] hist = new int[RfStats.HOP_BINS];
+        stats.getHopHistogram(hist);
+        for (int h : hist)
+            assertEquals(0, h);
+    }
+
+    @Test
+    public void weakChannels_belowMedianReadsPerHop() throws Exception {
+        RfStats stats = new RfStats(30, 1000);
+        long t = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int c = 0; c < 8; c++) {
+                t += 100;
+                stats.addHop(c, t);
+                //Channel 5 has interference: 1 read per hop, others 20
+                int reads = c == 5 ? 1 : 20;
+                for (int r = 0; r < reads; r++)
+                    stats.addRead(c, -60, t);
+            }
+        }
+        int[] weak = new int[RfStats.MAX_CHANNELS];
+        assertEquals(1, stats.getWeakChannels(0.25, weak));
+        assertEquals(5, weak[0]);
+        assertEquals(100.0, stats.getMeanHopMs(), 0.001);
+
+        int[] hist = new int[RfStats.HOP_BINS];
+        stats.getHopHistogram(hist);
+        assertEquals(79, hist[100 / RfStats.HOP_BIN_MS]);
+    }
+
+    @Test
+    public void addRead_noAllocation() throws Exception {
+        final RfStats stats = new RfStats(30, 1000);
+        MicroBenchmark.Result r = MicroBenchmark.run("rf stats read", 1000000, new MicroBenchmark.Op() {
+            @Override
+            public void run(int i) {
+                stats.addRead(i & 31, -40 - (i & 63), i / 100);
+            }
+        });
+        if (r.bytesPerOp >= 0)
+            assertTrue(r.bytesPerOp < 1);
+    }
+}
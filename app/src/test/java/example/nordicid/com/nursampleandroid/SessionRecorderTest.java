@@ -0,0 +1,221 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SessionRecorderTest {
+
+    /**
+     * Listener which keeps events it gets
+     */
+    static class CollectingListener implements NurApiListener {
+        final List<Object> events = new ArrayList<Object>();
+
+        @Override
+        public void inventoryStreamEvent(NurEventInventory event) { events.add(event); }
+        @Override
+        public void inventoryExtendedStreamEvent(NurEventInventory event) { events.add(event); }
+        @Override
+        public void IOChangeEvent(NurEventIOChange event) { events.add(event); }
+        @Override
+        public void traceTagEvent(NurEventTraceTag event) { events.add(event); }
+        @Override
+        public void disconnectedEvent() { events.add("disconnected"); }
+        @Override
+        public void triggeredReadEvent(NurEventTriggeredRead event) { }
+        @Override
+        public void logEvent(int level, String txt) { }
+        @Override
+        public void connectedEvent() { }
+        @Override
+        public void bootEvent(String event) { }
+        @Override
+        public void frequencyHopEvent(NurEventFrequencyHop event) { }
+        @Override
+        public void debugMessageEvent(String event) { }
+        @Override
+        public void programmingProgressEvent(NurEventProgrammingProgress event) { }
+        @Override
+        public void deviceSearchEvent(NurEventDeviceInfo event) { }
+        @Override
+        public void clientConnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void clientDisconnectedEvent(NurEventClientInfo event) { }
+        @Override
+        public void nxpEasAlarmEvent(NurEventNxpAlarm event) { }
+        @Override
+        public void epcEnumEvent(NurEventEpcEnum event) { }
+        @Override
+        public void autotuneEvent(NurEventAutotune event) { }
+        @Override
+        public void tagTrackingScanEvent(NurEventTagTrackingData event) { }
+        @Override
+        public void tagTrackingChangeEvent(NurEventTagTrackingChange event) { }
+    }
+
+    private static NurTag tag(String epc, int rssi, int antenna) throws Exception
+    {
+        return new NurTag(1234, rssi, 80, 866300, 0x3000, 2, antenna, NurApi.hexStringToByteArray(epc), null);
+    }
+
+    @Test
+    public void recordAndReplay_roundTrip() throws Exception {
+        NurApi recApi = new NurApi();
+        NurApi playApi = new NurApi();
+        try {
+            CollectingListener live = new CollectingListener();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SessionRecorder recorder = new SessionRecorder(recApi, live, out);
+
+            //Two tags arrive in first event, one in second
+            recApi.getStorage().addTag(tag("3074257BF7194E4000001A85", -55, 0));
+            recApi.getStorage().addTag(tag("E2801160600002054CC2096F", -61, 1));
+            NurEventInventory inv = new NurEventInventory();
+            inv.tagsAdded = 2;
+            inv.roundsDone = 3;
+            inv.Q = 5;
+            recorder.inventoryStreamEvent(inv);
+
+            NurEventIOChange io = new NurEventIOChange();
+            io.source = 100;
+            io.direction = 1;
+            recorder.IOChangeEvent(io);
+            recorder.recordBarcode(0, "]C1011234567890123121ABC");
+
+            recApi.getStorage().addTag(tag("E2801160600002054CC20970", -70, 0));
+            inv = new NurEventInventory();
+            inv.tagsAdded = 1;
+            recorder.inventoryExtendedStreamEvent(inv);
+
+            NurEventTraceTag trace = new NurEventTraceTag();
+            trace.rssi = -48;
+            trace.scaledRssi = 90;
+            trace.epc = NurApi.hexStringToByteArray("E2801160600002054CC2096F");
+            recorder.traceTagEvent(trace);
+            recorder.disconnectedEvent();
+            recorder.close();
+
+            assertNull(recorder.getError());
+            assertEquals(6, recorder.getRecordCount());
+            assertEquals(5, live.events.size());
+
+            CollectingListener played = new CollectingListener();
+            final List<String> barcodes = new ArrayList<String>();
+            SessionReplayer replayer = new SessionReplayer(new ByteArrayInputStream(out.toByteArray()));
+            replayer.replay(playApi, played, new SessionReplayer.BarcodeListener() {
+                @Override
+                public void barcodeResult(int status, String barcode) { barcodes.add(barcode); }
+            }, 0);
+
+            assertEquals(6, replayer.getRecordCount());
+            assertEquals(3, replayer.getTagCount());
+            assertEquals(5, played.events.size());
+            assertEquals(1, barcodes.size());
+            assertEquals("]C1011234567890123121ABC", barcodes.get(0));
+
+            NurEventInventory inv1 = (NurEventInventory) played.events.get(0);
+            assertEquals(2, inv1.tagsAdded);
+            assertEquals(3, inv1.roundsDone);
+            assertEquals(5, inv1.Q);
+            assertEquals(100, ((NurEventIOChange) played.events.get(1)).source);
+            assertEquals(1, ((NurEventIOChange) played.events.get(1)).direction);
+            assertEquals(1, ((NurEventInventory) played.events.get(2)).tagsAdded);
+            NurEventTraceTag trace2 = (NurEventTraceTag) played.events.get(3);
+            assertEquals(-48, trace2.rssi);
+            assertEquals("E2801160600002054CC2096F", trace2.epcStr);
+            assertEquals("disconnected", played.events.get(4));
+
+            //Storage refilled with same tags
+            NurTagStorage storage = playApi.getStorage();
+            assertEquals(3, storage.size());
+            NurTag t = storage.get(1);
+            assertEquals("E2801160600002054CC2096F", t.getEpcString());
+            assertEquals(-61, t.getRssi());
+            assertEquals(1, t.getAntennaId());
+            assertEquals(866300, t.getFreq());
+            assertEquals(0x3000, t.getPC());
+        } finally {
+            recApi.dispose();
+            playApi.dispose();
+        }
+    }
+
+    @Test
+    public void handlerProfile_replaysThroughControllerAndBarcodes() throws Exception {
+        NurApi recApi = new NurApi();
+        SessionReplayer.ReplayApi playApi = new SessionReplayer.ReplayApi();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SessionRecorder recorder = new SessionRecorder(recApi, new CollectingListener(), out);
+            for (int round = 0; round < 3; round++) {
+                for (int x = 0; x < 4; x++)
+                    recApi.getStorage().addTag(tag(String.format("3074257BF7194E40%08X", round * 4 + x), -55, 0));
+                recApi.getStorage().addTag(tag(String.format("E280116060000205%08X", round), -60, 0));
+                NurEventInventory inv = new NurEventInventory();
+                inv.tagsAdded = 5;
+                recorder.inventoryStreamEvent(inv);
+            }
+            recorder.recordBarcode(0, "]C1011234567890123121ABC");
+            recorder.recordBarcode(0, "]C1011234567890123121ABC"); //Duplicate inside dedup window
+            recorder.recordBarcode(0, "HELLO");
+            recorder.recordBarcode(NurApiErrors.NO_TAG, null);
+            recorder.close();
+
+            SessionReplayer.HandlerProfile profile = new SessionReplayer.HandlerProfile(playApi);
+            profile.controller.setFilter(example.nordicid.com.inventorycore.EpcFilter.parse("3074257B"));
+            SessionReplayer replayer = new SessionReplayer(new ByteArrayInputStream(out.toByteArray()));
+            profile.replay(replayer, playApi, 0);
+            String report = profile.report();
+            System.out.print(report);
+
+            assertNull(profile.error);
+            assertEquals(12, profile.controller.getTagsAdded());
+            assertEquals(3, profile.controller.getTagsFiltered());
+            assertEquals(3, profile.inventory.calls);
+            assertEquals(3, profile.batch.calls);
+            assertEquals(2, profile.barcodes);
+            assertEquals(2, profile.gs1.calls);
+            assertTrue(report, report.contains("InventoryController.handleInventoryEvent: 3 calls"));
+            assertTrue(report, report.contains("barcodes accepted:2 (GS1 1)"));
+        } finally {
+            recApi.dispose();
+            playApi.dispose();
+        }
+    }
+
+    @Test
+    public void replay_followsRecordedTiming() throws Exception {
+        NurApi api = new NurApi();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SessionRecorder recorder = new SessionRecorder(api, new CollectingListener(), out);
+            recorder.recordBarcode(0, "A");
+            Thread.sleep(200);
+            recorder.recordBarcode(0, "B");
+            recorder.close();
+
+            //4x speed: 200 ms recorded gap replays in about 50 ms
+            SessionReplayer replayer = new SessionReplayer(new ByteArrayInputStream(out.toByteArray()));
+            long t0 = System.nanoTime();
+            replayer.replay(api, new CollectingListener(), null, 4);
+            long ms = (System.nanoTime() - t0) / 1000000;
+            assertTrue("replay took " + ms + " ms", ms >= 45 && ms < 150);
+            assertTrue(replayer.getRecordedNanos() >= 200000000L);
+        } finally {
+            api.dispose();
+        }
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void replay_rejectsOtherFiles() throws Exception {
+        new SessionReplayer(new ByteArrayInputStream("not a recording".getBytes()));
+    }
+}
@@ -0,0 +1,55 @@
+package example.nordicid.com.nursampleandroid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StartupTraceTest {
+
+    private static final long MS = 1000000;
+
+    @Test
+    public void interactive_whenFrameAndBackgroundDone() throws Exception {
+        StartupTrace trace = new StartupTrace();
+        trace.begin(1000 * MS);
+        trace.mark("onCreate", 1010 * MS);
+        trace.mark("content", 1080 * MS);
+        assertFalse(trace.firstFrame(1150 * MS));
+        assertFalse(trace.isInteractive());
+        assertEquals(-1, trace.getInteractiveMs());
+        assertEquals(150, trace.getFirstFrameMs());
+
+        //Background done last, that is when app is usable
+        assertTrue(trace.backgroundDone(1210 * MS));
+        assertTrue(trace.isInteractive());
+        assertEquals(210, trace.getInteractiveMs());
+        assertEquals(80, trace.getMarkMs("content"));
+        assertEquals(-1, trace.getMarkMs("Beeper"));
+        assertEquals("Startup 210 ms: onCreate 10, content 80, first frame 150, background done 210", trace.summary());
+
+        //Reported once
+        assertFalse(trace.firstFrame(1300 * MS));
+        assertEquals(210, trace.getInteractiveMs());
+    }
+
+    @Test
+    public void begin_dropsEarlierTrace() throws Exception {
+        StartupTrace trace = new StartupTrace();
+        assertFalse(trace.isStarted());
+        trace.mark("ignored", 5 * MS);
+        trace.begin(0);
+        trace.backgroundDone(30 * MS);
+        trace.firstFrame(20 * MS);
+        assertEquals(20, trace.getInteractiveMs());
+
+        trace.begin(100 * MS);
+        assertFalse(trace.isInteractive());
+        assertEquals(-1, trace.getMarkMs("first frame"));
+        assertEquals("Startup - ms:", trace.summary());
+        for (int x = 0; x < 100; x++)
+            trace.mark("step", (100 + x) * MS);
+        //Marks over limit dropped, first frame time still kept
+        assertFalse(trace.firstFrame(300 * MS));
+        assertEquals(200, trace.getFirstFrameMs());
+    }
+}
@@ -0,0 +1,121 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class TagExporterTest {
+
+    private static NurTagStorage storage(int count)
+    {
+        NurTagStorage storage = new NurTagStorage();
+        for (int x = 0; x < count; x++) {
+            byte[] epc = new byte[12];
+            epc[0] = 0x30;
+            epc[8] = (byte) (x >> 24);
+            epc[9] = (byte) (x >> 16);
+            epc[10] = (byte) (x >> 8);
+            epc[11] = (byte) x;
+            storage.addTag(new NurTag(100 + x, -40 - (x % 40), x % 100, 866300, 0x3000, x % 4, x % 2, epc, null));
+        }
+        return storage;
+    }
+
+    @Test
+    public void csv_format() throws Exception {
+        NurTagStorage storage = new NurTagStorage();
+        storage.addTag(new NurTag(123, -55, 80, 866300, 0x3000, 2, 1, NurApi.hexStringToByteArray("3074257BF7194E4000001A85"),
+                NurApi.hexStringToByteArray("E2801160")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, new TagExporter(TagExporter.FORMAT_CSV, false).export(storage, out, null));
+        assertEquals(TagExporter.CSV_HEADER + "3074257BF7194E4000001A85,-55,80,1,866300,2,123,1,E2801160\n", out.toString("US-ASCII"));
+    }
+
+    @Test
+    public void jsonl_format() throws Exception {
+        NurTagStorage storage = new NurTagStorage();
+        storage.addTag(new NurTag(0, -120, 0, 866300, 0x3000, 0, 0, NurApi.hexStringToByteArray("E2801160600002054CC2096F"), null));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TagExporter(TagExporter.FORMAT_JSONL, false).export(storage, out, null);
+        assertEquals("{\"epc\":\"E2801160600002054CC2096F\",\"rssi\":-120,\"scaledRssi\":0,\"antenna\":0,\"freqKhz\":866300," +
+                "\"channel\":0,\"timestamp\":0,\"readCount\":1}\n", out.toString("US-ASCII"));
+    }
+
+    @Test
+    public void gzip_roundTripManyTags() throws Exception {
+        final int count = 5000;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final int[] lastDone = new int[1];
+        TagExporter exporter = new TagExporter(TagExporter.FORMAT_CSV, true);
+        assertEquals(".csv.gz", exporter.getExtension());
+        exporter.export(storage(count), out, new TagExporter.ProgressListener() {
+            @Override
+            public void onProgress(int tagsDone, int tagsTotal, long bytes, double mbPerSec) {
+                assertTrue(tagsDone >= lastDone[0]);
+                assertEquals(count, tagsTotal);
+                lastDone[0] = tagsDone;
+            }
+        });
+        assertEquals(count, lastDone[0]);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), "US-ASCII"));
+        assertEquals(TagExporter.CSV_HEADER.trim(), reader.readLine());
+        int lines = 0;
+        String line;
+        String last = null;
+        while ((line = reader.readLine()) != null) {
+            lines++;
+            last = line;
+        }
+        assertEquals(count, lines);
+        assertTrue(last, last.startsWith("300000000000000000001387,"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFormat_throws() throws Exception {
+        new TagExporter(5, false);
+    }
+
+    /**
+     * Export speed of 50k tags. Output discarded so this measures encoding and compression only.
+     */
+    @Test
+    public void benchmark_export50k() throws Exception {
+        final NurTagStorage storage = storage(50000);
+        final OutputStream nul = new OutputStream() {
+            @Override
+            public void write(int b) { }
+            @Override
+            public void write(byte[] b, int off, int len) { }
+        };
+        final double[] speed = new double[1];
+        final TagExporter.ProgressListener progress = new TagExporter.ProgressListener() {
+            @Override
+            public void onProgress(int tagsDone, int tagsTotal, long bytes, double mbPerSec) { speed[0] = mbPerSec; }
+        };
+        final TagExporter csv = new TagExporter(TagExporter.FORMAT_CSV, false);
+        final TagExporter jsonGz = new TagExporter(TagExporter.FORMAT_JSONL, true);
+
+        MicroBenchmark.run("export 50k csv", 20, new MicroBenchmark.Op() {
+            public void run(int i) throws Exception { csv.export(storage, nul, progress); }
+        });
+        System.out.println(String.format("  csv %.1f MB/s", speed[0]));
+        MicroBenchmark.run("export 50k jsonl.gz", 10, new MicroBenchmark.Op() {
+            public void run(int i) throws Exception { jsonGz.export(storage, nul, progress); }
+        });
+        System.out.println(String.format("  jsonl.gz %.1f MB/s", speed[0]));
+    }
+}
@@ -0,0 +1,336 @@
+package example.nordicid.com.nursampleandroid;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class UploadQueueTest {
+
+    /**
+     * Local stub of backend. Fails given number of first requests with 503.
+     */
+    static class StubServer implements HttpHandler {
+        final HttpServer server;
+        final List<String> bodies = new ArrayList<String>();
+        volatile int failFirst;
+        volatile int requests;
+        volatile int status = 200;
+
+        StubServer() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/reads", this);
+            server.start();
+        }
+
+        String url() { return "http://127.0.0.1:" + server.getAddress().getPort() + "/reads"; }
+
+        @Override
+        public void handle(HttpExchange ex) throws IOException {
+            requests++;
+            InputStream in = ex.getRequestBody();
+            if ("gzip".equals(ex.getRequestHeaders().getFirst("Content-Encoding")))
+                in = new GZIPInputStream(in);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) > 0)
+                bos.write(buf, 0, n);
+
+            int code = status;
+            if (failFirst > 0) {
+                failFirst--;
+                code = 503;
+            }
+            else {
+                synchronized (bodies) {
+                    bodies.add(bos.toString("UTF-8"));
+                }
+            }
+            ex.sendResponseHeaders(code, -1);
+            ex.close();
+        }
+
+        int lines() {
+            int count = 0;
+            synchronized (bodies) {
+                for (String b : bodies)
+                    count += b.split("\n").length;
+            }
+            return count;
+        }
+
+        void stop() { server.stop(0); }
+    }
+
+    private static File tempDir() throws IOException
+    {
+        File dir = File.createTempFile("uploadq", "");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static void waitUntil(long timeoutMs, java.util.concurrent.Callable<Boolean> cond) throws Exception
+    {
+        long end = System.currentTimeMillis() + timeoutMs;
+        while (!cond.call()) {
+            if (System.currentTimeMillis() > end)
+                fail("Timeout");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void batchesSentCompressed() throws Exception {
+        final StubServer server = new StubServer();
+        final UploadQueue queue = new UploadQueue(tempDir(), 100, 200);
+        try {
+            queue.setEndpoint(server.url());
+            queue.start();
+            for (int x = 0; x < 250; x++)
+                queue.offerTag(new byte[] { 0x30, 0x74, (byte) x }, -50, 1, 1000 + x);
+            queue.offerBarcode("]C1\u001D01\"x", 5000);
+
+            waitUntil(5000, new java.util.concurrent.Callable<Boolean>() {
+                public Boolean call() { return queue.getSentRecords() == 251; }
+            });
+            assertEquals(3, queue.getSentBatches());
+            assertEquals(0, queue.getPendingBatches());
+            assertEquals(251, server.lines());
+            assertTrue(server.bodies.get(0).startsWith("{\"type\":\"tag\",\"epc\":\"307400\",\"rssi\":-50,\"antenna\":1,\"time\":1000}\n"));
+            assertTrue(server.bodies.get(2), server.bodies.get(2).endsWith("{\"type\":\"barcode\",\"code\":\"]C1\\u001d01\\\"x\",\"time\":5000}\n"));
+        } finally {
+            queue.stop();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void retriesWithBackoff() throws Exception {
+        final StubServer server = new StubServer();
+        server.failFirst = 3;
+        final UploadQueue queue = new UploadQueue(tempDir(), 10, 50);
+        try {
+            queue.setEndpoint(server.url());
+            queue.setBackoff(20, 100);
+            queue.start();
+            for (int x = 0; x < 10; x++)
+                queue.offerTag(new byte[] { 1, 2, 3, (byte) x }, -60, 0, x);
+
+            waitUntil(5000, new java.util.concurrent.Callable<Boolean>() {
+                public Boolean call() { return queue.getSentRecords() == 10; }
+            });
+            assertEquals(3, queue.getFailedAttempts());
+            assertEquals(4, server.requests);
+            assertEquals(10, server.lines());
+        } finally {
+            queue.stop();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void backoff_notShortenedByNewBatches() throws Exception {
+        final StubServer server = new StubServer();
+        server.status = 503;
+        final UploadQueue queue = new UploadQueue(tempDir(), 5, 10000);
+        try {
+            queue.setEndpoint(server.url());
+            queue.setBackoff(200, 200);
+            queue.start();
+            //Batch cut every 10 ms during outage
+            long end = System.currentTimeMillis() + 600;
+            for (int x = 0; System.currentTimeMillis() < end; x++) {
+                queue.offerTag(new byte[] { 1, (byte) x }, -60, 0, x);
+                Thread.sleep(2);
+            }
+            //Attempts at most every 100..200 ms
+            assertTrue("requests " + server.requests, server.requests <= 7);
+            assertTrue(queue.getPendingBatches() > 20);
+        } finally {
+            queue.stop();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void stop_doesNotWaitForSend() throws Exception {
+        final java.util.concurrent.atomic.AtomicInteger received = new java.util.concurrent.atomic.AtomicInteger();
+        final StubServer server = new StubServer() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                received.incrementAndGet();
+                try { Thread.sleep(1000); } catch (InterruptedException e) { }
+                super.handle(ex);
+            }
+        };
+        final UploadQueue queue = new UploadQueue(tempDir(), 2, 10000);
+        try {
+            queue.setEndpoint(server.url());
+            queue.start();
+            queue.offerTag(new byte[] { 1 }, -1, 0, 0);
+            queue.offerTag(new byte[] { 2 }, -1, 0, 0);
+            waitUntil(5000, new java.util.concurrent.Callable<Boolean>() {
+                public Boolean call() { return received.get() == 1; }
+            });
+            queue.offerTag(new byte[] { 3 }, -1, 0, 0);
+            long start = System.currentTimeMillis();
+            queue.stop();
+            assertTrue(System.currentTimeMillis() - start < 500);
+            //Partial batch sealed by stop(), batch in flight still in queue
+            assertEquals(2, queue.getPendingBatches());
+            assertEquals(0, queue.getBufferedRecords());
+        } finally {
+            queue.stop();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void backoffDelay_growsUpToMax() throws Exception {
+        UploadQueue queue = new UploadQueue(tempDir(), 10, 50);
+        queue.setBackoff(1000, 8000);
+        for (int x = 0; x < 50; x++) {
+            long d1 = queue.backoffDelay(1);
+            assertTrue(d1 >= 500 && d1 <= 1000);
+            long d3 = queue.backoffDelay(3);
+            assertTrue(d3 >= 2000 && d3 <= 4000);
+            long d30 = queue.backoffDelay(30);
+            assertTrue(d30 >= 4000 && d30 <= 8000);
+        }
+    }
+
+    @Test
+    public void unsentBatchesSurviveRestart() throws Exception {
+        File dir = tempDir();
+        UploadQueue first = new UploadQueue(dir, 5, 10000);
+        //No endpoint: batches only stored
+        first.start();
+        for (int x = 0; x < 12; x++)
+            first.offerTag(new byte[] { 0x30, (byte) x }, -70, 0, x);
+        first.stop(); //Partial batch sealed too
+        assertEquals(3, first.getPendingBatches());
+
+        final StubServer server = new StubServer();
+        final UploadQueue second = new UploadQueue(dir, 5, 10000);
+        try {
+            assertEquals(3, second.getPendingBatches());
+            second.offerTag(new byte[] { 0x31 }, -70, 0, 99);
+            second.setEndpoint(server.url());
+            second.start();
+            waitUntil(5000, new java.util.concurrent.Callable<Boolean>() {
+                public Boolean call() { return second.getSentRecords() == 12; }
+            });
+            //Order kept over restart
+            assertTrue(server.bodies.get(0).contains("\"epc\":\"3000\""));
+            assertTrue(server.bodies.get(2).contains("\"epc\":\"300B\""));
+        } finally {
+            second.stop();
+            server.stop();
+        }
+        //Record offered after restart sealed on stop
+        assertEquals(1, second.getPendingBatches());
+    }
+
+    @Test
+    public void fullBatch_sealedBySenderThread() throws Exception {
+        final UploadQueue queue = new UploadQueue(tempDir(), 5, 10000);
+        for (int x = 0; x < 12; x++)
+            queue.offerTag(new byte[] { 0x30, (byte) x }, -70, 0, x);
+        //Offering thread does not write
+        assertEquals(0, queue.getPendingBatches());
+        assertEquals(12, queue.getBufferedRecords());
+
+        queue.start();
+        try {
+            waitUntil(5000, new java.util.concurrent.Callable<Boolean>() {
+                public Boolean call() { return queue.getPendingBatches() == 2; }
+            });
+            assertEquals(2, queue.getBufferedRecords());
+        } finally {
+            queue.stop();
+        }
+        assertEquals(3, queue.getPendingBatches());
+        assertEquals(0, queue.getBufferedRecords());
+    }
+
+    @Test
+    public void clientError_batchRejected() throws Exception {
+        final StubServer server = new StubServer();
+        server.status = 400;
+        File dir = tempDir();
+        final UploadQueue queue = new UploadQueue(dir, 2, 50);
+        try {
+            queue.setEndpoint(server.url());
+            queue.start();
+            queue.offerTag(new byte[] { 1 }, -1, 0, 0);
+            queue.offerTag(new byte[] { 2 }, -1, 0, 0);
+            waitUntil(5000, new java.util.concurrent.Callable<Boolean>() {
+                public Boolean call() { return server.requests == 1 && queue.getPendingBatches() == 0; }
+            });
+            assertEquals("HTTP 400", queue.getLastError());
+            assertEquals(0, queue.getSentRecords());
+        } finally {
+            queue.stop();
+            server.stop();
+        }
+        assertTrue(new File(dir, "000000000000.jsonl.gz.rejected").exists());
+    }
+
+    /**
+     * Sustained rate: 1000 reads/s offered for 3 s to server which answers slowly (50 ms per request).
+     * Backlog must not grow.
+     */
+    @Test
+    public void sustainedRate_noBacklogGrowth() throws Exception {
+        final StubServer server = new StubServer() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                try { Thread.sleep(50); } catch (InterruptedException e) { }
+                super.handle(ex);
+            }
+        };
+        final UploadQueue queue = new UploadQueue(tempDir(), 500, 250);
+        try {
+            queue.setEndpoint(server.url());
+            queue.start();
+            byte[] epc = new byte[12];
+            long t0 = System.currentTimeMillis();
+            int maxPending = 0;
+            for (int x = 0; x < 3000; x++) {
+                epc[11] = (byte) x;
+                epc[10] = (byte) (x >> 8);
+                queue.offerTag(epc, -55, 0, t0 + x);
+                if (x % 100 == 99) {
+                    maxPending = Math.max(maxPending, queue.getPendingBatches());
+                    long due = t0 + x + 1;
+                    long now = System.currentTimeMillis();
+                    if (due > now)
+                        Thread.sleep(due - now);
+                }
+            }
+            waitUntil(5000, new java.util.concurrent.Callable<Boolean>() {
+                public Boolean call() { return queue.getSentRecords() == 3000; }
+            });
+            System.out.println("upload: " + queue.getSentBatches() + " batches, " + queue.getSentBytes() / 3000.0 +
+                    " bytes/read compressed, max pending " + maxPending);
+            assertTrue("max pending " + maxPending, maxPending <= 2);
+        } finally {
+            queue.stop();
+            server.stop();
+        }
+    }
+}